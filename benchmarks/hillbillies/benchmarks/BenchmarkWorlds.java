@@ -0,0 +1,78 @@
+package hillbillies.benchmarks;
+
+import java.io.IOException;
+
+import hillbillies.model.World;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * A class of helper methods shared by the benchmarks, to load the bundled maps and to find cubes in them.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+final class BenchmarkWorlds {
+
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * A symbolic constant denoting the folder of the bundled maps.
+	 */
+	static final String LEVELS_PATH = "resources/";
+
+	/**
+	 * A symbolic constant denoting the extension of the bundled maps.
+	 */
+	static final String LEVEL_FILE_EXTENSION = ".wrld";
+
+	/**
+	 * Returns the resource name of the bundled map with the given name.
+	 */
+	static String resource(String name) {
+		return LEVELS_PATH + name + LEVEL_FILE_EXTENSION;
+	}
+
+	/**
+	 * Returns the terrain types of the bundled map with the given name.
+	 */
+	static int[][][] terrain(String name) throws IOException {
+		GameMap map = new GameMapReader().readFromResource(resource(name));
+		int[][][] types = new int[map.getNbTilesX()][map.getNbTilesY()][map.getNbTilesZ()];
+		for (int x = 0; x < types.length; x++)
+			for (int y = 0; y < types[x].length; y++)
+				for (int z = 0; z < types[x][y].length; z++)
+					types[x][y][z] = map.getTypeAt(x, y, z).getByteValue();
+		return types;
+	}
+
+	/**
+	 * Returns a new world with the terrain of the bundled map with the given name.
+	 */
+	static World world(String name) throws IOException {
+		GameMap map = new GameMapReader().readFromResource(resource(name));
+		return new World(map.getNbTilesX(), map.getNbTilesY(), map.getNbTilesZ(), map.getMap().getValues(),
+				new DefaultTerrainChangeListener());
+	}
+
+	/**
+	 * Returns the first cube, in order of index, on which a unit can stand in the given world,
+	 * searching forwards from the lowest index or backwards from the highest one.
+	 */
+	static int[] walkableCube(World world, boolean fromEnd) {
+		int nbX = world.getMaximumXValue();
+		int nbY = world.getMaximumYValue();
+		int nbCubes = world.getNbCubes();
+		for (int i = 0; i < nbCubes; i++) {
+			int index = fromEnd ? nbCubes - 1 - i : i;
+			int x = index % nbX;
+			int y = (index / nbX) % nbY;
+			int z = index / (nbX * nbY);
+			if (world.isWalkable(x, y, z))
+				return new int[]{x, y, z};
+		}
+		throw new IllegalStateException("no walkable cube");
+	}
+}
@@ -0,0 +1,69 @@
+package hillbillies.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hillbillies.model.BorderConnectivity;
+import hillbillies.util.ConnectedToBorder;
+
+/**
+ * Measures digging through a solid rock mass with the provided ConnectedToBorder and with
+ * BorderConnectivity, which replaces it in the world.
+ *
+ * Each invocation digs a straight tunnel through the middle of a fresh, entirely solid cube of rock,
+ * from one border to the opposite one. Every cube removed from the rock mass triggers a search for a
+ * path to the border through the remaining rock for each of its solid neighbours.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BorderConnectivityBenchmark {
+
+	@Param({"16", "32", "48"})
+	public int size;
+
+	private ConnectedToBorder connectedToBorder;
+
+	private BorderConnectivity borderConnectivity;
+
+	private int[][] cubes;
+
+	@Setup(Level.Trial)
+	public void makeTunnel() {
+		int middle = this.size / 2;
+		this.cubes = new int[this.size][];
+		for (int x = 0; x < this.size; x++)
+			this.cubes[x] = new int[]{x, middle, middle};
+	}
+
+	@Setup(Level.Invocation)
+	public void fillRock() {
+		this.connectedToBorder = new ConnectedToBorder(this.size, this.size, this.size);
+		this.borderConnectivity = new BorderConnectivity(this.size, this.size, this.size);
+	}
+
+	@Benchmark
+	public void connectedToBorder(Blackhole blackhole) {
+		for (int[] cube: this.cubes)
+			blackhole.consume(this.connectedToBorder.changeSolidToPassable(cube[0], cube[1], cube[2]));
+	}
+
+	@Benchmark
+	public void borderConnectivity(Blackhole blackhole) {
+		for (int[] cube: this.cubes)
+			blackhole.consume(this.borderConnectivity.changeSolidToPassable(cube[0], cube[1], cube[2]));
+	}
+}
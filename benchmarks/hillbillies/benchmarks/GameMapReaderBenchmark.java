@@ -0,0 +1,63 @@
+package hillbillies.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import ogp.framework.util.internal.ResourceUtils;
+
+/**
+ * Measures parsing a bundled map with GameMapReader.readFromReader and readFromStream. The map is read
+ * into memory beforehand, so that the benchmark does not include any input.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GameMapReaderBenchmark {
+
+	@Param({"15x15x15", "25x25x25", "50x50x50", "80x80x80"})
+	public String map;
+
+	private byte[] bytes;
+
+	private String contents;
+
+	@Setup
+	public void loadContents() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream in = ResourceUtils.openResource(BenchmarkWorlds.resource(this.map))) {
+			byte[] buffer = new byte[8192];
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+				bytes.write(buffer, 0, n);
+		}
+		this.bytes = bytes.toByteArray();
+		this.contents = new String(this.bytes, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public GameMap readFromReader() {
+		return new GameMapReader().readFromReader(new StringReader(this.contents));
+	}
+
+	@Benchmark
+	public GameMap readFromStream() {
+		return new GameMapReader().readFromStream(new ByteArrayInputStream(this.bytes));
+	}
+}
@@ -0,0 +1,52 @@
+package hillbillies.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import hillbillies.model.PathFinder;
+import hillbillies.model.World;
+
+/**
+ * Measures a single A* search of PathFinder.getPath between two far apart cubes of a bundled map.
+ * The path cache of the world is not involved.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathFinderBenchmark {
+
+	@Param({"15x15x15", "20x20x10", "25x25x25", "50x50x10", "50x50x50", "80x80x10", "80x80x80"})
+	public String map;
+
+	private World world;
+
+	private int[] start, destination;
+
+	@Setup
+	public void setUp() throws Exception {
+		this.world = BenchmarkWorlds.world(this.map);
+		this.start = BenchmarkWorlds.walkableCube(this.world, false);
+		this.destination = BenchmarkWorlds.walkableCube(this.world, true);
+	}
+
+	@Benchmark
+	public Object getPath() {
+		return PathFinder.getPath(this.start, this.destination, this.world, PathFinder.ALLOW_DIAGONAL);
+	}
+
+	@Benchmark
+	public Object getPathWithoutDiagonals() {
+		return PathFinder.getPath(this.start, this.destination, this.world, false);
+	}
+}
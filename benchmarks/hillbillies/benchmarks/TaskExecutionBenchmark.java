@@ -0,0 +1,86 @@
+package hillbillies.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import hillbillies.model.Task;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.tasks.TaskFactory;
+
+/**
+ * Measures the interpretation of task statements by units with default behavior. Each unit executes
+ * a task that loops forever over assignments and conditions, so that the default behavior of a unit
+ * only executes statements and never starts an activity.
+ *
+ * One step of Unit.advanceTime executes TIME_STEP / Unit.STATEMENT_EXECUTION_TIME statements per unit.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskExecutionBenchmark {
+
+	/**
+	 * A symbolic constant denoting the length of a step, equal to one frame of the user interface.
+	 */
+	private static final double TIME_STEP = 0.05;
+
+	/**
+	 * A symbolic constant denoting the task executed by every unit.
+	 */
+	private static final String TASK =
+			"name: \"statements\"\n" +
+			"priority: 10\n" +
+			"activities:\n" +
+			"b := true;\n" +
+			"while b do\n" +
+			"	p := here;\n" +
+			"	if is_passable p && ! carries_item this then\n" +
+			"		u := this;\n" +
+			"	else\n" +
+			"		b := true;\n" +
+			"	fi\n" +
+			"done";
+
+	@Param({"1", "5"})
+	public int nbUnits;
+
+	private World world;
+
+	@Setup(Level.Iteration)
+	public void scheduleTasks() {
+		int[][][] terrain = new int[20][20][3];
+		for (int x = 0; x < 20; x++)
+			for (int y = 0; y < 20; y++)
+				terrain[x][y][0] = 1;
+		this.world = new World(terrain, new DefaultTerrainChangeListener());
+		for (int i = 0; i < this.nbUnits; i++) {
+			Unit unit = new Unit(this.world, "Unit", new int[]{2 * i, 0, 1}, 50, 50, 50, 50);
+			List<Task> tasks = TaskParser.parseTasksFromString(TASK, new TaskFactory(), Collections.emptyList());
+			unit.getFaction().getScheduler().schedule(tasks.get(0));
+			unit.startDefaultBehavior();
+		}
+	}
+
+	@Benchmark
+	public World advanceTime() {
+		this.world.advanceTime(TIME_STEP);
+		return this.world;
+	}
+}
@@ -0,0 +1,64 @@
+package hillbillies.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * Measures one step of World.advanceTime for a world populated with units with default behavior.
+ *
+ * A new world is made for every iteration, so that each iteration starts from a comparable state;
+ * within an iteration the world keeps evolving, as it would in a game.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorldAdvanceTimeBenchmark {
+
+	/**
+	 * A symbolic constant denoting the length of a step, equal to one frame of the user interface.
+	 */
+	private static final double TIME_STEP = 0.05;
+
+	@Param({"20x20x10", "50x50x10"})
+	public String map;
+
+	@Param({"10", "50", "100"})
+	public int nbUnits;
+
+	private int[][][] terrain;
+
+	private World world;
+
+	@Setup(Level.Trial)
+	public void loadTerrain() throws Exception {
+		this.terrain = BenchmarkWorlds.terrain(this.map);
+	}
+
+	@Setup(Level.Iteration)
+	public void populate() {
+		this.world = new World(this.terrain, new DefaultTerrainChangeListener());
+		for (int i = 0; i < this.nbUnits; i++)
+			this.world.spawnUnit(true);
+	}
+
+	@Benchmark
+	public World advanceTime() {
+		this.world.advanceTime(TIME_STEP);
+		return this.world;
+	}
+}
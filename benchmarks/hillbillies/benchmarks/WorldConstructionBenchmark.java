@@ -0,0 +1,43 @@
+package hillbillies.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * Measures the construction of a world from the terrain types of a bundled map, including the
+ * initial cave-in of the cubes that are not connected to the border.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WorldConstructionBenchmark {
+
+	@Param({"15x15x15", "20x20x10", "25x25x25", "50x50x10", "50x50x50", "80x80x10", "80x80x80"})
+	public String map;
+
+	private int[][][] terrain;
+
+	@Setup
+	public void loadTerrain() throws Exception {
+		this.terrain = BenchmarkWorlds.terrain(this.map);
+	}
+
+	@Benchmark
+	public World construct() {
+		return new World(this.terrain, new DefaultTerrainChangeListener());
+	}
+}
@@ -121,6 +121,37 @@ public interface IFacade extends hillbillies.part1.facade.IFacade {
 	 */
 	public World createWorld(int[][][] terrainTypes, TerrainChangeListener modelListener) throws ModelException;
 
+	/**
+	 * Create a new world of the given size and with the given terrain, given
+	 * as a flat array instead of a three-dimensional one.
+	 * 
+	 * @param nbX
+	 *            The number of cubes in the x-direction.
+	 * @param nbY
+	 *            The number of cubes in the y-direction.
+	 * @param nbZ
+	 *            The number of cubes in the z-direction.
+	 * @param terrainTypes
+	 *            The types of the terrain, encoded as in
+	 *            {@link #createWorld(int[][][], TerrainChangeListener)}, where
+	 *            the type of the cube at (x, y, z) is at index
+	 *            x + nbX * (y + nbY * z).
+	 * @param modelListener
+	 *            The listener, as in
+	 *            {@link #createWorld(int[][][], TerrainChangeListener)}.
+	 * @return
+	 * @throws ModelException
+	 */
+	public default World createWorld(int nbX, int nbY, int nbZ, byte[] terrainTypes, TerrainChangeListener modelListener)
+			throws ModelException {
+		int[][][] types = new int[nbX][nbY][nbZ];
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				for (int z = 0; z < nbZ; z++)
+					types[x][y][z] = terrainTypes[x + nbX * (y + nbY * z)];
+		return createWorld(types, modelListener);
+	}
+
 	/**
 	 * Return the number of cubes in the world in the x-direction.
 	 * 
@@ -27,6 +27,7 @@ import hillbillies.part2.internal.providers.WorldInfoProvider2;
 import hillbillies.part2.internal.ui.IHillbilliesView2;
 import hillbillies.part2.internal.ui.ViewProviders2;
 import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part2.listener.TerrainChangeSet;
 import ogp.framework.util.ModelException;
 
 public class GameControllerPart2 extends GameController<IHillbilliesView2> implements IGameController2 {
@@ -44,24 +45,22 @@ public class GameControllerPart2 extends GameController<IHillbilliesView2> imple
 				listener.notifyTerrainChanged(x, y, z);
 			}
 		}
+
+		@Override
+		public void notifyTerrainChanged(TerrainChangeSet changes) {
+			// copy the listeners once for the whole batch
+			for (TerrainChangeListener listener : new HashSet<>(listeners)) {
+				listener.notifyTerrainChanged(changes);
+			}
+		}
 	};
 
 	public GameControllerPart2(IFacade facade, Part2Options options, GameMap map) throws ModelException {
 		super(facade, options);
 		this.map = map;
 
-		int[][][] types = new int[map.getNbTilesX()][map.getNbTilesY()][map.getNbTilesZ()];
-
-		for (int x = 0; x < types.length; x++) {
-			for (int y = 0; y < types[x].length; y++) {
-				for (int z = 0; z < types[x][y].length; z++) {
-					CubeType type = map.getTypeAt(x, y, z);
-					types[x][y][z] = type.getByteValue();
-				}
-			}
-		}
-
-		world = facade.createWorld(types, modelListener);
+		world = facade.createWorld(map.getNbTilesX(), map.getNbTilesY(), map.getNbTilesZ(), map.getMap().getValues(),
+				modelListener);
 
 		getSelectionProvider().addListener(e -> selectionUpdated());
 	}
@@ -26,6 +26,27 @@ public class ByteMap3D implements IByteMap3D {
 			tileTypes[i] = -1;
 	}
 
+	/**
+	 * Creates a map that uses the given values, in order of x, then y, then z, without copying them.
+	 */
+	public ByteMap3D(int nbX, int nbY, int nbZ, byte[] tileTypes) {
+		if (tileTypes.length != nbX * nbY * nbZ)
+			throw new IllegalArgumentException("Expected " + (nbX * nbY * nbZ) + " values");
+		this.nbX = nbX;
+		this.nbY = nbY;
+		this.nbZ = nbZ;
+		this.nbXY = nbX * nbY;
+		this.tileTypes = tileTypes;
+	}
+
+	/**
+	 * Returns the values of this map in order of x, then y, then z.
+	 * The result is the array of this map itself, so it must not be changed.
+	 */
+	public byte[] getValues() {
+		return tileTypes;
+	}
+
 	@Override
 	public int getNbX() {
 		return nbX;
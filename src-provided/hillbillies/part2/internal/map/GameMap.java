@@ -18,6 +18,14 @@ public class GameMap {
 		this.map = new ByteMap3D(nbTilesX, nbTilesY, nbTilesZ);
 	}
 
+	/**
+	 * Creates a game map with the given cube types, given as their byte values in order
+	 * of x, then y, then z. The given array is used as it is, without copying it.
+	 */
+	public GameMap(int nbTilesX, int nbTilesY, int nbTilesZ, byte[] types) {
+		this.map = new ByteMap3D(nbTilesX, nbTilesY, nbTilesZ, types);
+	}
+
 	public ByteMap3D getMap() {
 		return map;
 	}
@@ -1,87 +1,222 @@
 package hillbillies.part2.internal.map;
 
-import java.io.BufferedReader;
 import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.Reader;
+import java.util.Arrays;
 
 import ogp.framework.util.internal.ResourceUtils;
 
+/**
+ * Reads game maps in the text format of the .wrld files.
+ *
+ * The first line holds the dimensions of the map. It is followed, for each z from the top down, by an empty line
+ * and a row of characters for each y, with one character for each x.
+ *
+ * The map is decoded character by character, straight into the bytes of the game map, without building a string
+ * for each row or for each cube. Files and resources are read as bytes; readers are only used as they are given.
+ */
 public class GameMapReader {
 
 	public GameMap readFromFile(String filename) throws FileNotFoundException {
-		return readFromReader(new FileReader(filename));
+		return readAndClose(new FileInputStream(filename));
 	}
 
 	public GameMap readFromReader(Reader reader) {
+		return read(new ReaderSource(reader));
+	}
+
+	/**
+	 * Reads a game map from the given stream of ASCII characters, which is buffered by this reader.
+	 */
+	public GameMap readFromStream(InputStream stream) {
+		return read(new StreamSource(stream));
+	}
+
+	private GameMap read(Source source) {
 		try {
-			BufferedReader breader = new BufferedReader(reader);
-			String line = breader.readLine();
-			if (line != null) {
-				String[] dims = line.split(" ");
-				int nbX = Integer.parseInt(dims[0]);
-				int nbY = Integer.parseInt(dims[1]);
-				int nbZ = Integer.parseInt(dims[2]);
-				GameMap map = new GameMap(nbX, nbY, nbZ);
-				for (int z = nbZ - 1; z >= 0; z--) {
-					line = breader.readLine();
-					if (line == null) {
-						throw new EOFException("Unexpected end of file; no data for z=" + z);
-					}
-					line = line.trim();
-					if (line.length() != 0) {
-						throw new IllegalArgumentException("Expected empty line");
-					}
-					for (int y = 0; y < nbY; y++) {
-						line = breader.readLine();
-						if (line == null) {
-							throw new EOFException("Unexpected end of file; no data for z=" + z + " and y = " + y);
-						}
-						line = line.trim();
-						String[] chars = line.split("");
-						if (chars.length != nbX) {
-							throw new EOFException("Unexpected end of line; for z=" + z + " and y = " + y
-									+ ", only have " + chars.length + " characters.");
-						}
-						for (int x = 0; x < nbX; x++) {
-							CubeType type;
-							switch (chars[x]) {
-							case ".":
-								type = CubeType.EMPTY;
-								break;
-							case "R":
-								type = CubeType.ROCKS;
-								break;
-							case "S":
-								type = CubeType.TREES;
-								break;
-							case "W":
-								type = CubeType.WORKSHOP;
-								break;
-							default:
-								throw new IllegalArgumentException("Unknown type: " + chars[x]);
-							}
-							map.setTypeAt(x, y, z, type);
-						}
-					}
-				}
-				return map;
-			}
+			return new Decoder(source).decode();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
+	private GameMap readAndClose(InputStream stream) {
+		try {
+			return readFromStream(stream);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	public static void main(String[] args) throws IOException {
 		GameMap map = new GameMapReader().readFromResource("resources/80x80x80.wrld");
 		System.out.println(map);
 	}
 
 	public GameMap readFromResource(String resourceURI) throws IOException {
-		return readFromReader(new InputStreamReader(ResourceUtils.openResource(resourceURI)));
+		return readAndClose(ResourceUtils.openResource(resourceURI));
+	}
+
+	/**
+	 * A symbolic constant denoting the byte value of the cube type of each character, or -1 for other characters.
+	 */
+	private static final byte[] TYPES = new byte[128];
+
+	static {
+		Arrays.fill(TYPES, (byte) -1);
+		TYPES['.'] = CubeType.EMPTY.getByteValue();
+		TYPES['R'] = CubeType.ROCKS.getByteValue();
+		TYPES['S'] = CubeType.TREES.getByteValue();
+		TYPES['W'] = CubeType.WORKSHOP.getByteValue();
+	}
+
+	/**
+	 * A source of characters, which returns -1 at the end of its input.
+	 */
+	private static abstract class Source {
+
+		abstract int read() throws IOException;
+	}
+
+	private static final class StreamSource extends Source {
+
+		StreamSource(InputStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		int read() throws IOException {
+			if (this.position == this.limit) {
+				this.limit = this.stream.read(this.buffer);
+				this.position = 0;
+				if (this.limit <= 0) {
+					this.limit = 0;
+					return -1;
+				}
+			}
+			return this.buffer[this.position++] & 0xFF;
+		}
+
+		private final InputStream stream;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position = 0, limit = 0;
+	}
+
+	private static final class ReaderSource extends Source {
+
+		ReaderSource(Reader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		int read() throws IOException {
+			if (this.position == this.limit) {
+				this.limit = this.reader.read(this.buffer);
+				this.position = 0;
+				if (this.limit <= 0) {
+					this.limit = 0;
+					return -1;
+				}
+			}
+			return this.buffer[this.position++];
+		}
+
+		private final Reader reader;
+		private final char[] buffer = new char[1 << 13];
+		private int position = 0, limit = 0;
+	}
+
+	/**
+	 * A decoder of a single map, which reads lines with the same semantics as BufferedReader.readLine
+	 * followed by String.trim, into a reused buffer.
+	 */
+	private static final class Decoder {
+
+		Decoder(Source source) {
+			this.source = source;
+		}
+
+		GameMap decode() throws IOException {
+			if ( ! this.readLine())
+				return null;
+			// The header is a single line, so splitting it costs nothing compared to the rows.
+			String[] dims = new String(this.line, this.start, this.end - this.start).split(" ");
+			int nbX = Integer.parseInt(dims[0]);
+			int nbY = Integer.parseInt(dims[1]);
+			int nbZ = Integer.parseInt(dims[2]);
+			byte[] types = new byte[nbX * nbY * nbZ];
+			for (int z = nbZ - 1; z >= 0; z--) {
+				if ( ! this.readLine())
+					throw new EOFException("Unexpected end of file; no data for z=" + z);
+				if (this.end != this.start)
+					throw new IllegalArgumentException("Expected empty line");
+				for (int y = 0; y < nbY; y++) {
+					if ( ! this.readLine())
+						throw new EOFException("Unexpected end of file; no data for z=" + z + " and y = " + y);
+					// An empty line counts as a single empty character, as with split("").
+					int nbChars = Math.max(this.end - this.start, 1);
+					if (nbChars != nbX)
+						throw new EOFException("Unexpected end of line; for z=" + z + " and y = " + y
+								+ ", only have " + nbChars + " characters.");
+					int offset = nbX * (y + nbY * z);
+					for (int x = 0; x < nbX; x++) {
+						int character = (this.start + x < this.end) ? this.line[this.start + x] : -1;
+						byte type = (character >= 0 && character < TYPES.length) ? TYPES[character] : -1;
+						if (type < 0)
+							throw new IllegalArgumentException("Unknown type: " + ((character < 0) ? "" : String.valueOf((char) character)));
+						types[offset + x] = type;
+					}
+				}
+			}
+			return new GameMap(nbX, nbY, nbZ, types);
+		}
+
+		/**
+		 * Reads the next line into the line buffer and sets start and end to its trimmed part.
+		 * Returns false if the end of the input was reached before any character of the line.
+		 */
+		private boolean readLine() throws IOException {
+			int length = 0;
+			int character = this.pending;
+			this.pending = NONE;
+			if (character == NONE)
+				character = this.source.read();
+			if (character < 0)
+				return false;
+			while ( (character >= 0) && (character != '\n') && (character != '\r') ) {
+				if (length == this.line.length)
+					this.line = Arrays.copyOf(this.line, 2 * length);
+				this.line[length++] = (char) character;
+				character = this.source.read();
+			}
+			if (character == '\r') {
+				// A carriage return may be followed by a line feed, which belongs to the same line terminator.
+				int next = this.source.read();
+				if (next != '\n')
+					this.pending = next;
+			}
+			this.start = 0;
+			this.end = length;
+			while ( (this.start < this.end) && (this.line[this.start] <= ' ') )
+				this.start++;
+			while ( (this.end > this.start) && (this.line[this.end - 1] <= ' ') )
+				this.end--;
+			return true;
+		}
+
+		private static final int NONE = -2;
+		private final Source source;
+		private char[] line = new char[256];
+		private int start, end;
+		private int pending = NONE;
 	}
 }
@@ -7,6 +7,11 @@ import hillbillies.part2.listener.TerrainChangeListener;
 public interface WorldInfoProvider2 extends WorldInfoProvider {
 	public CubeType getCubeTypeAt(int x, int y, int z);
 	
+	/**
+	 * Register a listener for terrain changes. Changes made during one step of
+	 * the world are delivered together, through
+	 * {@link TerrainChangeListener#notifyTerrainChanged(hillbillies.part2.listener.TerrainChangeSet)}.
+	 */
 	public void addTerrainChangeListener(TerrainChangeListener listener);
 	public void removeTerrainChangeListener(TerrainChangeListener listener);
 
@@ -16,6 +16,8 @@ import hillbillies.part2.internal.providers.WorldInfoProvider2;
 import hillbillies.part2.internal.ui.sprites.BoulderSprite;
 import hillbillies.part2.internal.ui.sprites.LogSprite;
 import hillbillies.part2.internal.ui.sprites.UnitSprite2;
+import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part2.listener.TerrainChangeSet;
 import javafx.geometry.Rectangle2D;
 import ogp.framework.util.internal.Matrix;
 
@@ -26,7 +28,18 @@ public class ViewModelPart2 extends ViewModel implements IViewModel2 {
 
 	public ViewModelPart2(WorldInfoProvider2 wip, IGameObjectInfoProvider uip, Rectangle2D initialView, int tileSize) {
 		super(wip, uip, initialView, tileSize);
-		getWorldInfoProvider().addTerrainChangeListener(this::updateMapCacheAt);
+		getWorldInfoProvider().addTerrainChangeListener(new TerrainChangeListener() {
+
+			@Override
+			public void notifyTerrainChanged(int x, int y, int z) {
+				updateMapCacheAt(x, y, z);
+			}
+
+			@Override
+			public void notifyTerrainChanged(TerrainChangeSet changes) {
+				updateMapCache(changes);
+			}
+		});
 		this.depthValues = new Matrix<>(getNbVisibleTilesX(), getNbVisibleTilesY(), 0);
 		this.anchored = new Matrix<>(getNbVisibleTilesX(), getNbVisibleTilesY(), false);
 	}
@@ -102,6 +115,12 @@ public class ViewModelPart2 extends ViewModel implements IViewModel2 {
 		getMap().setValue(x, y, z, getWorldInfoProvider().getCubeTypeAt(x, y, z).getByteValue());
 	}
 
+	protected void updateMapCache(TerrainChangeSet changes) {
+		for (int[] cube : changes.getCubes()) {
+			updateMapCacheAt(cube[0], cube[1], cube[2]);
+		}
+	}
+
 	@Override
 	public void update() {
 		// super.update(); // skip, to not fill entire map again (we're using
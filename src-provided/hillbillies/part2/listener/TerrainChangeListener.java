@@ -7,6 +7,10 @@ package hillbillies.part2.listener;
  * your code whenever a cube in the world changes type, such that the GUI knows
  * update the display of that cube.
  * 
+ * When many cubes change during a single step, for example in a cave-in,
+ * invoke {@link #notifyTerrainChanged(TerrainChangeSet)} once with all of
+ * them instead.
+ * 
  * You do not have to create an implementation of this interface yourself. For
  * testing purposes, you may use an instance of
  * {@link DefaultTerrainChangeListener} (which does nothing).
@@ -25,4 +29,20 @@ public interface TerrainChangeListener {
 	 *            The z-coordinate of the cube that has changed type
 	 */
 	public void notifyTerrainChanged(int x, int y, int z);
+
+	/**
+	 * Notify the GUI that all terrain cubes in the given change set have been
+	 * changed.
+	 * 
+	 * The default implementation notifies each cube separately; listeners that
+	 * can update many cubes at once should override it.
+	 * 
+	 * @param changes
+	 *            The cubes that have changed type
+	 */
+	public default void notifyTerrainChanged(TerrainChangeSet changes) {
+		for (int[] cube : changes.getCubes()) {
+			notifyTerrainChanged(cube[0], cube[1], cube[2]);
+		}
+	}
 }
@@ -0,0 +1,75 @@
+package hillbillies.part2.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The set of terrain cubes that changed type during a single step of the
+ * world, together with the smallest box that contains all of them (the dirty
+ * region).
+ * 
+ * Change sets are passed to
+ * {@link TerrainChangeListener#notifyTerrainChanged(TerrainChangeSet)}, so that
+ * the GUI can update all changed cubes in one pass.
+ */
+public final class TerrainChangeSet {
+
+	private final List<int[]> cubes;
+	private final int[] min;
+	private final int[] max;
+
+	/**
+	 * Create a change set of the given cubes.
+	 * 
+	 * @param cubes
+	 *            The coordinates of the changed cubes; must not be empty. The
+	 *            coordinates are copied.
+	 */
+	public TerrainChangeSet(List<int[]> cubes) {
+		if (cubes.isEmpty())
+			throw new IllegalArgumentException("A change set cannot be empty");
+		List<int[]> copy = new ArrayList<>(cubes.size());
+		int[] min = cubes.get(0).clone();
+		int[] max = cubes.get(0).clone();
+		for (int[] cube : cubes) {
+			copy.add(new int[] { cube[0], cube[1], cube[2] });
+			for (int i = 0; i < 3; i++) {
+				min[i] = Math.min(min[i], cube[i]);
+				max[i] = Math.max(max[i], cube[i]);
+			}
+		}
+		this.cubes = Collections.unmodifiableList(copy);
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Return the coordinates of the changed cubes, in the order in which they
+	 * changed.
+	 */
+	public List<int[]> getCubes() {
+		return cubes;
+	}
+
+	/**
+	 * Return the number of changed cubes.
+	 */
+	public int size() {
+		return cubes.size();
+	}
+
+	/**
+	 * Return the lowest x-, y- and z-coordinate of the changed cubes.
+	 */
+	public int[] getMinCorner() {
+		return min.clone();
+	}
+
+	/**
+	 * Return the highest x-, y- and z-coordinate of the changed cubes.
+	 */
+	public int[] getMaxCorner() {
+		return max.clone();
+	}
+}
@@ -1,5 +1,7 @@
 package hillbillies.part3.programs;
 
+import java.io.Serializable;
+
 import be.kuleuven.cs.som.annotate.Value;
 
 /**
@@ -10,7 +12,9 @@ import be.kuleuven.cs.som.annotate.Value;
  * This class is a value class.
  */
 @Value
-public final class SourceLocation {
+public final class SourceLocation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private final int line;
 	private final int column;
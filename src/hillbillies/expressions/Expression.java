@@ -6,6 +6,8 @@ import hillbillies.tasks.TextObject;
 
 public abstract class Expression extends TextObject implements IExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public Expression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -4,6 +4,8 @@ import hillbillies.expressions.Expression;
 import hillbillies.part3.programs.SourceLocation;
 
 public abstract class BooleanExpression extends Expression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public BooleanExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
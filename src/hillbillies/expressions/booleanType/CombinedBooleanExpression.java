@@ -9,6 +9,8 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class CombinedBooleanExpression<E extends BooleanExpression> 
 		extends BooleanExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public CombinedBooleanExpression(E left, E right, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		left.setSuperText(this);
@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public class IsEnemyExpression<E extends UnitExpression> 
 		extends SingleBooleanUnitExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	
 	public IsEnemyExpression(E unit, SourceLocation sourceLocation) {
 		super(unit, sourceLocation);
@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public class IsPassableExpression<E extends PositionExpression> 
 		extends SingleBooleanPositionExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 
 	public IsPassableExpression(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public class IsSolidExpression<E extends PositionExpression> 
 		extends SingleBooleanPositionExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public IsSolidExpression(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
 	}
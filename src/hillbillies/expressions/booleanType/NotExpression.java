@@ -4,6 +4,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public class NotExpression<E extends BooleanExpression> extends SingleBooleanExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public NotExpression(E expression, SourceLocation sourceLocation) {
 		super(expression, sourceLocation);
 	}
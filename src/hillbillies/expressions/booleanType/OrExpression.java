@@ -5,6 +5,8 @@ import hillbillies.part3.programs.SourceLocation;
 public class OrExpression<E extends BooleanExpression> 
 		extends CombinedBooleanExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public OrExpression(E left, E right, SourceLocation sourceLocation) {
 		super(left, right, sourceLocation);
 	}
@@ -5,6 +5,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public abstract class SingleBooleanExpression<E extends Expression> extends BooleanExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public SingleBooleanExpression(E expression, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		expression.setSuperText(this);
@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class SingleBooleanPositionExpression<E extends PositionExpression> 
 		extends SingleBooleanExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public SingleBooleanPositionExpression(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
 	}
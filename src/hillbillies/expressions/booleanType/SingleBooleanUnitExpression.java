@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class SingleBooleanUnitExpression<E extends UnitExpression> 
 		extends SingleBooleanExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public SingleBooleanUnitExpression(E expression, SourceLocation sourceLocation) {
 		super(expression, sourceLocation);
 	}
@@ -3,6 +3,8 @@ package hillbillies.expressions.booleanType;
 import hillbillies.part3.programs.SourceLocation;
 
 public class TrueExpression extends BooleanExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public TrueExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
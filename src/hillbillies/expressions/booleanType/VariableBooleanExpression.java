@@ -4,6 +4,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public class VariableBooleanExpression extends BooleanExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public VariableBooleanExpression(String variableName, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		this.setVariableName(variableName);
@@ -7,6 +7,8 @@ import hillbillies.part3.programs.SourceLocation;
 import hillbillies.positions.Position;
 
 public class BoulderPositionExpression extends PositionExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public BoulderPositionExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
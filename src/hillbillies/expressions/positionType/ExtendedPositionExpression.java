@@ -5,6 +5,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public abstract class ExtendedPositionExpression<E extends Expression> extends PositionExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public ExtendedPositionExpression(E expression, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		expression.setSuperText(this);
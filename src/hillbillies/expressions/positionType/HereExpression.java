@@ -3,6 +3,8 @@ package hillbillies.expressions.positionType;
 import hillbillies.part3.programs.SourceLocation;
 
 public class HereExpression extends PositionExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public HereExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
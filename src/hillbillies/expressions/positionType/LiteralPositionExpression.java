@@ -3,6 +3,8 @@ package hillbillies.expressions.positionType;
 import hillbillies.part3.programs.SourceLocation;
 
 public class LiteralPositionExpression extends PositionExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public LiteralPositionExpression(int x, int y, int z, SourceLocation sourceLocation) {
 		super(sourceLocation);
@@ -8,6 +8,8 @@ import hillbillies.positions.Position;
 
 public class LogPositionExpression extends PositionExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public LogPositionExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -1,14 +1,14 @@
 package hillbillies.expressions.positionType;
 
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
-
+import hillbillies.model.CubeVisitor;
+import hillbillies.model.World;
 import hillbillies.part3.programs.SourceLocation;
 
 public class NextToExpression<E extends PositionExpression> 
 		extends ExtendedPositionExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public NextToExpression(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
 	}
@@ -17,28 +17,40 @@ public class NextToExpression<E extends PositionExpression>
 	public int[] evaluate() {
 		int[] dummy = new int[3];
 		dummy =  this.getExpression().evaluate();
+		World world = this.getUnit().getWorld();
 		
-		Set<int[]> directlyAdjacentCoordinates = this.getUnit().getWorld().
-				getDirectlyAdjacentCoordinates(dummy[0], dummy[1], dummy[2]);
-		Set<int[]> copy = new HashSet<>();
-		for (int[] coordinate: directlyAdjacentCoordinates)
-				copy.add(coordinate);
-		
-		int random = new Random().nextInt(copy.size());
-		int i = 0;
-		for (int[] cubeCoordinate: copy) {
-			if (random == i)
-				return cubeCoordinate;
-			i += 1;
-		}
+		// Count the directly adjacent cubes and pick one of them in a second walk.
+		final int[] count = new int[1];
+		world.visitNeighbours(dummy[0], dummy[1], dummy[2], 6, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				count[0]++;
+				return true;
+			}
+		});
 		
 		/*
 		 * special case: if no passable cubes can be found,
 		 * the position itself is returned. Other methods should
 		 * be able to deal with this.
 		 */
+		if (count[0] == 0)
+			return dummy;
 		
-		return dummy;
+		final int[] random = new int[]{this.getUnit().getRandom().nextInt(count[0])};
+		final int[] result = new int[3];
+		world.visitNeighbours(dummy[0], dummy[1], dummy[2], 6, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				if (random[0]-- > 0)
+					return true;
+				result[0] = x;
+				result[1] = y;
+				result[2] = z;
+				return false;
+			}
+		});
+		return result;
 	}
 
 }
@@ -5,6 +5,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public abstract class PositionExpression extends Expression {
 
+	private static final long serialVersionUID = 1L;
+
 	public PositionExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
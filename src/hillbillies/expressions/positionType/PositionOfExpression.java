@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public class PositionOfExpression<E extends UnitExpression> 
 		extends ExtendedPositionExpression<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public PositionOfExpression(E unit, SourceLocation sourceLocation) {
 		super(unit,sourceLocation);
 	}
@@ -3,6 +3,8 @@ package hillbillies.expressions.positionType;
 import hillbillies.part3.programs.SourceLocation;
 
 public class SelectedPositionExpression extends PositionExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public SelectedPositionExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
@@ -4,6 +4,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public class VariablePositionExpression extends PositionExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public VariablePositionExpression(String variableName, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		this.setVariableName(variableName);
@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 import hillbillies.positions.Position;
 
 public class WorkshopPositionExpression extends PositionExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public WorkshopPositionExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
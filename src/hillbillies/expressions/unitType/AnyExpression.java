@@ -8,6 +8,8 @@ import hillbillies.positions.Position;
 
 public class AnyExpression extends UnitExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public AnyExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -8,6 +8,8 @@ import hillbillies.positions.Position;
 
 public class EnemyExpression extends UnitExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public EnemyExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -9,6 +9,8 @@ import hillbillies.positions.Position;
 
 public class FriendExpression extends UnitExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public FriendExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -4,6 +4,8 @@ import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
 public class ThisExpression extends UnitExpression {
+
+	private static final long serialVersionUID = 1L;
 	
 	public ThisExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
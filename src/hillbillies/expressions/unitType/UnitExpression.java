@@ -7,6 +7,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public abstract class UnitExpression extends Expression {
 
+	private static final long serialVersionUID = 1L;
+
 	public UnitExpression(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -5,6 +5,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public class VariableUnitExpression extends UnitExpression {
 
+	private static final long serialVersionUID = 1L;
+
 	public VariableUnitExpression(String variableName, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		this.setVariableName(variableName);
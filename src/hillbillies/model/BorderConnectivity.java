@@ -0,0 +1,389 @@
+package hillbillies.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that keeps track of which solid cubes of a world are connected to a border of the world
+ * through other directly adjacent solid cubes.
+ *
+ * This class offers the same operations as hillbillies.util.ConnectedToBorder and makes the same
+ * assumptions: initially the entire world is solid, and cubes change from solid to passable or back
+ * one at a time. Cubes are identified by their index (x + nbX * (y + nbY * z)), the searches use
+ * primitive stacks of indices, and the visited and known cubes are kept in bit sets, so that
+ * mining a cube in a large rock mass does not create any objects apart from the result and the first
+ * chunks of those bit sets. The bit sets are chunked, so that forks of a world share them until they change.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class BorderConnectivity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initializes this new border connectivity for a world of the given dimensions where all cubes are solid.
+	 *
+	 * @param	nbX
+	 *				The number of cubes in the x-direction.
+	 * @param	nbY
+	 *				The number of cubes in the y-direction.
+	 * @param	nbZ
+	 *				The number of cubes in the z-direction.
+	 *
+	 * @post	All cubes are solid and connected to the border.
+	 *				| for each x, y, z in the given dimensions:
+	 *				|	new.isSolidConnectedToBorder(x, y, z)
+	 *
+	 * @throws	IllegalArgumentException
+	 *				One of the given dimensions is not positive.
+	 */
+	public BorderConnectivity(int nbX, int nbY, int nbZ) throws IllegalArgumentException {
+		if ( (nbX <= 0) || (nbY <= 0) || (nbZ <= 0) )
+			throw new IllegalArgumentException();
+		this.nbX = nbX;
+		this.nbY = nbY;
+		this.nbZ = nbZ;
+		this.passable = new ChunkedBitSet(nbX * nbY * nbZ);
+		this.notConnected = new ChunkedBitSet(nbX * nbY * nbZ);
+		this.visited = new ChunkedBitSet(nbX * nbY * nbZ);
+		this.knownConnected = new ChunkedBitSet(nbX * nbY * nbZ);
+		this.knownNotConnected = new ChunkedBitSet(nbX * nbY * nbZ);
+	}
+
+	/**
+	 * Makes the given cubes passable at once, and returns the coordinates of the solid cubes that are not
+	 * connected to a border of the world afterwards.
+	 *
+	 * Instead of updating the connectivity for one cube after another, this method marks the solid cubes
+	 * that can be reached from the solid border cubes in a single flood fill, which visits each cube at most once.
+	 *
+	 * @param	passableCubes
+	 *				A bit set of the indices of the cubes to make passable, with bit (index % 64) of word (index / 64)
+	 *				set for each such cube.
+	 *
+	 * @return	The list of the coordinates of the solid cubes that are not connected to the border,
+	 *				in order of their index.
+	 *
+	 * @throws	IllegalStateException
+	 *				A cube of this border connectivity has already been made passable.
+	 * @throws	IllegalArgumentException
+	 *				The given bit set does not have one word for every 64 cubes of this border connectivity.
+	 */
+	public List<int[]> initializePassableCubes(long[] passableCubes) throws IllegalStateException, IllegalArgumentException {
+		int nbWords = this.passable.getNbWords();
+		if (passableCubes.length != nbWords)
+			throw new IllegalArgumentException();
+		for (int i = 0; i < nbWords; i++)
+			if (this.passable.getWord(i) != 0)
+				throw new IllegalStateException();
+		int nbCubes = this.nbX * this.nbY * this.nbZ;
+		// The flood fill works on plain arrays, which are stored in the chunked bit sets afterwards.
+		long[] passable = passableCubes.clone();
+		// Only the bits of existing cubes may be set.
+		if ((nbCubes & 63) != 0)
+			passable[nbWords - 1] &= (1L << nbCubes) - 1;
+
+		// Every solid cube is assumed not to be connected until the flood fill from the border reaches it.
+		long[] notConnected = new long[nbWords];
+		for (int i = 0; i < nbWords; i++)
+			notConnected[i] = ~passable[i];
+		this.stackSize = 0;
+		for (int index = 0; index < nbCubes; index++) {
+			if (this.isBorder(index) && ( ! get(passable, index)) && get(notConnected, index)) {
+				clear(notConnected, index);
+				this.push(index);
+				while (this.stackSize != 0) {
+					int current = this.stack[--this.stackSize];
+					for (int i = 0; i < 6; i++) {
+						int neighbour = this.getNeighbour(current, i);
+						if ( (neighbour >= 0) && ( ! get(passable, neighbour)) && get(notConnected, neighbour) ) {
+							clear(notConnected, neighbour);
+							this.push(neighbour);
+						}
+					}
+				}
+			}
+		}
+
+		List<int[]> result = new ArrayList<>();
+		for (int index = 0; index < nbCubes; index++)
+			if ( ( ! get(passable, index)) && get(notConnected, index) )
+				result.add(this.getCoordinates(index));
+		// Passable cubes are marked as not connected, as changeSolidToPassable does.
+		for (int i = 0; i < nbWords; i++) {
+			this.passable.setWord(i, passable[i]);
+			this.notConnected.setWord(i, notConnected[i] | passable[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether the cube at the given position is a solid cube that is connected to a border
+	 * of the world through other directly adjacent solid cubes.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the cube to test.
+	 * @param	y
+	 *				The y-coordinate of the cube to test.
+	 * @param	z
+	 *				The z-coordinate of the cube to test.
+	 *
+	 * @note	The result is pre-computed, so this query returns immediately.
+	 */
+	public boolean isSolidConnectedToBorder(int x, int y, int z) {
+		int index = this.getIndex(x, y, z);
+		return ( ! this.passable.get(index)) && ( ! this.notConnected.get(index));
+	}
+
+	/**
+	 * Makes the cube at the given position solid instead of passable, and returns the coordinates
+	 * of the cubes that became connected to a border of the world due to this change.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the cube to make solid.
+	 * @param	y
+	 *				The y-coordinate of the cube to make solid.
+	 * @param	z
+	 *				The z-coordinate of the cube to make solid.
+	 *
+	 * @return	The list of cube coordinates that have become connected to the border by this change.
+	 *				If non-empty, this always includes the given cube itself.
+	 */
+	public List<int[]> changePassableToSolid(int x, int y, int z) {
+		int index = this.getIndex(x, y, z);
+		if ( ! this.passable.get(index))
+			return Collections.emptyList();
+		this.passable.clear(index);
+		this.notConnected.set(index);
+
+		boolean connected = this.isBorder(index);
+		for (int i = 0; (i < 6) && ( ! connected); i++) {
+			int neighbour = this.getNeighbour(index, i);
+			connected = (neighbour >= 0) && this.isSolidConnectedToBorder(neighbour);
+		}
+		if ( ! connected)
+			return Collections.emptyList();
+
+		// Every solid cube that is not yet connected and can be reached from the given cube becomes connected.
+		List<int[]> result = new ArrayList<>();
+		this.stackSize = 0;
+		this.push(index);
+		this.notConnected.clear(index);
+		while (this.stackSize != 0) {
+			int current = this.stack[--this.stackSize];
+			result.add(this.getCoordinates(current));
+			for (int i = 0; i < 6; i++) {
+				int neighbour = this.getNeighbour(current, i);
+				if ( (neighbour >= 0) && ( ! this.passable.get(neighbour)) && this.notConnected.get(neighbour) ) {
+					this.notConnected.clear(neighbour);
+					this.push(neighbour);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Makes the cube at the given position passable instead of solid, and returns the coordinates
+	 * of the cubes that are no longer connected to a border of the world due to this change.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the cube to make passable.
+	 * @param	y
+	 *				The y-coordinate of the cube to make passable.
+	 * @param	z
+	 *				The z-coordinate of the cube to make passable.
+	 *
+	 * @return	The list of cube coordinates that have become disconnected from the border by this change.
+	 *
+	 * @throws	IllegalStateException
+	 *				The current thread was interrupted during the search.
+	 */
+	public List<int[]> changeSolidToPassable(int x, int y, int z) throws IllegalStateException {
+		int index = this.getIndex(x, y, z);
+		if (this.passable.get(index))
+			return Collections.emptyList();
+		this.passable.set(index);
+		this.notConnected.set(index);
+
+		List<int[]> changed = Collections.emptyList();
+		this.knownSize = 0;
+		try {
+			for (int i = 0; i < 6; i++) {
+				int neighbour = this.getNeighbour(index, i);
+				if ( (neighbour < 0) || this.passable.get(neighbour)
+						|| this.knownConnected.get(neighbour) || this.knownNotConnected.get(neighbour) )
+					continue;
+				// All cubes visited while searching a path for this neighbour share its fate.
+				int firstVisited = this.knownSize;
+				boolean connected = this.existsPathToBorder(neighbour);
+				for (int j = firstVisited; j < this.knownSize; j++) {
+					int cube = this.known[j];
+					this.visited.clear(cube);
+					if (connected)
+						this.knownConnected.set(cube);
+					else {
+						this.knownNotConnected.set(cube);
+						this.notConnected.set(cube);
+						if (changed.isEmpty())
+							changed = new ArrayList<>();
+						changed.add(this.getCoordinates(cube));
+					}
+				}
+			}
+		} finally {
+			// Forget what was learned during this change, clearing only the bits that were set.
+			for (int j = 0; j < this.knownSize; j++) {
+				int cube = this.known[j];
+				this.visited.clear(cube);
+				this.knownConnected.clear(cube);
+				this.knownNotConnected.clear(cube);
+			}
+			this.knownSize = 0;
+		}
+		return changed;
+	}
+
+	/**
+	 * Searches a path of directly adjacent solid cubes from the cube with the given index to a border of the world,
+	 * or to a cube known to be connected. Each visited cube is appended to the known cubes.
+	 *
+	 * @return	True if a path is found, false if the solid cubes reachable from the given cube are not connected.
+	 */
+	private boolean existsPathToBorder(int origin) throws IllegalStateException {
+		this.stackSize = 0;
+		this.push(origin);
+		this.visit(origin);
+		int iteration = 0;
+		while (this.stackSize != 0) {
+			// This might take a long time; check whether the impatient user has stopped us.
+			if ( (++iteration & 0xFFF) == 0 && Thread.currentThread().isInterrupted())
+				throw new IllegalStateException();
+			int cube = this.stack[--this.stackSize];
+			if (this.knownConnected.get(cube) || this.isBorder(cube))
+				return true;
+			if (this.knownNotConnected.get(cube))
+				return false;
+			for (int i = 0; i < 6; i++) {
+				int neighbour = this.getNeighbour(cube, i);
+				if ( (neighbour >= 0) && ( ! this.passable.get(neighbour)) && ( ! this.visited.get(neighbour)) ) {
+					this.visit(neighbour);
+					this.push(neighbour);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Variables that store the number of cubes in each direction.
+	 */
+	private final int nbX, nbY, nbZ;
+
+	/**
+	 * A bit set that stores which cubes are passable.
+	 */
+	private final ChunkedBitSet passable;
+
+	/**
+	 * A bit set that stores which cubes are not connected to the border.
+	 */
+	private final ChunkedBitSet notConnected;
+
+	/**
+	 * Bit sets that store, during a change, which cubes have been visited and which cubes are known
+	 * to be connected or not connected to the border.
+	 * They are empty in between changes, and are not part of the serialized form of this border connectivity,
+	 * just like the known cubes and the stack.
+	 */
+	private transient ChunkedBitSet visited, knownConnected, knownNotConnected;
+
+	/**
+	 * The indices of the cubes visited during the current change, in the order they were visited.
+	 */
+	private transient int[] known = new int[64];
+	private transient int knownSize = 0;
+
+	/**
+	 * The stack of cubes that remain to be visited by the current search.
+	 */
+	private transient int[] stack = new int[64];
+	private transient int stackSize = 0;
+
+	private static boolean get(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static void clear(long[] bits, int index) {
+		bits[index >>> 6] &= ~(1L << index);
+	}
+
+	private void push(int index) {
+		if (this.stackSize == this.stack.length)
+			this.stack = Arrays.copyOf(this.stack, 2 * this.stackSize);
+		this.stack[this.stackSize++] = index;
+	}
+
+	private void visit(int index) {
+		this.visited.set(index);
+		if (this.knownSize == this.known.length)
+			this.known = Arrays.copyOf(this.known, 2 * this.knownSize);
+		this.known[this.knownSize++] = index;
+	}
+
+	private boolean isSolidConnectedToBorder(int index) {
+		return ( ! this.passable.get(index)) && ( ! this.notConnected.get(index));
+	}
+
+	private int getIndex(int x, int y, int z) {
+		return x + this.nbX * (y + this.nbY * z);
+	}
+
+	private int[] getCoordinates(int index) {
+		return new int[]{index % this.nbX, (index / this.nbX) % this.nbY, index / (this.nbX * this.nbY)};
+	}
+
+	private boolean isBorder(int index) {
+		int x = index % this.nbX;
+		int y = (index / this.nbX) % this.nbY;
+		int z = index / (this.nbX * this.nbY);
+		return (x == 0) || (x == this.nbX - 1) || (y == 0) || (y == this.nbY - 1) || (z == 0) || (z == this.nbZ - 1);
+	}
+
+	/**
+	 * Returns the index of the i-th directly adjacent cube of the cube with the given index,
+	 * or -1 if that cube lies outside the world.
+	 */
+	private int getNeighbour(int index, int i) {
+		int x = index % this.nbX;
+		int y = (index / this.nbX) % this.nbY;
+		int z = index / (this.nbX * this.nbY);
+		switch (i) {
+			case 0: return (x > 0) ? index - 1 : -1;
+			case 1: return (x < this.nbX - 1) ? index + 1 : -1;
+			case 2: return (y > 0) ? index - this.nbX : -1;
+			case 3: return (y < this.nbY - 1) ? index + this.nbX : -1;
+			case 4: return (z > 0) ? index - this.nbX * this.nbY : -1;
+			default: return (z < this.nbZ - 1) ? index + this.nbX * this.nbY : -1;
+		}
+	}
+
+	/**
+	 * Reads this border connectivity from the given stream, and creates the empty bit sets, known cubes and stack
+	 * used during changes.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.visited = new ChunkedBitSet(this.nbX * this.nbY * this.nbZ);
+		this.knownConnected = new ChunkedBitSet(this.nbX * this.nbY * this.nbZ);
+		this.knownNotConnected = new ChunkedBitSet(this.nbX * this.nbY * this.nbZ);
+		this.known = new int[64];
+		this.stack = new int[64];
+	}
+}
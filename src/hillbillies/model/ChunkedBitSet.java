@@ -0,0 +1,190 @@
+package hillbillies.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of bit sets that are divided into chunks of CHUNK_SIZE bits, which are shared with the forks of
+ * the bit set until they are written.
+ *
+ * The bits are stored in words of 64 bits, with bit (index % 64) of word (index / 64) for the given index,
+ * and the words are grouped in chunks. A chunk in which no bit has ever been set is not allocated, so that
+ * bit sets that are mostly empty, such as the bit sets used during a search, hardly take any memory.
+ * Forking a bit set only copies its table of chunks; the first write to a shared chunk, by the bit set or
+ * its fork, replaces that chunk by a private copy.
+ *
+ * @invar	A chunk that is shared with another bit set is never written.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class ChunkedBitSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initializes this new bit set with the given number of bits, which are all cleared.
+	 *
+	 * @param	length
+	 *				The number of bits of this new bit set.
+	 *
+	 * @post	| new.getNbWords() == (length + 63) / 64
+	 * @post	| for each index in 0..length-1:
+	 *				|	! new.get(index)
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| length < 0
+	 */
+	public ChunkedBitSet(int length) throws IllegalArgumentException {
+		if (length < 0)
+			throw new IllegalArgumentException();
+		this.nbWords = (int) ((length + 63L) >>> 6);
+		this.chunks = new long[(this.nbWords + CHUNK_WORDS - 1) >>> CHUNK_WORD_BITS][];
+		this.shared = new boolean[this.chunks.length];
+	}
+
+	/**
+	 * Initializes this new bit set as a fork of the given bit set.
+	 */
+	private ChunkedBitSet(ChunkedBitSet original) {
+		this.nbWords = original.nbWords;
+		this.chunks = original.chunks.clone();
+		this.shared = new boolean[this.chunks.length];
+		Arrays.fill(this.shared, true);
+		Arrays.fill(original.shared, true);
+	}
+
+	/**
+	 * A symbolic constant denoting the binary logarithm of the number of words in a chunk.
+	 */
+	private static final int CHUNK_WORD_BITS = 6;
+
+	/**
+	 * A symbolic constant denoting the number of words in a chunk.
+	 */
+	private static final int CHUNK_WORDS = 1 << CHUNK_WORD_BITS;
+
+	/**
+	 * A symbolic constant denoting the number of bits in a chunk.
+	 * This is the same as the number of elements in a chunk of a ChunkedByteArray.
+	 */
+	public static final int CHUNK_SIZE = CHUNK_WORDS * 64;
+
+	/**
+	 * Returns the number of words of 64 bits of this bit set.
+	 */
+	@Basic @Raw
+	public int getNbWords() {
+		return this.nbWords;
+	}
+
+	/**
+	 * A variable that stores the number of words of this bit set.
+	 */
+	private final int nbWords;
+
+	/**
+	 * Returns whether the bit with the given index is set.
+	 *
+	 * @note	The given index is not checked against the length of this bit set.
+	 */
+	public boolean get(int index) {
+		long[] chunk = this.chunks[index >>> (CHUNK_WORD_BITS + 6)];
+		return (chunk != null) && ((chunk[(index >>> 6) & (CHUNK_WORDS - 1)] & (1L << index)) != 0);
+	}
+
+	/**
+	 * Sets the bit with the given index.
+	 *
+	 * @post	| new.get(index)
+	 */
+	public void set(int index) {
+		long[] chunk = this.getWritableChunk(index >>> (CHUNK_WORD_BITS + 6));
+		chunk[(index >>> 6) & (CHUNK_WORDS - 1)] |= (1L << index);
+	}
+
+	/**
+	 * Clears the bit with the given index.
+	 *
+	 * @post	| ! new.get(index)
+	 */
+	public void clear(int index) {
+		if (this.chunks[index >>> (CHUNK_WORD_BITS + 6)] == null)
+			return;
+		long[] chunk = this.getWritableChunk(index >>> (CHUNK_WORD_BITS + 6));
+		chunk[(index >>> 6) & (CHUNK_WORDS - 1)] &= ~(1L << index);
+	}
+
+	/**
+	 * Returns the word of 64 bits with the given index.
+	 */
+	public long getWord(int wordIndex) {
+		long[] chunk = this.chunks[wordIndex >>> CHUNK_WORD_BITS];
+		return (chunk == null) ? 0 : chunk[wordIndex & (CHUNK_WORDS - 1)];
+	}
+
+	/**
+	 * Sets the word of 64 bits with the given index to the given word.
+	 *
+	 * @post	| new.getWord(wordIndex) == word
+	 */
+	public void setWord(int wordIndex, long word) {
+		if ( (word == 0) && (this.chunks[wordIndex >>> CHUNK_WORD_BITS] == null) )
+			return;
+		this.getWritableChunk(wordIndex >>> CHUNK_WORD_BITS)[wordIndex & (CHUNK_WORDS - 1)] = word;
+	}
+
+	/**
+	 * Returns the chunk with the given index, after allocating it if it does not exist and copying it
+	 * if it is shared.
+	 */
+	private long[] getWritableChunk(int chunkIndex) {
+		long[] chunk = this.chunks[chunkIndex];
+		if (chunk == null) {
+			chunk = new long[CHUNK_WORDS];
+			this.chunks[chunkIndex] = chunk;
+			this.shared[chunkIndex] = false;
+		}
+		else if (this.shared[chunkIndex]) {
+			chunk = chunk.clone();
+			this.chunks[chunkIndex] = chunk;
+			this.shared[chunkIndex] = false;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Returns a fork of this bit set, which shares all the chunks of this bit set until either of them writes a chunk.
+	 *
+	 * @return	| result.getNbWords() == getNbWords()
+	 * @return	| for each wordIndex in 0..getNbWords()-1:
+	 *				|	result.getWord(wordIndex) == getWord(wordIndex)
+	 *
+	 * @note	Forking changes which chunks of this bit set are shared, so it must not happen concurrently
+	 *				with other operations on this bit set.
+	 */
+	public ChunkedBitSet fork() {
+		return new ChunkedBitSet(this);
+	}
+
+	/**
+	 * An array that stores the chunks of this bit set, or null for chunks in which no bit has been set.
+	 */
+	private final long[][] chunks;
+
+	/**
+	 * An array that stores, for each chunk of this bit set, whether it may be shared with another bit set.
+	 * The chunks of a bit set that is read from a stream are not shared.
+	 */
+	private transient boolean[] shared;
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.shared = new boolean[this.chunks.length];
+	}
+}
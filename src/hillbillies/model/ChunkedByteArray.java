@@ -0,0 +1,138 @@
+package hillbillies.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of arrays of bytes that are divided into chunks of CHUNK_SIZE elements, which are shared with
+ * the forks of the array until they are written.
+ *
+ * Forking an array only copies its table of chunks. Afterwards the array and its fork share all their chunks,
+ * and the first write to a shared chunk, by either of them, replaces that chunk by a private copy.
+ * So a fork of the terrain of a world costs a few hundred references instead of one byte per cube, and
+ * changing one cube copies at most one chunk.
+ *
+ * @invar	A chunk that is shared with another array is never written.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class ChunkedByteArray implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initializes this new array with a copy of the given elements.
+	 *
+	 * @param	elements
+	 *				The elements of this new array.
+	 *
+	 * @post	| new.getLength() == elements.length
+	 * @post	| for each index in 0..elements.length-1:
+	 *				|	new.get(index) == elements[index]
+	 */
+	public ChunkedByteArray(byte[] elements) {
+		this.length = elements.length;
+		this.chunks = new byte[(this.length + CHUNK_SIZE - 1) >>> CHUNK_BITS][];
+		for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+			int from = chunk << CHUNK_BITS;
+			this.chunks[chunk] = Arrays.copyOfRange(elements, from, Math.min(from + CHUNK_SIZE, this.length));
+		}
+		this.shared = new boolean[this.chunks.length];
+	}
+
+	/**
+	 * Initializes this new array as a fork of the given array.
+	 */
+	private ChunkedByteArray(ChunkedByteArray original) {
+		this.length = original.length;
+		this.chunks = original.chunks.clone();
+		this.shared = new boolean[this.chunks.length];
+		Arrays.fill(this.shared, true);
+		Arrays.fill(original.shared, true);
+	}
+
+	/**
+	 * A symbolic constant denoting the binary logarithm of the number of elements in a chunk.
+	 */
+	private static final int CHUNK_BITS = 12;
+
+	/**
+	 * A symbolic constant denoting the number of elements in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/**
+	 * Returns the number of elements of this array.
+	 */
+	@Basic @Raw
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * A variable that stores the number of elements of this array.
+	 */
+	private final int length;
+
+	/**
+	 * Returns the element at the given index of this array.
+	 *
+	 * @note	The given index is not checked against the length of this array.
+	 */
+	public byte get(int index) {
+		return this.chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * Sets the element at the given index of this array to the given value.
+	 * If the chunk of the element is shared with another array, it is copied first.
+	 *
+	 * @post	| new.get(index) == value
+	 *
+	 * @note	The given index is not checked against the length of this array.
+	 */
+	public void set(int index, byte value) {
+		int chunk = index >>> CHUNK_BITS;
+		if (this.shared[chunk]) {
+			this.chunks[chunk] = this.chunks[chunk].clone();
+			this.shared[chunk] = false;
+		}
+		this.chunks[chunk][index & (CHUNK_SIZE - 1)] = value;
+	}
+
+	/**
+	 * Returns a fork of this array, which shares all the chunks of this array until either of them writes a chunk.
+	 *
+	 * @return	| result.getLength() == getLength()
+	 * @return	| for each index in 0..getLength()-1:
+	 *				|	result.get(index) == get(index)
+	 *
+	 * @note	Forking changes which chunks of this array are shared, so it must not happen concurrently
+	 *				with other operations on this array.
+	 */
+	public ChunkedByteArray fork() {
+		return new ChunkedByteArray(this);
+	}
+
+	/**
+	 * An array that stores the chunks of this array.
+	 */
+	private final byte[][] chunks;
+
+	/**
+	 * An array that stores, for each chunk of this array, whether it may be shared with another array.
+	 * The chunks of an array that is read from a stream are not shared.
+	 */
+	private transient boolean[] shared;
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.shared = new boolean[this.chunks.length];
+	}
+}
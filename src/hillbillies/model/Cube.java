@@ -7,6 +7,8 @@ import hillbillies.positions.Position;
 
 /**
  * A class of cubes involving a world, a position and a terrain type.
+ * A cube is a lightweight view on the terrain of its world: the terrain type
+ * is stored by the world and every change made through a cube is made in that world.
  * 
  * @invar	The terrain type of each cube must be a valid terrain type for any cube.
  *				| isValidTerrainType(this.getTerrainType())
@@ -19,22 +21,21 @@ import hillbillies.positions.Position;
 public class Cube {
 	
 	/**
-	 * Initializes this new cube with the given terrain.
+	 * Initializes this new cube as a view on the cube of the given world with the given coordinates.
 	 * 
-	 * @param	terrainIndex
-	 *				The terrainIndex representing the terrain for this new cube.
-	 * @param world
+	 * @param	world
 	 *				The world for this new cube.
+	 * @param	coordinates
+	 *				The cube coordinates of this new cube.
 	 * 
-	 * @post	The terrain of this new cube is equal to the terrain represented by the given terrainIndex.
-	 *				| this.getTerrainType() == Terrain.values()[terrainIndex]
 	 * @post	The world of this new cube is equal to the given world.
 	 *				| this.getWorld() == world
+	 * @post	The terrain of this new cube is equal to the terrain of the given world at the given coordinates.
+	 *				| this.getTerrainType() == world.getTerrain(coordinates[0], coordinates[1], coordinates[2])
 	 */
-	public Cube(int terrainIndex, World world, int[] position) throws IllegalArgumentException{
-		this.setTerrainType(terrainIndex);
+	Cube(World world, int[] coordinates) {
 		this.setWorld(world);
-		this.position = (new Position(this.getWorld(), Position.getCubeCenter(position)));
+		this.coordinates = coordinates;
 	}
 	
 	/**
@@ -84,7 +85,7 @@ public class Cube {
 	 */
 	@Basic @Raw
 	public Terrain getTerrainType() {
-		return this.terrainType;
+		return this.getWorld().getTerrain(this.coordinates[0], this.coordinates[1], this.coordinates[2]);
 	}
 	
 	/**
@@ -130,15 +131,9 @@ public class Cube {
 	 */
 	@Raw
 	public void setTerrainType(Terrain terrainType) {
-		this.terrainType = terrainType;
+		this.getWorld().setTerrain(this.coordinates[0], this.coordinates[1], this.coordinates[2], terrainType);
 	}
 	
-	/**
-	 * A variable that stores the terrain type of this cube.
-	 * The default value is air.
-	 */
-	private Terrain terrainType = Terrain.AIR;
-	
 	/**
 	 * Returns whether this cube is passable or not.
 	 * 
@@ -146,10 +141,7 @@ public class Cube {
 	 */
 	@Raw
 	public boolean isPassable() {
-		if ((this.getTerrainType() == Terrain.AIR) || (this.getTerrainType() == Terrain.WORKSHOP))
-			return true;
-		else
-			return false;
+		return this.getWorld().isPassable(this.coordinates[0], this.coordinates[1], this.coordinates[2]);
 	}
 		
 	/**
@@ -157,6 +149,8 @@ public class Cube {
 	 */
 	@Basic @Raw
 	public Position getPosition() {
+		if (this.position == null)
+			this.position = new Position(this.getWorld(), Position.getCubeCenter(this.coordinates));
 		return this.position;
 	}
 	
@@ -178,8 +172,14 @@ public class Cube {
 		return false;
 	}
 	
+	/**
+	 * A variable that stores the cube coordinates of this cube.
+	 */
+	private final int[] coordinates;
+	
 	/**
 	 * A variable that stores the position of this cube.
+	 * The position is only created when it is asked for.
 	 */
-	private final Position position;
+	private Position position;
 }
@@ -0,0 +1,27 @@
+package hillbillies.model;
+
+/**
+ * An interface for visitors of cubes in a world, used to walk over the neighbours of a cube
+ * without collecting them in a set first.
+ * 
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public interface CubeVisitor {
+	
+	/**
+	 * Visits the cube with the given index and coordinates.
+	 * 
+	 * @param	index
+	 *				The index of the cube, as given by World.getCubeIndex.
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	True if the remaining cubes must be visited, false to stop.
+	 */
+	public abstract boolean visit(int index, int x, int y, int z);
+}
@@ -1,7 +1,8 @@
 package hillbillies.model;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 /**
@@ -42,9 +43,9 @@ public class DefaultManager {
 		List<Activity> result = new ArrayList<>();
 		if (DefaultManager.getAvailableEnemies(unit).size() != 0)
 			result.add(Activity.ATTACK);
-		if (DefaultManager.getAvailableMoveCubes(unit).size() != 0)
+		if (DefaultManager.hasAvailableMoveCubes(unit, MAX_RANGE_DEFAULTMOVE))
 			result.add(Activity.MOVE);
-		if (DefaultManager.getAvailableWorkCubes(unit).size() != 0)
+		if (DefaultManager.hasAvailableWorkCubes(unit))
 			result.add(Activity.WORK);
 		if (unit.getCurrentHealth() < unit.getMaxPoints() || unit.getCurrentStamina() < unit.getMaxPoints())
 			result.add(Activity.REST);
@@ -61,14 +62,11 @@ public class DefaultManager {
 	 *				and is at most one cube away from him.
 	 */
 	public static Set<Unit> getAvailableEnemies(Unit unit) {
-		Set<Unit> result = new HashSet<>();
-		Set<int[]>neighbourCubes = unit.getWorld().getValidCubeCoordinatesInRange(unit.getCubeCoordinates(), 1);
-		for(int[] cube: neighbourCubes) {
-			Set<Unit> units = unit.getWorld().getUnitsInCube(cube[0], cube[1], cube[2]);
-			for (Unit dummy: units)
-				if (dummy.getFaction() != unit.getFaction())
-					result.add(unit);
-		}
+		Set<Unit> result = unit.getWorld().getUnitsInRange(unit.getCubeCoordinates(), 1);
+		Iterator<Unit> iterator = result.iterator();
+		while (iterator.hasNext())
+			if (iterator.next().getFaction() == unit.getFaction())
+				iterator.remove();
 		return result;
 	}
 	
@@ -85,6 +83,26 @@ public class DefaultManager {
 		return unit.getWorld().getValidCubeCoordinatesInRange(unit.getCubeCoordinates(), 1);
 	}
 	
+	/**
+	 * Checks whether the given unit has a cube to work on.
+	 * 
+	 * @param	unit
+	 *				The unit to check.
+	 *
+	 * @return	True if and only if the given unit has a cube to work on.
+	 *				| result == (getAvailableWorkCubes(unit).size() != 0)
+	 */
+	public static boolean hasAvailableWorkCubes(Unit unit) {
+		int[] cube = unit.getCubeCoordinates();
+		// The visit stops at the first neighbour.
+		return ! unit.getWorld().visitNeighbours(cube[0], cube[1], cube[2], 26, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				return false;
+			}
+		});
+	}
+	
 	/**
 	 * Returns a set of cubes which the given unit can move to.
 	 * 
@@ -94,7 +112,7 @@ public class DefaultManager {
 	 * @return	All cubes which the unit can move to according to the canMoveTo-method.
 	 */
 	public static Set<int[]> getAvailableMoveCubes(Unit unit) {
-		Set<int[]> result = new HashSet<>();
+		Set<int[]> result = new LinkedHashSet<>();
 		World unitWorld = unit.getWorld();
 		for (int x = World.CUBE_COORDINATE_MIN; x < unitWorld.getMaximumXValue(); x++) {
 			for (int y = World.CUBE_COORDINATE_MIN; y < unitWorld.getMaximumYValue(); y++) {
@@ -116,14 +134,42 @@ public class DefaultManager {
 	 * 
 	 * @return	All cubes which the unit can move to according to the canMoveTo-method.
 	 */
-	public static Set<int[]> getAvailableMoveCubes(Unit unit, int range) {
-		Set<int[]> result = new HashSet<>();
-		World unitWorld = unit.getWorld();
-		Set<int[]> cubes = unitWorld.getValidCubeCoordinatesInRange(unit.getCubeCoordinates(), range);
-		for (int[] cube: cubes) {
-			if (unit.canMoveTo(cube))
-					result.add(cube);
-		}
+	public static Set<int[]> getAvailableMoveCubes(final Unit unit, int range) {
+		final Set<int[]> result = new LinkedHashSet<>();
+		final World unitWorld = unit.getWorld();
+		int[] cube = unit.getCubeCoordinates();
+		unitWorld.visitCubesInRange(cube[0], cube[1], cube[2], range, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				// Only cubes a unit can stand in can pass canMoveTo.
+				if (unitWorld.isWalkable(index) && unit.canMoveTo(new int[]{x, y, z}))
+					result.add(new int[]{x, y, z});
+				return true;
+			}
+		});
 		return result;
 	}
+	
+	/**
+	 * Checks whether the given unit can move to a cube within the given range.
+	 * 
+	 * @param	unit
+	 *				The unit to check.
+	 * @param	range
+	 *				How far the cubes may be from the cube of the given unit.
+	 *
+	 * @return	True if and only if the unit can move to a cube within the given range.
+	 *				| result == (getAvailableMoveCubes(unit, range).size() != 0)
+	 */
+	public static boolean hasAvailableMoveCubes(final Unit unit, int range) {
+		final World unitWorld = unit.getWorld();
+		int[] cube = unit.getCubeCoordinates();
+		// The visit stops at the first cube the unit can move to.
+		return ! unitWorld.visitCubesInRange(cube[0], cube[1], cube[2], range, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				return ! (unitWorld.isWalkable(index) && unit.canMoveTo(new int[]{x, y, z}));
+			}
+		});
+	}
 }
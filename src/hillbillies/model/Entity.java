@@ -1,5 +1,7 @@
 package hillbillies.model;
 
+import java.io.Serializable;
+
 import be.kuleuven.cs.som.annotate.*;
 import hillbillies.positions.Position;
 import ogp.framework.util.Util;
@@ -17,7 +19,9 @@ import ogp.framework.util.Util;
  */
 // world heeft een set of entity en legt losse voorwaarden op aan entities. Specifieke voorwaarden worden
 // door de subentity zelf uitgewerkt met canHaveAs.
-public abstract class Entity {
+public abstract class Entity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initializes this new entity with given world, coordinates and weight.
@@ -234,6 +238,11 @@ public abstract class Entity {
 	 *
 	 * @post	The position of this new entity is equal to the given position.
 	 *				| new.getPosition() == position
+	 * @post	The given position is bound to this entity.
+	 *				| position.getEntity() == this
+	 * @effect	If this entity is attached to a world, it is relocated in that world.
+	 *				| if (this.getWorld() != null)
+	 *				|	then this.getWorld().relocateEntity(this)
 	 *
 	 * @throws	IllegalArgumentException
 	 *				The given position is not a valid position for any entity.
@@ -245,6 +254,9 @@ public abstract class Entity {
 		if (! canHaveAsPosition(position))
 			throw new IllegalArgumentException();
 		this.position = position;
+		position.setEntity(this);
+		if (this.getWorld() != null)
+			this.getWorld().relocateEntity(this);
 	}
 	
 	/**
@@ -252,6 +264,12 @@ public abstract class Entity {
 	 */
 	protected Position position;
 	
+	/**
+	 * A variable that stores the index of the cube under which this entity is
+	 * registered in the spatial index of its world, or -1 if it is not registered.
+	 */
+	int indexedCube = -1;
+	
 	
 	// ==========================================================================================
 	// Methods concerning the falling behavior.
@@ -425,9 +443,17 @@ public abstract class Entity {
 	
 	/**
 	 * Returns the gametime of this entity.
+	 * 
+	 * @return	If this entity is sleeping, its gametime when it fell asleep increased with the time its world
+	 *				has advanced since then. Otherwise the stored gametime of this entity.
+	 *				| if (isSleeping())
+	 *				|	then result == gametime + getWorld().getTime() - getSleepingSince()
+	 *				| else result == gametime
 	 */
-	@Basic @Raw
+	@Raw
 	public double getGametime(){
+		if (this.isSleeping() && (this.getWorld() != null))
+			return this.gametime + this.getWorld().getTime() - this.getSleepingSince();
 		return this.gametime;
 	}
 	
@@ -445,6 +471,9 @@ public abstract class Entity {
 	 *				| !isValidGametime(gametime)
 	 */
 	protected void setGametime(double gametime) throws IllegalArgumentException{
+		// An entity that is advanced directly no longer sleeps.
+		if (this.isSleeping() && (this.getWorld() != null))
+			this.getWorld().wakeEntity(this);
 		if ( ! this.isValidGametime(gametime)){
 			throw new IllegalArgumentException("This game time is invalid, because it is to low." );
 		}
@@ -487,6 +516,83 @@ public abstract class Entity {
 	 */
 	private double gametime=0;
 	
+	// ==========================================================================================
+	// Methods concerning sleeping.
+	// ==========================================================================================
+	
+	/**
+	 * Returns whether this entity is sleeping, which means that its world does not advance it
+	 * until an event wakes it.
+	 * 
+	 * @return	| result == ( ! Double.isNaN(getSleepingSince()))
+	 */
+	@Raw
+	public boolean isSleeping() {
+		return ! Double.isNaN(this.getSleepingSince());
+	}
+	
+	/**
+	 * Returns the time of the world of this entity at which this entity fell asleep, or NaN if it is awake.
+	 */
+	@Basic @Raw
+	double getSleepingSince() {
+		return this.sleepingSince;
+	}
+	
+	/**
+	 * Checks whether this entity can sleep, which means that advancing its time would not change it
+	 * as long as nothing around it changes.
+	 * 
+	 * @return	False; entities that can settle override this method.
+	 *				| result == false
+	 */
+	boolean canSleep() {
+		return false;
+	}
+	
+	/**
+	 * Returns the amount of time after which this entity has to be woken, even if nothing around it changes.
+	 * 
+	 * @return	Positive infinity; entities that wait for something override this method.
+	 *				| result == Double.POSITIVE_INFINITY
+	 */
+	double getTimeUntilWakeUp() {
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Lets this entity fall asleep at the given time of its world.
+	 * 
+	 * @param	worldTime
+	 *				The time of the world of this entity.
+	 *
+	 * @post	| new.getSleepingSince() == worldTime
+	 * @post	| new.getGametime() == getGametime()
+	 */
+	void sleep(double worldTime) {
+		this.sleepingSince = worldTime;
+	}
+	
+	/**
+	 * Wakes this entity at the given time of its world, catching up the gametime it has slept.
+	 * 
+	 * @param	worldTime
+	 *				The time of the world of this entity.
+	 *
+	 * @post	| ! new.isSleeping()
+	 * @post	| new.getGametime() == getGametime() + worldTime - getSleepingSince()
+	 */
+	void wake(double worldTime) {
+		this.gametime += worldTime - this.sleepingSince;
+		this.sleepingSince = Double.NaN;
+	}
+	
+	/**
+	 * A variable that stores the time of the world of this entity at which this entity fell asleep.
+	 * The value is NaN while this entity is awake.
+	 */
+	private double sleepingSince = Double.NaN;
+	
 	/**
 	 * Advances the time for this entity.
 	 */
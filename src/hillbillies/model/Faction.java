@@ -1,6 +1,7 @@
 package hillbillies.model;
 
-import java.util.HashSet;
+import java.io.Serializable;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import be.kuleuven.cs.som.annotate.Basic;
@@ -20,7 +21,9 @@ import be.kuleuven.cs.som.annotate.Raw;
  * @author Sander Mergan, Thomas Vranken
  * @version 3.0
  */
-public class Faction {
+public class Faction implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Creates a new faction with the given unit as a member, 
@@ -286,7 +289,7 @@ public class Faction {
 	 *				|   ( (unit != null) &&
 	 *				|     (! unit.isTerminated()) )
 	 */
-	private final Set<Unit> units = new HashSet<Unit>();
+	private final Set<Unit> units = new LinkedHashSet<Unit>();
 	
 	/**
 	 * Returns a set collecting all the units of this faction. 
@@ -297,7 +300,7 @@ public class Faction {
 	 */
 	// NOTE: this is the formal way (same as in textbook) to return all objects of the set.
 	public Set<Unit> getUnits() {
-		return new HashSet<Unit>(this.units);
+		return new LinkedHashSet<Unit>(this.units);
 	}
 	
 	
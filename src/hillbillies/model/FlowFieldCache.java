@@ -0,0 +1,377 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of flow field caches, which share the paths of many units towards the same destination.
+ *
+ * A flow field of a destination stores, for each cube of the world, the next cube on a shortest path
+ * from that cube to the destination. It is computed once by searching outwards from the destination,
+ * after which the path of every unit towards that destination can be read from it without a new search.
+ * This pays off when many units are sent to the same cube, for example the workshop of their faction.
+ *
+ * A field is only computed for a destination once it has been searched for SHARED_SEARCHES times.
+ * The cache remembers at most MAX_FLOW_FIELDS fields and forgets the least recently used field first.
+ * All fields are forgotten when the terrain of the world changes.
+ *
+ * @invar	The number of flow fields in this cache does not exceed the maximal number of flow fields.
+ *				| getNbFlowFields() <= MAX_FLOW_FIELDS
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class FlowFieldCache {
+
+	/**
+	 * Initializes this new flow field cache for the given world.
+	 *
+	 * @param	world
+	 *				The world to compute flow fields for.
+	 *
+	 * @post	The world of this new cache is the given world.
+	 *				| new.getWorld() == world
+	 * @post	This new cache contains no flow fields.
+	 *				| new.getNbFlowFields() == 0
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given world is not effective.
+	 *				| world == null
+	 */
+	@Raw
+	FlowFieldCache(World world) throws IllegalArgumentException {
+		if (world == null)
+			throw new IllegalArgumentException();
+		this.world = world;
+	}
+
+	/**
+	 * A symbolic constant denoting the maximal number of flow fields a cache remembers.
+	 */
+	public static final int MAX_FLOW_FIELDS = 8;
+
+	/**
+	 * A symbolic constant denoting the number of searches towards a destination after which
+	 * a flow field is computed for it.
+	 */
+	public static final int SHARED_SEARCHES = 3;
+
+	/**
+	 * Returns the world of this cache.
+	 */
+	@Basic @Raw
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * A variable that stores the world of this cache.
+	 */
+	private final World world;
+
+	/**
+	 * Returns the number of flow fields remembered by this cache.
+	 */
+	public synchronized int getNbFlowFields() {
+		return this.flowFields.size();
+	}
+
+	/**
+	 * Checks whether this cache remembers a flow field for the given destination.
+	 *
+	 * @param	destination
+	 *				The destination to check.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the paths of the flow field may contain diagonal moves.
+	 */
+	public synchronized boolean hasFlowField(int[] destination, boolean diagonalMovesAllowed) {
+		return this.flowFields.containsKey(this.getKey(destination, diagonalMovesAllowed));
+	}
+
+	/**
+	 * Registers a search towards the given destination and checks whether the path of that search
+	 * should be read from a flow field.
+	 *
+	 * @param	destination
+	 *				The destination of the search.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the path may contain diagonal moves.
+	 *
+	 * @return	True if this cache remembers a flow field for the given destination, or if the given
+	 *				destination has now been searched for at least SHARED_SEARCHES times.
+	 */
+	public synchronized boolean isSharedDestination(int[] destination, boolean diagonalMovesAllowed) {
+		long key = this.getKey(destination, diagonalMovesAllowed);
+		if (this.flowFields.containsKey(key))
+			return true;
+		Integer count = this.searchCounts.get(key);
+		count = (count == null) ? 1 : count + 1;
+		this.searchCounts.put(key, count);
+		return count >= SHARED_SEARCHES;
+	}
+
+	/**
+	 * Returns a path from the given start to the given destination, read from the flow field of the
+	 * given destination. The flow field is computed first if this cache does not remember it.
+	 *
+	 * @param	start
+	 *				The start of the path.
+	 * @param	destination
+	 *				The destination of the path.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the path may contain diagonal moves.
+	 *
+	 * @return	A list of cube coordinates that represents a shortest path from the given start to the given destination,
+	 *				both included. Each cube on the path, apart from the start, is passable and has a solid neighbour.
+	 *				Null if no such path exists.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the world of this cache.
+	 *				| ! getWorld().canHaveAsCoordinates(start)
+	 */
+	public synchronized List<int[]> getPath(int[] start, int[] destination, boolean diagonalMovesAllowed)
+			throws IllegalArgumentException {
+		World world = this.getWorld();
+		if ( ! world.canHaveAsCoordinates(start))
+			throw new IllegalArgumentException();
+		if ( (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return null;
+		int nbX = world.getMaximumXValue();
+		int nbY = world.getMaximumYValue();
+		int current = world.getCubeIndex(start[0], start[1], start[2]);
+		int[] next = this.getFlowField(destination, diagonalMovesAllowed);
+		if ( (next[current] == UNREACHABLE) && (current != world.getCubeIndex(destination[0], destination[1], destination[2])) )
+			return null;
+		List<int[]> result = new ArrayList<>();
+		result.add(new int[]{start[0], start[1], start[2]});
+		while ( (next[current] != UNREACHABLE) && (next[current] != current) ) {
+			current = next[current];
+			result.add(new int[]{current % nbX, (current / nbX) % nbY, current / (nbX * nbY)});
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the next cube on a shortest path from the given start to the given destination, read from the
+	 * flow field of the given destination. The flow field is computed first if this cache does not remember it.
+	 *
+	 * @param	start
+	 *				The current cube.
+	 * @param	destination
+	 *				The destination.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the path may contain diagonal moves.
+	 *
+	 * @return	The second cube of the path from the given start to the given destination, or null if
+	 *				that path does not exist or only contains the start.
+	 *				| if (getPath(start, destination, diagonalMovesAllowed) == null
+	 *				|		|| getPath(start, destination, diagonalMovesAllowed).size() < 2)
+	 *				|	then result == null
+	 *				|	else Position.equals(result, getPath(start, destination, diagonalMovesAllowed).get(1))
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the world of this cache.
+	 *				| ! getWorld().canHaveAsCoordinates(start)
+	 */
+	public synchronized int[] getNextStep(int[] start, int[] destination, boolean diagonalMovesAllowed)
+			throws IllegalArgumentException {
+		World world = this.getWorld();
+		if ( ! world.canHaveAsCoordinates(start))
+			throw new IllegalArgumentException();
+		if ( (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return null;
+		int current = world.getCubeIndex(start[0], start[1], start[2]);
+		int next = this.getFlowField(destination, diagonalMovesAllowed)[current];
+		if ( (next == UNREACHABLE) || (next == current) )
+			return null;
+		int nbX = world.getMaximumXValue();
+		int nbY = world.getMaximumYValue();
+		return new int[]{next % nbX, (next / nbX) % nbY, next / (nbX * nbY)};
+	}
+
+	/**
+	 * Forgets all flow fields of this cache, and how often each destination has been searched for.
+	 * This method must be invoked whenever the terrain of the world changes, since a change anywhere
+	 * in the world can open or close a shorter route.
+	 *
+	 * @post	This cache contains no flow fields.
+	 *				| new.getNbFlowFields() == 0
+	 * @post	No destination has been searched for, so it takes SHARED_SEARCHES new searches towards
+	 *				a destination before its flow field is computed.
+	 */
+	public synchronized void clear() {
+		this.flowFields.clear();
+		this.searchCounts.clear();
+	}
+
+	/**
+	 * A symbolic constant used in a flow field for cubes from which the destination cannot be reached.
+	 */
+	private static final int UNREACHABLE = -1;
+
+	/**
+	 * Returns the key under which the flow field of the given destination is stored.
+	 */
+	private long getKey(int[] destination, boolean diagonalMovesAllowed) {
+		return ((long) this.getWorld().getCubeIndex(destination[0], destination[1], destination[2]) << 1)
+				| (diagonalMovesAllowed ? 1 : 0);
+	}
+
+	/**
+	 * Returns the flow field of the given destination, computing it if this cache does not remember it.
+	 */
+	private int[] getFlowField(int[] destination, boolean diagonalMovesAllowed) {
+		long key = this.getKey(destination, diagonalMovesAllowed);
+		// Looking up the field marks it as most recently used.
+		int[] result = this.flowFields.get(key);
+		if (result == null) {
+			result = this.computeFlowField(this.getWorld().getCubeIndex(destination[0], destination[1], destination[2]),
+					diagonalMovesAllowed);
+			this.flowFields.put(key, result);
+			this.searchCounts.remove(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the flow field of the cube with the given index.
+	 *
+	 * The search runs from the destination outwards. A unit can only step into cubes which are passable and
+	 * have a solid neighbour, so only those cubes are expanded. Other passable cubes still get a next cube,
+	 * because a unit can start from them.
+	 *
+	 * @return	An array which stores for each cube the index of the next cube on a shortest path to the
+	 *				destination, the index of the destination itself for the destination, or UNREACHABLE.
+	 */
+	private int[] computeFlowField(int destination, boolean diagonalMovesAllowed) {
+		World world = this.getWorld();
+		int nbX = world.getMaximumXValue();
+		int nbY = world.getMaximumYValue();
+		int nbZ = world.getMaximumZValue();
+		int[] next = new int[world.getNbCubes()];
+		Arrays.fill(next, UNREACHABLE);
+		if ( ! world.isWalkable(destination))
+			return next;
+
+		double[] distance = new double[next.length];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		boolean[] closed = new boolean[next.length];
+		int[] offsets = World.NEIGHBOUR_OFFSETS;
+		int nbOffsets = 3 * ((diagonalMovesAllowed) ? 26 : 6);
+		Heap open = new Heap();
+		distance[destination] = 0.0;
+		next[destination] = destination;
+		open.push(destination, 0.0);
+
+		while (open.size != 0) {
+			int current = open.pop();
+			if (closed[current])
+				continue;
+			closed[current] = true;
+			int x = current % nbX;
+			int y = (current / nbX) % nbY;
+			int z = current / (nbX * nbY);
+			for (int i = 0; i < nbOffsets; i += 3) {
+				int nx = x + offsets[i], ny = y + offsets[i+1], nz = z + offsets[i+2];
+				if ( (nx < 0) || (ny < 0) || (nz < 0) || (nx >= nbX) || (ny >= nbY) || (nz >= nbZ) )
+					continue;
+				int neighbour = nx + nbX * (ny + nbY * nz);
+				if (closed[neighbour] || ( ! world.isPassable(neighbour)))
+					continue;
+				double tentativeDistance = distance[current] + World.NEIGHBOUR_DISTANCES[i/3];
+				if (tentativeDistance >= distance[neighbour])
+					continue;
+				distance[neighbour] = tentativeDistance;
+				next[neighbour] = current;
+				if (world.hasSolidNeighbours(neighbour))
+					open.push(neighbour, tentativeDistance);
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * A variable that maps the key of each destination to its flow field, from least to most recently used.
+	 */
+	private final Map<Long, int[]> flowFields = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+			return this.size() > MAX_FLOW_FIELDS;
+		}
+	};
+
+	/**
+	 * A variable that maps the key of each recently searched destination without a flow field to the
+	 * number of searches towards it.
+	 */
+	private final Map<Long, Integer> searchCounts = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+			return this.size() > 64;
+		}
+	};
+
+	/**
+	 * A class of binary min-heaps of cube indices.
+	 * A cube may occur more than once; outdated entries are skipped when popped.
+	 */
+	private static final class Heap {
+
+		int[] nodes = new int[64];
+		double[] keys = new double[64];
+		int size = 0;
+
+		void push(int node, double key) {
+			if (this.size == this.nodes.length) {
+				this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+				this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+			}
+			int i = this.size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (this.keys[parent] <= key)
+					break;
+				this.nodes[i] = this.nodes[parent];
+				this.keys[i] = this.keys[parent];
+				i = parent;
+			}
+			this.nodes[i] = node;
+			this.keys[i] = key;
+		}
+
+		int pop() {
+			int result = this.nodes[0];
+			int size = --this.size;
+			int node = this.nodes[size];
+			double key = this.keys[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if ( (child + 1 < size) && (this.keys[child + 1] < this.keys[child]) )
+					child++;
+				if (key <= this.keys[child])
+					break;
+				this.nodes[i] = this.nodes[child];
+				this.keys[i] = this.keys[child];
+				i = child;
+			}
+			this.nodes[i] = node;
+			this.keys[i] = key;
+			return result;
+		}
+	}
+}
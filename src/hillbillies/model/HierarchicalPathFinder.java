@@ -0,0 +1,430 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+import hillbillies.exceptions.MaxIterationException;
+
+/**
+ * A class of hierarchical path finders, which search paths in a world in two steps.
+ *
+ * The world is split into chunks of CHUNK_SIZE cubes in each direction. Within each chunk, the cubes
+ * a unit can stand in are grouped into regions: two such cubes belong to the same region if a unit
+ * can walk from one to the other without leaving the chunk. Regions of neighbouring chunks are connected
+ * if a unit can step from a cube of the one region to a cube of the other.
+ *
+ * A search first finds a sequence of connected regions from the start to the destination. The
+ * PathFinder then searches a path which only passes through the chunks of these regions, instead
+ * of through the whole world.
+ *
+ * When the terrain of a cube changes, the chunks around it are marked as outdated and rebuilt
+ * before the next search.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class HierarchicalPathFinder {
+
+	/**
+	 * Initializes this new hierarchical path finder for the given world.
+	 *
+	 * @param	world
+	 *				The world to search paths in.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the paths may contain diagonal moves.
+	 *
+	 * @post	The world of this new path finder is the given world.
+	 *				| new.getWorld() == world
+	 * @post	This new path finder allows diagonal moves if and only if the given flag is true.
+	 *				| new.isDiagonalMovesAllowed() == diagonalMovesAllowed
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given world is not effective.
+	 *				| world == null
+	 */
+	@Raw
+	HierarchicalPathFinder(World world, boolean diagonalMovesAllowed) throws IllegalArgumentException {
+		if (world == null)
+			throw new IllegalArgumentException();
+		this.world = world;
+		this.diagonalMovesAllowed = diagonalMovesAllowed;
+		this.nbChunksX = (world.getMaximumXValue() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.nbChunksY = (world.getMaximumYValue() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.nbChunksZ = (world.getMaximumZValue() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int nbChunks = this.nbChunksX * this.nbChunksY * this.nbChunksZ;
+		this.regionOf = new int[world.getNbCubes()];
+		this.regionCubes = new int[nbChunks][];
+		this.regionNeighbours = new int[nbChunks][][];
+		this.outdated = new boolean[nbChunks];
+		Arrays.fill(this.outdated, true);
+		this.hasOutdatedChunks = true;
+	}
+
+	/**
+	 * A symbolic constant denoting the number of cubes of a chunk in each direction.
+	 */
+	public static final int CHUNK_SIZE = 8;
+
+	/**
+	 * Returns the world of this path finder.
+	 */
+	@Basic @Raw
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * A variable that stores the world of this path finder.
+	 */
+	private final World world;
+
+	/**
+	 * Returns whether the paths of this path finder may contain diagonal moves.
+	 */
+	@Basic @Raw
+	public boolean isDiagonalMovesAllowed() {
+		return this.diagonalMovesAllowed;
+	}
+
+	/**
+	 * A variable that stores whether the paths of this path finder may contain diagonal moves.
+	 */
+	private final boolean diagonalMovesAllowed;
+
+	/**
+	 * Variables that store the number of chunks in each direction.
+	 */
+	private final int nbChunksX, nbChunksY, nbChunksZ;
+
+	/**
+	 * A variable that stores, for each cube, the region it belongs to, or -1 if a unit cannot stand in it.
+	 * A region is identified by the index of its chunk times the number of cubes in a chunk, plus its
+	 * number within that chunk.
+	 */
+	private final int[] regionOf;
+
+	/**
+	 * A variable that stores, for each chunk and each region of it, the index of one cube of that region.
+	 */
+	private final int[][] regionCubes;
+
+	/**
+	 * A variable that stores, for each chunk and each region of it, the regions of other chunks it is connected to.
+	 */
+	private final int[][][] regionNeighbours;
+
+	/**
+	 * A variable that stores, for each chunk, whether its regions must be rebuilt.
+	 */
+	private final boolean[] outdated;
+
+	/**
+	 * A variable that stores whether any chunk is outdated.
+	 */
+	private boolean hasOutdatedChunks;
+
+	/**
+	 * Searches a path in the world of this path finder from the given start to the given destination.
+	 *
+	 * @param	start
+	 *				The start of the path.
+	 * @param	destination
+	 *				The destination of the path.
+	 *
+	 * @return	A list of cube coordinates that represents a path from the given start to the given destination,
+	 *				both included. Each cube on the path, apart from the start, is passable and has a solid neighbour.
+	 *				Null if no such path exists.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the world of this path finder.
+	 * @throws	MaxIterationException
+	 *				The search took too many iterations.
+	 */
+	public synchronized List<int[]> getPath(int[] start, int[] destination)
+			throws IllegalArgumentException, MaxIterationException {
+		World world = this.getWorld();
+		if ( ! world.canHaveAsCoordinates(start))
+			throw new IllegalArgumentException();
+		if ( (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return null;
+		this.update();
+
+		int startRegion = this.regionOf[world.getCubeIndex(start[0], start[1], start[2])];
+		int destinationRegion = this.regionOf[world.getCubeIndex(destination[0], destination[1], destination[2])];
+		// A unit can never end up in a cube without solid neighbours.
+		if (destinationRegion < 0)
+			return null;
+		// A unit can start in such a cube (for example when it has just stopped falling); search the whole world.
+		if (startRegion < 0)
+			return PathFinder.getPath(start, destination, world, this.isDiagonalMovesAllowed());
+
+		Set<Integer> corridor = this.searchRegions(startRegion, destinationRegion);
+		if (corridor == null)
+			return null;
+		final boolean[] allowedChunks = new boolean[this.outdated.length];
+		for (int region: corridor)
+			allowedChunks[region / CHUNK_VOLUME] = true;
+		List<int[]> result = PathFinder.getPath(start, destination, world, this.isDiagonalMovesAllowed(),
+				new PathFinder.CubeFilter() {
+					@Override
+					public boolean accepts(int x, int y, int z) {
+						return allowedChunks[getChunkIndex(x, y, z)];
+					}
+				});
+		if (result == null)
+			// The chunks of the regions always contain a path; this only guards against inconsistencies.
+			result = PathFinder.getPath(start, destination, world, this.isDiagonalMovesAllowed());
+		return result;
+	}
+
+	/**
+	 * Marks the chunks whose regions may change when the terrain of the given cube changes as outdated.
+	 * Those are the chunks of the given cube and of its neighbours, since a change can give or take away
+	 * the solid neighbour of the cubes around it.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the changed cube.
+	 * @param	y
+	 *				The y-coordinate of the changed cube.
+	 * @param	z
+	 *				The z-coordinate of the changed cube.
+	 */
+	public synchronized void invalidate(int x, int y, int z) {
+		World world = this.getWorld();
+		for (int dx = -1; dx <= 1; dx++)
+			for (int dy = -1; dy <= 1; dy++)
+				for (int dz = -1; dz <= 1; dz++)
+					if (world.canHaveAsCoordinates(x+dx, y+dy, z+dz))
+						this.outdated[this.getChunkIndex(x+dx, y+dy, z+dz)] = true;
+		this.hasOutdatedChunks = true;
+	}
+
+	/**
+	 * Returns the number of regions of this path finder, after rebuilding the outdated chunks.
+	 */
+	public synchronized int getNbRegions() {
+		this.update();
+		int result = 0;
+		for (int[] cubes: this.regionCubes)
+			result += cubes.length;
+		return result;
+	}
+
+	/**
+	 * A symbolic constant denoting the number of cubes in a chunk.
+	 */
+	private static final int CHUNK_VOLUME = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+
+	/**
+	 * Returns the index of the chunk which contains the cube with the given coordinates.
+	 */
+	private int getChunkIndex(int x, int y, int z) {
+		return (x / CHUNK_SIZE) + this.nbChunksX * ((y / CHUNK_SIZE) + this.nbChunksY * (z / CHUNK_SIZE));
+	}
+
+	/**
+	 * Rebuilds the regions of all outdated chunks and the connections of these chunks and their neighbours.
+	 */
+	private void update() {
+		if ( ! this.hasOutdatedChunks)
+			return;
+		boolean[] reconnect = new boolean[this.outdated.length];
+		for (int chunk = 0; chunk < this.outdated.length; chunk++)
+			if (this.outdated[chunk]) {
+				this.buildRegions(chunk);
+				int cx = chunk % this.nbChunksX;
+				int cy = (chunk / this.nbChunksX) % this.nbChunksY;
+				int cz = chunk / (this.nbChunksX * this.nbChunksY);
+				for (int dx = -1; dx <= 1; dx++)
+					for (int dy = -1; dy <= 1; dy++)
+						for (int dz = -1; dz <= 1; dz++)
+							if ( (cx+dx >= 0) && (cy+dy >= 0) && (cz+dz >= 0) && (cx+dx < this.nbChunksX)
+									&& (cy+dy < this.nbChunksY) && (cz+dz < this.nbChunksZ) )
+								reconnect[(cx+dx) + this.nbChunksX * ((cy+dy) + this.nbChunksY * (cz+dz))] = true;
+			}
+		for (int chunk = 0; chunk < reconnect.length; chunk++)
+			if (reconnect[chunk])
+				this.connectRegions(chunk);
+		Arrays.fill(this.outdated, false);
+		this.hasOutdatedChunks = false;
+	}
+
+	/**
+	 * Returns the bounds of the given chunk, as {minX, minY, minZ, maxX, maxY, maxZ} with exclusive maxima.
+	 */
+	private int[] getChunkBounds(int chunk) {
+		World world = this.getWorld();
+		int minX = (chunk % this.nbChunksX) * CHUNK_SIZE;
+		int minY = ((chunk / this.nbChunksX) % this.nbChunksY) * CHUNK_SIZE;
+		int minZ = (chunk / (this.nbChunksX * this.nbChunksY)) * CHUNK_SIZE;
+		return new int[]{minX, minY, minZ, Math.min(minX + CHUNK_SIZE, world.getMaximumXValue()),
+				Math.min(minY + CHUNK_SIZE, world.getMaximumYValue()), Math.min(minZ + CHUNK_SIZE, world.getMaximumZValue())};
+	}
+
+	/**
+	 * Groups the cubes of the given chunk in which a unit can stand into regions.
+	 */
+	private void buildRegions(int chunk) {
+		World world = this.getWorld();
+		int[] bounds = this.getChunkBounds(chunk);
+		for (int z = bounds[2]; z < bounds[5]; z++)
+			for (int y = bounds[1]; y < bounds[4]; y++)
+				for (int x = bounds[0]; x < bounds[3]; x++) {
+					int cube = world.getCubeIndex(x, y, z);
+					this.regionOf[cube] = world.isWalkable(cube) ? UNASSIGNED : -1;
+				}
+
+		List<Integer> representatives = new ArrayList<>();
+		int[] queue = new int[CHUNK_VOLUME];
+		for (int z = bounds[2]; z < bounds[5]; z++)
+			for (int y = bounds[1]; y < bounds[4]; y++)
+				for (int x = bounds[0]; x < bounds[3]; x++) {
+					int seed = world.getCubeIndex(x, y, z);
+					if (this.regionOf[seed] != UNASSIGNED)
+						continue;
+					int region = chunk * CHUNK_VOLUME + representatives.size();
+					representatives.add(seed);
+					// Flood fill the region of the seed within this chunk.
+					int head = 0, tail = 0;
+					queue[tail++] = seed;
+					this.regionOf[seed] = region;
+					while (head < tail) {
+						int cube = queue[head++];
+						int[] coordinates = this.toCoordinates(cube);
+						for (int i = 0; i < 3 * this.getConnectivity(); i += 3) {
+							int nx = coordinates[0] + World.NEIGHBOUR_OFFSETS[i], ny = coordinates[1] + World.NEIGHBOUR_OFFSETS[i+1],
+									nz = coordinates[2] + World.NEIGHBOUR_OFFSETS[i+2];
+							if ( (nx < bounds[0]) || (ny < bounds[1]) || (nz < bounds[2])
+									|| (nx >= bounds[3]) || (ny >= bounds[4]) || (nz >= bounds[5]) )
+								continue;
+							int neighbour = world.getCubeIndex(nx, ny, nz);
+							if (this.regionOf[neighbour] == UNASSIGNED) {
+								this.regionOf[neighbour] = region;
+								queue[tail++] = neighbour;
+							}
+						}
+					}
+				}
+		int[] cubes = new int[representatives.size()];
+		for (int i = 0; i < cubes.length; i++)
+			cubes[i] = representatives.get(i);
+		this.regionCubes[chunk] = cubes;
+	}
+
+	/**
+	 * A symbolic constant used to mark cubes in which a unit can stand, but which have no region yet.
+	 */
+	private static final int UNASSIGNED = -2;
+
+	/**
+	 * Determines for each region of the given chunk to which regions of other chunks it is connected.
+	 */
+	private void connectRegions(int chunk) {
+		World world = this.getWorld();
+		int[] bounds = this.getChunkBounds(chunk);
+		List<Set<Integer>> neighbours = new ArrayList<>();
+		for (int i = 0; i < this.regionCubes[chunk].length; i++)
+			neighbours.add(new HashSet<Integer>());
+		for (int z = bounds[2]; z < bounds[5]; z++)
+			for (int y = bounds[1]; y < bounds[4]; y++)
+				for (int x = bounds[0]; x < bounds[3]; x++) {
+					// Only the cubes on the boundary of the chunk can be connected to other chunks.
+					if ( (x > bounds[0]) && (y > bounds[1]) && (z > bounds[2])
+							&& (x < bounds[3]-1) && (y < bounds[4]-1) && (z < bounds[5]-1) )
+						continue;
+					int region = this.regionOf[world.getCubeIndex(x, y, z)];
+					if (region < 0)
+						continue;
+					final Set<Integer> regionNeighbours = neighbours.get(region % CHUNK_VOLUME);
+					final int chunkIndex = chunk;
+					world.visitNeighbours(x, y, z, this.getConnectivity(), new CubeVisitor() {
+						@Override
+						public boolean visit(int index, int nx, int ny, int nz) {
+							int neighbourRegion = regionOf[index];
+							if ( (neighbourRegion >= 0) && (neighbourRegion / CHUNK_VOLUME != chunkIndex) )
+								regionNeighbours.add(neighbourRegion);
+							return true;
+						}
+					});
+				}
+		int[][] result = new int[neighbours.size()][];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new int[neighbours.get(i).size()];
+			int j = 0;
+			for (int neighbour: neighbours.get(i))
+				result[i][j++] = neighbour;
+		}
+		this.regionNeighbours[chunk] = result;
+	}
+
+	/**
+	 * Searches a sequence of connected regions from the given start region to the given destination region.
+	 *
+	 * @return	The set of regions on the cheapest sequence, or null if the regions are not connected.
+	 */
+	private Set<Integer> searchRegions(int startRegion, int destinationRegion) {
+		final Map<Integer, Double> gScore = new HashMap<>();
+		Map<Integer, Integer> cameFrom = new HashMap<>();
+		Set<Integer> closed = new HashSet<>();
+		PriorityQueue<double[]> open = new PriorityQueue<>(11, (a, b) -> Double.compare(a[0], b[0]));
+		gScore.put(startRegion, 0.0);
+		open.add(new double[]{this.getDistance(startRegion, destinationRegion), startRegion});
+		while ( ! open.isEmpty()) {
+			int current = (int) open.poll()[1];
+			if ( ! closed.add(current))
+				continue;
+			if (current == destinationRegion) {
+				Set<Integer> result = new HashSet<>();
+				for (Integer region = current; region != null; region = cameFrom.get(region))
+					result.add(region);
+				return result;
+			}
+			for (int neighbour: this.regionNeighbours[current / CHUNK_VOLUME][current % CHUNK_VOLUME]) {
+				if (closed.contains(neighbour))
+					continue;
+				double tentativeGScore = gScore.get(current) + this.getDistance(current, neighbour);
+				Double neighbourGScore = gScore.get(neighbour);
+				if ( (neighbourGScore != null) && (tentativeGScore >= neighbourGScore))
+					continue;
+				gScore.put(neighbour, tentativeGScore);
+				cameFrom.put(neighbour, current);
+				open.add(new double[]{tentativeGScore + this.getDistance(neighbour, destinationRegion), neighbour});
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the distance between the representative cubes of the given regions.
+	 */
+	private double getDistance(int region1, int region2) {
+		int[] cube1 = this.toCoordinates(this.regionCubes[region1 / CHUNK_VOLUME][region1 % CHUNK_VOLUME]);
+		int[] cube2 = this.toCoordinates(this.regionCubes[region2 / CHUNK_VOLUME][region2 % CHUNK_VOLUME]);
+		int dx = cube1[0] - cube2[0], dy = cube1[1] - cube2[1], dz = cube1[2] - cube2[2];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
+	}
+
+	/**
+	 * Returns the coordinates of the cube with the given index.
+	 */
+	private int[] toCoordinates(int cube) {
+		int nbX = this.getWorld().getMaximumXValue();
+		int nbY = this.getWorld().getMaximumYValue();
+		return new int[]{cube % nbX, (cube / nbX) % nbY, cube / (nbX * nbY)};
+	}
+
+	/**
+	 * Returns the number of neighbours a unit can move to in one step.
+	 */
+	private int getConnectivity() {
+		return (this.isDiagonalMovesAllowed()) ? 26 : 6;
+	}
+}
@@ -1,7 +1,5 @@
 package hillbillies.model;
 
-import java.util.Random;
-
 import be.kuleuven.cs.som.annotate.*;
 import hillbillies.positions.Position;
 import ogp.framework.util.Util;
@@ -17,6 +15,8 @@ import ogp.framework.util.Util;
  *
  */
 public abstract class Item extends Entity {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initializes this new item with given world, coordinates and weight.
@@ -50,7 +50,7 @@ public abstract class Item extends Entity {
 	 *				The given weight is invalid.
 	 */
 	protected Item(World world, int[] coordinates) {
-		this(world, coordinates, new Random().nextInt(41)+10);
+		this(world, coordinates, world.getRandom().nextInt(41)+10);
 	}
 	
 	/**
@@ -256,4 +256,17 @@ public abstract class Item extends Entity {
 		this.endFalling();
 	}
 	
+	/**
+	 * Checks whether this item can sleep.
+	 * 
+	 * @return	True if and only if this item lies in a world and has settled, which means that it is not falling
+	 *				and the cube below it is solid. A settled item stays put until the terrain below it changes
+	 *				or it is picked up.
+	 *				| result == ( (getWorld() != null) && ( ! getIsFalling()) && ( ! isFalling()) )
+	 */
+	@Override
+	boolean canSleep() {
+		return (this.getWorld() != null) && ( ! this.getIsFalling()) && ( ! this.isFalling());
+	}
+	
 }
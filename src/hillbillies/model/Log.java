@@ -1,7 +1,5 @@
 package hillbillies.model;
 
-import java.util.Random;
-
 /**
  * A class of logs, involving a world, weight and position.
  * 
@@ -10,6 +8,8 @@ import java.util.Random;
  */
 
 public class Log extends Item {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initializes this new log with the given world, coordinates and weight.
@@ -38,11 +38,11 @@ public class Log extends Item {
 	 *				The coordinates of this new log.
 	 *
 	 * @effect	Creates a new log with the given world and coordinates and a random valid weight. 
-	 *				| this(world, coordinates, new Random().nextInt(41)+10)
+	 *				| this(world, coordinates, world.getRandom().nextInt(41)+10)
 	 *				| world.addEntity(this)
 	 */
 	public Log(World world, int[] coordinates) {
-		this(world, coordinates, new Random().nextInt(41)+10);
+		this(world, coordinates, world.getRandom().nextInt(41)+10);
 		world.addEntity(this);
 	}
 }
@@ -0,0 +1,349 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+import hillbillies.exceptions.MaxIterationException;
+
+/**
+ * A class of path caches which remember the paths found by the PathFinder in a world.
+ *
+ * A path is stored once, but it can be looked up from each cube on it: if the path from A to D
+ * passes through B, the remainder of that path is also the answer for a search from B to D.
+ * This way, a unit that searches its path again after every cube it reaches only searches once.
+ * New paths towards a destination that many units are heading for are read from the flow field cache
+ * of the world. Other new paths are searched by the hierarchical path finder of the world if the world
+ * has it enabled, and by the PathFinder otherwise.
+ *
+ * A path is forgotten as soon as the terrain of one of its cubes, or of a cube next to it,
+ * changes. Paths that are not used for a while are forgotten once the cache is full.
+ *
+ * @invar	The number of paths in this cache does not exceed the maximal number of paths.
+ *				| getNbPaths() <= MAX_PATHS
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class PathCache {
+
+	/**
+	 * Initializes this new path cache for the given world.
+	 *
+	 * @param	world
+	 *				The world to cache paths for.
+	 *
+	 * @post	The world of this new path cache is the given world.
+	 *				| new.getWorld() == world
+	 * @post	This new path cache contains no paths.
+	 *				| new.getNbPaths() == 0
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given world is not effective.
+	 *				| world == null
+	 */
+	@Raw
+	PathCache(World world) throws IllegalArgumentException {
+		if (world == null)
+			throw new IllegalArgumentException();
+		this.world = world;
+	}
+
+	/**
+	 * A symbolic constant denoting the maximal number of paths a path cache remembers.
+	 */
+	public static final int MAX_PATHS = 1024;
+
+	/**
+	 * Returns the world of this path cache.
+	 */
+	@Basic @Raw
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * A variable that stores the world of this path cache.
+	 */
+	private final World world;
+
+	/**
+	 * Returns the number of paths remembered by this path cache.
+	 */
+	public synchronized int getNbPaths() {
+		return this.paths.size();
+	}
+
+	/**
+	 * Returns how many times this path cache has forgotten paths.
+	 */
+	@Basic
+	public synchronized long getNbForgets() {
+		return this.nbForgets;
+	}
+
+	/**
+	 * A variable that stores how many times this path cache has forgotten paths.
+	 */
+	private long nbForgets;
+
+	/**
+	 * Returns a path in the world of this cache from the given start to the given destination.
+	 * If a remembered path passes through the given start and ends in the given destination,
+	 * the remainder of that path is returned. Otherwise a new path is searched and remembered.
+	 *
+	 * @param	start
+	 *				The start of the path.
+	 * @param	destination
+	 *				The destination of the path.
+	 * @param	diagonalMovesAllowed
+	 *				Whether diagonal moves are allowed.
+	 *
+	 * @return	A new list of cube coordinates that represents the path from the given start to the given destination,
+	 *				or null if there is no such path.
+	 *				| result == PathFinder.getPath(start, destination, getWorld(), diagonalMovesAllowed)
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the world of this cache.
+	 * @throws	MaxIterationException
+	 *				The search for a new path took too many iterations.
+	 */
+	public synchronized List<int[]> getPath(int[] start, int[] destination, boolean diagonalMovesAllowed)
+			throws IllegalArgumentException, MaxIterationException {
+		World world = this.getWorld();
+		if ( (! world.canHaveAsCoordinates(start)) || (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return PathFinder.getPath(start, destination, world, diagonalMovesAllowed);
+
+		int startIndex = world.getCubeIndex(start[0], start[1], start[2]);
+		int destinationIndex = world.getCubeIndex(destination[0], destination[1], destination[2]);
+		long key = this.getKey(startIndex, destinationIndex, diagonalMovesAllowed);
+
+		CachedPath path = this.pathsByKey.get(key);
+		if (path != null) {
+			// Mark the path as recently used.
+			this.paths.remove(path);
+			this.paths.add(path);
+			return path.toCoordinates(startIndex);
+		}
+
+		List<int[]> result;
+		if (world.getFlowFieldCache().isSharedDestination(destination, diagonalMovesAllowed))
+			result = world.getFlowFieldCache().getPath(start, destination, diagonalMovesAllowed);
+		else if (world.isHierarchicalPathfindingEnabled())
+			result = world.getHierarchicalPathFinder(diagonalMovesAllowed).getPath(start, destination);
+		else
+			result = PathFinder.getPath(start, destination, world, diagonalMovesAllowed);
+		if (result != null)
+			this.add(new CachedPath(result, destinationIndex, diagonalMovesAllowed));
+		return result;
+	}
+
+	/**
+	 * Checks whether this cache can answer a search from the given start to the given destination
+	 * without searching.
+	 *
+	 * @param	start
+	 *				The start of the path.
+	 * @param	destination
+	 *				The destination of the path.
+	 * @param	diagonalMovesAllowed
+	 *				Whether diagonal moves are allowed.
+	 *
+	 * @note	Unlike getPath, this method does not mark any path as recently used.
+	 */
+	public synchronized boolean containsPath(int[] start, int[] destination, boolean diagonalMovesAllowed) {
+		World world = this.getWorld();
+		if ( (! world.canHaveAsCoordinates(start)) || (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return false;
+		return this.pathsByKey.containsKey(this.getKey(world.getCubeIndex(start[0], start[1], start[2]),
+				world.getCubeIndex(destination[0], destination[1], destination[2]), diagonalMovesAllowed));
+	}
+	
+	/**
+	 * Remembers the given path, which was searched outside of this cache, unless this cache can already
+	 * answer a search from its start to its destination.
+	 *
+	 * @param	path
+	 *				The path to remember.
+	 * @param	diagonalMovesAllowed
+	 *				Whether the path was searched with diagonal moves allowed.
+	 */
+	synchronized void addPath(List<int[]> path, boolean diagonalMovesAllowed) {
+		if ( ! this.containsPath(path.get(0), path.get(path.size()-1), diagonalMovesAllowed)) {
+			int[] destination = path.get(path.size()-1);
+			this.add(new CachedPath(path, this.getWorld().getCubeIndex(destination[0], destination[1], destination[2]),
+					diagonalMovesAllowed));
+		}
+	}
+
+	/**
+	 * Forgets all paths which pass through the cube with the given coordinates or one of its neighbours.
+	 * This method must be invoked whenever the terrain of the given cube changes, since a path is only
+	 * valid as long as its cubes are passable and have a solid neighbour.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the changed cube.
+	 * @param	y
+	 *				The y-coordinate of the changed cube.
+	 * @param	z
+	 *				The z-coordinate of the changed cube.
+	 */
+	public synchronized void invalidate(int x, int y, int z) {
+		if (this.paths.isEmpty())
+			return;
+		World world = this.getWorld();
+		for (int dx = -1; dx <= 1; dx++)
+			for (int dy = -1; dy <= 1; dy++)
+				for (int dz = -1; dz <= 1; dz++)
+					if (world.canHaveAsCoordinates(x+dx, y+dy, z+dz)) {
+						List<CachedPath> affected = this.pathsByCube.get(world.getCubeIndex(x+dx, y+dy, z+dz));
+						if (affected != null)
+							// Copy, since removing a path changes the list.
+							for (CachedPath path: new ArrayList<>(affected))
+								this.remove(path);
+					}
+	}
+
+	/**
+	 * Forgets all paths of this cache.
+	 *
+	 * @post	This cache contains no paths.
+	 *				| new.getNbPaths() == 0
+	 * @post	This cache has forgotten paths once more.
+	 *				| new.getNbForgets() == this.getNbForgets() + 1
+	 */
+	public synchronized void clear() {
+		this.nbForgets++;
+		this.paths.clear();
+		this.pathsByKey.clear();
+		this.pathsByCube.clear();
+	}
+
+	/**
+	 * Remembers the given path and forgets the least recently used path if this cache is full.
+	 *
+	 * @param	path
+	 *				The path to remember.
+	 */
+	private void add(CachedPath path) {
+		this.paths.add(path);
+		for (int cube: path.cubes) {
+			this.pathsByKey.put(this.getKey(cube, path.destination, path.diagonal), path);
+			List<CachedPath> pathsOnCube = this.pathsByCube.get(cube);
+			if (pathsOnCube == null) {
+				pathsOnCube = new ArrayList<>(2);
+				this.pathsByCube.put(cube, pathsOnCube);
+			}
+			pathsOnCube.add(path);
+		}
+		if (this.paths.size() > MAX_PATHS) {
+			Iterator<CachedPath> iterator = this.paths.iterator();
+			this.remove(iterator.next());
+		}
+	}
+
+	/**
+	 * Forgets the given path.
+	 *
+	 * @param	path
+	 *				The path to forget.
+	 */
+	private void remove(CachedPath path) {
+		if ( ! this.paths.remove(path))
+			return;
+		this.nbForgets++;
+		for (int cube: path.cubes) {
+			long key = this.getKey(cube, path.destination, path.diagonal);
+			// Another path may have claimed the key in the mean time.
+			if (this.pathsByKey.get(key) == path)
+				this.pathsByKey.remove(key);
+			List<CachedPath> pathsOnCube = this.pathsByCube.get(cube);
+			pathsOnCube.remove(path);
+			if (pathsOnCube.isEmpty())
+				this.pathsByCube.remove(cube);
+		}
+	}
+
+	/**
+	 * Returns the key under which a path from the given start to the given destination is stored.
+	 *
+	 * @param	startIndex
+	 *				The index of the start cube.
+	 * @param	destinationIndex
+	 *				The index of the destination cube.
+	 * @param	diagonal
+	 *				Whether diagonal moves are allowed.
+	 */
+	private long getKey(int startIndex, int destinationIndex, boolean diagonal) {
+		return ((((long) startIndex * this.getWorld().getNbCubes()) + destinationIndex) << 1) | (diagonal ? 1 : 0);
+	}
+
+	/**
+	 * A variable that stores all remembered paths, from least to most recently used.
+	 */
+	private final LinkedHashSet<CachedPath> paths = new LinkedHashSet<>();
+
+	/**
+	 * A variable that maps the key of each (start, destination, diagonal) combination to the path
+	 * that answers it.
+	 */
+	private final Map<Long, CachedPath> pathsByKey = new HashMap<>();
+
+	/**
+	 * A variable that maps the index of each cube to the paths that pass through it.
+	 */
+	private final Map<Integer, List<CachedPath>> pathsByCube = new HashMap<>();
+
+	/**
+	 * A class of remembered paths.
+	 */
+	private final class CachedPath {
+
+		CachedPath(List<int[]> path, int destination, boolean diagonal) {
+			this.cubes = new int[path.size()];
+			for (int i = 0; i < this.cubes.length; i++) {
+				int[] coordinates = path.get(i);
+				this.cubes[i] = PathCache.this.getWorld().getCubeIndex(coordinates[0], coordinates[1], coordinates[2]);
+			}
+			this.destination = destination;
+			this.diagonal = diagonal;
+		}
+
+		/**
+		 * The indices of the cubes on this path, from start to destination.
+		 */
+		final int[] cubes;
+
+		/**
+		 * The index of the destination of this path.
+		 */
+		final int destination;
+
+		/**
+		 * Whether this path may contain diagonal moves.
+		 */
+		final boolean diagonal;
+
+		/**
+		 * Returns the coordinates of the cubes of this path from the cube with the given index onwards.
+		 */
+		List<int[]> toCoordinates(int startIndex) {
+			int nbX = PathCache.this.getWorld().getMaximumXValue();
+			int nbY = PathCache.this.getWorld().getMaximumYValue();
+			int first = 0;
+			while (this.cubes[first] != startIndex)
+				first++;
+			List<int[]> result = new ArrayList<>(this.cubes.length - first);
+			for (int i = first; i < this.cubes.length; i++) {
+				int cube = this.cubes[i];
+				result.add(new int[]{cube % nbX, (cube / nbX) % nbY, cube / (nbX * nbY)});
+			}
+			return result;
+		}
+	}
+}
@@ -1,39 +1,41 @@
 package hillbillies.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import hillbillies.exceptions.MaxIterationException;
-import hillbillies.positions.Position;
 
 /**
  * A helper class for pathfinding.
  * This class is used for the moveTo method in Unit but it is easily generalisble.
- * 
+ *
+ * The search is an A* search in which each cube is identified by its index in the world
+ * (see World.getCubeIndex). The open list is a binary heap and the cost of reaching each cube
+ * is stored in flat arrays indexed by cube index, which are reused between searches.
+ *
  * @author Sander Mergan, Thomas Vrancken
  * @version 3.0
  */
 public class PathFinder {
-	
+
 	/**
 	 * A variable that stores maximal number of iterations. Prevents the path finding from searching forever or a really long time.
+	 * Each iteration evaluates exactly one cube.
 	 */
-	public static final int MAX_ITERATION = 400;
-	
+	public static final int MAX_ITERATION = 100000;
+
 	/**
 	 * A variable that stores whether diagonal movement is allowed.
 	 */
 	public static final boolean ALLOW_DIAGONAL = true;
-	
+
 	/**
 	 * Searches a path in the given world from the given start to the given destination.
 	 * If diagonal moves are allowed then the path will have diagonal moves.
 	 * If diagonal moves are not allowed then the path will only have straight corners in it.
-	 * 
+	 *
 	 * @param start
 	 *				The start of the path.
 	 * @param destination
@@ -41,19 +43,19 @@ public class PathFinder {
 	 * @param world
 	 *				The world to find the path in.
 	 *
-	 * @return	A list of cube coordinates that represents the path from the given start to the given destination. 
+	 * @return	A list of cube coordinates that represents the path from the given start to the given destination.
 	 *				| result == getPath(start, destination, world, ALLOW_DIAGONAL)
 	 */
-	public static List<int[]> getPath (int[] start, int[] destination, World world) 
+	public static List<int[]> getPath (int[] start, int[] destination, World world)
 			throws MaxIterationException {
 		return getPath(start, destination, world, ALLOW_DIAGONAL);
 	}
-	
+
 	/**
 	 * Searches a path in the given world from the given start to the given destination.
 	 * If diagonal moves are allowed then the path will have diagonal moves.
 	 * If diagonal moves are not allowed then the path will only have straight corners in it.
-	 * 
+	 *
 	 * @param start
 	 *				The start of the path.
 	 * @param destination
@@ -63,226 +65,325 @@ public class PathFinder {
 	 * @param diagonalMovesAllowed
 	 *				Whether diagonal moves are allowed.
 	 *
-	 * @returnA list of cube coordinates that represents the path from the given start to the given destination. 
+	 * @return	A list of cube coordinates that represents the path from the given start to the given destination,
+	 *				both included. Each cube on the path, apart from the start, is passable and has a solid neighbour.
+	 *				Null if no such path exists.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the given world.
+	 *				| ! world.canHaveAsCoordinates(start)
+	 * @throws	MaxIterationException
+	 *				More than MAX_ITERATION cubes had to be evaluated.
 	 */
 	public static List<int[]> getPath (int[] start, int[] destination, World world, boolean diagonalMovesAllowed)
-		throws MaxIterationException {
-		
+		throws IllegalArgumentException, MaxIterationException {
+		return getPath(start, destination, world, diagonalMovesAllowed, null);
+	}
+	
+	/**
+	 * Searches a path in the given world from the given start to the given destination,
+	 * only passing through cubes accepted by the given filter.
+	 * 
+	 * @param start
+	 *				The start of the path.
+	 * @param destination
+	 *				The destination of the path.
+	 * @param world
+	 *				The world to find the path in.
+	 * @param diagonalMovesAllowed
+	 *				Whether diagonal moves are allowed.
+	 * @param filter
+	 *				The filter which decides which cubes the path may pass through,
+	 *				or null if the path may pass through any cube.
+	 *
+	 * @return	A list of cube coordinates that represents the path from the given start to the given destination,
+	 *				both included, of which each cube apart from the start is accepted by the given filter.
+	 *				Null if no such path exists.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given start coordinates are not valid coordinates for the given world.
+	 *				| ! world.canHaveAsCoordinates(start)
+	 * @throws	MaxIterationException
+	 *				More than MAX_ITERATION cubes had to be evaluated.
+	 */
+	static List<int[]> getPath (int[] start, int[] destination, World world, boolean diagonalMovesAllowed, CubeFilter filter)
+		throws IllegalArgumentException, MaxIterationException {
+		if ( ! world.canHaveAsCoordinates(start))
+			throw new IllegalArgumentException();
+		if ( (destination == null) || ( ! world.canHaveAsCoordinates(destination)) )
+			return null;
+
+		int nbX = world.getMaximumXValue();
+		int nbY = world.getMaximumYValue();
+		int nbZ = world.getMaximumZValue();
+		int startIndex = world.getCubeIndex(start[0], start[1], start[2]);
+		int destinationIndex = world.getCubeIndex(destination[0], destination[1], destination[2]);
+
+		// The clock is only read when the profiler of the world is enabled.
+		TickProfiler profiler = world.getProfiler();
+		long startTime = (profiler.isEnabled()) ? System.nanoTime() : 0;
+
+		SearchSpace space = SEARCH_SPACE.get();
+		space.prepare(world.getNbCubes());
+		// The neighbours are walked in the order of World.NEIGHBOUR_OFFSETS, of which the first 6 are directly adjacent.
+		int[] offsets = World.NEIGHBOUR_OFFSETS;
+		int nbOffsets = 3 * ((diagonalMovesAllowed) ? 26 : 6);
+
 		// counter for amount of iterations
 		int iteration = 0;
-		// The set of nodes already evaluated.
-		Set<int[]>closedSet = new HashSet<>();
-		// The set of currently discovered nodes still to be evaluated.
-		// Initially, only the start node is known.
-		Set<int[]>openSet = new HashSet<>();
-		openSet.add(start);
-		
-		// For each node, which node it can most efficiently be reached from.
-		// If a node can be reached from many nodes, cameFrom will eventually contain the
-		// most efficient previous step.
-		HashMap<int[], int[]> cameFrom=new HashMap<>();
-		
-		// For each node, the cost of getting from the start node to that node.
-		HashMap<int[], Double> gScore=new HashMap<>();
-		// The cost of going from start to start is zero.
-		gScore.put(start, 0.0);
-		
-		// For each node, the total cost of getting from the start node to the goal
-	    // by passing by that node. That value is partly known, partly heuristic.
-		HashMap<int[], Double> fScore=new HashMap<>();
-		// For the first node, that value is completely heuristic.
-		fScore.put(start, heuristicCostEstimate(start, destination));
-		
-		while ( openSet.size() != 0){
-			if (iteration >= MAX_ITERATION)
+		// The cost of going from start to start is zero and the start node is the only node known initially.
+		space.open(startIndex, 0.0, -1);
+		space.push(startIndex, heuristicCostEstimate(start[0], start[1], start[2], destination));
+
+		while (space.heapSize != 0){
+			// current is the node in the open list having the lowest f-score.
+			int current = space.pop();
+			if (space.isClosed(current))
+				continue;		// A stale heap entry for a node that was reached more cheaply before.
+
+			if (current == destinationIndex) {
+				if (profiler.isEnabled())
+					profiler.addSearch(iteration, System.nanoTime() - startTime);
+				return reconstructPath(space, current, nbX, nbY);
+			}
+
+			if (iteration >= MAX_ITERATION) {
+				if (profiler.isEnabled())
+					profiler.addSearch(iteration, System.nanoTime() - startTime);
 				throw new MaxIterationException();
-			iteration ++;
-			// current is the position in openSet having the lowest fScore[] value
-			int[] current = getCoordinatesWithLowestFScoreFrom(openSet, fScore);
-			
-			if (Position.equals(current, destination)){
-				return reconstruct_path(cameFrom, current);
 			}
-			
-			openSet.remove(current);
-			closedSet.add(current);
-			for(int[] neighbour:  (diagonalMovesAllowed) ? getPassableNeighbourCoordinates(current, world) : getPassableDirectlyAdjacentCoordinates(current, world)){
-				/* If no diagonal moves are allowed, then only directly adjecant positions should be explored as a next move.
-				 	This means that the next nodes to explore should be picked from the second set. 
-				 	If diagonal moves are allowed, then the next nodes to explore should be picked from the first set.*/
-				if (closedSet.contains(neighbour)){
-					continue;		// Ignore the neighbours which are already evaluated.
-				}
-				if ( ! hasSolidNeighbours(neighbour, world)){
-					closedSet.add(neighbour);
+			iteration ++;
+			space.close(current);
+
+			int x = current % nbX;
+			int y = (current / nbX) % nbY;
+			int z = current / (nbX * nbY);
+			double currentGScore = space.gScore[current];
+
+			for (int i = 0; i < nbOffsets; i += 3){
+				int nx = x + offsets[i], ny = y + offsets[i+1], nz = z + offsets[i+2];
+				if ( (nx < 0) || (ny < 0) || (nz < 0) || (nx >= nbX) || (ny >= nbY) || (nz >= nbZ) )
+					continue;
+				int neighbour = nx + nbX * (ny + nbY * nz);
+				if (space.isClosed(neighbour) || ( ! world.isPassable(neighbour)))
+					continue;		// Ignore the neighbours which are already evaluated or solid.
+				if ( (filter != null) && ( ! filter.accepts(nx, ny, nz)) )
+					continue;
+				if ( ! world.hasSolidNeighbours(neighbour)){
+					space.close(neighbour);
 					continue;
 				}
 				// The distance from start to a neighbour.
-	            double tentative_gScore = gScore.get(current) + Position.getDistance(Position.getCubeCenter(current), Position.getCubeCenter(neighbour));
-			
-				if ( ! openSet.contains(neighbour) ) { // Discover a new node
-					openSet.add(neighbour);
-				}
-				else if (tentative_gScore >= gScore.get(neighbour)){
-					continue; // This is not a better path.
-				}
-				
-				// This path is the best until now. If it doesn't kill the unit: Record it!
-				cameFrom.put(neighbour, current);
-				gScore.put(neighbour, tentative_gScore);
-				fScore.put(neighbour, tentative_gScore + heuristicCostEstimate(neighbour, destination));
-				
+				double tentativeGScore = currentGScore + World.NEIGHBOUR_DISTANCES[i/3];
+				if (space.isOpen(neighbour) && (tentativeGScore >= space.gScore[neighbour]))
+					continue;		// This is not a better path.
+
+				// This path is the best until now: record it!
+				space.open(neighbour, tentativeGScore, current);
+				space.push(neighbour, tentativeGScore + heuristicCostEstimate(nx, ny, nz, destination));
 			}
 		}
 		// If no path is found.
+		if (profiler.isEnabled())
+			profiler.addSearch(iteration, System.nanoTime() - startTime);
 		return null;
 	}
+
+	/**
+	 * An interface for filters which restrict the cubes a path may pass through.
+	 */
+	interface CubeFilter {
+		
+		/**
+		 * Checks whether a path may pass through the cube with the given coordinates.
+		 */
+		boolean accepts(int x, int y, int z);
+	}
 	
 	/**
 	 * Checks if the cube with the given coordinates is adjacent
 	 * to at least one cube which is solid.
-	 * 
-	 * @param	coordinates
-	 *				The coordinates to check neighbours for.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the cube to check neighbours for.
+	 * @param	y
+	 *				The y-coordinate of the cube to check neighbours for.
+	 * @param	z
+	 *				The z-coordinate of the cube to check neighbours for.
 	 * @param	world
 	 *				The world in which to check.
 	 *
 	 * @return	False if none of the neighbouring cubes is solid.
-	 *				| for (int[] position: neighbours)
-	 *				|	if ( ! world.getCube(position).isPassable())
-	 *				|		then result == true
-	 *				| result == false
+	 *				| result == world.hasSolidNeighbours(x, y, z)
 	 */
-	private static boolean hasSolidNeighbours(int[] coordinates, World world) {
-		Set<int[]> neighbours = world.getNeighbours(coordinates);
-		for (int[] neighbour: neighbours)
-			if ( ! world.getCube(neighbour).isPassable())
-				return true;
-		return false;
+	static boolean hasSolidNeighbours(int x, int y, int z, World world) {
+		return world.hasSolidNeighbours(world.getCubeIndex(x, y, z));
 	}
 
 	/**
-	 * Reconstructs the path hidden in cameFrom.
-	 * 
-	 * @param cameFrom
-	 *				The map to reconstruct the path from
+	 * Reconstructs the path hidden in the came-from links of the given search space.
 	 *
-	 * @param current
-	 *				The last part of the path.
+	 * @param	space
+	 *				The search space to reconstruct the path from.
+	 * @param	current
+	 *				The index of the last cube of the path.
+	 * @param	nbX
+	 *				The number of cubes in the x-direction of the world.
+	 * @param	nbY
+	 *				The number of cubes in the y-direction of the world.
 	 */
-	private static List<int[]> reconstruct_path(HashMap<int[], int[]> cameFrom, int[] current) {
+	private static List<int[]> reconstructPath(SearchSpace space, int current, int nbX, int nbY) {
 		List<int[]> totalPath = new ArrayList<int[]>();
-		totalPath.add(current);
-		while (cameFrom.containsKey(current)){
-			current = cameFrom.get(current);
-			totalPath.add(current);
+		while (current != -1){
+			totalPath.add(new int[]{current % nbX, (current / nbX) % nbY, current / (nbX * nbY)});
+			current = space.cameFrom[current];
 		}
 		Collections.reverse(totalPath);
 		return totalPath;
 	}
 
 	/**
-	 * Returns the coordinates with the lowest fScore in openSet.
-	 * 
-	 * @param openSet
-	 *				The set of coordinates of wich we want the one with the lowest fScore.
-	 * @param fScore
-	 *				A HashMap of coordinates and their fScores.
+	 * Returns a heuristic cost estimate for the path from the given cube to the destination.
 	 *
-	 * @return	The coordinates with the lowest fScore in openSet.
-	 */
-	private static int[] getCoordinatesWithLowestFScoreFrom(Set<int[]> openSet, HashMap<int[], Double> fScore) {
-		int[] LowestFScoreCoordinates = null;
-		Double lowestFScore = null;
-		for (int[] coordinates : openSet){
-			if (lowestFScore == null){
-				LowestFScoreCoordinates = coordinates;
-				lowestFScore = fScore.get(coordinates);
-			} else if (lowestFScore > fScore.get(coordinates)){
-				LowestFScoreCoordinates = coordinates;
-				lowestFScore = fScore.get(coordinates);
-			}
-		}
-		return LowestFScoreCoordinates;
-	}
-	
-	/**
-	 * Returns a heuristic cost estimate for the path from start to destination.
-	 * 
-	 * @param start
-	 *				The start position.
-	 * @param destination
+	 * @param	x
+	 *				The x-coordinate of the start cube.
+	 * @param	y
+	 *				The y-coordinate of the start cube.
+	 * @param	z
+	 *				The z-coordinate of the start cube.
+	 * @param	destination
 	 *				The destination position.
 	 *
-	 * @return The distance between the start position and the destination position.
-	 *				| Position.getDistance(Position.getCubeCenter(start), Position.getCubeCenter(destination))
+	 * @return The distance between the centers of the start cube and the destination cube.
+	 *				| Position.getDistance(Position.getCubeCenter(new int[]{x, y, z}), Position.getCubeCenter(destination))
 	 */
-	private static Double heuristicCostEstimate(int[] start, int[] destination) {
-		return Position.getDistance(Position.getCubeCenter(start), Position.getCubeCenter(destination));
+	private static double heuristicCostEstimate(int x, int y, int z, int[] destination) {
+		int dx = x - destination[0], dy = y - destination[1], dz = z - destination[2];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
 	}
-	
+
 	/**
-	 * Returns a set of coordinates which are directly adjacent to the given coordinates.
-	 * 
-	 * @param	coordinates
-	 *				The coordinates to find directly adjacent coordinates for.
-	 *
-	 * @return	A set of cubes which are directly adjacent and not passable.
-	 * 
-	 * @throws	IllegalArgumentException
-	 *				The given coordinates are illegal for this world.
+	 * A variable that stores a search space for each thread, so that searches do not have to
+	 * allocate new arrays and searches in different threads do not interfere.
 	 */
-	private static Set<int[]> getPassableDirectlyAdjacentCoordinates(int[] coordinates, World world) throws IllegalArgumentException{
-		int x = coordinates[0];
-		int y = coordinates[1];
-		int z = coordinates[2];
-		
-		if ( ! world.canHaveAsCoordinates(coordinates))
-			throw new IllegalArgumentException();
-		Set<int[]> directlyAdjacentCoordinates = new HashSet<>();
-		
-		if ( (world.canHaveAsCoordinates(new int[]{x-1,y,z})) && (world.getCube(new int[]{x-1,y,z}).isPassable()) ) 
-			directlyAdjacentCoordinates.add(new int[]{x-1,y,z});
-		if (world.canHaveAsCoordinates(new int[]{x+1,y,z}) && (world.getCube(new int[]{x+1,y,z}).isPassable()) )
-			directlyAdjacentCoordinates.add(new int[]{x+1,y,z});
-		
-		if (world.canHaveAsCoordinates(new int[]{x,y-1,z}) && (world.getCube(new int[]{x,y-1,z}).isPassable()) )
-			directlyAdjacentCoordinates.add(new int[]{x,y-1,z});
-		if (world.canHaveAsCoordinates(new int[]{x,y+1,z}) && (world.getCube(new int[]{x,y+1,z}).isPassable()) )
-			directlyAdjacentCoordinates.add(new int[]{x,y+1,z});
-		
-		if (world.canHaveAsCoordinates(new int[]{x,y,z-1}) && (world.getCube(new int[]{x,y,z-1}).isPassable()) )
-			directlyAdjacentCoordinates.add(new int[]{x,y,z-1});
-		if (world.canHaveAsCoordinates(new int[]{x,y,z+1}) && (world.getCube(new int[]{x,y,z+1}).isPassable()) )
-			directlyAdjacentCoordinates.add(new int[]{x,y,z+1});
-		
-		return directlyAdjacentCoordinates;
-	}
-	
+	private static final ThreadLocal<SearchSpace> SEARCH_SPACE = new ThreadLocal<SearchSpace>() {
+		@Override
+		protected SearchSpace initialValue() {
+			return new SearchSpace();
+		}
+	};
+
 	/**
-	 * Returns a set of coordinates which are directly adjacent to the given coordinates.
-	 * 
-	 * @param	coordinates
-	 *				The coordinates to find directly adjacent coordinates for.
-	 *
-	 * @return	A set of cubes which are directly adjacent and not passable.
-	 * 
-	 * @throws	IllegalArgumentException
-	 *				The given coordinates are illegal for this world.
+	 * A class of reusable search spaces for A* searches.
+	 * Instead of clearing its arrays before each search, a search space stamps each cube it
+	 * touches with the number of the current search. A cube with an older stamp is unknown.
 	 */
-	private static Set<int[]> getPassableNeighbourCoordinates(int[] coordinates, World world) throws IllegalArgumentException{
-		if ( ! world.canHaveAsCoordinates(coordinates))
-			throw new IllegalArgumentException();
-		
-		Set<int[]> passableNeighbourCoordinates = new HashSet<>();
-		Set<int[]> dummy = world.getNeighbours(coordinates);
-		for (int[] neighbourCoordinates: dummy){
-			if (world.getCube(neighbourCoordinates).isPassable())
-				passableNeighbourCoordinates.add(neighbourCoordinates);
+	private static final class SearchSpace {
+
+		/**
+		 * For each cube, the cost of getting from the start cube to that cube.
+		 */
+		double[] gScore = new double[0];
+
+		/**
+		 * For each cube, the index of the cube it can most efficiently be reached from, or -1 for the start cube.
+		 */
+		int[] cameFrom = new int[0];
+
+		/**
+		 * For each cube, the number of the search in which it was last discovered.
+		 * The value is negated once the cube has been evaluated.
+		 */
+		int[] stamp = new int[0];
+
+		/**
+		 * The number of the current search.
+		 */
+		int search = 0;
+
+		/**
+		 * The binary min-heap of open cubes, ordered by their f-score.
+		 * A cube may occur more than once; outdated entries are skipped when popped.
+		 */
+		int[] heapNodes = new int[64];
+		double[] heapKeys = new double[64];
+		int heapSize = 0;
+
+		/**
+		 * Prepares this search space for a new search in a world with the given number of cubes.
+		 */
+		void prepare(int nbCubes) {
+			if (this.stamp.length != nbCubes){
+				this.gScore = new double[nbCubes];
+				this.cameFrom = new int[nbCubes];
+				this.stamp = new int[nbCubes];
+				this.search = 0;
+			}
+			if (this.search == Integer.MAX_VALUE){
+				Arrays.fill(this.stamp, 0);
+				this.search = 0;
+			}
+			this.search++;
+			this.heapSize = 0;
+		}
+
+		boolean isOpen(int node) {
+			return this.stamp[node] == this.search;
+		}
+
+		boolean isClosed(int node) {
+			return this.stamp[node] == -this.search;
+		}
+
+		void open(int node, double gScore, int cameFrom) {
+			this.stamp[node] = this.search;
+			this.gScore[node] = gScore;
+			this.cameFrom[node] = cameFrom;
+		}
+
+		void close(int node) {
+			this.stamp[node] = -this.search;
+		}
+
+		void push(int node, double key) {
+			if (this.heapSize == this.heapNodes.length){
+				this.heapNodes = Arrays.copyOf(this.heapNodes, 2 * this.heapSize);
+				this.heapKeys = Arrays.copyOf(this.heapKeys, 2 * this.heapSize);
+			}
+			int i = this.heapSize++;
+			while (i > 0){
+				int parent = (i - 1) >>> 1;
+				if (this.heapKeys[parent] <= key)
+					break;
+				this.heapNodes[i] = this.heapNodes[parent];
+				this.heapKeys[i] = this.heapKeys[parent];
+				i = parent;
+			}
+			this.heapNodes[i] = node;
+			this.heapKeys[i] = key;
+		}
+
+		int pop() {
+			int result = this.heapNodes[0];
+			int size = --this.heapSize;
+			int node = this.heapNodes[size];
+			double key = this.heapKeys[size];
+			int i = 0;
+			while (true){
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if ( (child + 1 < size) && (this.heapKeys[child + 1] < this.heapKeys[child]) )
+					child++;
+				if (key <= this.heapKeys[child])
+					break;
+				this.heapNodes[i] = this.heapNodes[child];
+				this.heapKeys[i] = this.heapKeys[child];
+				i = child;
+			}
+			this.heapNodes[i] = node;
+			this.heapKeys[i] = key;
+			return result;
 		}
-		return passableNeighbourCoordinates;
 	}
-	
 }
-	
-	
\ No newline at end of file
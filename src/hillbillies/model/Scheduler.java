@@ -1,5 +1,6 @@
 package hillbillies.model;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -20,7 +21,9 @@ import be.kuleuven.cs.som.annotate.*;
  * 
  * @note	Must be documented both formally and informally.
  */
-public class Scheduler {
+public class Scheduler implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Creates a new scheduler.
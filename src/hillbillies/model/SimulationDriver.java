@@ -0,0 +1,375 @@
+package hillbillies.model;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of simulation drivers, which advance the time of a world in steps of a fixed length.
+ *
+ * A driver is fed with elapsed real time, for example by a game loop or a batch job. It multiplies
+ * that time with its speed and collects it in an accumulator, from which it takes as many whole time
+ * steps as possible. The rest is kept for the next update. When the driver falls behind, it takes
+ * at most getMaxStepsPerUpdate() steps per update and drops the remaining time, so that a slow machine
+ * does not spiral into ever longer updates.
+ *
+ * Since a rendering is usually made between two steps, the driver offers the coordinates of the
+ * entities interpolated between the previous and the current step.
+ *
+ * @invar	The time step of each driver is valid.
+ *				| isValidTimeStep(getTimeStep())
+ * @invar	The speed of each driver is valid.
+ *				| isValidSpeed(getSpeed())
+ * @invar	The maximal number of steps per update of each driver is positive.
+ *				| getMaxStepsPerUpdate() > 0
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class SimulationDriver {
+
+	/**
+	 * Initializes this new driver for the given world with the given time step.
+	 *
+	 * @param	world
+	 *				The world to advance.
+	 * @param	timeStep
+	 *				The length of a time step.
+	 *
+	 * @post	| new.getWorld() == world
+	 * @post	| new.getTimeStep() == timeStep
+	 * @post	| new.getSpeed() == 1
+	 * @post	| new.getMaxStepsPerUpdate() == DEFAULT_MAX_STEPS_PER_UPDATE
+	 * @post	| new.getSimulatedTime() == 0
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given world is not effective or the given time step is not valid.
+	 *				| (world == null) || ( ! isValidTimeStep(timeStep))
+	 */
+	public SimulationDriver(World world, double timeStep) throws IllegalArgumentException {
+		if ( (world == null) || ( ! isValidTimeStep(timeStep)) )
+			throw new IllegalArgumentException();
+		this.world = world;
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * Initializes this new driver for the given world with the default time step.
+	 *
+	 * @param	world
+	 *				The world to advance.
+	 *
+	 * @effect	| this(world, DEFAULT_TIME_STEP)
+	 */
+	public SimulationDriver(World world) throws IllegalArgumentException {
+		this(world, DEFAULT_TIME_STEP);
+	}
+
+	/**
+	 * A symbolic constant denoting the default length of a time step.
+	 */
+	public static final double DEFAULT_TIME_STEP = 0.05;
+
+	/**
+	 * A symbolic constant denoting the largest time step a world accepts.
+	 */
+	public static final double MAX_TIME_STEP = 0.2;
+
+	/**
+	 * A symbolic constant denoting the default maximal number of steps per update.
+	 */
+	public static final int DEFAULT_MAX_STEPS_PER_UPDATE = 100;
+
+	/**
+	 * Returns the world of this driver.
+	 */
+	@Basic @Raw
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * A variable that stores the world of this driver.
+	 */
+	private final World world;
+
+	/**
+	 * Returns the length of the time steps of this driver.
+	 */
+	@Basic @Raw
+	public double getTimeStep() {
+		return this.timeStep;
+	}
+
+	/**
+	 * Checks whether the given time step is a valid time step for any driver.
+	 *
+	 * @param	timeStep
+	 *				The time step to check.
+	 *
+	 * @return	| result == ( (timeStep > 0) && (timeStep <= MAX_TIME_STEP) )
+	 */
+	public static boolean isValidTimeStep(double timeStep) {
+		return (timeStep > 0) && (timeStep <= MAX_TIME_STEP);
+	}
+
+	/**
+	 * A variable that stores the length of the time steps of this driver.
+	 */
+	private final double timeStep;
+
+	/**
+	 * Returns the speed of this driver, which is the amount of simulated time per unit of real time.
+	 */
+	@Basic @Raw
+	public double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Checks whether the given speed is a valid speed for any driver.
+	 *
+	 * @param	speed
+	 *				The speed to check.
+	 *
+	 * @return	| result == ( (speed >= 0) && ( ! Double.isInfinite(speed)) )
+	 */
+	public static boolean isValidSpeed(double speed) {
+		return (speed >= 0) && ( ! Double.isInfinite(speed));
+	}
+
+	/**
+	 * Sets the speed of this driver to the given speed.
+	 *
+	 * @param	speed
+	 *				The new speed. A speed of 0 pauses the simulation.
+	 *
+	 * @post	| new.getSpeed() == speed
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| ! isValidSpeed(speed)
+	 */
+	public void setSpeed(double speed) throws IllegalArgumentException {
+		if ( ! isValidSpeed(speed))
+			throw new IllegalArgumentException();
+		this.speed = speed;
+	}
+
+	/**
+	 * A variable that stores the speed of this driver.
+	 */
+	private double speed = 1;
+
+	/**
+	 * Returns the maximal number of steps this driver takes in a single update.
+	 */
+	@Basic @Raw
+	public int getMaxStepsPerUpdate() {
+		return this.maxStepsPerUpdate;
+	}
+
+	/**
+	 * Sets the maximal number of steps this driver takes in a single update to the given number.
+	 *
+	 * @param	maxStepsPerUpdate
+	 *				The new maximal number of steps.
+	 *
+	 * @post	| new.getMaxStepsPerUpdate() == maxStepsPerUpdate
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| maxStepsPerUpdate <= 0
+	 */
+	public void setMaxStepsPerUpdate(int maxStepsPerUpdate) throws IllegalArgumentException {
+		if (maxStepsPerUpdate <= 0)
+			throw new IllegalArgumentException();
+		this.maxStepsPerUpdate = maxStepsPerUpdate;
+	}
+
+	/**
+	 * A variable that stores the maximal number of steps this driver takes in a single update.
+	 */
+	private int maxStepsPerUpdate = DEFAULT_MAX_STEPS_PER_UPDATE;
+
+	/**
+	 * Returns the total amount of simulated time advanced by this driver.
+	 */
+	@Basic @Raw
+	public double getSimulatedTime() {
+		return this.simulatedTime;
+	}
+
+	/**
+	 * A variable that stores the total amount of simulated time advanced by this driver.
+	 */
+	private double simulatedTime = 0;
+
+	/**
+	 * Returns the total number of steps taken by this driver.
+	 */
+	@Basic @Raw
+	public long getNbSteps() {
+		return this.nbSteps;
+	}
+
+	/**
+	 * A variable that stores the total number of steps taken by this driver.
+	 */
+	private long nbSteps = 0;
+
+	/**
+	 * Advances the world of this driver for the given amount of real time.
+	 *
+	 * @param	realTime
+	 *				The elapsed real time.
+	 *
+	 * @return	The number of steps taken, which is at most getMaxStepsPerUpdate().
+	 *
+	 * @effect	The given time, multiplied by the speed of this driver, is added to the accumulated time.
+	 *				As many steps as the accumulated time allows are taken, up to the maximal number of steps
+	 *				per update. If that maximum is reached and a whole step remains, all remaining accumulated time is dropped.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given time is negative or not a number.
+	 *				| ! (realTime >= 0)
+	 */
+	public int update(double realTime) throws IllegalArgumentException {
+		if ( ! (realTime >= 0))
+			throw new IllegalArgumentException();
+		this.accumulator += realTime * this.getSpeed();
+		int steps = 0;
+		while (this.hasWholeStep() && (steps < this.getMaxStepsPerUpdate()) ) {
+			this.takeStepFromAccumulator();
+			// Only the state before the last step of an update is needed for interpolation.
+			this.step(( ! this.hasWholeStep()) || (steps == this.getMaxStepsPerUpdate() - 1));
+			steps++;
+		}
+		if (this.hasWholeStep())
+			// Catch-up cap: do not try to make up for the time that could not be simulated.
+			this.accumulator = 0;
+		return steps;
+	}
+
+	/**
+	 * Advances the world of this driver for the given amount of simulated time, as fast as possible,
+	 * regardless of the speed and the maximal number of steps per update.
+	 *
+	 * @param	time
+	 *				The amount of simulated time.
+	 *
+	 * @return	The number of steps taken.
+	 *
+	 * @effect	The given time is added to the accumulated time and as many steps as the accumulated time allows are taken.
+	 *				Steps during which all entities of the world sleep are skipped, except for the last one.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given time is negative or not a number.
+	 *				| ! (time >= 0)
+	 */
+	public long run(double time) throws IllegalArgumentException {
+		if ( ! (time >= 0))
+			throw new IllegalArgumentException();
+		this.accumulator += time;
+		long steps = 0;
+		while (this.hasWholeStep()) {
+			// The last step is always taken, so that the coordinates before it are known for interpolation.
+			long remaining = (long) ((this.accumulator + ROUNDING_TOLERANCE) / this.getTimeStep());
+			if (remaining > 1) {
+				long skipped = this.getWorld().skipIdleSteps(this.getTimeStep(), remaining - 1);
+				for (long i = 0; i < skipped; i++) {
+					this.takeStepFromAccumulator();
+					this.simulatedTime += this.getTimeStep();
+				}
+				this.nbSteps += skipped;
+				steps += skipped;
+				if ( ! this.hasWholeStep())
+					break;
+			}
+			this.takeStepFromAccumulator();
+			this.step( ! this.hasWholeStep());
+			steps++;
+		}
+		return steps;
+	}
+
+	/**
+	 * Takes one step.
+	 *
+	 * @param	last
+	 *				Whether this is the last step before the world is rendered.
+	 */
+	private void step(boolean last) {
+		if (last) {
+			this.previousCoordinates.clear();
+			for (Entity entity: this.getWorld().getEntities())
+				this.previousCoordinates.put(entity, entity.getPosition().getCoordinates().clone());
+		}
+		this.getWorld().advanceTime(this.getTimeStep());
+		this.simulatedTime += this.getTimeStep();
+		this.nbSteps++;
+	}
+
+	/**
+	 * A variable that stores the accumulated simulated time that has not been advanced yet.
+	 */
+	private double accumulator = 0;
+
+	/**
+	 * Checks whether the accumulated time contains a whole time step, allowing for rounding errors
+	 * in the sum of the accumulated times.
+	 */
+	private boolean hasWholeStep() {
+		return this.accumulator >= this.getTimeStep() - ROUNDING_TOLERANCE;
+	}
+
+	/**
+	 * Removes one time step from the accumulated time.
+	 */
+	private void takeStepFromAccumulator() {
+		this.accumulator = Math.max(this.accumulator - this.getTimeStep(), 0);
+	}
+
+	/**
+	 * A symbolic constant denoting the rounding error tolerated on the accumulated time.
+	 */
+	private static final double ROUNDING_TOLERANCE = 1e-9;
+
+	/**
+	 * Returns the fraction of a time step that has been accumulated but not yet advanced.
+	 *
+	 * @return	| result == accumulator / getTimeStep()
+	 */
+	public double getInterpolationFactor() {
+		return Math.min(this.accumulator / this.getTimeStep(), 1.0);
+	}
+
+	/**
+	 * Returns the coordinates of the given entity interpolated between the last two steps.
+	 *
+	 * @param	entity
+	 *				The entity to return the coordinates of.
+	 *
+	 * @return	If the coordinates of the given entity before the last step are known, the coordinates
+	 *				between those and its current coordinates, according to the interpolation factor.
+	 *				Otherwise the current coordinates of the given entity.
+	 *
+	 * @note	This method only reads the state of the world, so a rendering can use it between updates.
+	 */
+	public double[] getInterpolatedCoordinates(Entity entity) {
+		double[] current = entity.getPosition().getCoordinates();
+		double[] previous = this.previousCoordinates.get(entity);
+		if (previous == null)
+			return current;
+		double factor = this.getInterpolationFactor();
+		double[] result = new double[3];
+		for (int i = 0; i < 3; i++)
+			result[i] = previous[i] + (current[i] - previous[i]) * factor;
+		return result;
+	}
+
+	/**
+	 * A variable that stores the coordinates of the entities before the last step.
+	 */
+	private final Map<Entity, double[]> previousCoordinates = new IdentityHashMap<>();
+}
@@ -0,0 +1,289 @@
+package hillbillies.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of spatial indices which register the entities of a world per cube.
+ * Each cube is identified by its index in the world, which is calculated as
+ * x + nbX*(y + nbY*z), so that looking up the entities in one cube takes
+ * constant time instead of scanning all the entities of the world.
+ *
+ * @invar	Each registered entity is registered in exactly one cube.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class SpatialIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Initializes this new spatial index for a world with the given dimensions.
+	 *
+	 * @param	nbX
+	 *				The number of cubes in the x-direction.
+	 * @param	nbY
+	 *				The number of cubes in the y-direction.
+	 * @param	nbZ
+	 *				The number of cubes in the z-direction.
+	 *
+	 * @post	No entity is registered in this new spatial index.
+	 *				| new.getNbEntities() == 0
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	SpatialIndex(int nbX, int nbY, int nbZ) {
+		this.nbX = nbX;
+		this.nbY = nbY;
+		this.nbZ = nbZ;
+		this.cells = new List[(nbX*nbY*nbZ + CHUNK_SIZE - 1) >>> CHUNK_BITS][];
+	}
+
+	/**
+	 * Variables that store the dimensions of the world this index belongs to.
+	 */
+	private final int nbX, nbY, nbZ;
+
+	/**
+	 * A variable that stores, for each chunk of CHUNK_SIZE consecutive cube indices, the entities registered
+	 * in each cube of that chunk. Chunks and cells are created lazily, so that cubes which have never held
+	 * an entity cost nothing, and neither do the chunks around them.
+	 * Only the cells that hold entities are part of the serialized form of this spatial index.
+	 */
+	private transient List<Entity>[][] cells;
+
+	/**
+	 * Symbolic constants denoting the binary logarithm of the number of cubes in a chunk of cells,
+	 * and the number of cubes in a chunk of cells.
+	 */
+	private static final int CHUNK_BITS = 9, CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/**
+	 * Returns the cell of the cube with the given index, or null if no entity has been registered in it.
+	 */
+	private List<Entity> getCell(int cubeIndex) {
+		List<Entity>[] chunk = this.cells[cubeIndex >>> CHUNK_BITS];
+		return (chunk == null) ? null : chunk[cubeIndex & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * Returns the cell of the cube with the given index, after creating it if it does not exist.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private List<Entity> createCell(int cubeIndex, int capacity) {
+		List<Entity>[] chunk = this.cells[cubeIndex >>> CHUNK_BITS];
+		if (chunk == null) {
+			chunk = new List[CHUNK_SIZE];
+			this.cells[cubeIndex >>> CHUNK_BITS] = chunk;
+		}
+		List<Entity> cell = chunk[cubeIndex & (CHUNK_SIZE - 1)];
+		if (cell == null) {
+			cell = new ArrayList<>(capacity);
+			chunk[cubeIndex & (CHUNK_SIZE - 1)] = cell;
+		}
+		return cell;
+	}
+
+	/**
+	 * Returns the number of entities registered in this spatial index.
+	 */
+	@Basic @Raw
+	public int getNbEntities() {
+		return this.nbEntities;
+	}
+
+	/**
+	 * A variable that stores the number of entities registered in this spatial index.
+	 */
+	private int nbEntities = 0;
+
+	/**
+	 * Registers the given entity in the cube with the given index.
+	 * If the entity is already registered in another cube, it is moved.
+	 *
+	 * @param	entity
+	 *				The entity to register.
+	 * @param	cubeIndex
+	 *				The index of the cube the entity occupies.
+	 *
+	 * @post	The given entity is registered in the cube with the given index.
+	 *				| new.getIndexOf(entity) == cubeIndex
+	 */
+	void put(Entity entity, int cubeIndex) {
+		if (entity.indexedCube == cubeIndex)
+			return;
+		if (entity.indexedCube >= 0)
+			this.remove(entity);
+		this.createCell(cubeIndex, 2).add(entity);
+		entity.indexedCube = cubeIndex;
+		this.nbEntities++;
+	}
+
+	/**
+	 * Removes the given entity from this spatial index.
+	 * Nothing happens if the entity is not registered.
+	 *
+	 * @param	entity
+	 *				The entity to remove.
+	 *
+	 * @post	The given entity is no longer registered.
+	 *				| new.getIndexOf(entity) == -1
+	 */
+	void remove(Entity entity) {
+		if (entity.indexedCube < 0)
+			return;
+		List<Entity> cell = this.getCell(entity.indexedCube);
+		// Swap the last element into the removed slot, the order within a cell is irrelevant.
+		int slot = cell.indexOf(entity);
+		int last = cell.size() - 1;
+		cell.set(slot, cell.get(last));
+		cell.remove(last);
+		entity.indexedCube = -1;
+		this.nbEntities--;
+	}
+
+	/**
+	 * Returns the index of the cube in which the given entity is registered,
+	 * or -1 if it is not registered.
+	 *
+	 * @param	entity
+	 *				The entity to look up.
+	 */
+	public int getIndexOf(Entity entity) {
+		return entity.indexedCube;
+	}
+
+	/**
+	 * Returns an entity of the given type registered in the cube with the given index.
+	 *
+	 * @param	cubeIndex
+	 *				The index of the cube to look in.
+	 * @param	type
+	 *				The type of entity to look for.
+	 *
+	 * @return	An entity of the given type in the given cube,
+	 *				or null if no such entity is registered.
+	 */
+	public <T extends Entity> T getAny(int cubeIndex, Class<T> type) {
+		List<Entity> cell = this.getCell(cubeIndex);
+		if (cell == null)
+			return null;
+		for (int i = 0; i < cell.size(); i++) {
+			Entity entity = cell.get(i);
+			if (type.isInstance(entity))
+				return type.cast(entity);
+		}
+		return null;
+	}
+
+	/**
+	 * Adds all entities of the given type registered in the cube with the given index
+	 * to the given collection.
+	 *
+	 * @param	cubeIndex
+	 *				The index of the cube to look in.
+	 * @param	type
+	 *				The type of entity to look for.
+	 * @param	result
+	 *				The collection to add the entities to.
+	 */
+	public <T extends Entity> void collect(int cubeIndex, Class<T> type, Collection<? super T> result) {
+		List<Entity> cell = this.getCell(cubeIndex);
+		if (cell == null)
+			return;
+		for (int i = 0; i < cell.size(); i++) {
+			Entity entity = cell.get(i);
+			if (type.isInstance(entity))
+				result.add(type.cast(entity));
+		}
+	}
+
+	/**
+	 * Adds all entities of the given type registered in a cube which is at most
+	 * the given range away from the given cube to the given collection.
+	 * Cubes outside the world are skipped.
+	 *
+	 * @param	x
+	 *				The x-coordinate of the center cube.
+	 * @param	y
+	 *				The y-coordinate of the center cube.
+	 * @param	z
+	 *				The z-coordinate of the center cube.
+	 * @param	range
+	 *				The maximal number of cubes between the center cube and the
+	 *				cubes to look in, in each direction.
+	 * @param	type
+	 *				The type of entity to look for.
+	 * @param	result
+	 *				The collection to add the entities to.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given range is negative.
+	 *				| range < 0
+	 */
+	public <T extends Entity> void collectInRange(int x, int y, int z, int range, Class<T> type,
+			Collection<? super T> result) throws IllegalArgumentException {
+		if (range < 0)
+			throw new IllegalArgumentException(Integer.toString(range));
+		int minX = Math.max(x-range, 0), maxX = Math.min(x+range, this.nbX-1);
+		int minY = Math.max(y-range, 0), maxY = Math.min(y+range, this.nbY-1);
+		int minZ = Math.max(z-range, 0), maxZ = Math.min(z+range, this.nbZ-1);
+		for (int cz = minZ; cz <= maxZ; cz++)
+			for (int cy = minY; cy <= maxY; cy++)
+				for (int cx = minX; cx <= maxX; cx++)
+					this.collect(cx + this.nbX*(cy + this.nbY*cz), type, result);
+	}
+
+	/**
+	 * Writes the cells of this spatial index that hold entities to the given stream, each as its index
+	 *	followed by its number of entities and its entities.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		int nbCells = 0;
+		for (List<Entity>[] chunk: this.cells)
+			if (chunk != null)
+				for (List<Entity> cell: chunk)
+					if ( (cell != null) && ( ! cell.isEmpty()) )
+						nbCells++;
+		out.writeInt(nbCells);
+		for (int index = 0; index < nbX*nbY*nbZ; index++) {
+			if (this.cells[index >>> CHUNK_BITS] == null) {
+				// Skip to the last cube of this chunk.
+				index |= CHUNK_SIZE - 1;
+				continue;
+			}
+			List<Entity> cell = this.getCell(index);
+			if ( (cell == null) || cell.isEmpty() )
+				continue;
+			out.writeInt(index);
+			out.writeInt(cell.size());
+			for (Entity entity: cell)
+				out.writeObject(entity);
+		}
+	}
+
+	/**
+	 * Reads the cells of this spatial index that hold entities from the given stream.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.cells = new List[(nbX*nbY*nbZ + CHUNK_SIZE - 1) >>> CHUNK_BITS][];
+		for (int nbCells = in.readInt(); nbCells > 0; nbCells--) {
+			int index = in.readInt();
+			int size = in.readInt();
+			List<Entity> cell = this.createCell(index, Math.max(size, 2));
+			for (int i = 0; i < size; i++)
+				cell.add((Entity) in.readObject());
+		}
+	}
+}
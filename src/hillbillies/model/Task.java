@@ -1,5 +1,6 @@
 package hillbillies.model;
 
+import java.io.Serializable;
 import java.util.*;
 import be.kuleuven.cs.som.annotate.*;
 import hillbillies.expressions.Expression;
@@ -30,7 +31,9 @@ import hillbillies.statements.expressionType.actions.ActionStatement;
  * 
  * @note	Must be documented both formally and informally.
  */
-public class Task implements Comparable<Task> {
+public class Task implements Comparable<Task>, Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initializes this task with the given name, priority, activities and selected cube 
@@ -0,0 +1,397 @@
+package hillbillies.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Raw;
+import be.kuleuven.cs.som.annotate.Value;
+import hillbillies.part2.listener.TerrainChangeListener;
+
+/**
+ * A class of terrains in the binary world format, which can be written to and loaded from files
+ * much faster than the text format of .wrld files, and take much less space.
+ *
+ * A binary world file consists of a header and a payload, with all numbers in big-endian order:
+ *	<pre>
+ *	offset	size	contents
+ *	0		4		the magic number MAGIC ("HBWD")
+ *	4		4		the version of the format, VERSION
+ *	8		12		the number of cubes in the x-, y- and z-direction
+ *	20		4		the length of the payload in bytes
+ *	24		4		the CRC-32 checksum of the bytes 0 to 24 followed by the payload
+ *	28		...		the payload
+ *	</pre>
+ * The payload lists the terrain types of the cubes in order of their index in a world, which is
+ * x + nbX * (y + nbY * z), as runs of equal types. Each run is a byte with the terrain type,
+ * followed by the length of the run as an unsigned variable-length integer with 7 bits per byte,
+ * least significant group first, where the highest bit of a byte marks that more bytes follow.
+ *
+ * Files are loaded by mapping them into memory, so that the payload is decoded straight from the
+ * file cache into the terrain types.
+ *
+ * @invar	The dimensions of each terrain file are valid dimensions for a world.
+ *				| World.isValidMaximumXValue(getNbX()) && World.isValidMaximumYValue(getNbY()) &&
+ *				|	World.isValidMaximumZValue(getNbZ())
+ * @invar	Each terrain file has a valid terrain type for each of its cubes.
+ *				| getNbX() * getNbY() * getNbZ() == getNbCubes() &&
+ *				|	for each index in 0..getNbCubes()-1: Cube.isValidTerrainTypeIndex(getTerrainType(index))
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+@Value
+public final class TerrainFile {
+
+	/**
+	 * Initializes this new terrain file with the given dimensions and terrain types.
+	 *
+	 * @param	nbX
+	 *				The number of cubes in the x-direction.
+	 * @param	nbY
+	 *				The number of cubes in the y-direction.
+	 * @param	nbZ
+	 *				The number of cubes in the z-direction.
+	 * @param	terrainTypes
+	 *				The terrain type of each cube, in order of the index of the cube in a world.
+	 *
+	 * @post	| new.getNbX() == nbX && new.getNbY() == nbY && new.getNbZ() == nbZ
+	 * @post	| for each index in 0..terrainTypes.length-1:
+	 *				|	new.getTerrainType(index) == terrainTypes[index]
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given dimensions are not valid for a world, the given terrain types do not have
+	 *				one element for each cube, or one of them is not valid.
+	 */
+	public TerrainFile(int nbX, int nbY, int nbZ, byte[] terrainTypes) throws IllegalArgumentException {
+		this(nbX, nbY, nbZ, checkTerrainTypes(nbX, nbY, nbZ, terrainTypes), true);
+	}
+
+	/**
+	 * Initializes this new terrain file with the given dimensions and terrain types, which have been checked
+	 * already.
+	 *
+	 * @param	copy
+	 *				Whether this new terrain file stores a copy of the given terrain types, rather than
+	 *				the given array itself.
+	 */
+	private TerrainFile(int nbX, int nbY, int nbZ, byte[] terrainTypes, boolean copy) {
+		this.nbX = nbX;
+		this.nbY = nbY;
+		this.nbZ = nbZ;
+		this.terrainTypes = copy ? terrainTypes.clone() : terrainTypes;
+	}
+
+	/**
+	 * Returns a new terrain file with the given dimensions that stores the given terrain types without
+	 * copying them. The terrain types must have been checked already, and may not be changed afterwards.
+	 */
+	private static TerrainFile wrap(int nbX, int nbY, int nbZ, byte[] terrainTypes) {
+		return new TerrainFile(nbX, nbY, nbZ, terrainTypes, false);
+	}
+
+	/**
+	 * Returns the given terrain types if they are valid for a terrain with the given dimensions.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given dimensions or terrain types are not valid.
+	 */
+	private static byte[] checkTerrainTypes(int nbX, int nbY, int nbZ, byte[] terrainTypes) throws IllegalArgumentException {
+		if ( (! World.isValidMaximumXValue(nbX)) || (! World.isValidMaximumYValue(nbY)) || (! World.isValidMaximumZValue(nbZ)) )
+			throw new IllegalArgumentException();
+		if (terrainTypes.length != (long) nbX * nbY * nbZ)
+			throw new IllegalArgumentException();
+		for (byte type: terrainTypes)
+			if ( ! Cube.isValidTerrainTypeIndex(type))
+				throw new IllegalArgumentException();
+		return terrainTypes;
+	}
+
+	/**
+	 * Returns the number of cubes of this terrain file in the x-direction.
+	 */
+	@Basic @Raw @Immutable
+	public int getNbX() {
+		return this.nbX;
+	}
+
+	/**
+	 * Returns the number of cubes of this terrain file in the y-direction.
+	 */
+	@Basic @Raw @Immutable
+	public int getNbY() {
+		return this.nbY;
+	}
+
+	/**
+	 * Returns the number of cubes of this terrain file in the z-direction.
+	 */
+	@Basic @Raw @Immutable
+	public int getNbZ() {
+		return this.nbZ;
+	}
+
+	/**
+	 * Returns the number of cubes of this terrain file.
+	 *
+	 * @return	| result == getNbX() * getNbY() * getNbZ()
+	 */
+	public int getNbCubes() {
+		return this.terrainTypes.length;
+	}
+
+	/**
+	 * Returns the terrain type of the cube with the given index.
+	 *
+	 * @throws	IndexOutOfBoundsException
+	 *				| (index < 0) || (index >= getNbCubes())
+	 */
+	@Basic @Raw @Immutable
+	public byte getTerrainType(int index) throws IndexOutOfBoundsException {
+		return this.terrainTypes[index];
+	}
+
+	/**
+	 * Returns a copy of the terrain types of this terrain file, in order of the index of their cube.
+	 *
+	 * @return	| for each index in 0..getNbCubes()-1:
+	 *				|	result[index] == getTerrainType(index)
+	 */
+	public byte[] getTerrainTypes() {
+		return this.terrainTypes.clone();
+	}
+
+	/**
+	 * Variables that store the dimensions and the terrain types of this terrain file.
+	 */
+	private final int nbX, nbY, nbZ;
+	private final byte[] terrainTypes;
+
+	/**
+	 * Returns a new world with the terrain of this terrain file and the given seed.
+	 *
+	 * @effect	| result == new World(getNbX(), getNbY(), getNbZ(), getTerrainTypes(), modelListener, seed)
+	 */
+	public World createWorld(TerrainChangeListener modelListener, long seed) {
+		return new World(this.getNbX(), this.getNbY(), this.getNbZ(), this.terrainTypes, modelListener, seed);
+	}
+
+	/**
+	 * Returns a new world with the terrain of this terrain file and a random seed.
+	 *
+	 * @effect	| result == new World(getNbX(), getNbY(), getNbZ(), getTerrainTypes(), modelListener)
+	 */
+	public World createWorld(TerrainChangeListener modelListener) {
+		return new World(this.getNbX(), this.getNbY(), this.getNbZ(), this.terrainTypes, modelListener);
+	}
+
+	/**
+	 * Checks whether this terrain file is equal to the given object.
+	 *
+	 * @return	| result == (other instanceof TerrainFile) && (other.getNbX() == getNbX()) && (other.getNbY() == getNbY()) &&
+	 *				|	(other.getNbZ() == getNbZ()) && (for each index: other.getTerrainType(index) == getTerrainType(index))
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if ( ! (other instanceof TerrainFile))
+			return false;
+		TerrainFile that = (TerrainFile) other;
+		return (this.nbX == that.nbX) && (this.nbY == that.nbY) && (this.nbZ == that.nbZ) &&
+				Arrays.equals(this.terrainTypes, that.terrainTypes);
+	}
+
+	/**
+	 * Returns the hash code of this terrain file.
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.terrainTypes) ^ (31 * (this.nbX + 31 * (this.nbY + 31 * this.nbZ)));
+	}
+
+	/**
+	 * Returns a textual representation of this terrain file.
+	 */
+	@Override
+	public String toString() {
+		return "TerrainFile (" + this.nbX + "x" + this.nbY + "x" + this.nbZ + ")";
+	}
+
+	/**
+	 * A symbolic constant denoting the extension of binary world files.
+	 */
+	public static final String EXTENSION = ".wrldb";
+
+	/**
+	 * A symbolic constant denoting the magic number at the start of binary world files.
+	 */
+	public static final int MAGIC = ('H' << 24) | ('B' << 16) | ('W' << 8) | 'D';
+
+	/**
+	 * A symbolic constant denoting the version of the binary world format written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * A symbolic constant denoting the length of the header of a binary world file in bytes.
+	 */
+	private static final int HEADER_LENGTH = 28;
+
+	/**
+	 * A symbolic constant denoting the length of the part of the header covered by the checksum.
+	 */
+	private static final int CHECKED_HEADER_LENGTH = 24;
+
+	/**
+	 * Writes this terrain file to the file with the given path, replacing any existing file.
+	 *
+	 * @param	path
+	 *				The path of the file to write.
+	 *
+	 * @throws	IOException
+	 *				The file could not be written.
+	 */
+	public void write(Path path) throws IOException {
+		ByteBuffer buffer = this.encode();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Returns a buffer with the binary world file of this terrain file, between its position and limit.
+	 */
+	ByteBuffer encode() {
+		byte[] types = this.terrainTypes;
+		// Each run takes at most one byte for its type and five for its length.
+		ByteBuffer payload = ByteBuffer.allocate(6 * countRuns(types));
+		int start = 0;
+		while (start < types.length) {
+			int end = start + 1;
+			while ( (end < types.length) && (types[end] == types[start]) )
+				end++;
+			payload.put(types[start]);
+			for (int length = end - start; ; length >>>= 7) {
+				if (length < 0x80) {
+					payload.put((byte) length);
+					break;
+				}
+				payload.put((byte) ((length & 0x7F) | 0x80));
+			}
+			start = end;
+		}
+		payload.flip();
+
+		ByteBuffer result = ByteBuffer.allocate(HEADER_LENGTH + payload.remaining());
+		result.putInt(MAGIC).putInt(VERSION).putInt(this.nbX).putInt(this.nbY).putInt(this.nbZ).putInt(payload.remaining());
+		CRC32 checksum = new CRC32();
+		checksum.update(result.array(), 0, CHECKED_HEADER_LENGTH);
+		checksum.update(payload.array(), 0, payload.remaining());
+		result.putInt((int) checksum.getValue());
+		result.put(payload);
+		result.flip();
+		return result;
+	}
+
+	/**
+	 * Returns the number of runs of equal terrain types in the given terrain types.
+	 */
+	private static int countRuns(byte[] types) {
+		int result = (types.length == 0) ? 0 : 1;
+		for (int i = 1; i < types.length; i++)
+			if (types[i] != types[i - 1])
+				result++;
+		return result;
+	}
+
+	/**
+	 * Returns the terrain file in the binary world file with the given path.
+	 *
+	 * @param	path
+	 *				The path of the file to load.
+	 *
+	 * @throws	IOException
+	 *				The file could not be read, or it is not a valid binary world file of a supported version.
+	 */
+	public static TerrainFile read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return decode(buffer);
+		}
+	}
+
+	/**
+	 * Returns the terrain file in the binary world file between the position and the limit of the given buffer.
+	 *
+	 * @throws	IOException
+	 *				The buffer does not hold a valid binary world file of a supported version.
+	 */
+	static TerrainFile decode(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < HEADER_LENGTH)
+			throw new EOFException("Unexpected end of file; no header");
+		int headerStart = buffer.position();
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("Not a binary world file");
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported version " + version);
+		int nbX = buffer.getInt(), nbY = buffer.getInt(), nbZ = buffer.getInt();
+		int payloadLength = buffer.getInt();
+		int expectedChecksum = buffer.getInt();
+		if ( (! World.isValidMaximumXValue(nbX)) || (! World.isValidMaximumYValue(nbY)) || (! World.isValidMaximumZValue(nbZ))
+				|| ((long) nbX * nbY * nbZ > Integer.MAX_VALUE) )
+			throw new IOException("Invalid dimensions " + nbX + "x" + nbY + "x" + nbZ);
+		if ( (payloadLength < 0) || (payloadLength > buffer.remaining()) )
+			throw new EOFException("Unexpected end of file; expected " + payloadLength + " bytes of terrain");
+
+		CRC32 checksum = new CRC32();
+		ByteBuffer header = buffer.duplicate();
+		header.position(headerStart).limit(headerStart + CHECKED_HEADER_LENGTH);
+		checksum.update(header);
+		ByteBuffer payload = buffer.slice();
+		payload.limit(payloadLength);
+		checksum.update(payload.duplicate());
+		if ((int) checksum.getValue() != expectedChecksum)
+			throw new IOException("Checksum mismatch");
+
+		// The payload is copied in bulk, since reading a mapped buffer byte by byte is much slower.
+		byte[] runs = new byte[payloadLength];
+		payload.get(runs);
+		byte[] types = new byte[nbX * nbY * nbZ];
+		int index = 0;
+		int position = 0;
+		while (position < runs.length) {
+			byte type = runs[position++];
+			if ( ! Cube.isValidTerrainTypeIndex(type))
+				throw new IOException("Unknown type: " + type);
+			int length = 0;
+			for (int shift = 0; ; shift += 7) {
+				if (position == runs.length)
+					throw new EOFException("Unexpected end of terrain");
+				if (shift > 28)
+					throw new IOException("Invalid run length");
+				byte next = runs[position++];
+				length |= (next & 0x7F) << shift;
+				if (next >= 0)
+					break;
+			}
+			if ( (length <= 0) || (length > types.length - index) )
+				throw new IOException("Invalid run length");
+			Arrays.fill(types, index, index + length, type);
+			index += length;
+		}
+		if (index != types.length)
+			throw new EOFException("Unexpected end of terrain; no data for " + (types.length - index) + " cubes");
+		buffer.position(buffer.position() + payloadLength);
+		return wrap(nbX, nbY, nbZ, types);
+	}
+}
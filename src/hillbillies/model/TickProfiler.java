@@ -0,0 +1,375 @@
+package hillbillies.model;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of tick profilers, which measure where the time of advancing a world goes.
+ *
+ * A profiler records, for each call of World.advanceTime, the time spent in each phase of the tick,
+ * and for each unit the time spent in its current activity. It also counts the searches of the
+ * PathFinder with the number of cubes they expanded, the cave-ins with the number of cubes that
+ * collapsed, and the task statements executed by units.
+ *
+ * A profiler is disabled initially. While it is disabled, the world and its units only check a
+ * boolean field and do not read the clock. The metrics can be queried at any time, and can also be
+ * printed as a single line every given number of ticks.
+ *
+ * @invar	The log interval of each profiler is not negative.
+ *				| getLogInterval() >= 0
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class TickProfiler {
+
+	/**
+	 * An enumeration of the phases of a tick of a world.
+	 */
+	public enum Phase {
+		/** Collapsing the cubes that are no longer connected to the border. */
+		CAVE_IN,
+		/** Searching in advance the paths that moving units will need. */
+		PATH_PREFETCH,
+		/** Advancing the units, including those woken during the tick, and letting them fall asleep. */
+		UNITS,
+		/** Advancing the logs and boulders, which only move when they fall, and letting them fall asleep. */
+		ITEMS;
+	}
+
+	/**
+	 * Initializes this new profiler.
+	 *
+	 * @post	| ! new.isEnabled()
+	 * @post	| new.getNbTicks() == 0
+	 * @post	| new.getLogInterval() == 0
+	 * @post	| new.getLogStream() == System.out
+	 */
+	TickProfiler() {
+	}
+
+	// =================================================================================================
+	// Configuration
+	// =================================================================================================
+
+	/**
+	 * Returns whether this profiler records metrics.
+	 */
+	@Basic @Raw
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Sets whether this profiler records metrics.
+	 *
+	 * @param	enabled
+	 *				Whether metrics are recorded.
+	 *
+	 * @post	| new.isEnabled() == enabled
+	 *
+	 * @note	The metrics recorded so far are kept; use reset() to forget them.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * A variable that stores whether this profiler records metrics.
+	 */
+	private volatile boolean enabled = false;
+
+	/**
+	 * Returns the number of ticks between two log lines of this profiler, or 0 if it does not log.
+	 */
+	@Basic @Raw
+	public int getLogInterval() {
+		return this.logInterval;
+	}
+
+	/**
+	 * Sets the number of ticks between two log lines of this profiler to the given number.
+	 *
+	 * @param	logInterval
+	 *				The new number of ticks, or 0 to stop logging.
+	 *
+	 * @post	| new.getLogInterval() == logInterval
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| logInterval < 0
+	 */
+	public void setLogInterval(int logInterval) throws IllegalArgumentException {
+		if (logInterval < 0)
+			throw new IllegalArgumentException();
+		this.logInterval = logInterval;
+	}
+
+	/**
+	 * A variable that stores the number of ticks between two log lines of this profiler.
+	 */
+	private int logInterval = 0;
+
+	/**
+	 * Returns the stream this profiler prints its log lines to.
+	 */
+	@Basic @Raw
+	public PrintStream getLogStream() {
+		return this.logStream;
+	}
+
+	/**
+	 * Sets the stream this profiler prints its log lines to.
+	 *
+	 * @param	logStream
+	 *				The new stream.
+	 *
+	 * @post	| new.getLogStream() == logStream
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| logStream == null
+	 */
+	public void setLogStream(PrintStream logStream) throws IllegalArgumentException {
+		if (logStream == null)
+			throw new IllegalArgumentException();
+		this.logStream = logStream;
+	}
+
+	/**
+	 * A variable that stores the stream this profiler prints its log lines to.
+	 */
+	private PrintStream logStream = System.out;
+
+	/**
+	 * Forgets all metrics recorded by this profiler.
+	 *
+	 * @post	All metrics are zero.
+	 *				| new.getNbTicks() == 0 && new.getNbSearches() == 0 && ...
+	 */
+	public void reset() {
+		this.nbTicks = 0;
+		for (int i = 0; i < this.phaseTimes.length; i++)
+			this.phaseTimes[i] = 0;
+		for (int i = 0; i < this.activityTimes.length; i++) {
+			this.activityTimes[i] = 0;
+			this.activityUpdates[i] = 0;
+		}
+		this.nbSearches.set(0);
+		this.nbExpandedNodes.set(0);
+		this.searchTime.set(0);
+		this.nbCaveIns = 0;
+		this.nbCollapsedCubes = 0;
+		this.largestCaveIn = 0;
+		this.nbStatements = 0;
+	}
+
+	// =================================================================================================
+	// Metrics
+	// =================================================================================================
+
+	/**
+	 * Returns the number of ticks recorded by this profiler.
+	 */
+	@Basic @Raw
+	public long getNbTicks() {
+		return this.nbTicks;
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, spent in the given phase.
+	 */
+	@Basic @Raw
+	public long getPhaseTime(Phase phase) {
+		return this.phaseTimes[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, spent in all phases.
+	 *
+	 * @return	| result == sum({getPhaseTime(phase) | phase in Phase.values()})
+	 */
+	public long getTotalTime() {
+		long result = 0;
+		for (long time: this.phaseTimes)
+			result += time;
+		return result;
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, units spent advancing in the given activity.
+	 * The activity NOTHING stands for the default behavior of units, including the execution of their tasks.
+	 */
+	@Basic @Raw
+	public long getActivityTime(Activity activity) {
+		return this.activityTimes[activity.ordinal()];
+	}
+
+	/**
+	 * Returns the number of times a unit was advanced in the given activity.
+	 */
+	@Basic @Raw
+	public long getNbActivityUpdates(Activity activity) {
+		return this.activityUpdates[activity.ordinal()];
+	}
+
+	/**
+	 * Returns the number of searches of the PathFinder.
+	 */
+	public long getNbSearches() {
+		return this.nbSearches.get();
+	}
+
+	/**
+	 * Returns the total number of cubes expanded by the searches of the PathFinder.
+	 */
+	public long getNbExpandedNodes() {
+		return this.nbExpandedNodes.get();
+	}
+
+	/**
+	 * Returns the total time, in nanoseconds, spent in searches of the PathFinder.
+	 *
+	 * @note	Searches run during several phases and possibly in parallel, so this time overlaps with the phase times.
+	 */
+	public long getSearchTime() {
+		return this.searchTime.get();
+	}
+
+	/**
+	 * Returns the number of cave-ins, which are the ticks in which cubes collapsed.
+	 */
+	@Basic @Raw
+	public long getNbCaveIns() {
+		return this.nbCaveIns;
+	}
+
+	/**
+	 * Returns the total number of cubes that collapsed.
+	 */
+	@Basic @Raw
+	public long getNbCollapsedCubes() {
+		return this.nbCollapsedCubes;
+	}
+
+	/**
+	 * Returns the largest number of cubes that collapsed in a single cave-in.
+	 */
+	@Basic @Raw
+	public int getLargestCaveIn() {
+		return this.largestCaveIn;
+	}
+
+	/**
+	 * Returns the number of task statements executed by units.
+	 */
+	@Basic @Raw
+	public long getNbStatements() {
+		return this.nbStatements;
+	}
+
+	/**
+	 * Variables that store the metrics of this profiler.
+	 */
+	private long nbTicks = 0;
+	private final long[] phaseTimes = new long[Phase.values().length];
+	private final long[] activityTimes = new long[Activity.values().length];
+	private final long[] activityUpdates = new long[Activity.values().length];
+	private long nbCaveIns = 0, nbCollapsedCubes = 0, nbStatements = 0;
+	private int largestCaveIn = 0;
+
+	/**
+	 * Variables that store the metrics of the searches, which may run in parallel.
+	 */
+	private final AtomicLong nbSearches = new AtomicLong(), nbExpandedNodes = new AtomicLong(), searchTime = new AtomicLong();
+
+	// =================================================================================================
+	// Recording
+	// =================================================================================================
+
+	/**
+	 * Adds the time elapsed since the given start time to the given phase, and returns the current time.
+	 *
+	 * @param	phase
+	 *				The phase that ends.
+	 * @param	start
+	 *				The value of System.nanoTime() at the start of the phase.
+	 */
+	long endPhase(Phase phase, long start) {
+		long now = System.nanoTime();
+		this.phaseTimes[phase.ordinal()] += now - start;
+		return now;
+	}
+
+	/**
+	 * Adds the given time to the given phase.
+	 */
+	void addPhaseTime(Phase phase, long time) {
+		this.phaseTimes[phase.ordinal()] += time;
+	}
+
+	/**
+	 * Records the end of a tick, and prints a log line if the log interval has passed.
+	 */
+	void endTick() {
+		this.nbTicks++;
+		if ( (this.getLogInterval() > 0) && (this.nbTicks % this.getLogInterval() == 0) )
+			this.getLogStream().println(this.toString());
+	}
+
+	/**
+	 * Adds the given time to the time units spent in the given activity.
+	 */
+	void addActivityTime(Activity activity, long time) {
+		this.activityTimes[activity.ordinal()] += time;
+		this.activityUpdates[activity.ordinal()]++;
+	}
+
+	/**
+	 * Records a search of the PathFinder that expanded the given number of cubes and took the given time.
+	 */
+	void addSearch(int nbExpandedNodes, long time) {
+		this.nbSearches.incrementAndGet();
+		this.nbExpandedNodes.addAndGet(nbExpandedNodes);
+		this.searchTime.addAndGet(time);
+	}
+
+	/**
+	 * Records a cave-in in which the given number of cubes collapsed.
+	 */
+	void addCaveIn(int nbCubes) {
+		this.nbCaveIns++;
+		this.nbCollapsedCubes += nbCubes;
+		this.largestCaveIn = Math.max(this.largestCaveIn, nbCubes);
+	}
+
+	/**
+	 * Records the execution of the given number of task statements.
+	 */
+	void addStatements(int nbStatements) {
+		this.nbStatements += nbStatements;
+	}
+
+	/**
+	 * Returns a single line with the average time per tick of each phase and activity and the other metrics.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		long ticks = Math.max(this.getNbTicks(), 1);
+		result.append(String.format(Locale.ROOT, "ticks=%d avg=%.3fms", this.getNbTicks(), this.getTotalTime() / 1e6 / ticks));
+		for (Phase phase: Phase.values())
+			result.append(String.format(Locale.ROOT, " %s=%.3fms", phase.name().toLowerCase(Locale.ROOT),
+					this.getPhaseTime(phase) / 1e6 / ticks));
+		for (Activity activity: Activity.values())
+			result.append(String.format(Locale.ROOT, " %s=%.3fms",
+					(activity == Activity.NOTHING) ? "default" : activity.name().toLowerCase(Locale.ROOT),
+					this.getActivityTime(activity) / 1e6 / ticks));
+		result.append(String.format(Locale.ROOT, " searches=%d expanded=%d search=%.3fms caveins=%d collapsed=%d largest=%d statements=%d",
+				this.getNbSearches(), this.getNbExpandedNodes(), this.getSearchTime() / 1e6 / ticks,
+				this.getNbCaveIns(), this.getNbCollapsedCubes(), this.getLargestCaveIn(), this.getNbStatements()));
+		return result.toString();
+	}
+}
@@ -0,0 +1,388 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+
+/**
+ * A class of hierarchical timer wheels, which call back timers when the time of a world passes their fire time.
+ *
+ * The time is divided in ticks of getResolution() seconds. A wheel has NB_LEVELS levels of NB_SLOTS slots.
+ * A slot of the lowest level holds the timers of a single tick, a slot of each next level holds the timers of
+ * NB_SLOTS times as many ticks. A timer is kept in the lowest level whose slots cover its tick, counted from the
+ * current tick. Whenever the current tick passes the end of a slot of a higher level, the timers in the next slot
+ * of that level are spread over the lower levels. Scheduling and cancelling a timer therefore take constant time,
+ * and advancing the wheel only visits the timers that fire and the slots it passes. Timers beyond the
+ * highest level are kept in an overflow list, which is spread out when the highest level wraps around.
+ *
+ * The timers that fire during a single advance are called back in order of their fire time, and timers with
+ * the same fire time in the order in which they were scheduled.
+ *
+ * @invar	The resolution of each timer wheel is positive.
+ *				| getResolution() > 0
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class TimerWheel {
+
+	/**
+	 * Initializes this new timer wheel with the given resolution.
+	 *
+	 * @param	resolution
+	 *				The length of a tick of the new timer wheel.
+	 *
+	 * @post	| new.getResolution() == resolution
+	 * @post	| new.getNbTimers() == 0
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| ! (resolution > 0)
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TimerWheel(double resolution) throws IllegalArgumentException {
+		if ( ! (resolution > 0))
+			throw new IllegalArgumentException();
+		this.resolution = resolution;
+		this.slots = new ArrayList[NB_LEVELS][NB_SLOTS];
+		for (int level = 0; level < NB_LEVELS; level++)
+			for (int slot = 0; slot < NB_SLOTS; slot++)
+				this.slots[level][slot] = new ArrayList<>();
+	}
+
+	/**
+	 * Initializes this new timer wheel with the default resolution.
+	 *
+	 * @effect	| this(DEFAULT_RESOLUTION)
+	 */
+	public TimerWheel() {
+		this(DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * A symbolic constant denoting the default length of a tick.
+	 */
+	public static final double DEFAULT_RESOLUTION = 0.01;
+
+	/**
+	 * A symbolic constant denoting the number of bits of a tick that select a slot in a level.
+	 */
+	private static final int SLOT_BITS = 6;
+
+	/**
+	 * A symbolic constant denoting the number of slots in each level.
+	 */
+	public static final int NB_SLOTS = 1 << SLOT_BITS;
+
+	/**
+	 * A symbolic constant denoting the number of levels.
+	 */
+	public static final int NB_LEVELS = 4;
+
+	/**
+	 * Returns the length of a tick of this timer wheel.
+	 */
+	@Basic @Raw
+	public double getResolution() {
+		return this.resolution;
+	}
+
+	/**
+	 * A variable that stores the length of a tick of this timer wheel.
+	 */
+	private final double resolution;
+
+	/**
+	 * Returns the number of timers of this timer wheel that have neither fired nor been cancelled.
+	 */
+	@Basic @Raw
+	public int getNbTimers() {
+		return this.nbTimers;
+	}
+
+	/**
+	 * A variable that stores the number of timers that have neither fired nor been cancelled.
+	 */
+	private int nbTimers = 0;
+
+	/**
+	 * A class of timers, which are scheduled in a timer wheel to call back a given action.
+	 */
+	public static final class Timer {
+
+		private Timer(double fireTime, long sequence, Runnable callback) {
+			this.fireTime = fireTime;
+			this.sequence = sequence;
+			this.callback = callback;
+		}
+
+		/**
+		 * Returns the time at which this timer fires.
+		 */
+		@Basic @Raw
+		public double getFireTime() {
+			return this.fireTime;
+		}
+
+		/**
+		 * Returns whether this timer is still waiting to fire.
+		 */
+		@Basic @Raw
+		public boolean isPending() {
+			return this.pending;
+		}
+
+		/**
+		 * Returns the number of timers scheduled in the wheel of this timer before this timer.
+		 */
+		@Basic @Raw
+		long getSequence() {
+			return this.sequence;
+		}
+
+		private final double fireTime;
+		private final long sequence;
+		private final Runnable callback;
+		private boolean pending = true;
+		private TimerWheel wheel;
+	}
+
+	/**
+	 * Schedules the given callback to be called when this timer wheel is advanced past the given time.
+	 *
+	 * @param	fireTime
+	 *				The time at which the callback is due.
+	 * @param	callback
+	 *				The action to call back.
+	 *
+	 * @return	A new pending timer with the given fire time.
+	 *				| result.isPending() && (result.getFireTime() == fireTime)
+	 * @post	| new.getNbTimers() == getNbTimers() + 1
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given fire time is not a number or the given callback is not effective.
+	 *				| Double.isNaN(fireTime) || (callback == null)
+	 */
+	public Timer schedule(double fireTime, Runnable callback) throws IllegalArgumentException {
+		if (Double.isNaN(fireTime) || (callback == null))
+			throw new IllegalArgumentException();
+		Timer timer = new Timer(fireTime, this.nextSequence++, callback);
+		timer.wheel = this;
+		this.place(timer);
+		this.nbTimers++;
+		return timer;
+	}
+
+	/**
+	 * A variable that stores the sequence number of the next timer.
+	 */
+	private long nextSequence = 0;
+
+	/**
+	 * Cancels the given timer, so that it never fires.
+	 *
+	 * @param	timer
+	 *				The timer to cancel.
+	 *
+	 * @post	| ! timer.isPending()
+	 * @post	If the given timer was pending, this timer wheel has one timer less.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given timer was not scheduled in this timer wheel.
+	 *				| timer.wheel != this
+	 *
+	 * @note	A cancelled timer is only removed from its slot when the wheel passes that slot.
+	 */
+	public void cancel(Timer timer) throws IllegalArgumentException {
+		if (timer.wheel != this)
+			throw new IllegalArgumentException();
+		if (timer.pending) {
+			timer.pending = false;
+			this.nbTimers--;
+		}
+	}
+
+	/**
+	 * Returns the earliest fire time of the pending timers of this timer wheel, or positive infinity if there are none.
+	 *
+	 * @note	This method visits the slots of the lowest occupied level, so it is meant for occasional use.
+	 */
+	public double getNextFireTime() {
+		double result = Double.POSITIVE_INFINITY;
+		for (int level = 0; level < NB_LEVELS; level++) {
+			for (List<Timer> slot: this.slots[level])
+				for (Timer timer: slot)
+					if (timer.pending)
+						result = Math.min(result, timer.fireTime);
+			// The timers in higher levels are due later than any timer in this level.
+			if (result < Double.POSITIVE_INFINITY)
+				return result;
+		}
+		for (Timer timer: this.overflow)
+			if (timer.pending)
+				result = Math.min(result, timer.fireTime);
+		return result;
+	}
+
+	/**
+	 * Advances this timer wheel up to the given time, calling back all pending timers whose fire time is not after it.
+	 *
+	 * @param	time
+	 *				The time to advance to.
+	 *
+	 * @effect	The callback of each pending timer with a fire time not after the given time is called,
+	 *				in order of fire time and then of scheduling.
+	 * @post	| for each timer that fired:
+	 *				|	! timer.isPending()
+	 *
+	 * @note	Timers scheduled by the callbacks at a time not after the given time fire in the next advance.
+	 */
+	public void advance(double time) {
+		long target = this.getTick(time);
+		if ( (this.nbTimers == 0) && (target - this.currentTick > NB_SLOTS) ) {
+			// No timer can fire, so the slots in between need not be visited when the wheel jumps ahead.
+			this.clear();
+			this.currentTick = target;
+			return;
+		}
+		List<Timer> due = this.dueBuffer;
+		while (true) {
+			List<Timer> slot = this.slots[0][(int) (this.currentTick & SLOT_MASK)];
+			for (int i = slot.size() - 1; i >= 0; i--) {
+				Timer timer = slot.get(i);
+				if ( ! timer.pending)
+					removeAt(slot, i);
+				else if (timer.fireTime <= time) {
+					removeAt(slot, i);
+					due.add(timer);
+				}
+			}
+			// The slot of the target tick may hold timers that are due later in that tick.
+			if (this.currentTick >= target)
+				break;
+			this.currentTick++;
+			this.cascade();
+		}
+		if (due.isEmpty())
+			return;
+		due.sort(FIRE_ORDER);
+		try {
+			for (Timer timer: due) {
+				// A callback may cancel a timer that is due in the same advance.
+				if (timer.pending) {
+					timer.pending = false;
+					this.nbTimers--;
+					timer.callback.run();
+				}
+			}
+		}
+		finally {
+			due.clear();
+		}
+	}
+
+	/**
+	 * A variable that stores the list which is reused to collect the timers that fire.
+	 */
+	private final List<Timer> dueBuffer = new ArrayList<>();
+
+	/**
+	 * A symbolic constant denoting the order in which due timers fire.
+	 */
+	private static final Comparator<Timer> FIRE_ORDER =
+			Comparator.comparingDouble((Timer timer) -> timer.fireTime).thenComparingLong(timer -> timer.sequence);
+
+	/**
+	 * Returns the tick that holds the given time.
+	 */
+	private long getTick(double time) {
+		double tick = Math.floor(time / this.getResolution());
+		if (tick >= Long.MAX_VALUE)
+			return Long.MAX_VALUE;
+		return Math.max((long) tick, 0);
+	}
+
+	/**
+	 * Puts the given timer in the slot that covers its tick, or in the overflow list.
+	 * Timers that are already due are put in the slot of the current tick.
+	 */
+	private void place(Timer timer) {
+		long tick = Math.max(this.getTick(timer.fireTime), this.currentTick);
+		long difference = tick ^ this.currentTick;
+		for (int level = 0; level < NB_LEVELS; level++) {
+			if ( (difference >>> (SLOT_BITS * (level + 1))) == 0 ) {
+				this.slots[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)].add(timer);
+				return;
+			}
+		}
+		this.overflow.add(timer);
+	}
+
+	/**
+	 * Spreads the timers of the higher levels over the lower levels, after the current tick has moved on.
+	 * A level is spread out when all lower levels have wrapped around.
+	 */
+	private void cascade() {
+		for (int level = 1; level < NB_LEVELS; level++) {
+			if ( ((this.currentTick >>> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0 )
+				return;
+			this.respread(this.slots[level][(int) ((this.currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+		}
+		if ( ((this.currentTick >>> (SLOT_BITS * (NB_LEVELS - 1))) & SLOT_MASK) == 0 )
+			this.respread(this.overflow);
+	}
+
+	/**
+	 * Removes all timers from the given list and puts the pending ones in the slots that cover their tick.
+	 */
+	private void respread(List<Timer> timers) {
+		if (timers.isEmpty())
+			return;
+		List<Timer> moved = new ArrayList<>(timers);
+		timers.clear();
+		for (Timer timer: moved)
+			if (timer.pending)
+				this.place(timer);
+	}
+
+	/**
+	 * Removes all timers, which have all been cancelled, from the slots and the overflow list.
+	 */
+	private void clear() {
+		for (List<Timer>[] level: this.slots)
+			for (List<Timer> slot: level)
+				slot.clear();
+		this.overflow.clear();
+	}
+
+	/**
+	 * Removes the element at the given index from the given list, without keeping the order of the list.
+	 */
+	private static void removeAt(List<Timer> list, int index) {
+		int last = list.size() - 1;
+		list.set(index, list.get(last));
+		list.remove(last);
+	}
+
+	/**
+	 * A symbolic constant denoting the mask that selects a slot from a shifted tick.
+	 */
+	private static final long SLOT_MASK = NB_SLOTS - 1;
+
+	/**
+	 * A variable that stores the slots of the levels of this timer wheel.
+	 */
+	private final List<Timer>[][] slots;
+
+	/**
+	 * A variable that stores the timers that are due beyond the highest level.
+	 */
+	private final List<Timer> overflow = new ArrayList<>();
+
+	/**
+	 * A variable that stores the tick up to which this timer wheel has been advanced.
+	 */
+	private long currentTick = 0;
+}
@@ -1,10 +1,13 @@
 package hillbillies.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
@@ -58,6 +61,8 @@ import util.RandomSetElement;
  * @version 3.0
  */
 public class Unit extends Entity{
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initialize this new unit with the given world, faction, name, position, weight, strength, agility, toughness.
@@ -106,6 +111,9 @@ public class Unit extends Entity{
 			int weight, int strength, int agility, int toughness) throws IllegalArgumentException {
 		
 		super(world, coordinates);
+		
+		// Each unit draws its random numbers from its own stream, split off the stream of its world.
+		this.random = world.newRandomStream();
 
 		this.setFaction(faction);
 		
@@ -179,10 +187,10 @@ public class Unit extends Entity{
 	 */
 	public Unit(World world, String name) throws IllegalArgumentException {
 		this(world, name, world.getRandomAvailableUnitCoordinates(),
-				new Random().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
-				new Random().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
-				new Random().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
-				new Random().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat());
+				world.getRandom().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
+				world.getRandom().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
+				world.getRandom().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat(),
+				world.getRandom().nextInt(getMaxInitialBaseStat()-getMinInitialBaseStat()+1)+getMinInitialBaseStat());
 	}
 	
 	/**
@@ -198,6 +206,59 @@ public class Unit extends Entity{
 	}
 	
 	
+	/**
+	 * Returns the stream of random numbers of this unit.
+	 * 
+	 * @note	The stream is split off the stream of the world of this unit when this unit is created,
+	 *				so the random numbers of a unit only depend on the seed of its world and the order in which
+	 *				the units of that world were created. Since numbers may be drawn from the returned stream,
+	 *				it is replaced by a new stream, seeded with its own next number, the next time a snapshot
+	 *				or a fork of the world of this unit is taken.
+	 */
+	@Raw
+	public SplittableRandom getRandom() {
+		this.randomSeed = null;
+		return this.random;
+	}
+	
+	/**
+	 * A variable that stores the stream of random numbers of this unit.
+	 */
+	private transient SplittableRandom random;
+	
+	/**
+	 * A variable that stores the seed from which the stream of random numbers of this unit was created when the
+	 * last snapshot or fork of its world was taken, or null if numbers may have been drawn from it since.
+	 */
+	private transient Long randomSeed;
+	
+	/**
+	 * Writes the state of this unit to the given stream, as part of a snapshot or a fork of its world.
+	 * The stream of random numbers of this unit is replaced by a new stream whose seed is written, unless no
+	 * numbers can have been drawn from it since the last snapshot, so that this unit and its restored copies
+	 * draw the same random numbers afterwards.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		// The caches of paths of the world are cleared, so the path from the next cube is requested again.
+		this.requestedPathStart = null;
+		if (this.randomSeed == null) {
+			this.randomSeed = this.random.nextLong();
+			this.random = new SplittableRandom(this.randomSeed);
+		}
+		out.defaultWriteObject();
+		out.writeLong(this.randomSeed);
+	}
+	
+	/**
+	 * Reads the state of this unit from the given stream, as part of a snapshot or a fork of its world.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.randomSeed = in.readLong();
+		this.random = new SplittableRandom(this.randomSeed);
+	}
+	
+	
 	// ===================================================================================================
 	// Methods concerning the termination of this unit.
 	// ===================================================================================================
@@ -1579,7 +1640,10 @@ public class Unit extends Entity{
 				int[] currentCoordinates =  this.getPosition().getCubeCoordinates();	
 				
 		 		// Pass the current activity trough to previousActivity and Set the current activity op MOVE.
-				moveToPath = searchPath(currentCoordinates, destinationCoordinates);
+				List<int[]> path = searchPath(currentCoordinates, destinationCoordinates);
+				if (path == null)
+					throw new IllegalArgumentException("no path to destination");
+				moveToPath = path;
 				moveToPath.remove(0); 
 				this.setPreviousActivity(this.getCurrentActivity());
 				this.setCurrentActivity(Activity.MOVE);
@@ -1603,11 +1667,66 @@ public class Unit extends Entity{
 	 *				The destination coordinates for the path.
 	 *
 	 * @return	A list a cube coordinates which represent the path from the start coordinates to the destination coordinates.
+	 *				| result == this.getWorld().getPathCache().getPath(startCoordinates, destinationCoordinates, PathFinder.ALLOW_DIAGONAL)
 	 */
 	private List<int[]> searchPath(int[] startCoordinates, int[] destinationCoordinates)
 			throws MaxIterationException {
-		return PathFinder.getPath(startCoordinates, destinationCoordinates, this.getWorld());
+		return this.getWorld().getPathCache().getPath(startCoordinates, destinationCoordinates, PathFinder.ALLOW_DIAGONAL);
+	}
+
+	/**
+	 * Returns the start of the path this unit will search when it reaches the next cube of its path,
+	 * unless that path has already been requested and the path cache of its world has not forgotten
+	 * any paths since.
+	 * 
+	 * @return	Null if this unit is not moving, will reach its destination with its next step, or has already
+	 *				requested the path from its next cube. Otherwise the next cube of the path of this unit.
+	 *				| if ( (getCurrentActivity() != Activity.MOVE) || (moveToPath.size() < 2)
+	 *				|		|| ( (moveToPath.get(0) == requestedPathStart)
+	 *				|			&& (getWorld().getPathCache().getNbForgets() == requestedPathForgets) ) )
+	 *				|	then result == null
+	 *				|	else result == moveToPath.get(0)
+	 */
+	int[] getNextPathStart() {
+		if ( (this.getCurrentActivity() != Activity.MOVE) || (this.moveToPath.size() < 2) )
+			return null;
+		if ( (this.moveToPath.get(0) == this.requestedPathStart)
+				&& (this.getWorld().getPathCache().getNbForgets() == this.requestedPathForgets) )
+			return null;
+		return this.moveToPath.get(0);
+	}
+	
+	/**
+	 * Returns the destination of the path of this unit.
+	 * 
+	 * @return	| result == moveToPath.get(moveToPath.size()-1)
+	 */
+	int[] getPathDestination() {
+		return this.moveToPath.get(this.moveToPath.size()-1);
+	}
+	
+	/**
+	 * Registers that the path from the next cube of the path of this unit has been requested, so that it is
+	 * not requested again before this unit sets out on a new path.
+	 * 
+	 * @post	| new.getNextPathStart() == null
+	 */
+	void setNextPathRequested() {
+		this.requestedPathStart = this.moveToPath.get(0);
+		this.requestedPathForgets = this.getWorld().getPathCache().getNbForgets();
 	}
+	
+	/**
+	 * A variable that stores the next cube of the path of this unit at the time the path from that cube
+	 * was last requested. A new path starts with a new cube, so the request is repeated for each new path.
+	 */
+	private transient int[] requestedPathStart;
+	
+	/**
+	 * A variable that stores how many times the path cache of the world of this unit had forgotten paths
+	 * when the path from the next cube of the path of this unit was last requested.
+	 */
+	private transient long requestedPathForgets;
 
 	/**
 	 * A list that stores the path this unit has to follow.
@@ -1673,17 +1792,10 @@ public class Unit extends Entity{
 	 *				The coordinates to check.
 	 *
 	 * @return	False if none of the neighbouring cubes is solid.
-	 *				| for (int[] position: neighbours)
-	 *				|	if ( ! getWorld().getCube(coordinates).isPassable())
-	 *				|		then result == true
-	 *				| result == false
+	 *				| result == getWorld().hasSolidNeighbours(coordinates[0], coordinates[1], coordinates[2])
 	 */
 	public boolean hasSolidNeighbours(int[] coordinates) throws IllegalArgumentException {
-		Set<int[]> neighbours = this.getWorld().getNeighbours(coordinates);
-		for (int[] neighbour: neighbours)
-			if ( ! this.getWorld().getCube(neighbour).isPassable())
-				return true;
-		return false;
+		return this.getWorld().hasSolidNeighbours(coordinates[0], coordinates[1], coordinates[2]);
 	}
 	
 	/**
@@ -1700,11 +1812,7 @@ public class Unit extends Entity{
 	 *				| result == false
 	 */
 	public boolean hasPassableNeighbours(int[] coordinates) throws IllegalArgumentException {
-		Set<int[]> neighbours = this.getWorld().getNeighbours(coordinates);
-		for (int[] neighbour: neighbours)
-			if ( this.getWorld().getCube(neighbour).isPassable())
-				return true;
-		return false;
+		return this.getWorld().hasPassableNeighbours(coordinates[0], coordinates[1], coordinates[2]);
 	}
 	
 	
@@ -1911,6 +2019,9 @@ public class Unit extends Entity{
 		if (this.isTerminated())
 			throw new IllegalStateException("unit terminated.");
 		
+		// A new order wakes a sleeping unit, which catches up the progress of its previous activity.
+		if (this.getWorld() != null)
+			this.getWorld().wakeEntity(this);
 		this.currentActivity = activity;
 	}
 	
@@ -1936,8 +2047,12 @@ public class Unit extends Entity{
 	/**
 	 * Returns the progress of the current activity.
 	 */
-	@Basic @Raw
+	@Raw
 	public double getProgress(){
+		// While this unit sleeps until its work or attack completes, the progress goes on.
+		if (this.isSleeping() && (this.getWorld() != null)
+				&& ( (this.getCurrentActivity() == Activity.WORK) || (this.getCurrentActivity() == Activity.ATTACK) ))
+			return this.progress + this.getWorld().getTime() - this.getSleepingSince();
 		return this.progress;
 	}
 	
@@ -1951,6 +2066,8 @@ public class Unit extends Entity{
 	 *				| new.getProgress() == progress
 	 */
 	private void setProgress(double progress) throws IllegalArgumentException{
+		if (this.isSleeping() && (this.getWorld() != null))
+			this.getWorld().wakeEntity(this);
 		if ( ! isValidProgress(progress))
 			throw new IllegalArgumentException("The given progress is invalid.");
 		
@@ -2324,7 +2441,7 @@ public class Unit extends Entity{
 	 *				The chance to block is given by the following formula:
 	 *				| result == ( 0.25*( (this.getStrength() + this.getAgility()) / 
 	 *				| 		 (attacker.getStrength() + attacker.getAgility()) ) 
-	 *				|					<= Math.random() )
+	 *				|					<= getRandom().nextDouble() )
 	 *
 	 * @throws	NullPointerException
 	 *				The given attacker is not an active unit
@@ -2335,7 +2452,7 @@ public class Unit extends Entity{
 			throw new NullPointerException("The given attacker is not an active unit.");
 		
 		double blockChance = 0.25*( (this.getStrength() + this.getAgility()) / (attacker.getStrength() + attacker.getAgility()) );
-		double temp = Math.random();
+		double temp = this.getRandom().nextDouble();
 		return (temp <= blockChance);
 	}
 	
@@ -2345,7 +2462,7 @@ public class Unit extends Entity{
 	 * @return	The chance to dodge is greater than or equal to a random number in the range 0..1. 
 	 *				The chance to dodge is given by the following formula:
 	 *				| result == ( 0.20*(this.getAgility()/attacker.getAgility());
-	 *				|					<= Math.random() )
+	 *				|					<= getRandom().nextDouble() )
 	 * @throws	NullPointerException
 	 *				The given attacker is not an active unit
 	 *				| attacker == null
@@ -2355,7 +2472,7 @@ public class Unit extends Entity{
 			throw new NullPointerException("The given attacker is not an active unit.");
 		
 		double dodgeChance = 0.20*(this.getAgility()/attacker.getAgility());
-		double temp = Math.random();
+		double temp = this.getRandom().nextDouble();
 		return (temp <= dodgeChance);
 	}
 	
@@ -2381,6 +2498,8 @@ public class Unit extends Entity{
 		if (attacker == null){
 			throw new NullPointerException("The given attacker is not an active unit.");
 		}
+		if (this.getWorld() != null)
+			this.getWorld().wakeEntity(this);
 		
 		// If this unit manages to dodge...
 		if (this.managedToDodge(attacker)){
@@ -2439,17 +2558,17 @@ public class Unit extends Entity{
 	 *				The given coordinates.
 	 * 
 	 * @return	Random coordinates which are at a distance of 0..1 in the x- and y-direction respectively from the given coordinates.
-	 *				| result == new double[]{coordinates[0] + new Random().nextDouble()*2-1, coordinates[1] + new Random().nextDouble()*2-1, this.getPosition().getCubeCoordinates()[2]}
+	 *				| result == new double[]{coordinates[0] + getRandom().nextDouble()*2-1, coordinates[1] + getRandom().nextDouble()*2-1, this.getPosition().getCubeCoordinates()[2]}
 	 */
 	private double[] getRandomDodgeMove( double[] coordinates) {
 		double[] newRandomCoordinates = new double[]{-1, -1, -1};
 		while(this.canHaveAsCoordinates(newRandomCoordinates)){
 			double newRandomXCoordinate = -1;
 			while ( ! this.getPosition().canHaveAsXCoordinate(newRandomXCoordinate))
-				 newRandomXCoordinate = coordinates[0] + new Random().nextDouble()*2-1;
+				 newRandomXCoordinate = coordinates[0] + this.getRandom().nextDouble()*2-1;
 			double newRandomYCoordinate = -1;
 			while ( ! this.getPosition().canHaveAsYCoordinate(newRandomYCoordinate))
-				 newRandomYCoordinate = coordinates[1] + new Random().nextDouble()*2-1;
+				 newRandomYCoordinate = coordinates[1] + this.getRandom().nextDouble()*2-1;
 			newRandomCoordinates = new double[]{ newRandomXCoordinate, newRandomYCoordinate, this.getPosition().getCubeCoordinates()[2]};
 	}
 		return newRandomCoordinates;
@@ -2590,6 +2709,8 @@ public class Unit extends Entity{
 			throw new IllegalStateException("unit is terminated.");
 		
 		this.defaultBehaviorEnabled = value;
+		if (this.getWorld() != null)
+			this.getWorld().wakeEntity(this);
 	}
 	
 	/**
@@ -2810,7 +2931,7 @@ public class Unit extends Entity{
 	private void levelUp() throws UnitMaxedOutException {
 		List<Integer> possibleStats = this.statsNotMaxed();
 		if (possibleStats.size() != 0) {
-			int choice = possibleStats.get(new Random().nextInt(possibleStats.size()));
+			int choice = possibleStats.get(this.getRandom().nextInt(possibleStats.size()));
 			if (choice == 0)
 				this.setAgility(this.getAgility()+1);
 			else if (choice == 1)
@@ -2981,7 +3102,11 @@ public class Unit extends Entity{
 		}
 
 		// Actual implementation of activities.
-		switch(this.getCurrentActivity()) {
+		// The clock is only read when the profiler of the world is enabled.
+		TickProfiler profiler = this.getWorld().getProfiler();
+		Activity activity = this.getCurrentActivity();
+		long start = (profiler.isEnabled()) ? System.nanoTime() : 0;
+		switch(activity) {
 			case MOVE:
 				advanceTimeMove(deltaT);
 				break;
@@ -3005,7 +3130,72 @@ public class Unit extends Entity{
 			default:
 				break;
 		}
-		
+		if (profiler.isEnabled())
+			profiler.addActivityTime(activity, System.nanoTime() - start);
+	}
+
+	/**
+	 * Checks whether this unit can sleep.
+	 * 
+	 * @return	True if and only if this unit lies in a world, is not falling, is not about to resume an interrupted
+	 *				rest, does not have to rest yet, and either does nothing without default behavior or only waits
+	 *				for its work or attack to complete. Such a unit stays put until it is given an order, attacked or
+	 *				moved, until the terrain around it changes, or until the time it waits for has passed.
+	 *				| result == ( (getWorld() != null) && ( ! isTerminated()) && ( ! getIsFalling()) && ( ! isFalling())
+	 *				|	&& ( ! ((getPreviousActivity() == Activity.REST) && ( ! getInitialRestTimePassed())))
+	 *				|	&& (getGametime() - getTimeOfLastRest() < 180.0)
+	 *				|	&& ( ( (getCurrentActivity() == Activity.NOTHING) && ( ! getDefaultBehaviorEnabled()) )
+	 *				|	  || ( (getCurrentActivity() == Activity.WORK) && ( ! hasItem()) && (getProgress() < getWorkDuration()) )
+	 *				|	  || ( (getCurrentActivity() == Activity.ATTACK) && (getUnitUnderAttack() != null) && (getProgress() < 1.0) ) ) )
+	 */
+	@Override
+	boolean canSleep() {
+		if ( (this.getWorld() == null) || this.isTerminated() || this.getIsFalling() || this.isFalling()
+				|| ((this.getPreviousActivity() == Activity.REST) && ( ! this.getInitialRestTimePassed()))
+				|| (this.getGametime() - this.getTimeOfLastRest() >= 180.0) )
+			return false;
+		switch (this.getCurrentActivity()) {
+			case NOTHING:
+				return ! this.getDefaultBehaviorEnabled();
+			case WORK:
+				return ( ! this.hasItem()) && (this.getProgress() < this.getWorkDuration());
+			case ATTACK:
+				return (this.getUnitUnderAttack() != null) && (this.getProgress() < 1.0);
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Returns the amount of gametime after which this unit has to be woken, which is when it has to rest
+	 * or, if that is earlier, when its work or attack completes.
+	 * 
+	 * @return	| if (getCurrentActivity() == Activity.WORK)
+	 *				|	then result == Math.min(180.0 - (getGametime() - getTimeOfLastRest()), getWorkDuration() - getProgress())
+	 *				| else if (getCurrentActivity() == Activity.ATTACK)
+	 *				|	then result == Math.min(180.0 - (getGametime() - getTimeOfLastRest()), 1.0 - getProgress())
+	 *				| else result == 180.0 - (getGametime() - getTimeOfLastRest())
+	 */
+	@Override
+	double getTimeUntilWakeUp() {
+		double result = 180.0 - (this.getGametime() - this.getTimeOfLastRest());
+		if (this.getCurrentActivity() == Activity.WORK)
+			result = Math.min(result, this.getWorkDuration() - this.getProgress());
+		else if (this.getCurrentActivity() == Activity.ATTACK)
+			result = Math.min(result, 1.0 - this.getProgress());
+		return result;
+	}
+	
+	/**
+	 * Wakes this unit at the given time of its world, catching up the progress of the work or attack it waited for.
+	 * 
+	 * @effect	| super.wake(worldTime)
+	 * @post	| new.getProgress() == getProgress()
+	 */
+	@Override
+	void wake(double worldTime) {
+		this.progress = this.getProgress();
+		super.wake(worldTime);
 	}
 
 	private void advanceTimeRest(double deltaT) {
@@ -3051,6 +3241,13 @@ public class Unit extends Entity{
 	}
 
 	private void advanceTimeAttack(double deltaT, Unit defender) {
+		// A task can order an attack on a unit that does not exist, such as an enemy when there are none.
+		if (defender == null) {
+			this.setCurrentActivity(Activity.NOTHING);
+			if (this.hasTask())
+				this.returnFailedTask();
+			return;
+		}
 		// Countdown towards the actual attack.
 		this.setProgress(this.getProgress() + deltaT);
 		// Let the attacker face the unit it is attacking
@@ -3102,7 +3299,7 @@ public class Unit extends Entity{
 			this.addExperience(10);
 			
 			// If default behavior is enabled, keep it running.
-			if (this.getDefaultBehaviorEnabled())
+			if (this.getDefaultBehaviorEnabled() && this.hasTask())
 				this.getTask().finishExplicitStatement();
 		}
 		
@@ -3167,7 +3364,7 @@ public class Unit extends Entity{
 					(this.getCurrentStamina()>=staminaDrain+1)){
 				
 				// chance: 1% per deltaT
-				int chance = new Random().nextInt(100);
+				int chance = this.getRandom().nextInt(100);
 				if (chance < 1)
 					this.setIsSprinting(true);
 			}
@@ -3298,11 +3495,13 @@ public class Unit extends Entity{
 		if (this.hasTask()) {
 			Statement statement  = this.getTask().getStatement();
 			double i = 0.0;
-			while (i < deltaT && !(this.getTask().hasExplicitStatement())) {
+			int nbExecuted = 0;
+			while (i < deltaT && this.hasTask() && !(this.getTask().hasExplicitStatement())) {
 				Status status = statement.getStatus();
 				switch (status) {
 					case NOTSTARTED:
 						statement.execute();
+						nbExecuted++;
 						break;
 					case DONE:
 						this.finishTask();
@@ -3314,36 +3513,39 @@ public class Unit extends Entity{
 						break;
 					case EXECUTING:
 						statement.execute();
+						nbExecuted++;
 						break;
 					default:
 						break;
 				}
 				i += STATEMENT_EXECUTION_TIME;
 			}
+			if (this.getWorld().getProfiler().isEnabled())
+				this.getWorld().getProfiler().addStatements(nbExecuted);
 		}
 				
 		else {
 			List<Activity> options = DefaultManager.getAvailableRandomActivities(this);
-			int choice = new Random().nextInt(options.size());
+			int choice = this.getRandom().nextInt(options.size());
 			Activity randomActivity = options.get(choice);
 			if (randomActivity == Activity.WORK) {
 				RandomSetElement<int[]> randomElement = new RandomSetElement<>();
 				Set<int[]> cubes = DefaultManager.getAvailableWorkCubes(this);
-				int[] cube = randomElement.getRandomElement(cubes);
+				int[] cube = randomElement.getRandomElement(cubes, this.getRandom());
 				this.workAt(cube,true);
 			}
 			
 			if (randomActivity == Activity.MOVE) {
 				RandomSetElement<int[]> randomElement = new RandomSetElement<>();
 				Set<int[]> cubes = DefaultManager.getAvailableMoveCubes(this, DefaultManager.MAX_RANGE_DEFAULTMOVE);
-				int[] cube = randomElement.getRandomElement(cubes);
+				int[] cube = randomElement.getRandomElement(cubes, this.getRandom());
 				this.moveTo(cube,true);
 			}
 			
 			if (randomActivity == Activity.ATTACK) {
 				RandomSetElement<Unit> randomElement = new RandomSetElement<>();
 				Set<Unit> units = DefaultManager.getAvailableEnemies(this);
-				Unit unit= randomElement.getRandomElement(units);
+				Unit unit= randomElement.getRandomElement(units, this.getRandom());
 				this.attack(unit);
 			}
 			
@@ -1,18 +1,33 @@
 package hillbillies.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
+import hillbillies.exceptions.MaxIterationException;
 import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part2.listener.TerrainChangeSet;
 import hillbillies.positions.Position;
 import hillbillies.positions.UnitPosition;
-import hillbillies.util.ConnectedToBorder;
 import hillbillies.model.Cube;
 import hillbillies.model.Terrain;
 	
@@ -33,7 +48,9 @@ import hillbillies.model.Terrain;
  * @author Sander Mergan, Thomas Vranken
  * @version 3.0
  */
-public class World {
+public class World implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Initializes this new world as a non-terminated world with 
@@ -44,61 +61,160 @@ public class World {
 	 * @param	modelListener
 	 *				The terrainChangeListener for this new world
 	 *
+	 * @effect	The new world is initialized with the dimensions of the given terrain and its terrain types
+	 *				in order of the index of their cube.
+	 *				| this(terrain.length, terrain[0].length, terrain[0][0].length, terrainTypes, modelListener, seed)
+	 *				| where for each x, y, z:
+	 *				|	terrainTypes[x + terrain.length * (y + terrain[0].length * z)] == terrain[x][y][z]
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given terrain is not a box, or one of its terrain types is not valid.
+	 *				| (for some x, y: terrain[x][y].length != terrain[0][0].length) ||
+	 *				|	(for some x, y, z: ! Cube.isValidTerrainTypeIndex(terrain[x][y][z]))
+	 */
+	@Raw
+	public World(int[][][] terrain, TerrainChangeListener modellistener, long seed) throws IllegalArgumentException, NullPointerException {
+		this(terrain.length, terrain[0].length, terrain[0][0].length, getTerrainTypes(terrain), modellistener, seed);
+	}
+	
+	/**
+	 * Returns the terrain types of the given terrain in order of the index of their cube.
+	 * 
+	 * @throws	IllegalArgumentException
+	 *				The given terrain is not a box, or one of its terrain types is not valid.
+	 */
+	private static byte[] getTerrainTypes(int[][][] terrain) throws IllegalArgumentException {
+		int nbX = terrain.length;
+		int nbY = terrain[0].length;
+		int nbZ = terrain[0][0].length;
+		byte[] result = new byte[nbX * nbY * nbZ];
+		for (int x = 0; x < nbX; x++){
+			if (terrain[x].length != nbY)
+				throw new IllegalArgumentException();
+			for (int y = 0; y < nbY; y++){
+				int[] column = terrain[x][y];
+				if (column.length != nbZ)
+					throw new IllegalArgumentException();
+				for (int z = 0; z < nbZ; z++){
+					if ( ! Cube.isValidTerrainTypeIndex(column[z]))
+						throw new IllegalArgumentException();
+					result[x + nbX * (y + nbY * z)] = (byte) column[z];
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Initializes this new world as a non-terminated world with 
+	 * no units yet and sets the terrains of this world to the given terrain types.
+	 * 
+	 * @param	nbX
+	 *				The number of cubes of this new world in the x-direction.
+	 * @param	nbY
+	 *				The number of cubes of this new world in the y-direction.
+	 * @param	nbZ
+	 *				The number of cubes of this new world in the z-direction.
+	 * @param	terrainTypes
+	 *				The terrain type of each cube of this new world, in order of the index of the cube,
+	 *				which is x + nbX * (y + nbY * z).
+	 * @param	modelListener
+	 *				The terrainChangeListener for this new world
+	 * @param	seed
+	 *				The seed of the random numbers of this new world.
+	 *
 	 * @post	This new world has no units yet.
 	 *				| new.getNbUnits() == 0
-	 * @post	The dimensions of this new world are equal to those of the given terrain.
-	 *				| this.getMaximumXValue() == terrain.length &&
-	 *				|	this.getMaximumYValue() == terrain[0].length &&
-	 *				|	this.getMaximumZValue() == terrain[0][0].length
+	 * @post	The dimensions of this new world are equal to the given dimensions.
+	 *				| this.getMaximumXValue() == nbX &&
+	 *				|	this.getMaximumYValue() == nbY &&
+	 *				|	this.getMaximumZValue() == nbZ
+	 * @post	The seed of this new world is equal to the given seed.
+	 *				| new.getSeed() == seed
 	 *
-	 *	@throws IllegalArgumentException
-	 *				The given terrain does not have valid dimensions.
-	 *				| ( (!isValidMaximumXValue(maxXValue)) || (!isValidMaximumYValue(maxYValue)) || (!isValidMaximumZValue(maxZValue)) )
+	 * @throws	IllegalArgumentException
+	 *				The given dimensions are not valid, the given terrain types do not have one element for each cube,
+	 *				or one of them is not valid.
+	 *				| (!isValidMaximumXValue(nbX)) || (!isValidMaximumYValue(nbY)) || (!isValidMaximumZValue(nbZ)) ||
+	 *				|	(terrainTypes.length != nbX * nbY * nbZ) ||
+	 *				|	(for some index: ! Cube.isValidTerrainTypeIndex(terrainTypes[index]))
+	 *
+	 * @note	The given terrain types are copied, so later changes to the given array do not affect this world.
 	 */
 	@Raw
-	public World(int[][][] terrain, TerrainChangeListener modellistener) throws IllegalArgumentException, NullPointerException {
-		int maxXValue = terrain.length;
-		int maxYValue = terrain[0].length;
-		int maxZValue = terrain[0][0].length;
-		if ( (!isValidMaximumXValue(maxXValue)) || (!isValidMaximumYValue(maxYValue)) || (!isValidMaximumZValue(maxZValue)) )
-			throw new IllegalArgumentException();
+	public World(int nbX, int nbY, int nbZ, byte[] terrainTypes, TerrainChangeListener modellistener, long seed)
+			throws IllegalArgumentException, NullPointerException {
+		// The random numbers are drawn from the start, for the items dropped by the initial cave-in.
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
 		
 		// Impossible to use setters because maximumXValue, maximumYValue and maximumZValue are final and final variables can only be set in the constructor.
-		if (! isValidMaximumXValue(maxXValue))
+		if (! isValidMaximumXValue(nbX))
 			throw new IllegalArgumentException();
-		this.maximumXValue = maxXValue;
-		if (! isValidMaximumYValue(maxYValue))
+		this.maximumXValue = nbX;
+		if (! isValidMaximumYValue(nbY))
 			throw new IllegalArgumentException();
-		this.maximumYValue = maxYValue;
-		if (! isValidMaximumZValue(maxZValue))
+		this.maximumYValue = nbY;
+		if (! isValidMaximumZValue(nbZ))
+			throw new IllegalArgumentException();
+		this.maximumZValue = nbZ;
+		if (terrainTypes.length != (long) nbX * nbY * nbZ)
 			throw new IllegalArgumentException();
-		this.maximumZValue = maxZValue;
 		
-		this.connectedToBorder = new ConnectedToBorder(this.getMaximumXValue(), this.getMaximumYValue(), this.getMaximumZValue());
+		this.connectedToBorder = new BorderConnectivity(this.getMaximumXValue(), this.getMaximumYValue(), this.getMaximumZValue());
+		this.spatialIndex = new SpatialIndex(this.getMaximumXValue(), this.getMaximumYValue(), this.getMaximumZValue());
 		
 		this.setTerrainChangeListener(modellistener);
 		
-		cubes = new Cube[this.getMaximumXValue()][this.getMaximumYValue()][this.getMaximumZValue()];
+		this.terrain = new ChunkedByteArray(terrainTypes);
+		this.pendingCollapseBits = new ChunkedBitSet(terrainTypes.length);
 		
-		for (int x = 0; x < this.getMaximumXValue(); x++){
-			for (int y = 0; y < this.getMaximumYValue(); y++){
-				for (int z = 0; z < this.getMaximumZValue(); z++){
-					// Set the terrain type for all cubes in the world.
-					cubes[x][y][z] = new Cube(terrain[x][y][z], this, new int[]{x,y,z});
-					// Initialize connectedToBorder correctly.
-					List<int[]> temp = new ArrayList<>();
-					if ( isPassable(new int[]{x,y,z})){
-						temp = this.changeSolidToPassable(x, y, z);
-						if ( ! temp.isEmpty())
-							this.collapsingCubes.addAll(temp);
-						
-						temp.clear();
-					}
-				}
-			}
+		// Check the terrain type of all cubes in the world, and collect the passable cubes.
+		long[] passableCubes = new long[this.pendingCollapseBits.getNbWords()];
+		for (int index = 0; index < terrainTypes.length; index++){
+			if ( ! Cube.isValidTerrainTypeIndex(terrainTypes[index]))
+				throw new IllegalArgumentException();
+			if (this.isPassable(index))
+				passableCubes[index >>> 6] |= (1L << index);
 		}
-		this.caveInCollapsingCubes();
-	}		
+		// Initialize connectedToBorder for all cubes at once; the solid cubes that are not connected collapse below.
+		this.addPendingCollapses(this.connectedToBorder.initializePassableCubes(passableCubes));
+		this.solidNeighbours = new ChunkedBitSet(terrainTypes.length);
+		this.initializeSolidNeighbours();
+		// The initial cave-in is part of the construction and is not spread over ticks.
+		this.caveInCollapsingCubes(Integer.MAX_VALUE);
+		this.notifyTerrainChanges();
+	}
+	
+	/**
+	 * Initializes this new world as a non-terminated world with 
+	 * no units yet and sets the terrains of this world to the given terrain types.
+	 * The seed of this new world is chosen randomly.
+	 * 
+	 * @effect	| this(nbX, nbY, nbZ, terrainTypes, modelListener, randomSeed)
+	 */
+	@Raw
+	public World(int nbX, int nbY, int nbZ, byte[] terrainTypes, TerrainChangeListener modellistener)
+			throws IllegalArgumentException, NullPointerException {
+		this(nbX, nbY, nbZ, terrainTypes, modellistener, ThreadLocalRandom.current().nextLong());
+	}
+	
+	/**
+	 * Initializes this new world as a non-terminated world with 
+	 * no units yet and sets the terrains of this world to the given terrain.
+	 * The seed of this new world is chosen randomly.
+	 * 
+	 * @param	terrain
+	 *				The terrain for this new world.
+	 * @param	modelListener
+	 *				The terrainChangeListener for this new world
+	 *
+	 * @effect	| this(terrain, modelListener, randomSeed)
+	 */
+	@Raw
+	public World(int[][][] terrain, TerrainChangeListener modellistener) throws IllegalArgumentException, NullPointerException {
+		this(terrain, modellistener, ThreadLocalRandom.current().nextLong());
+	}
 	
 	/**
 	 * Returns a textual representation of this world.
@@ -118,7 +234,7 @@ public class World {
 	 *	@post	The new terrainChangeListener is equal to the given terrainChangeListener.
 	 */
 	@Raw
-	private void setTerrainChangeListener(TerrainChangeListener terrainChangeListener){
+	void setTerrainChangeListener(TerrainChangeListener terrainChangeListener){
 		this.terrainChangeListener = terrainChangeListener;
 	}
 	
@@ -134,12 +250,12 @@ public class World {
 	/**
 	 *	A variable that stores the terrainChangeListener of this world.
 	 */
-	private TerrainChangeListener terrainChangeListener;
+	private transient TerrainChangeListener terrainChangeListener;
 	
 	/**
-	 * A variable that stores an instance of the connected-to-border interface.
+	 * A variable that stores which solid cubes of this world are connected to its border.
 	 */
-	private final ConnectedToBorder connectedToBorder;
+	private final BorderConnectivity connectedToBorder;
 	
 	
 	// ==================================================================================
@@ -153,6 +269,7 @@ public class World {
 	 *				| new.isTerminated() == true
 	 *
 	 * @effect	All the entities in this world are terminated.
+	 * @effect	The threads this world created to advance its time are shut down.
 	 */
 	public void terminate() {
 		HashSet<Entity> dummy = new HashSet<Entity>();
@@ -160,6 +277,7 @@ public class World {
 		for (Entity entity: dummy){
 			entity.terminate();
 		}
+		this.releaseTickPool();
 		this.isTerminated = true;
 	 }
 	 
@@ -177,6 +295,61 @@ public class World {
 	 private boolean isTerminated = false;
 	 
 	
+	// ==================================================================================
+	// Methods concerning the random numbers of this world.
+	// ==================================================================================
+	
+	/**
+	 * Returns the seed of this world, from which all random numbers drawn in this world follow.
+	 * 
+	 * @note	Two worlds with the same terrain and seed, to which the same changes are made in the same order,
+	 *				behave identically.
+	 */
+	@Basic @Raw @Immutable
+	public long getSeed() {
+		return this.seed;
+	}
+	
+	/**
+	 * A variable that stores the seed of this world.
+	 */
+	private final long seed;
+	
+	/**
+	 * Returns the stream of random numbers of this world itself, which is used for the random numbers
+	 * that are not drawn by a unit.
+	 * 
+	 * @note	The stream is not thread-safe; it is only used while this world is changed.
+	 * @note	Since numbers may be drawn from the returned stream, it is replaced by a new stream
+	 *				the next time a snapshot or a fork of this world is taken.
+	 */
+	@Raw
+	public SplittableRandom getRandom() {
+		this.randomSeed = null;
+		return this.random;
+	}
+	
+	/**
+	 * Returns a new stream of random numbers, split off the stream of this world, for a new unit.
+	 * 
+	 * @return	| result == getRandom().split()
+	 */
+	SplittableRandom newRandomStream() {
+		return this.getRandom().split();
+	}
+	
+	/**
+	 * A variable that stores the stream of random numbers of this world.
+	 */
+	private transient SplittableRandom random;
+	
+	/**
+	 * A variable that stores the seed from which the stream of random numbers of this world was created when the
+	 * last snapshot or fork of this world was taken, or null if numbers may have been drawn from it since.
+	 */
+	private transient Long randomSeed;
+	
+	
 	// ==================================================================================
 	// Methods concerning the factions of this world.
 	// ==================================================================================
@@ -298,7 +471,7 @@ public class World {
 	 *				|   ( (faction != null) &&
 	 *				|     (! faction.isTerminated()) )
 	 */
-	private final Set<Faction> factions = new HashSet<Faction>();
+	private final Set<Faction> factions = new LinkedHashSet<Faction>();
 	
 	/**
 	 * Returns a set collecting all the factions of this world. 
@@ -309,7 +482,7 @@ public class World {
 	 */
 	// NOTE: this is the formal way (same as in textbook) to return all objects of the set.
 	public Set<Faction> getFactions() {
-		return new HashSet<Faction>(this.factions);
+		return new LinkedHashSet<Faction>(this.factions);
 	}
 	
 	/**
@@ -450,7 +623,7 @@ public class World {
 	public static final int CUBE_COORDINATE_MIN = 0;
 	
 	/**
-	 * Returns the cube object at the given coordinates.
+	 * Returns the cube at the given coordinates.
 	 * 
 	 * @param	x
 	 *				The x-coordinate
@@ -459,20 +632,24 @@ public class World {
 	 * @param	z
 	 *				The z-coordinate
 	 *
-	 * @return	The cube in the array of cubes with the given coordinates.
-	 *				result == cubes[x][y][z]
+	 * @return	A cube of this world with the given coordinates.
+	 *				| result.getWorld() == this &&
+	 *				|	result.getTerrainType() == this.getTerrain(x, y, z)
 	 *
 	 * @throws	IllegalArgumentException
 	 *				The given coordinates are invalid.
 	 *@throws	IllegalStateException
 	 *				This world is terminated..
+	 *
+	 * @note	Cubes are not stored by this world. Each call creates a new view on the
+	 *				terrain of this world, so cubes should not be compared by identity.
 	 */
 	public Cube getCube(int x, int y, int z) throws IllegalArgumentException, IllegalStateException {
 		if (this.isTerminated())
 			throw new IllegalStateException();
 		if (! this.canHaveAsCoordinates(x, y, z))
 			throw new IllegalArgumentException();
-		return cubes[x][y][z];
+		return new Cube(this, new int[]{x, y, z});
 	}
 	
 	/**
@@ -489,9 +666,183 @@ public class World {
 	}
 	
 	/**
-	 * An array that stores all the cubes this world consists of.
+	 * An array that stores the terrain type index of every cube this world consists of.
+	 * The cube with coordinates (x, y, z) is stored at getCubeIndex(x, y, z).
+	 * The chunks of the array are shared with the forks of this world until they change.
+	 * 
+	 * @invar	Each stored value is a valid terrain type index.
+	 *				| for each index in 0..getNbCubes()-1:
+	 *				|	Cube.isValidTerrainTypeIndex(terrain.get(index))
+	 */
+	private final ChunkedByteArray terrain;
+	
+	/**
+	 * An array that stores all the terrain types, in the order of their index.
+	 */
+	private static final Terrain[] TERRAIN_TYPES = Terrain.values();
+	
+	/**
+	 * Returns the index of the cube with the given coordinates in the terrain of this world.
+	 * The index is the same as the one used by ConnectedToBorder.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	The index of the given cube.
+	 *				| result == x + y * getMaximumXValue() + z * getMaximumXValue() * getMaximumYValue()
+	 *
+	 * @note	The given coordinates are not checked.
+	 */
+	public int getCubeIndex(int x, int y, int z) {
+		return x + this.getMaximumXValue() * (y + this.getMaximumYValue() * z);
+	}
+	
+	/**
+	 * Returns the total number of cubes in this world.
+	 * 
+	 * @return	The product of the dimensions of this world.
+	 *				| result == getMaximumXValue() * getMaximumYValue() * getMaximumZValue()
+	 */
+	public int getNbCubes() {
+		return this.terrain.getLength();
+	}
+	
+	/**
+	 * Sets the terrain type of the cube at the given coordinates to the given terrain type.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 * @param	terrainType
+	 *				The new terrain type of the cube.
+	 *
+	 * @post	The terrain of the given cube is equal to the given terrain type.
+	 *				| new.getTerrain(x, y, z) == terrainType
+	 * @post	Whether the neighbours of the given cube are adjacent to a solid cube is recomputed.
+	 *				| for each neighbour in getNeighbours(new int[]{x, y, z}):
+	 *				|	new.hasSolidNeighbours(neighbour[0], neighbour[1], neighbour[2]) == 
+	 *				|		(for some other in new.getNeighbours(neighbour): ! new.isPassable(other[0], other[1], other[2]))
+	 * @effect	The paths through or next to the given cube are forgotten by the path cache of this world.
+	 *				| this.getPathCache().invalidate(x, y, z)
+	 * @effect	The hierarchical path finders of this world rebuild the chunks around the given cube before their next search.
+	 *				| for each diagonal in {true, false}:
+	 *				|	this.getHierarchicalPathFinder(diagonal).invalidate(x, y, z)
+	 * @effect	The flow fields of this world, and how often their destinations were searched for, are forgotten.
+	 *				| this.getFlowFieldCache().clear()
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid or the given terrain type is not effective.
+	 */
+	void setTerrain(int x, int y, int z, Terrain terrainType) throws IllegalArgumentException {
+		if ( (terrainType == null) || ( ! this.canHaveAsCoordinates(x, y, z)) )
+			throw new IllegalArgumentException();
+		this.terrain.set(this.getCubeIndex(x, y, z), (byte) terrainType.ordinal());
+		this.updateSolidNeighbours(x, y, z);
+		this.getPathCache().invalidate(x, y, z);
+		for (HierarchicalPathFinder pathFinder: this.hierarchicalPathFinders)
+			if (pathFinder != null)
+				pathFinder.invalidate(x, y, z);
+		this.getFlowFieldCache().clear();
+		this.wakeEntitiesAround(x, y, z);
+	}
+	
+	/**
+	 * Returns the path cache of this world.
+	 */
+	@Basic @Raw
+	public PathCache getPathCache() {
+		return this.pathCache;
+	}
+	
+	/**
+	 * A variable that stores the cache of paths found in this world.
+	 */
+	private transient PathCache pathCache = new PathCache(this);
+	
+	/**
+	 * Returns the flow field cache of this world.
+	 */
+	@Basic @Raw
+	public FlowFieldCache getFlowFieldCache() {
+		return this.flowFieldCache;
+	}
+	
+	/**
+	 * A variable that stores the flow fields of the destinations shared by many units of this world.
+	 */
+	private transient FlowFieldCache flowFieldCache = new FlowFieldCache(this);
+	
+	/**
+	 * Returns the tick profiler of this world.
+	 */
+	@Basic @Raw
+	public TickProfiler getProfiler() {
+		return this.profiler;
+	}
+	
+	/**
+	 * A variable that stores the profiler which measures the ticks of this world.
+	 */
+	private transient TickProfiler profiler = new TickProfiler();
+	
+	/**
+	 * Returns whether the units of this world search their paths with a hierarchical path finder.
+	 */
+	@Basic @Raw
+	public boolean isHierarchicalPathfindingEnabled() {
+		return this.hierarchicalPathfindingEnabled;
+	}
+	
+	/**
+	 * Sets whether the units of this world search their paths with a hierarchical path finder.
+	 * 
+	 * @param	enabled
+	 *				Whether hierarchical path finding must be used.
+	 *
+	 * @post	| new.isHierarchicalPathfindingEnabled() == enabled
+	 * @effect	If the setting changes, the path cache of this world is cleared.
+	 *				| if (enabled != this.isHierarchicalPathfindingEnabled())
+	 *				|	then this.getPathCache().clear()
+	 */
+	public void setHierarchicalPathfindingEnabled(boolean enabled) {
+		if (enabled != this.hierarchicalPathfindingEnabled)
+			this.getPathCache().clear();
+		this.hierarchicalPathfindingEnabled = enabled;
+	}
+	
+	/**
+	 * A variable that stores whether the units of this world search their paths with a hierarchical path finder.
+	 */
+	private boolean hierarchicalPathfindingEnabled = false;
+	
+	/**
+	 * Returns the hierarchical path finder of this world for the given kind of moves.
+	 * The path finder is created the first time it is needed.
+	 * 
+	 * @param	diagonalMovesAllowed
+	 *				Whether the paths may contain diagonal moves.
+	 *
+	 * @return	| result.getWorld() == this
+	 *				| && result.isDiagonalMovesAllowed() == diagonalMovesAllowed
+	 */
+	public synchronized HierarchicalPathFinder getHierarchicalPathFinder(boolean diagonalMovesAllowed) {
+		int index = (diagonalMovesAllowed) ? 1 : 0;
+		if (this.hierarchicalPathFinders[index] == null)
+			this.hierarchicalPathFinders[index] = new HierarchicalPathFinder(this, diagonalMovesAllowed);
+		return this.hierarchicalPathFinders[index];
+	}
+	
+	/**
+	 * A variable that stores the hierarchical path finders of this world, without and with diagonal moves.
 	 */
-	private Cube[][][] cubes = new Cube[this.getMaximumXValue()][this.getMaximumYValue()][this.getMaximumZValue()];
+	private transient HierarchicalPathFinder[] hierarchicalPathFinders = new HierarchicalPathFinder[2];
 	
 	/**
 	 * Checks whether the given coordinates are valid in this world.
@@ -504,10 +855,10 @@ public class World {
 	 *				The z-coordinate of the coordinates.
 	 *
 	 * @return	True if all coordinates are within the boundaries of this world.
-	 *				| this.canHaveAsCoordinates(new int[]{x, y, z})
+	 *				| result == canHaveAsXCoordinate(x) && canHaveAsYCoordinate(y) && isValidZCoordinate(z)
 	 */
 	public boolean canHaveAsCoordinates(int x, int y, int z) {
-		return this.canHaveAsCoordinates(new int[]{x, y, z});
+		return this.canHaveAsXCoordinate(x) && this.canHaveAsYCoordinate(y) && this.isValidZCoordinate(z);
 	}
 	
 	/**
@@ -519,8 +870,10 @@ public class World {
 	 * @return	True if the size equals 3, and if all 
 	 *				coordinates are within the boundaries of this world.
 	 */
-	public boolean canHaveAsCoordinates(int[] coordinates) {
-		return this.canHaveAsCoordinates(Position.getCubeCenter(coordinates));
+	public boolean canHaveAsCoordinates(int[] coordinates) throws IllegalArgumentException {
+		if (coordinates.length != 3)
+			throw new IllegalArgumentException(Arrays.toString(coordinates));
+		return this.canHaveAsCoordinates(coordinates[0], coordinates[1], coordinates[2]);
 	}
 	
 	/**
@@ -568,6 +921,105 @@ public class World {
 		return (this.getValidCubeCoordinatesInRange(coordinates, 1));
 	}
 	
+	/**
+	 * Visits the neighbours of the cube with the given coordinates which lie inside this world.
+	 * The 6 directly adjacent cubes are visited first, then the 12 cubes which share an edge with
+	 * the given cube and then the 8 cubes which share a corner with it.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 * @param	connectivity
+	 *				The number of neighbours to consider: 6, 18 or 26.
+	 * @param	visitor
+	 *				The visitor to pass each neighbour to.
+	 *
+	 * @return	True if all neighbours were visited, false if the visitor stopped the iteration.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid, or the given connectivity is not 6, 18 or 26.
+	 */
+	public boolean visitNeighbours(int x, int y, int z, int connectivity, CubeVisitor visitor) 
+			throws IllegalArgumentException {
+		if ( ( ! this.canHaveAsCoordinates(x, y, z)) || ( (connectivity != 6) && (connectivity != 18) && (connectivity != 26) ) )
+			throw new IllegalArgumentException();
+		int nbX = this.getMaximumXValue(), nbY = this.getMaximumYValue(), nbZ = this.getMaximumZValue();
+		for (int i = 0; i < 3 * connectivity; i += 3) {
+			int nx = x + NEIGHBOUR_OFFSETS[i], ny = y + NEIGHBOUR_OFFSETS[i+1], nz = z + NEIGHBOUR_OFFSETS[i+2];
+			if ( (nx < 0) || (ny < 0) || (nz < 0) || (nx >= nbX) || (ny >= nbY) || (nz >= nbZ) )
+				continue;
+			if ( ! visitor.visit(nx + nbX * (ny + nbY * nz), nx, ny, nz))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Visits the cubes inside this world whose coordinates differ at most the given range
+	 * from the given coordinates in each direction, apart from the given cube itself.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 * @param	range
+	 *				The range.
+	 * @param	visitor
+	 *				The visitor to pass each cube to.
+	 *
+	 * @return	True if all cubes were visited, false if the visitor stopped the iteration.
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid or the given range is negative.
+	 */
+	public boolean visitCubesInRange(int x, int y, int z, int range, CubeVisitor visitor) 
+			throws IllegalArgumentException {
+		if ( ( ! this.canHaveAsCoordinates(x, y, z)) || (range < 0) )
+			throw new IllegalArgumentException();
+		int nbX = this.getMaximumXValue(), nbY = this.getMaximumYValue();
+		for (int nz = Math.max(z-range, 0); nz <= Math.min(z+range, this.getMaximumZValue()-1); nz++)
+			for (int ny = Math.max(y-range, 0); ny <= Math.min(y+range, nbY-1); ny++)
+				for (int nx = Math.max(x-range, 0); nx <= Math.min(x+range, nbX-1); nx++)
+					if ( ( (nx != x) || (ny != y) || (nz != z) ) && ( ! visitor.visit(nx + nbX * (ny + nbY * nz), nx, ny, nz)) )
+						return false;
+		return true;
+	}
+	
+	/**
+	 * An array that stores the offsets to all 26 neighbouring cubes, as consecutive (dx, dy, dz) triples.
+	 * The first 6 neighbours are directly adjacent, the next 12 share an edge and the last 8 share a corner.
+	 */
+	static final int[] NEIGHBOUR_OFFSETS;
+	
+	/**
+	 * An array that stores, for each neighbour in NEIGHBOUR_OFFSETS, the distance between the centers of both cubes.
+	 */
+	static final double[] NEIGHBOUR_DISTANCES;
+	
+	static {
+		int[] offsets = new int[26 * 3];
+		int count = 0;
+		for (int distance = 1; distance <= 3; distance++)
+			for (int dz = -1; dz <= 1; dz++)
+				for (int dy = -1; dy <= 1; dy++)
+					for (int dx = -1; dx <= 1; dx++)
+						if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) == distance) {
+							offsets[3*count] = dx;
+							offsets[3*count+1] = dy;
+							offsets[3*count+2] = dz;
+							count++;
+						}
+		NEIGHBOUR_OFFSETS = offsets;
+		NEIGHBOUR_DISTANCES = new double[26];
+		for (int i = 0; i < 26; i++)
+			NEIGHBOUR_DISTANCES[i] = Math.sqrt(Math.abs(offsets[3*i]) + Math.abs(offsets[3*i+1]) + Math.abs(offsets[3*i+2]));
+	}
+	
 	/**
 	 * Returns the cube in this world right below the given cube coordinates. 
 	 * 
@@ -594,11 +1046,15 @@ public class World {
 	 *				The z-coordinate of the cube.
 	 *
 	 * @return	the terrain value of the cube.
-	 *				| result == cubes.get(x).get(y).get(z).getTerrainType();
+	 *				| result == Terrain.values()[terrain[getCubeIndex(x, y, z)]]
 	 * 
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid.
 	 */
-	public Terrain getTerrain(int x, int y, int z) {
-		return cubes[x][y][z].getTerrainType();
+	public Terrain getTerrain(int x, int y, int z) throws IllegalArgumentException {
+		if (! this.canHaveAsCoordinates(x, y, z))
+			throw new IllegalArgumentException();
+		return TERRAIN_TYPES[this.terrain.get(this.getCubeIndex(x, y, z))];
 	}
 	
 	/**
@@ -614,13 +1070,9 @@ public class World {
 	 * @return	A list containing all units which currently occupy this cube.
 	 */
 	public Set<Unit> getUnitsInCube(int x, int y, int z) {
-		Set<Unit> unitsOnCube = new HashSet<>();
-		int[]cubeCoordinates = {x,y,z};
-		
-		for (Unit unit: this.getUnits()){
-			if (Position.equals(unit.getPosition().getCubeCoordinates(), cubeCoordinates))
-				unitsOnCube.add(unit);
-		}
+		Set<Unit> unitsOnCube = new LinkedHashSet<>();
+		if (this.canHaveAsCoordinates(x, y, z))
+			this.spatialIndex.collect(this.getCubeIndex(x, y, z), Unit.class, unitsOnCube);
 		return unitsOnCube;
 	}
 	
@@ -643,7 +1095,7 @@ public class World {
 	public Set<int[]> getDirectlyAdjacentCoordinates(int x, int y, int z) throws IllegalArgumentException{
 		if (! this.canHaveAsCoordinates(x, y, z))
 			throw new IllegalArgumentException();
-		Set<int[]> directlyAdjacentCoordinates = new HashSet<>();
+		Set<int[]> directlyAdjacentCoordinates = new LinkedHashSet<>();
 		
 		if (this.canHaveAsCoordinates(x-1,y,z))
 			directlyAdjacentCoordinates.add(new int[]{x-1,y,z});
@@ -717,20 +1169,31 @@ public class World {
 	 * @effect	Drops an item at the given coordinates. Items are dropped with a chance of World.DROP_CHANCE
 	 *				| this.dropItem(cubeCoordinates);
 	 * @effect	The terrain type of the cube at the given coordinates is set to AIR.
-	 *				| this.getCube(x, y, z).setTerrainType(Terrain.AIR)
+	 *				| this.setTerrain(x, y, z, Terrain.AIR)
+	 * @effect	The terrain change listener is notified of the change, at the end of the current step if
+	 *				this world is advancing its time and immediately otherwise.
 	 */
 	protected void collapsCube(int[] cubeCoordinates) throws IllegalStateException,IllegalArgumentException {
+		this.collapse(cubeCoordinates);
+		this.addTerrainChange(cubeCoordinates);
+		if ( ! this.isAdvancingTime)
+			this.notifyTerrainChanges();
+	}
+	
+	/**
+	 * Collapses the cube at the given cube coordinates without notifying the terrain change listener,
+	 * and adds the cubes that are no longer connected to the border to the pending collapses.
+	 */
+	private void collapse(int[] cubeCoordinates) throws IllegalStateException,IllegalArgumentException {
 		int x =cubeCoordinates[0];
 		int y =cubeCoordinates[1];
 		int z =cubeCoordinates[2];
 		
-		
-		Terrain terrain = this.getCube(x, y, z).getTerrainType();
-		this.getCube(x, y, z).setTerrainType(Terrain.AIR);
+		Terrain terrain = this.getTerrain(x, y, z);
+		this.setTerrain(x, y, z, Terrain.AIR);
 		this.dropItem(cubeCoordinates, terrain);
 		
-		collapsingCubes.addAll(this.changeSolidToPassable(x, y, z));
-		this.terrainChangeListener.notifyTerrainChanged(x, y, z);
+		this.addPendingCollapses(this.changeSolidToPassable(x, y, z));
 	}
 	
 	/**
@@ -750,7 +1213,7 @@ public class World {
 	 */
 	private void dropItem(int[] cubeCoordinates, Terrain terrain) throws NullPointerException,IllegalStateException{
 		double dropChance = World.DROP_CHANCE;
-		double succesRate = Math.random();
+		double succesRate = this.getRandom().nextDouble();
 		if (succesRate <= dropChance){
 			if (terrain == Terrain.WOOD)
 				new Log(this, cubeCoordinates);
@@ -760,68 +1223,202 @@ public class World {
 	}
 	
 	/**
-	 * Makes the cubes that are listed for caving in actually cave in.
-	 * 
-	 * @effect The cubes in the list collapsingCubes collaps.
-	 *				| for each collapsingCube in this.collapsingCubes
-	 *				|	this.collapsCube(collapsingCube)
+	 * Returns the maximal number of cubes that cave in during a single call of advanceTime.
 	 */
-	private void caveInCollapsingCubes() throws NullPointerException, IllegalStateException{
-		for (int[] collapsingCube: this.collapsingCubes){
-			collapsCube(collapsingCube);
-		}
-		collapsingCubes.clear();
+	@Basic @Raw
+	public int getCaveInBudget() {
+		return this.caveInBudget;
 	}
 	
 	/**
-	 * Returns a set of all integer coordinates which are at most r cubes away from
-	 * the given coordinates. Only valid coordinates in this world are included.
-	 * The given coordinates are also included if it is valid.
-	 * 
-	 * @param	coordinates
-	 *				The given start coordinates.
-	 * @param	range
-	 *				The given range.
+	 * Sets the maximal number of cubes that cave in during a single call of advanceTime to the given budget.
 	 * 
-	 * @return	A set of coordinates which are valid. Their integer coordinates 
-	 *				are at most r cubes away from the given coordinates.
-	 * 
-	 * @throws IllegalArgumentException
-	 *				The given coordinates are not valid coordinates for this world.
+	 * @param	caveInBudget
+	 *				The new budget.
+	 *
+	 * @post	| new.getCaveInBudget() == caveInBudget
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given budget is not positive.
+	 *				| caveInBudget <= 0
 	 */
-	public Set<int[]> getValidCubeCoordinatesInRange(int[] coordinates, int range) throws IllegalArgumentException{
-		if ( ! this.canHaveAsCoordinates(coordinates))
+	public void setCaveInBudget(int caveInBudget) throws IllegalArgumentException {
+		if (caveInBudget <= 0)
 			throw new IllegalArgumentException();
-		
-		Set<int[]> result = new HashSet<>();
-		Set<int[]> allCubes = Position.getCubeCoordinatesInRange(coordinates, range);
-		for (int[] cubeCoordinates: allCubes)
-			if (this.canHaveAsCoordinates(cubeCoordinates) && ( ! Position.equals(coordinates, cubeCoordinates)))
-				result.add(cubeCoordinates);
-		return result ;
+		this.caveInBudget = caveInBudget;
 	}
 	
 	/**
-	 * Returns  integer coordinates which are at most x cubes away from the given coordinates,
-	 * where x is the given range, and that are passable and valid for this world.
-	 * If no such coordinates can be found, return the cube coordinates of the original coordinates.
-	 * 
-	 * @param	coordinates
-	 *				The start coordinates.
-	 * @param	range
-	 *				How far the new coordinates may be from the given coordinates (in 3 dimensions).
-	 *
-	 * @return	Passable, valid coordinates which are at most 'range' cubes away from the given coordinates.
-	 *				When no such coordinates are found, return the original coordinates.
-	 * @throws	IllegalArgumentException
-	 *				There is no valid coordinates in range.
+	 * A symbolic constant denoting the default maximal number of cubes that cave in during a single call of advanceTime.
 	 */
-	public int[] getRandomValidCubeCoordinatesInRange(double[] coordinates, int range) {
-		Set<int[]> cubeSet = this.getValidCubeCoordinatesInRange(Position.getCubeCoordinates(coordinates), range);
-		int size = cubeSet.size();
+	public static final int DEFAULT_CAVE_IN_BUDGET = 64;
+	
+	/**
+	 * A variable that stores the maximal number of cubes that cave in during a single call of advanceTime.
+	 */
+	private int caveInBudget = DEFAULT_CAVE_IN_BUDGET;
+	
+	/**
+	 * Returns the number of cubes that are no longer connected to the border and wait to cave in.
+	 */
+	public int getNbPendingCollapses() {
+		return this.pendingCollapses.size();
+	}
+	
+	/**
+	 * Adds the given cubes to the end of the pending collapses, skipping cubes that are already pending.
+	 * 
+	 * @param	cubes
+	 *				The cube coordinates to add.
+	 */
+	private void addPendingCollapses(List<int[]> cubes) {
+		for (int[] cube: cubes) {
+			int index = this.getCubeIndex(cube[0], cube[1], cube[2]);
+			if ( ! this.pendingCollapseBits.get(index)) {
+				this.pendingCollapseBits.set(index);
+				this.pendingCollapses.add(cube);
+			}
+		}
+	}
+	
+	/**
+	 * Makes at most the given number of pending collapses actually cave in, in the order in which they were found
+	 * to be no longer connected to the border. Cubes that are found to be disconnected by the cave-in are added to
+	 * the end of the pending collapses, so a large cascade spreads over several calls.
+	 * 
+	 * @param	budget
+	 *				The maximal number of cubes that cave in.
+	 *
+	 * @effect	The first pending collapses cave in, skipping cubes that have become passable in the meantime.
+	 *				| for each cube in the first min(budget, getNbPendingCollapses()) solid pending collapses:
+	 *				|	this.collapsCube(cube)
+	 *
+	 * @note	The collapsed cubes are added to the terrain changes of this world, of which the terrain change listener
+	 *				is notified at the end of the current step.
+	 */
+	private void caveInCollapsingCubes(int budget) throws NullPointerException, IllegalStateException{
+		int nbCollapsed = 0;
+		while ( (nbCollapsed < budget) && ( ! this.pendingCollapses.isEmpty()) ) {
+			int[] cube = this.pendingCollapses.poll();
+			int index = this.getCubeIndex(cube[0], cube[1], cube[2]);
+			this.pendingCollapseBits.clear(index);
+			// The cube may have been mined since it was found to be disconnected.
+			if (this.isPassable(index))
+				continue;
+			this.collapse(cube);
+			this.addTerrainChange(cube);
+			nbCollapsed++;
+		}
+		if (this.getProfiler().isEnabled() && (nbCollapsed != 0))
+			this.getProfiler().addCaveIn(nbCollapsed);
+	}
+	
+	/**
+	 * A queue that stores the cube coordinates of the cubes that wait to cave in, in the order in which they were
+	 * found to be no longer connected to the border.
+	 */
+	private final ArrayDeque<int[]> pendingCollapses = new ArrayDeque<>();
+	
+	/**
+	 * A bit set that stores, by cube index, which cubes are pending collapses.
+	 */
+	private final ChunkedBitSet pendingCollapseBits;
+	
+	/**
+	 * Adds the cube at the given coordinates to the terrain changes of which the terrain change listener
+	 * of this world has not been notified yet.
+	 */
+	private void addTerrainChange(int[] cubeCoordinates) {
+		this.terrainChanges.add(cubeCoordinates);
+	}
+	
+	/**
+	 * Notifies the terrain change listener of this world of all terrain changes since the last notification at once.
+	 * 
+	 * @effect	If there are such changes, the listener is notified of a change set of them.
+	 *				| if ( ! terrainChanges.isEmpty())
+	 *				|	then getTerrainChangeListener().notifyTerrainChanged(new TerrainChangeSet(terrainChanges))
+	 */
+	private void notifyTerrainChanges() {
+		if (this.terrainChanges.isEmpty())
+			return;
+		TerrainChangeSet changes = new TerrainChangeSet(this.terrainChanges);
+		this.terrainChanges.clear();
+		this.terrainChangeListener.notifyTerrainChanged(changes);
+	}
+	
+	/**
+	 * A list that stores the cube coordinates of the terrain changes of which the terrain change listener
+	 * of this world has not been notified yet.
+	 */
+	private final List<int[]> terrainChanges = new ArrayList<>();
+	
+	/**
+	 * Returns whether this world is advancing its time.
+	 */
+	@Basic @Raw
+	boolean isAdvancingTime() {
+		return this.isAdvancingTime;
+	}
+	
+	/**
+	 * A variable that stores whether this world is advancing its time. Terrain changes made during a step
+	 * are notified together at the end of the step.
+	 */
+	private boolean isAdvancingTime = false;
+	
+	/**
+	 * Returns a set of all integer coordinates which are at most r cubes away from
+	 * the given coordinates. Only valid coordinates in this world are included.
+	 * The given coordinates are also included if it is valid.
+	 * 
+	 * @param	coordinates
+	 *				The given start coordinates.
+	 * @param	range
+	 *				The given range.
+	 * 
+	 * @return	A set of coordinates which are valid. Their integer coordinates 
+	 *				are at most r cubes away from the given coordinates.
+	 * 
+	 * @throws IllegalArgumentException
+	 *				The given coordinates are not valid coordinates for this world.
+	 */
+	public Set<int[]> getValidCubeCoordinatesInRange(int[] coordinates, int range) throws IllegalArgumentException{
+		if ( ! this.canHaveAsCoordinates(coordinates))
+			throw new IllegalArgumentException();
+		
+		final Set<int[]> result = new LinkedHashSet<>();
+		this.visitCubesInRange(coordinates[0], coordinates[1], coordinates[2], range, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				result.add(new int[]{x, y, z});
+				return true;
+			}
+		});
+		return result ;
+	}
+	
+	/**
+	 * Returns  integer coordinates which are at most x cubes away from the given coordinates,
+	 * where x is the given range, and that are passable and valid for this world.
+	 * If no such coordinates can be found, return the cube coordinates of the original coordinates.
+	 * 
+	 * @param	coordinates
+	 *				The start coordinates.
+	 * @param	range
+	 *				How far the new coordinates may be from the given coordinates (in 3 dimensions).
+	 *
+	 * @return	Passable, valid coordinates which are at most 'range' cubes away from the given coordinates.
+	 *				When no such coordinates are found, return the original coordinates.
+	 * @throws	IllegalArgumentException
+	 *				There is no valid coordinates in range.
+	 */
+	public int[] getRandomValidCubeCoordinatesInRange(double[] coordinates, int range) {
+		Set<int[]> cubeSet = this.getValidCubeCoordinatesInRange(Position.getCubeCoordinates(coordinates), range);
+		int size = cubeSet.size();
 		if (size == 0)
 			throw new IllegalArgumentException("No valid coordinates within range.");
-		int randomIndex = new Random().nextInt(size);
+		int randomIndex = this.getRandom().nextInt(size);
 		int count = 0;
 		for (int[] cubeCoordinates: cubeSet) {
 			if (count == randomIndex) 
@@ -879,7 +1476,7 @@ public class World {
 	 */
 	public int[] getRandomUnitCoordinatesInRange(double[] coordinates, int range) throws IllegalArgumentException {
 		Set<int[]> cubeSet = this.getValidCubeCoordinatesInRange(Position.getCubeCoordinates(coordinates), range);
-		Set<int[]> reducedSet = new HashSet<>();
+		Set<int[]> reducedSet = new LinkedHashSet<>();
 		int size = cubeSet.size();
 		if (size == 0)
 			throw new IllegalArgumentException("No valid coordinates within range.");
@@ -889,7 +1486,7 @@ public class World {
 			if (temp.canHaveAsCoordinates(cubeCoordinates))
 				reducedSet.add(cubeCoordinates);
 		}
-		int randomIndex = new Random().nextInt(reducedSet.size());
+		int randomIndex = this.getRandom().nextInt(reducedSet.size());
 		int count = 0;
 		for (int[] cubeCoordinates: reducedSet) {
 			if (count == randomIndex) 
@@ -982,6 +1579,17 @@ public class World {
 			throw new IllegalArgumentException();
 		
 		entities.add(entity);
+		if (entity instanceof Unit) {
+			this.units.add((Unit) entity);
+			this.awakeUnits.add((Unit) entity);
+		}
+		else if (entity instanceof Log)
+			this.logs.add((Log) entity);
+		else if (entity instanceof Boulder)
+			this.boulders.add((Boulder) entity);
+		if (entity instanceof Item)
+			this.awakeItems.add((Item) entity);
+		this.spatialIndex.put(entity, this.getCubeIndex(entity.getPosition().getCoordinates()));
 	}
 
 	/**
@@ -1002,7 +1610,15 @@ public class World {
 		if ( ! this.hasAsEntity(entity) && ( ! this.isTerminated()))
 			throw new IllegalArgumentException();
 		
+		// Catch up the gametime of a sleeping entity before it leaves this world.
+		this.wakeEntity(entity);
 		entities.remove(entity);
+		this.units.remove(entity);
+		this.logs.remove(entity);
+		this.boulders.remove(entity);
+		this.awakeUnits.remove(entity);
+		this.awakeItems.remove(entity);
+		this.spatialIndex.remove(entity);
 		entity.setWorld(null);
 	}
 
@@ -1015,7 +1631,7 @@ public class World {
 	 *				| for each entity in entities:
 	 *				|   ( (entity != null) && (! entity.isTerminated()) )
 	 */
-	private final Set<Entity> entities = new HashSet<Entity>();
+	private final Set<Entity> entities = new LinkedHashSet<Entity>();
 	
 	/**
 	 * Returns a set collecting all the entities of this world. 
@@ -1026,9 +1642,92 @@ public class World {
 	 */
 	// NOTE: this is the formal way (same as in textbook) to return all objects of the set.
 	public Set<Entity> getEntities() {
-		return new HashSet<Entity>(this.entities);
+		return new LinkedHashSet<Entity>(this.entities);
+	}
+	
+	/**
+	 * Returns an entity of the given type of this world that occupies the cube with the given coordinates.
+	 * 
+	 * @param	coordinates
+	 *				The coordinates of the cube to find an entity in.
+	 * @param	type
+	 *				The type of entity to find.
+	 *
+	 * @return	An entity of the given type which occupies the cube with the given coordinates.
+	 *				Return null if no such entity exists or the coordinates are not valid for this world.
+	 */
+	public <T extends Entity> T getEntityAt(int[] coordinates, Class<T> type) {
+		if ( (coordinates == null) || (coordinates.length != 3) 
+				|| ( ! this.canHaveAsCoordinates(coordinates[0], coordinates[1], coordinates[2])) )
+			return null;
+		return this.spatialIndex.getAny(this.getCubeIndex(coordinates[0], coordinates[1], coordinates[2]), type);
+	}
+	
+	/**
+	 * Returns a set collecting all the entities of the given type of this world which occupy a cube 
+	 * that is at most the given range away from the given cube, in each direction.
+	 * The given cube itself is included.
+	 * 
+	 * @param	coordinates
+	 *				The coordinates of the center cube.
+	 * @param	range
+	 *				The maximal number of cubes between the center cube and the cubes to look in.
+	 * @param	type
+	 *				The type of entity to find.
+	 *
+	 * @return	A set of all entities of the given type which occupy a cube in range of the given cube.
+	 *				| for each entity in result:
+	 *				|	type.isInstance(entity) &&
+	 *				|	for each i in 0..2:
+	 *				|		Math.abs(entity.getCubeCoordinates()[i] - coordinates[i]) <= range
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are not valid coordinates for this world, or the given range is negative.
+	 *				| ( ! this.canHaveAsCoordinates(coordinates)) || (range < 0)
+	 */
+	public <T extends Entity> Set<T> getEntitiesInRange(int[] coordinates, int range, Class<T> type) 
+			throws IllegalArgumentException {
+		if ( ! this.canHaveAsCoordinates(coordinates))
+			throw new IllegalArgumentException();
+		Set<T> result = new LinkedHashSet<>();
+		this.spatialIndex.collectInRange(coordinates[0], coordinates[1], coordinates[2], range, type, result);
+		return result;
 	}
 	
+	/**
+	 * Updates the registration of the given entity in the spatial index of this world
+	 * to the cube it currently occupies. Nothing happens if the given entity is
+	 * not one of the entities of this world.
+	 * 
+	 * @param	entity
+	 *				The entity that has moved.
+	 */
+	@Raw
+	public void relocateEntity(Entity entity) {
+		if (this.spatialIndex.getIndexOf(entity) < 0 || ( ! this.hasAsEntity(entity)))
+			return;
+		this.spatialIndex.put(entity, this.getCubeIndex(entity.getPosition().getCoordinates()));
+		this.wakeEntity(entity);
+	}
+	
+	/**
+	 * Returns the index of the cube which holds the given exact coordinates.
+	 * 
+	 * @param	coordinates
+	 *				The exact coordinates.
+	 *
+	 * @return	| result == this.getCubeIndex(Position.getCubeCoordinates(coordinates))
+	 */
+	private int getCubeIndex(double[] coordinates) {
+		return this.getCubeIndex((int) Math.floor(coordinates[0]), 
+				(int) Math.floor(coordinates[1]), (int) Math.floor(coordinates[2]));
+	}
+	
+	/**
+	 * A variable that stores the spatial index which registers the entities of this world per cube.
+	 */
+	private final SpatialIndex spatialIndex;
+	
 	/**
 	 * Returns an item of this world that has coordinates equal to the given coordinates.
 	 * 
@@ -1039,14 +1738,7 @@ public class World {
 	 *				Return null if no such item exists.
 	 */
 	public Item getItemAt(int[] coordinates){
-		for (Entity entity: this.getEntities()){
-			if (entity instanceof Item){
-				int[] entityPosition = entity.getPosition().getCubeCoordinates();
-				if (Position.equals(coordinates, entityPosition))
-					return (Item) entity;
-			}
-		}
-		return null;
+		return this.getEntityAt(coordinates, Item.class);
 	}
 	
 	/**
@@ -1075,17 +1767,29 @@ public class World {
 	 * 
 	 * @note	The resulting set does not contain a null reference.
 	 * 
+	 * @note	The resulting set is a read-only view which reflects later changes to this world.
+	 *				Callers that add or remove entities while iterating must copy it first.
+	 * 
 	 * @return	Each unit in the resulting set is attached to this world and vice versa.
 	 */
 	public Set<Unit> getUnits() {
-		Set<Entity> allEntities = this.getEntities();
-		Set<Unit> result = new HashSet<>();
-		for (Entity entity : allEntities)
-			if (entity instanceof Unit)
-				result.add((Unit)entity);
-		return result;	
+		return this.unitsView;
 	}
 	
+	/**
+	 * A variable that stores a set collecting all the units of this world.
+	 * 
+	 * @invar	Each unit in the referenced set is also registered as one of the entities of this world.
+	 *				| for each unit in units:
+	 *				|	this.hasAsEntity(unit)
+	 */
+	private final Set<Unit> units = new LinkedHashSet<>();
+	
+	/**
+	 * A variable that stores a read-only view on the units of this world.
+	 */
+	private final Set<Unit> unitsView = Collections.unmodifiableSet(this.units);
+	
 	/**
 	 * Returns the number of units associated with this world.
 	 *
@@ -1093,7 +1797,7 @@ public class World {
 	 *				| this.getUnits().size()
 	 */
 	public int getNbUnits() {
-		return this.getUnits().size();
+		return this.units.size();
 	}
 	
 	/**
@@ -1104,12 +1808,22 @@ public class World {
 	 *				Return null if no such unit exists.
 	 */
 	public Unit getUnitAt(int[] coordinates){
-		for (Unit unit: this.getUnits()){
-			int[] unitPosition = unit.getPosition().getCubeCoordinates();
-			if (Position.equals(coordinates, unitPosition))
-				return unit;
-		}
-		return null;
+		return this.getEntityAt(coordinates, Unit.class);
+	}
+	
+	/**
+	 * Returns a set collecting all the units of this world which occupy a cube that is 
+	 * at most the given range away from the given cube.
+	 * 
+	 * @param	coordinates
+	 *				The coordinates of the center cube.
+	 * @param	range
+	 *				The maximal number of cubes between the center cube and the cubes to look in.
+	 *
+	 * @return	| result == this.getEntitiesInRange(coordinates, range, Unit.class)
+	 */
+	public Set<Unit> getUnitsInRange(int[] coordinates, int range) throws IllegalArgumentException {
+		return this.getEntitiesInRange(coordinates, range, Unit.class);
 	}
 	
 	/**
@@ -1138,17 +1852,29 @@ public class World {
 	 * 
 	 * @note	The resulting set does not contain a null reference.
 	 * 
+	 * @note	The resulting set is a read-only view which reflects later changes to this world.
+	 *				Callers that add or remove entities while iterating must copy it first.
+	 * 
 	 * @return	Each log in the resulting set is attached to this world and vice versa.
 	 */
 	public Set<Log> getLogs() {
-		Set<Entity> allEntities = this.getEntities();
-		Set<Log> result = new HashSet<>();
-		for (Entity entity : allEntities)
-			if (entity instanceof Log)
-				result.add((Log)entity);
-		return result;	
+		return this.logsView;
 	}
 	
+	/**
+	 * A variable that stores a set collecting all the logs of this world.
+	 * 
+	 * @invar	Each log in the referenced set is also registered as one of the entities of this world.
+	 *				| for each log in logs:
+	 *				|	this.hasAsEntity(log)
+	 */
+	private final Set<Log> logs = new LinkedHashSet<>();
+	
+	/**
+	 * A variable that stores a read-only view on the logs of this world.
+	 */
+	private final Set<Log> logsView = Collections.unmodifiableSet(this.logs);
+	
 	/**
 	 * Returns the number of logs associated with this world.
 	 *
@@ -1156,7 +1882,7 @@ public class World {
 	 *				| this.getLogs().size()
 	 */
 	public int getNbLogs() {
-		return this.getLogs().size();
+		return this.logs.size();
 	}
 	
 	/**
@@ -1167,12 +1893,7 @@ public class World {
 	 *				Return null if no such log exists.
 	 */
 	public Log getLogAt(int[] coordinates){
-		for (Log log: this.getLogs()){
-			int[] logPosition = log.getPosition().getCubeCoordinates();
-			if (Position.equals(coordinates, logPosition))
-				return log;
-		}
-		return null;
+		return this.getEntityAt(coordinates, Log.class);
 	}
 	
 	/**
@@ -1200,17 +1921,29 @@ public class World {
 	 * 
 	 * @note	The resulting set does not contain a null reference.
 	 * 
+	 * @note	The resulting set is a read-only view which reflects later changes to this world.
+	 *				Callers that add or remove entities while iterating must copy it first.
+	 * 
 	 * @return	Each boulder in the resulting set is attached to this world and vice versa.
 	 */
 	public Set<Boulder> getBoulders() {
-		Set<Entity> allEntities = this.getEntities();
-		Set<Boulder> result = new HashSet<>();
-		for (Entity entity : allEntities)
-			if (entity instanceof Boulder)
-				result.add((Boulder)entity);
-		return result;	
+		return this.bouldersView;
 	}
 	
+	/**
+	 * A variable that stores a set collecting all the boulders of this world.
+	 * 
+	 * @invar	Each boulder in the referenced set is also registered as one of the entities of this world.
+	 *				| for each boulder in boulders:
+	 *				|	this.hasAsEntity(boulder)
+	 */
+	private final Set<Boulder> boulders = new LinkedHashSet<>();
+	
+	/**
+	 * A variable that stores a read-only view on the boulders of this world.
+	 */
+	private final Set<Boulder> bouldersView = Collections.unmodifiableSet(this.boulders);
+	
 	/**
 	 * Returns the number of boulders associated with this world.
 	 *
@@ -1218,7 +1951,7 @@ public class World {
 	 *				| this.getBoulders().size()
 	 */
 	public int getNbBoulders() {
-		return this.getBoulders().size();
+		return this.boulders.size();
 	}
 	
 	/**
@@ -1230,12 +1963,7 @@ public class World {
 	 *				Return null if no such boulder exists.
 	 */
 	public Boulder getBoulderAt(int[] coordinates){
-		for (Boulder boulder: this.getBoulders()){
-			int[] boulderPosition = boulder.getPosition().getCubeCoordinates();
-			if (Position.equals(coordinates, boulderPosition))
-				return boulder;
-		}
-		return null;
+		return this.getEntityAt(coordinates, Boulder.class);
 	}
 	
 	/**
@@ -1268,10 +1996,10 @@ public class World {
 		if (this.getNbUnits()<World.MAX_UNITS_WORLD)	{
 			String randomName = nameGenerator();
 			int[] randomCoordinates = this.getRandomAvailableUnitCoordinates();
-			int randomWeight = new Random().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
-			int randomStrength = new Random().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
-			int randomAgility = new Random().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
-			int randomToughness = new Random().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
+			int randomWeight = this.getRandom().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
+			int randomStrength = this.getRandom().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
+			int randomAgility = this.getRandom().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
+			int randomToughness = this.getRandom().nextInt(Unit.getMaxInitialBaseStat()-Unit.getMinInitialBaseStat()+1) + Unit.getMinInitialBaseStat();
 			
 			Unit newRandomUnit = null;
 			if (this.hasRoomForFaction()) {
@@ -1302,7 +2030,7 @@ public class World {
 	 * @return	A random valid unit name of length DEFAULT_NAME_LENGTH.
 	 *				| result == nameGenerator(DEFAULT_NAME_LENGTH)
 	 */
-	private static String nameGenerator() throws IllegalStateException{
+	private String nameGenerator() throws IllegalStateException{
 		return nameGenerator(DEFAULT_NAME_LENGTH);
 	}
 	
@@ -1315,7 +2043,7 @@ public class World {
 	 * @return A random capital letter followed by a random string of allowed name characters of the given length minus 1.
 	 *				| result == getRandomCapitalLetter() + getRandomStringOfAllowedNameCharacters(length-1)
 	 */
-	private static String nameGenerator(int length) throws IllegalStateException{
+	private String nameGenerator(int length) throws IllegalStateException{
 		String randomCapitalLetter = getRandomCapitalLetter();
 		String randomRestOfTheName = getRandomStringOfAllowedNameCharacters(length-1);
 		return randomCapitalLetter + randomRestOfTheName;
@@ -1332,10 +2060,10 @@ public class World {
 	 * @throws	IllegalStateException
 	 *				The generated string is not the given length.
 	 */
-	private static String getRandomStringOfAllowedNameCharacters(int length) throws IllegalStateException {
+	private String getRandomStringOfAllowedNameCharacters(int length) throws IllegalStateException {
 		String string = "";
 		while (string.length() < length){
-			int choice = new Random().nextInt(ALLOWED_NAME_CHARACTERS.length());
+			int choice = this.getRandom().nextInt(ALLOWED_NAME_CHARACTERS.length());
 			string += Character.toString(ALLOWED_NAME_CHARACTERS.charAt(choice));
 		}
 		
@@ -1355,8 +2083,8 @@ public class World {
 	 * 
 	 * @return A random character that is in ALL_CAPITAL_LETTERS..
 	 */
-	private static String getRandomCapitalLetter() {
-		int choice = new Random().nextInt(ALL_CAPITAL_LETTERS.length());
+	private String getRandomCapitalLetter() {
+		int choice = this.getRandom().nextInt(ALL_CAPITAL_LETTERS.length());
 		return Character.toString(ALL_CAPITAL_LETTERS.charAt(choice));
 	}
 	
@@ -1386,15 +2114,15 @@ public class World {
 	int[] getRandomCoordinates() {
 		int randomXCoordinate = CUBE_COORDINATE_MIN-1;
 		while (!this.canHaveAsXCoordinate(randomXCoordinate))
-			randomXCoordinate = new Random().nextInt( this.getMaximumXValue());
+			randomXCoordinate = this.getRandom().nextInt( this.getMaximumXValue());
 		
 		int randomYCoordinate = CUBE_COORDINATE_MIN-1;
 		while (!this.canHaveAsYCoordinate(randomYCoordinate))
-			randomYCoordinate = new Random().nextInt( this.getMaximumYValue());
+			randomYCoordinate = this.getRandom().nextInt( this.getMaximumYValue());
 		
 		int randomZCoordinate = CUBE_COORDINATE_MIN-1;
 		while (!this.isValidZCoordinate(randomZCoordinate))
-			randomZCoordinate = new Random().nextInt( this.getMaximumZValue());
+			randomZCoordinate = this.getRandom().nextInt( this.getMaximumZValue());
 		
 		int[] randomCoordinates = {randomXCoordinate, randomYCoordinate, randomZCoordinate};
 		return randomCoordinates ;
@@ -1411,9 +2139,12 @@ public class World {
 	 *				|		( (coordinates[2] == CUBE_COORDINATE_MIN) || (!this.isPassable(coordinatesRightUnderneath)) ) )
 	*/
 	public boolean isValidInitialUnitCoordinates(int[] coordinates){
-		int[] coordinatesRightUnderneath = {coordinates[0], coordinates[1], coordinates[2]-1};
-		return ( this.isPassable(coordinates) && ((coordinates[2] == CUBE_COORDINATE_MIN) || (!this.isPassable(coordinatesRightUnderneath))) 
-				&& this.canHaveAsCoordinates(coordinates));
+		if ( ! this.canHaveAsCoordinates(coordinates))
+			return false;
+		int index = this.getCubeIndex(coordinates[0], coordinates[1], coordinates[2]);
+		// The cube right underneath has index index - nbX*nbY.
+		return ( this.isPassable(index) && ((coordinates[2] == CUBE_COORDINATE_MIN) 
+				|| ( ! this.isPassable(index - this.getMaximumXValue() * this.getMaximumYValue()))) );
 	}
 	
 	/**
@@ -1424,10 +2155,222 @@ public class World {
 	 *
 	 * @return	Returns true if and only if the cube in the given coordinates is passable. 
 	 * 				A cube is passable when the terrain is AIR or WORKSHOP.
-	 *				|result == cubes[coordinates[0]][coordinates[1]][coordinates[2]].isPassable();
+	 *				|result == isPassable(coordinates[0], coordinates[1], coordinates[2])
 	 */
 	private boolean isPassable(int[] coordinates){
-		return cubes[coordinates[0]][coordinates[1]][coordinates[2]].isPassable();
+		return this.isPassable(coordinates[0], coordinates[1], coordinates[2]);
+	}
+	
+	/**
+	 * Returns whether the cube with the given coordinates is passable.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	True if and only if the terrain of the given cube is AIR or WORKSHOP.
+	 *				| result == ( (getTerrain(x, y, z) == Terrain.AIR) || (getTerrain(x, y, z) == Terrain.WORKSHOP) )
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid.
+	 */
+	public boolean isPassable(int x, int y, int z) throws IllegalArgumentException {
+		if (! this.canHaveAsCoordinates(x, y, z))
+			throw new IllegalArgumentException();
+		return this.isPassable(this.getCubeIndex(x, y, z));
+	}
+	
+	/**
+	 * Returns whether the cube with the given index is passable.
+	 * 
+	 * @param	index
+	 *				The index of the cube, as given by getCubeIndex.
+	 *
+	 * @return	True if and only if the terrain of the cube with the given index is AIR or WORKSHOP.
+	 *
+	 * @note	The given index is not checked.
+	 */
+	boolean isPassable(int index) {
+		byte terrainIndex = this.terrain.get(index);
+		return (terrainIndex == AIR_INDEX) || (terrainIndex == WORKSHOP_INDEX);
+	}
+	
+	/**
+	 * Symbolic constants that store the terrain type index of the passable terrain types.
+	 */
+	private static final byte AIR_INDEX = (byte) Terrain.AIR.ordinal(),
+			WORKSHOP_INDEX = (byte) Terrain.WORKSHOP.ordinal();
+	
+	/**
+	 * Returns whether the cube with the given coordinates is adjacent to at least one solid cube.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	True if and only if one of the neighbouring cubes is not passable.
+	 *				| result == (for some neighbour in getNeighbours(new int[]{x, y, z}):
+	 *				|	! isPassable(neighbour[0], neighbour[1], neighbour[2]))
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid.
+	 */
+	public boolean hasSolidNeighbours(int x, int y, int z) throws IllegalArgumentException {
+		if (! this.canHaveAsCoordinates(x, y, z))
+			throw new IllegalArgumentException();
+		return this.hasSolidNeighbours(this.getCubeIndex(x, y, z));
+	}
+	
+	/**
+	 * Returns whether the cube with the given index is adjacent to at least one solid cube.
+	 * 
+	 * @param	index
+	 *				The index of the cube, as given by getCubeIndex.
+	 *
+	 * @note	The given index is not checked.
+	 */
+	boolean hasSolidNeighbours(int index) {
+		return this.solidNeighbours.get(index);
+	}
+	
+	/**
+	 * Returns whether the cube with the given coordinates is adjacent to at least one passable cube.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	True if and only if one of the neighbouring cubes is passable.
+	 *				| result == (for some neighbour in getNeighbours(new int[]{x, y, z}):
+	 *				|	isPassable(neighbour[0], neighbour[1], neighbour[2]))
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid.
+	 */
+	public boolean hasPassableNeighbours(int x, int y, int z) throws IllegalArgumentException {
+		if (! this.canHaveAsCoordinates(x, y, z))
+			throw new IllegalArgumentException();
+		return this.hasNeighbourOfPassability(x, y, z, true);
+	}
+	
+	/**
+	 * Returns whether one of the neighbours of the cube with the given coordinates is passable if the given
+	 * flag is true, or solid if it is false.
+	 * 
+	 * @note	The given coordinates are not checked. The neighbours are walked without a visitor, since
+	 *				units check their surroundings each time they set out for a cube.
+	 */
+	private boolean hasNeighbourOfPassability(int x, int y, int z, boolean passable) {
+		int nbX = this.getMaximumXValue(), nbY = this.getMaximumYValue(), nbZ = this.getMaximumZValue();
+		for (int i = 0; i < NEIGHBOUR_OFFSETS.length; i += 3) {
+			int nx = x + NEIGHBOUR_OFFSETS[i], ny = y + NEIGHBOUR_OFFSETS[i+1], nz = z + NEIGHBOUR_OFFSETS[i+2];
+			if ( (nx >= 0) && (ny >= 0) && (nz >= 0) && (nx < nbX) && (ny < nbY) && (nz < nbZ)
+					&& (this.isPassable(nx + nbX * (ny + nbY * nz)) == passable) )
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns whether a unit can stand in the cube with the given coordinates.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the cube.
+	 * @param	y
+	 *				The y-coordinate of the cube.
+	 * @param	z
+	 *				The z-coordinate of the cube.
+	 *
+	 * @return	True if and only if the given cube is passable and adjacent to a solid cube.
+	 *				| result == (isPassable(x, y, z) && hasSolidNeighbours(x, y, z))
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given coordinates are invalid.
+	 */
+	public boolean isWalkable(int x, int y, int z) throws IllegalArgumentException {
+		if (! this.canHaveAsCoordinates(x, y, z))
+			throw new IllegalArgumentException();
+		return this.isWalkable(this.getCubeIndex(x, y, z));
+	}
+	
+	/**
+	 * Returns whether a unit can stand in the cube with the given index.
+	 * 
+	 * @param	index
+	 *				The index of the cube, as given by getCubeIndex.
+	 *
+	 * @note	The given index is not checked.
+	 */
+	boolean isWalkable(int index) {
+		return this.isPassable(index) && this.hasSolidNeighbours(index);
+	}
+	
+	/**
+	 * A variable that stores, with one bit per cube index, whether the cube is adjacent to a solid cube.
+	 */
+	private final ChunkedBitSet solidNeighbours;
+	
+	/**
+	 * Computes for each cube of this world whether it is adjacent to a solid cube.
+	 */
+	private void initializeSolidNeighbours() {
+		int nbX = this.getMaximumXValue(), nbY = this.getMaximumYValue(), nbZ = this.getMaximumZValue();
+		// The bits are computed in a plain array, which is stored in the chunked bit set afterwards.
+		long[] solidNeighbours = new long[this.solidNeighbours.getNbWords()];
+		for (int z = 0; z < nbZ; z++)
+			for (int y = 0; y < nbY; y++)
+				for (int x = 0; x < nbX; x++)
+					if ( ! this.isPassable(this.getCubeIndex(x, y, z)))
+						// Mark all neighbours of this solid cube.
+						for (int nz = Math.max(z-1, 0); nz <= Math.min(z+1, nbZ-1); nz++)
+							for (int ny = Math.max(y-1, 0); ny <= Math.min(y+1, nbY-1); ny++)
+								for (int nx = Math.max(x-1, 0); nx <= Math.min(x+1, nbX-1); nx++)
+									if ( (nx != x) || (ny != y) || (nz != z) ) {
+										int index = this.getCubeIndex(nx, ny, nz);
+										solidNeighbours[index >>> 6] |= (1L << index);
+									}
+		for (int i = 0; i < solidNeighbours.length; i++)
+			this.solidNeighbours.setWord(i, solidNeighbours[i]);
+	}
+	
+	/**
+	 * Recomputes whether the neighbours of the cube with the given coordinates are adjacent to a solid cube.
+	 * This method must be invoked whenever the terrain of the given cube changes.
+	 * 
+	 * @param	x
+	 *				The x-coordinate of the changed cube.
+	 * @param	y
+	 *				The y-coordinate of the changed cube.
+	 * @param	z
+	 *				The z-coordinate of the changed cube.
+	 */
+	private void updateSolidNeighbours(int x, int y, int z) {
+		this.visitNeighbours(x, y, z, 26, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int nx, int ny, int nz) {
+				if (isSolidAround(nx, ny, nz))
+					solidNeighbours.set(index);
+				else
+					solidNeighbours.clear(index);
+				return true;
+			}
+		});
+	}
+	
+	/**
+	 * Checks, by inspecting the terrain, whether the cube with the given coordinates is adjacent to a solid cube.
+	 */
+	private boolean isSolidAround(int x, int y, int z) {
+		return this.hasNeighbourOfPassability(x, y, z, false);
 	}
 	
 	/**
@@ -1476,11 +2419,6 @@ public class World {
 	// Methods for advancing the time for all the entities in this world.
 	// ===============================================================================================
 	
-	/**
-	 * A variable that stores the cube coordinates of all the collapsing cubes.
-	 */
-	private List<int[]> collapsingCubes = new ArrayList<int[]>();
-	
 	/**
 	 * Advances the time for the world and all game objects inside it.
 	 * 
@@ -1496,23 +2434,481 @@ public class World {
 			throw new IllegalStateException("This world is terminated.");
 		}
 		
-		if (this.collapsingCubes.size() != 0){
-			this.caveInCollapsingCubes();
-		}
+		// The clock is only read when the profiler is enabled.
+		TickProfiler profiler = this.getProfiler();
+		boolean profiling = profiler.isEnabled();
+		long time = (profiling) ? System.nanoTime() : 0;
 		
-		for(Unit unit: this.getUnits()){
-			try{unit.advanceTime(deltaT);}
-			catch(Exception e){
-				throw e;
+		// Terrain changes made during this step are notified together at the end of it.
+		this.isAdvancingTime = true;
+		List<Entity> buffer = this.advanceTimeBuffer;
+		try {
+			// Wake the sleeping entities that are due during this step.
+			this.timers.advance(this.getTime() + deltaT);
+			
+			if ( ! this.pendingCollapses.isEmpty()){
+				this.caveInCollapsingCubes(this.getCaveInBudget());
+			}
+			if (profiling)
+				time = profiler.endPhase(TickProfiler.Phase.CAVE_IN, time);
+			
+			// Read phase: search the paths the moving units will need, in parallel.
+			this.prefetchPaths();
+			if (profiling)
+				time = profiler.endPhase(TickProfiler.Phase.PATH_PREFETCH, time);
+			
+			// Commit phase: advance the awake entities one after another, units first.
+			// Entities may be added or removed while advancing, so iterate over a copy.
+			// The buffer is reused between calls to avoid allocating a new collection every tick.
+			for (Unit unit: this.awakeUnits)
+				buffer.add(unit);
+			for (Item item: this.awakeItems)
+				buffer.add(item);
+			// Entities woken while advancing are appended to the buffer, so that they still advance in this step.
+			// Units can be woken after the items, so the time of each entity goes to the phase of its own kind.
+			this.isAdvancingEntities = true;
+			for (int i = 0; i < buffer.size(); i++){
+				Entity entity = buffer.get(i);
+				// Skip entities that were terminated or picked up earlier in this step.
+				if (entity.getWorld() == this)
+					entity.advanceTime(deltaT);
+				if (profiling)
+					time = profiler.endPhase(getPhase(entity), time);
 			}
+			this.isAdvancingEntities = false;
+			this.time += deltaT;
+			
+			// Let the entities that have settled fall asleep.
+			for (Entity entity: buffer) {
+				if ( (entity.getWorld() == this) && ( ! entity.isSleeping()) && entity.canSleep() )
+					this.putToSleep(entity);
+				if (profiling)
+					time = profiler.endPhase(getPhase(entity), time);
+			}
+			if (profiling)
+				profiler.endTick();
 		}
-		
-		for(Log log: this.getLogs()){
-			log.advanceTime(deltaT);
+		finally {
+			buffer.clear();
+			this.isAdvancingEntities = false;
+			this.isAdvancingTime = false;
+			this.notifyTerrainChanges();
 		}
+	}
+	
+	/**
+	 * A variable that stores the list which is reused by advanceTime to iterate over the entities of this world.
+	 */
+	private final List<Entity> advanceTimeBuffer = new ArrayList<>();
+	
+	/**
+	 * Returns the phase of the profiler of a world to which the time spent advancing the given entity belongs.
+	 */
+	private static TickProfiler.Phase getPhase(Entity entity) {
+		return (entity instanceof Unit) ? TickProfiler.Phase.UNITS : TickProfiler.Phase.ITEMS;
+	}
+	
+	// ==================================================================================
+	// Methods concerning sleeping entities.
+	// ==================================================================================
+	
+	/**
+	 * Returns the time of this world, which is the total time it has advanced.
+	 */
+	@Basic @Raw
+	public double getTime() {
+		return this.time;
+	}
+	
+	/**
+	 * A variable that stores the time of this world.
+	 */
+	private double time = 0;
+	
+	/**
+	 * Advances the time of this world by as many of the given steps as possible, up to the given number,
+	 * during which nothing would happen because all entities of this world sleep.
+	 * 
+	 * @param	deltaT
+	 *				The length of a step.
+	 * @param	maxSteps
+	 *				The maximal number of steps to skip.
+	 *
+	 * @return	The number of steps skipped, which is 0 if an entity of this world is awake or cubes are
+	 *				waiting to collapse. Otherwise it is the largest number of steps, up to the given number,
+	 *				before the step in which the first sleeping entity has to be woken.
+	 * @post	| new.getTime() == getTime() + result * deltaT
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given step is negative or larger than 0.2 seconds.
+	 *				| (deltaT < 0) || (deltaT > 0.2)
+	 * @throws	IllegalStateException
+	 *				This world is terminated.
+	 *				| isTerminated()
+	 *
+	 * @note	The gametime and progress of the sleeping entities follow the time of this world,
+	 *				so skipping steps has the same effect as advancing the time with them.
+	 */
+	public long skipIdleSteps(double deltaT, long maxSteps) throws IllegalArgumentException, IllegalStateException {
+		if ( (deltaT < 0) || (deltaT > 0.2) )
+			throw new IllegalArgumentException();
+		if (this.isTerminated())
+			throw new IllegalStateException("This world is terminated.");
+		if ( (this.getNbAwakeEntities() > 0) || ( ! this.pendingCollapses.isEmpty()) || (deltaT == 0) )
+			return 0;
+		double nextWakeUp = this.timers.getNextFireTime();
+		long result = 0;
+		while ( (result < maxSteps) && (this.time + deltaT < nextWakeUp) ) {
+			this.time += deltaT;
+			result++;
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the number of entities of this world that are awake.
+	 * 
+	 * @return	| result == card({entity in getEntities() | ! entity.isSleeping()})
+	 */
+	public int getNbAwakeEntities() {
+		return this.awakeUnits.size() + this.awakeItems.size();
+	}
+	
+	/**
+	 * Lets the given entity of this world fall asleep.
+	 * 
+	 * @param	entity
+	 *				The entity that falls asleep.
+	 *
+	 * @effect	| entity.sleep(getTime())
+	 * @post	The given entity is no longer advanced by this world.
+	 * @post	If the given entity has to be woken after some time, a timer is scheduled to wake it in
+	 *				the step during which that time passes.
+	 *				| if (entity.getTimeUntilWakeUp() < Double.POSITIVE_INFINITY)
+	 *				|	then wakeUpTimers.get(entity).getFireTime() == getTime() + entity.getTimeUntilWakeUp()
+	 */
+	private void putToSleep(final Entity entity) {
+		double timeUntilWakeUp = entity.getTimeUntilWakeUp();
+		entity.sleep(this.getTime());
+		if (entity instanceof Unit)
+			this.awakeUnits.remove(entity);
+		else
+			this.awakeItems.remove(entity);
+		if (timeUntilWakeUp < Double.POSITIVE_INFINITY)
+			this.wakeUpTimers.put(entity, this.timers.schedule(this.getTime() + timeUntilWakeUp, () -> this.wakeEntity(entity)));
+	}
+	
+	/**
+	 * Wakes the given entity of this world if it is sleeping.
+	 * 
+	 * @param	entity
+	 *				The entity to wake.
+	 *
+	 * @effect	If the given entity is sleeping, it is woken at the current time of this world.
+	 *				| if (entity.isSleeping())
+	 *				|	then entity.wake(getTime())
+	 * @post	The given entity is advanced again by this world, starting from the current step if this
+	 *				world is advancing its entities.
+	 */
+	void wakeEntity(Entity entity) {
+		if ( ! entity.isSleeping())
+			return;
+		entity.wake(this.getTime());
+		TimerWheel.Timer timer = this.wakeUpTimers.remove(entity);
+		if (timer != null)
+			this.timers.cancel(timer);
+		if (entity instanceof Unit)
+			this.awakeUnits.add((Unit) entity);
+		else
+			this.awakeItems.add((Item) entity);
+		if (this.isAdvancingEntities)
+			this.advanceTimeBuffer.add(entity);
+	}
+	
+	/**
+	 * Wakes the sleeping entities in the given cube and its neighbouring cubes, because the terrain
+	 * of the given cube changed and they may start falling.
+	 */
+	private void wakeEntitiesAround(int x, int y, int z) {
+		if (this.getNbAwakeEntities() == this.entities.size())
+			return;
+		List<Entity> neighbours = this.wakeBuffer;
+		this.spatialIndex.collectInRange(x, y, z, 1, Entity.class, neighbours);
+		for (Entity entity: neighbours)
+			this.wakeEntity(entity);
+		neighbours.clear();
+	}
+	
+	/**
+	 * A variable that stores the list which is reused to collect the entities to wake.
+	 */
+	private final List<Entity> wakeBuffer = new ArrayList<>();
+	
+	/**
+	 * Variables that store the awake units and items of this world, in the order in which they are advanced.
+	 */
+	private final Set<Unit> awakeUnits = new LinkedHashSet<>();
+	private final Set<Item> awakeItems = new LinkedHashSet<>();
+	
+	/**
+	 * A variable that stores the timer wheel which wakes the sleeping entities of this world that wait for some time,
+	 * such as units that wait for their work or attack to complete, or for their next rest.
+	 */
+	private transient TimerWheel timers = new TimerWheel();
+	
+	/**
+	 * A variable that stores the timer that wakes each sleeping entity of this world that waits for some time.
+	 */
+	private transient Map<Entity, TimerWheel.Timer> wakeUpTimers = new HashMap<>();
+	
+	/**
+	 * A variable that stores whether this world is advancing its entities.
+	 */
+	private boolean isAdvancingEntities = false;
+	
+	/**
+	 * Searches the paths that the moving units of this world will search when they reach their next cube,
+	 * and stores them in the path cache of this world.
+	 * 
+	 * Only awake units can be moving, and each unit requests the path from its next cube once unless the
+	 * path cache forgets paths in the mean time, so a unit that is on its way to a cube costs nothing here
+	 * until it sets out on a new path. The path cache is locked once to find the requests it cannot answer.
+	 * 
+	 * The searches only read the terrain, which does not change while they run, so they are executed in
+	 * parallel. The results are stored in the order in which the units are advanced afterwards, so that the
+	 * contents of the path cache, and therefore the behaviour of the units, do not depend on the number of threads.
+	 * 
+	 * @note	The hierarchical path finder and the flow fields serve their searches one at a time,
+	 *				so no paths are searched in advance when they would be used.
+	 */
+	private void prefetchPaths() {
+		if (this.isHierarchicalPathfindingEnabled())
+			return;
+		final PathCache cache = this.getPathCache();
+		final List<int[]> starts = this.pathRequestStarts;
+		final List<int[]> destinations = this.pathRequestDestinations;
+		final List<List<int[]>> paths = this.prefetchedPaths;
+		try {
+			synchronized (cache) {
+				for (Unit unit: this.awakeUnits) {
+					int[] start = unit.getNextPathStart();
+					if (start == null)
+						continue;
+					int[] destination = unit.getPathDestination();
+					if ( ( ! cache.containsPath(start, destination, PathFinder.ALLOW_DIAGONAL))
+							&& ( ! this.getFlowFieldCache().hasFlowField(destination, PathFinder.ALLOW_DIAGONAL)) ) {
+						starts.add(start);
+						destinations.add(destination);
+						paths.add(null);
+					}
+					unit.setNextPathRequested();
+				}
+			}
+			if (starts.isEmpty())
+				return;
+			
+			final World world = this;
+			RecursiveAction search = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					List<RecursiveAction> searches = new ArrayList<>(starts.size());
+					for (int i = 0; i < starts.size(); i++) {
+						final int index = i;
+						searches.add(new RecursiveAction() {
+							private static final long serialVersionUID = 1L;
+							@Override
+							protected void compute() {
+								try {
+									paths.set(index, PathFinder.getPath(starts.get(index), destinations.get(index),
+											world, PathFinder.ALLOW_DIAGONAL));
+								} catch (MaxIterationException | IllegalArgumentException e) {
+									// The unit will run into the same problem when it searches the path itself.
+								}
+							}
+						});
+					}
+					invokeAll(searches);
+				}
+			};
+			if ( (this.getParallelism() == 1) || (starts.size() == 1) )
+				search.invoke();
+			else
+				this.getTickPool().invoke(search);
+			
+			for (List<int[]> path: paths)
+				if (path != null)
+					cache.addPath(path, PathFinder.ALLOW_DIAGONAL);
+		}
+		finally {
+			starts.clear();
+			destinations.clear();
+			paths.clear();
+		}
+	}
+	
+	/**
+	 * Variables that store the lists which are reused by prefetchPaths for the starts and destinations of
+	 * the paths that are not in the path cache, and for the paths searched for them.
+	 */
+	private final List<int[]> pathRequestStarts = new ArrayList<>();
+	private final List<int[]> pathRequestDestinations = new ArrayList<>();
+	private final List<List<int[]>> prefetchedPaths = new ArrayList<>();
+	
+	/**
+	 * Returns the number of threads used to advance the time of this world.
+	 */
+	public int getParallelism() {
+		return this.getTickPool().getParallelism();
+	}
+	
+	/**
+	 * Sets the number of threads used to advance the time of this world to the given number.
+	 * 
+	 * @param	parallelism
+	 *				The new number of threads.
+	 *
+	 * @post	| new.getParallelism() == parallelism
+	 *
+	 * @throws	IllegalArgumentException
+	 *				The given number is not positive.
+	 *				| parallelism <= 0
+	 * @throws	IllegalStateException
+	 *				This world is terminated.
+	 *				| isTerminated()
+	 *
+	 * @note	The outcome of advancing the time does not depend on the number of threads.
+	 * @note	The threads are shut down when this world is terminated, or when another number of threads is set.
+	 */
+	public void setParallelism(int parallelism) throws IllegalArgumentException, IllegalStateException {
+		if (parallelism <= 0)
+			throw new IllegalArgumentException();
+		if (this.isTerminated())
+			throw new IllegalStateException("The parallelism of a terminated world cannot be set");
+		this.releaseTickPool();
+		this.tickPool = new ForkJoinPool(parallelism);
+	}
+	
+	/**
+	 * Returns the pool of threads used to advance the time of this world.
+	 */
+	private ForkJoinPool getTickPool() {
+		if (this.tickPool == null)
+			this.tickPool = ForkJoinPool.commonPool();
+		return this.tickPool;
+	}
+	
+	/**
+	 * Shuts down the pool of threads of this world, if it created one, and lets this world use the common pool.
+	 */
+	private void releaseTickPool() {
+		if ( (this.tickPool != null) && (this.tickPool != ForkJoinPool.commonPool()) )
+			this.tickPool.shutdown();
+		this.tickPool = null;
+	}
+	
+	/**
+	 * A variable that stores the pool of threads used to advance the time of this world,
+	 * or null if the common pool is used.
+	 */
+	private transient ForkJoinPool tickPool;
+	
+	// =================================================================================================
+	// Methods concerning snapshots and forks of this world.
+	// =================================================================================================
+	
+	/**
+	 * Returns a fork of this world, which continues independently of this world.
+	 * 
+	 * The fork has its own copies of the entities, factions, schedulers and tasks of this world, including
+	 * the statements the tasks are executing, and it has the same seed and time as this world.
+	 * The terrain of this world and the bit sets derived from it, such as the connectivity of its cubes to the border,
+	 * are not copied: the fork shares their chunks with this world until one of them changes a chunk.
+	 * So forking a world costs much less time and memory than building it again from its map.
+	 * 
+	 * @param	modelListener
+	 *				The terrainChangeListener for the fork.
+	 *
+	 * @return	A world in the same state as this world, with the given terrain change listener.
+	 *				| result.getTerrainChangeListener() == modelListener &&
+	 *				|	result.getSeed() == getSeed() && result.getTime() == getTime() &&
+	 *				|	result.getNbUnits() == getNbUnits() && result.getNbActiveFactions() == getNbActiveFactions()
+	 *
+	 * @effect	Like taking a snapshot of this world, forking replaces the streams of random numbers of this world
+	 *				and of its units, and clears the caches of paths of this world, so that this world and its forks
+	 *				behave identically as long as nothing is done to one of them and not to the others.
+	 *
+	 * @throws	IllegalStateException
+	 *				This world is terminated or is advancing its time.
+	 *				| isTerminated() || isAdvancingTime()
+	 *
+	 * @note	A world and its forks share no state that changes, so they can advance their time in parallel.
+	 *				Forking a world must not happen concurrently with other operations on that world.
+	 */
+	public World fork(TerrainChangeListener modelListener) throws IllegalStateException {
+		return WorldSnapshot.fork(this, modelListener);
+	}
+	
+	/**
+	 * Writes the state of this world to the given stream, as part of a snapshot or a fork.
+	 * 
+	 * The stream of random numbers of this world and of each of its units is replaced by a new stream,
+	 * seeded with the next number of the old one, and the caches of paths of this world are cleared.
+	 * The seeds of the new streams are part of the snapshot, so that this world and the world restored
+	 * from the snapshot draw the same random numbers and find the same paths afterwards.
+	 * A stream from which no numbers can have been drawn since the last snapshot is kept, so that all
+	 * the snapshots and forks taken of this world in between changes to it are the same.
+	 * The timers that wake sleeping entities are written in the order in which they fire.
+	 * 
+	 * @throws	IllegalStateException
+	 *				This world is advancing its time.
+	 *				| isAdvancingTime
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException, IllegalStateException {
+		if (this.isAdvancingTime)
+			throw new IllegalStateException("A world cannot be saved while it advances its time");
+		if (this.randomSeed == null) {
+			this.randomSeed = this.random.nextLong();
+			this.random = new SplittableRandom(this.randomSeed);
+		}
+		this.getPathCache().clear();
+		this.getFlowFieldCache().clear();
+		Arrays.fill(this.hierarchicalPathFinders, null);
 		
-		for(Boulder boulder: this.getBoulders()){
-			boulder.advanceTime(deltaT);
+		out.defaultWriteObject();
+		out.writeLong(this.randomSeed);
+		List<Map.Entry<Entity, TimerWheel.Timer>> wakeUps = new ArrayList<>(this.wakeUpTimers.entrySet());
+		wakeUps.sort(Comparator.comparingLong(entry -> entry.getValue().getSequence()));
+		out.writeInt(wakeUps.size());
+		for (Map.Entry<Entity, TimerWheel.Timer> wakeUp: wakeUps) {
+			out.writeObject(wakeUp.getKey());
+			out.writeDouble(wakeUp.getValue().getFireTime());
+		}
+	}
+	
+	/**
+	 * Reads the state of this world from the given stream, as part of a snapshot, and initializes the
+	 * state that is not part of a snapshot.
+	 * 
+	 * @post	This world has no terrain change listener; the reader of the snapshot sets it.
+	 * @post	The caches of paths of this world are empty, and its profiler is disabled.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.randomSeed = in.readLong();
+		this.random = new SplittableRandom(this.randomSeed);
+		this.pathCache = new PathCache(this);
+		this.flowFieldCache = new FlowFieldCache(this);
+		this.profiler = new TickProfiler();
+		this.hierarchicalPathFinders = new HierarchicalPathFinder[2];
+		this.timers = new TimerWheel();
+		this.wakeUpTimers = new HashMap<>();
+		// The timers are scheduled in the order in which they fire, from the current tick on.
+		this.timers.advance(this.getTime());
+		int nbWakeUps = in.readInt();
+		for (int i = 0; i < nbWakeUps; i++) {
+			final Entity entity = (Entity) in.readObject();
+			this.wakeUpTimers.put(entity, this.timers.schedule(in.readDouble(), () -> this.wakeEntity(entity)));
 		}
 	}
 }
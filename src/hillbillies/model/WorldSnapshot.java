@@ -0,0 +1,304 @@
+package hillbillies.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import hillbillies.part2.listener.TerrainChangeListener;
+
+/**
+ * A class of helper methods to save a world to a snapshot and to restore a world from a snapshot.
+ *
+ * A snapshot holds the complete state of a world: its terrain and the connectivity of its cubes to the border,
+ * the cubes that are still to collapse, its units with their attributes, activities, paths, carried items
+ * and the statements their tasks are executing, its logs and boulders, its factions with their schedulers
+ * and tasks, its time, and the entities that sleep until a given time. The caches of paths and the profiler
+ * are not part of a snapshot, and neither is the terrain change listener of the world.
+ *
+ * A snapshot starts with the magic number MAGIC and the version VERSION of the format, as two big-endian integers.
+ * They are followed by the object graph of the world in the serialization format of Java, compressed with deflate.
+ * The classes of the model declare a serialVersionUID, so that changes to them that keep their state
+ * compatible do not invalidate older snapshots; changes that do not must increase VERSION.
+ *
+ * Taking a snapshot replaces the streams of random numbers of the world and of its units, and clears the caches
+ * of paths of the world, so that the world and the worlds restored from the snapshot behave identically afterwards.
+ *
+ * The same mechanism forks a world in memory, without compression, except that the chunked arrays of the world
+ * are not copied but forked, so that the world and its forks share the chunks that none of them changes.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public final class WorldSnapshot {
+
+	private WorldSnapshot() {
+	}
+
+	/**
+	 * A symbolic constant denoting the extension of snapshot files.
+	 */
+	public static final String EXTENSION = ".wrlds";
+
+	/**
+	 * A symbolic constant denoting the magic number at the start of snapshots.
+	 */
+	public static final int MAGIC = ('H' << 24) | ('B' << 16) | ('W' << 8) | 'S';
+
+	/**
+	 * A symbolic constant denoting the version of the snapshot format written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * A symbolic constant denoting the size of the buffers used to write and read snapshots.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes a snapshot of the given world to the given stream, which is not closed.
+	 *
+	 * @param	world
+	 *				The world to save.
+	 * @param	out
+	 *				The stream to write to.
+	 *
+	 * @effect	The streams of random numbers of the given world and of its units are replaced, and the caches of
+	 *				paths of the given world are cleared.
+	 *
+	 * @throws	IOException
+	 *				The snapshot could not be written.
+	 * @throws	IllegalStateException
+	 *				The given world is terminated.
+	 *				| world.isTerminated()
+	 */
+	public static void write(World world, OutputStream out) throws IOException, IllegalStateException {
+		if (world.isTerminated())
+			throw new IllegalStateException("A terminated world cannot be saved");
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.flush();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+			ObjectOutputStream objects = new ObjectOutputStream(new BufferedOutputStream(compressed, BUFFER_SIZE));
+			objects.writeObject(world);
+			objects.flush();
+			compressed.finish();
+			out.flush();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the given world to the file with the given path, replacing any existing file.
+	 *
+	 * @effect	| write(world, Files.newOutputStream(path))
+	 */
+	public static void write(World world, Path path) throws IOException, IllegalStateException {
+		try (OutputStream out = Files.newOutputStream(path)) {
+			write(world, out);
+		}
+	}
+
+	/**
+	 * Returns the world restored from the snapshot in the given stream, which is not closed.
+	 *
+	 * @param	in
+	 *				The stream to read from.
+	 * @param	modelListener
+	 *				The terrainChangeListener for the restored world.
+	 *
+	 * @return	A world with the state of the world of which the snapshot was taken, at the time it was taken.
+	 *				| result.getTerrainChangeListener() == modelListener
+	 *
+	 * @throws	IOException
+	 *				The snapshot could not be read, or it is not a snapshot of a supported version.
+	 *
+	 * @note	A snapshot is read with the serialization of Java, which should only be used for trusted input.
+	 *				Only classes of this program and of the packages java.lang and java.util are accepted.
+	 */
+	public static World read(InputStream in, TerrainChangeListener modelListener) throws IOException {
+		DataInputStream header = new DataInputStream(in);
+		if (header.readInt() != MAGIC)
+			throw new IOException("Not a snapshot of a world");
+		int version = header.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported version " + version);
+		Inflater inflater = new Inflater();
+		try {
+			ObjectInputStream objects = new SnapshotInputStream(
+					new BufferedInputStream(new InflaterInputStream(in, inflater, BUFFER_SIZE), BUFFER_SIZE));
+			World world = (World) objects.readObject();
+			world.setTerrainChangeListener(modelListener);
+			return world;
+		}
+		catch (ClassNotFoundException | ClassCastException exc) {
+			throw new IOException("Incompatible snapshot", exc);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the world restored from the snapshot in the file with the given path.
+	 *
+	 * @effect	| result == read(Files.newInputStream(path), modelListener)
+	 */
+	public static World read(Path path, TerrainChangeListener modelListener) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return read(in, modelListener);
+		}
+	}
+
+	/**
+	 * Returns a fork of the given world.
+	 *
+	 * @param	world
+	 *				The world to fork.
+	 * @param	modelListener
+	 *				The terrainChangeListener for the fork.
+	 *
+	 * @return	A world with the state of the given world, which shares the chunks of the chunked arrays
+	 *				of the given world until either of them changes them.
+	 *				| result.getTerrainChangeListener() == modelListener
+	 *
+	 * @effect	The streams of random numbers of the given world and of its units are replaced, and the caches of
+	 *				paths of the given world are cleared.
+	 *
+	 * @throws	IllegalStateException
+	 *				The given world is terminated or is advancing its time.
+	 *				| world.isTerminated() || world.isAdvancingTime()
+	 */
+	static World fork(World world, TerrainChangeListener modelListener) throws IllegalStateException {
+		if (world.isTerminated())
+			throw new IllegalStateException("A terminated world cannot be forked");
+		if (world.isAdvancingTime())
+			throw new IllegalStateException("A world cannot be forked while it advances its time");
+		List<Object> forks = new ArrayList<>();
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ForkOutputStream(bytes, forks)) {
+				out.writeObject(world);
+			}
+			try (ObjectInputStream in = new ForkInputStream(new ByteArrayInputStream(bytes.toByteArray()), forks)) {
+				World result = (World) in.readObject();
+				result.setTerrainChangeListener(modelListener);
+				return result;
+			}
+		}
+		catch (IOException | ClassNotFoundException exc) {
+			// All the state of a world is serializable and only classes of this program are read.
+			throw new IllegalStateException("The world could not be forked", exc);
+		}
+	}
+
+	/**
+	 * A class of references to the fork with a given index of a chunked array, which replace the chunked arrays
+	 * while a world is forked.
+	 */
+	private static final class ForkReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		ForkReference(int index) {
+			this.index = index;
+		}
+
+		private final int index;
+	}
+
+	/**
+	 * A class of object streams that write a reference to a fork of each chunked array instead of the array itself.
+	 */
+	private static final class ForkOutputStream extends ObjectOutputStream {
+
+		ForkOutputStream(OutputStream out, List<Object> forks) throws IOException {
+			super(out);
+			this.forks = forks;
+			this.enableReplaceObject(true);
+		}
+
+		private final List<Object> forks;
+
+		@Override
+		protected Object replaceObject(Object object) {
+			if (object instanceof ChunkedByteArray)
+				this.forks.add(((ChunkedByteArray) object).fork());
+			else if (object instanceof ChunkedBitSet)
+				this.forks.add(((ChunkedBitSet) object).fork());
+			else
+				return object;
+			return new ForkReference(this.forks.size() - 1);
+		}
+	}
+
+	/**
+	 * A class of object streams that read the fork of a chunked array for each reference to it.
+	 */
+	private static final class ForkInputStream extends ObjectInputStream {
+
+		ForkInputStream(InputStream in, List<Object> forks) throws IOException {
+			super(in);
+			this.forks = forks;
+			this.enableResolveObject(true);
+		}
+
+		private final List<Object> forks;
+
+		@Override
+		protected Object resolveObject(Object object) {
+			if (object instanceof ForkReference)
+				return this.forks.get(((ForkReference) object).index);
+			return object;
+		}
+	}
+
+	/**
+	 * A class of object streams that only resolve the classes that can be part of a snapshot.
+	 */
+	private static final class SnapshotInputStream extends ObjectInputStream {
+
+		SnapshotInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+			String name = description.getName();
+			int start = 0;
+			while ( (start < name.length()) && (name.charAt(start) == '[') )
+				start++;
+			// Arrays of primitive types have a name of a single letter after their brackets.
+			boolean primitiveArray = (start > 0) && (start == name.length() - 1);
+			if ( (start > 0) && (name.charAt(start) == 'L') )
+				name = name.substring(start + 1, name.length() - 1);
+			if ( ! (primitiveArray || name.startsWith("hillbillies.") || name.startsWith("java.lang.")
+					|| name.startsWith("java.util.")) )
+				throw new InvalidClassException(name, "Not part of a snapshot of a world");
+			return super.resolveClass(description);
+		}
+	}
+}
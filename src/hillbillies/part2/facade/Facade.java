@@ -59,6 +59,33 @@ public class Facade extends hillbillies.part1.facade.Facade implements hillbilli
 		}
 	}
 
+	/**
+	 * Create a new world of the given size and with the given terrain, given
+	 * as a flat array in order of the index of the cubes.
+	 * 
+	 * @param nbX
+	 *            The number of cubes in the x-direction.
+	 * @param nbY
+	 *            The number of cubes in the y-direction.
+	 * @param nbZ
+	 *            The number of cubes in the z-direction.
+	 * @param terrainTypes
+	 *            The types of the terrain, where the type of the cube at
+	 *            (x, y, z) is at index x + nbX * (y + nbY * z).
+	 * @param modelListener
+	 *            The listener to notify of changes of the terrain.
+	 * @return
+	 * @throws ModelException
+	 */
+	@Override
+	public World createWorld(int nbX, int nbY, int nbZ, byte[] terrainTypes, TerrainChangeListener modelListener) throws ModelException {
+		try{
+			return new World(nbX, nbY, nbZ, terrainTypes, modelListener);
+		}catch(IllegalArgumentException | NullPointerException e){
+			throw new ModelException();
+		}
+	}
+
 	/**
 	 * Return the number of cubes in the world in the x-direction.
 	 * 
@@ -0,0 +1,567 @@
+package hillbillies.part3;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Raw;
+import hillbillies.model.Activity;
+import hillbillies.model.Faction;
+import hillbillies.model.SimulationDriver;
+import hillbillies.model.Task;
+import hillbillies.model.TerrainFile;
+import hillbillies.model.TickProfiler;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.tasks.TaskFactory;
+
+/**
+ * A class of batch runners, which simulate a world without a user interface.
+ *
+ * A batch runner loads a world from a map file, spawns a number of units with default behavior
+ * for each faction, schedules the tasks of the given task files for each faction and advances the
+ * world for a given amount of simulated time with a fixed time step. Afterwards it reports how fast
+ * the world was simulated, how long each phase of the run took and what the world looks like.
+ *
+ * Usage:
+ *		java hillbillies.part3.BatchRunner <map> [-units n] [-task file]* [-time seconds] [-step seconds] [-parallelism n] [-log ticks] [-seed n] [-save file]
+ *
+ * The map is either a path to a file or the name of a resource, such as resources/20x20x10.wrld,
+ * or a path to a binary world file written by MapConverter, whose name ends with TerrainFile.EXTENSION.
+ * The tick profiler of the world is enabled during the simulation; with -log it also prints a line
+ * with its metrics every given number of ticks. With -seed the world is created with the given seed,
+ * so that a run can be repeated exactly; the seed of each run is printed in its report.
+ *
+ * With -save a snapshot of the world is written to the given file after the run. A map whose name ends with
+ * WorldSnapshot.EXTENSION is such a snapshot: the run then resumes the saved world as it was, without spawning
+ * units or scheduling tasks, so that a long simulation can be continued in several runs.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class BatchRunner {
+
+	/**
+	 * Initializes this new batch runner for the given map.
+	 *
+	 * @param	map
+	 *				The path to or the resource name of the map to simulate.
+	 *
+	 * @post	| new.getMap() == map
+	 * @post	| new.getUnitsPerFaction() == DEFAULT_UNITS_PER_FACTION
+	 * @post	| new.getTaskFiles().isEmpty()
+	 * @post	| new.getSimulatedTime() == DEFAULT_SIMULATED_TIME
+	 * @post	| new.getTimeStep() == SimulationDriver.DEFAULT_TIME_STEP
+	 * @post	| new.getParallelism() == 0
+	 * @post	| new.getLogInterval() == 0
+	 * @post	| new.getSeed() == null
+	 * @post	| new.getSaveFile() == null
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| map == null
+	 */
+	public BatchRunner(String map) throws IllegalArgumentException {
+		if (map == null)
+			throw new IllegalArgumentException();
+		this.map = map;
+	}
+
+	/**
+	 * A symbolic constant denoting the default number of units spawned for each faction.
+	 */
+	public static final int DEFAULT_UNITS_PER_FACTION = 5;
+
+	/**
+	 * A symbolic constant denoting the default amount of simulated time, in seconds.
+	 */
+	public static final double DEFAULT_SIMULATED_TIME = 60;
+
+	/**
+	 * Returns the path to or the resource name of the map of this batch runner.
+	 */
+	@Basic @Raw
+	public String getMap() {
+		return this.map;
+	}
+
+	/**
+	 * A variable that stores the map of this batch runner.
+	 */
+	private final String map;
+
+	/**
+	 * Returns the number of units this batch runner spawns for each faction.
+	 */
+	@Basic @Raw
+	public int getUnitsPerFaction() {
+		return this.unitsPerFaction;
+	}
+
+	/**
+	 * Sets the number of units this batch runner spawns for each faction to the given number.
+	 *
+	 * @param	unitsPerFaction
+	 *				The new number of units per faction.
+	 *
+	 * @post	| new.getUnitsPerFaction() == unitsPerFaction
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| (unitsPerFaction < 0) || (unitsPerFaction > Faction.MAX_UNITS_FACTION)
+	 *
+	 * @note	No more than World.MAX_UNITS_WORLD units are spawned in total.
+	 */
+	public void setUnitsPerFaction(int unitsPerFaction) throws IllegalArgumentException {
+		if ( (unitsPerFaction < 0) || (unitsPerFaction > Faction.MAX_UNITS_FACTION) )
+			throw new IllegalArgumentException();
+		this.unitsPerFaction = unitsPerFaction;
+	}
+
+	/**
+	 * A variable that stores the number of units this batch runner spawns for each faction.
+	 */
+	private int unitsPerFaction = DEFAULT_UNITS_PER_FACTION;
+
+	/**
+	 * Returns the task files of this batch runner.
+	 */
+	@Basic @Raw
+	public List<String> getTaskFiles() {
+		return Collections.unmodifiableList(this.taskFiles);
+	}
+
+	/**
+	 * Adds the given task file to the task files of this batch runner.
+	 *
+	 * @param	taskFile
+	 *				The task file to add.
+	 *
+	 * @post	| new.getTaskFiles().contains(taskFile)
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| taskFile == null
+	 */
+	public void addTaskFile(String taskFile) throws IllegalArgumentException {
+		if (taskFile == null)
+			throw new IllegalArgumentException();
+		this.taskFiles.add(taskFile);
+	}
+
+	/**
+	 * A list that stores the task files of this batch runner.
+	 */
+	private final List<String> taskFiles = new ArrayList<>();
+
+	/**
+	 * Returns the amount of simulated time, in seconds, this batch runner advances the world.
+	 */
+	@Basic @Raw
+	public double getSimulatedTime() {
+		return this.simulatedTime;
+	}
+
+	/**
+	 * Sets the amount of simulated time this batch runner advances the world to the given time.
+	 *
+	 * @param	simulatedTime
+	 *				The new amount of simulated time.
+	 *
+	 * @post	| new.getSimulatedTime() == simulatedTime
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| ! (simulatedTime >= 0)
+	 */
+	public void setSimulatedTime(double simulatedTime) throws IllegalArgumentException {
+		if ( ! (simulatedTime >= 0))
+			throw new IllegalArgumentException();
+		this.simulatedTime = simulatedTime;
+	}
+
+	/**
+	 * A variable that stores the amount of simulated time of this batch runner.
+	 */
+	private double simulatedTime = DEFAULT_SIMULATED_TIME;
+
+	/**
+	 * Returns the time step with which this batch runner advances the world.
+	 */
+	@Basic @Raw
+	public double getTimeStep() {
+		return this.timeStep;
+	}
+
+	/**
+	 * Sets the time step with which this batch runner advances the world to the given time step.
+	 *
+	 * @param	timeStep
+	 *				The new time step.
+	 *
+	 * @post	| new.getTimeStep() == timeStep
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| ! SimulationDriver.isValidTimeStep(timeStep)
+	 */
+	public void setTimeStep(double timeStep) throws IllegalArgumentException {
+		if ( ! SimulationDriver.isValidTimeStep(timeStep))
+			throw new IllegalArgumentException();
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * A variable that stores the time step of this batch runner.
+	 */
+	private double timeStep = SimulationDriver.DEFAULT_TIME_STEP;
+
+	/**
+	 * Returns the parallelism of the world simulated by this batch runner, or 0 if the world keeps its default.
+	 */
+	@Basic @Raw
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Sets the parallelism of the world simulated by this batch runner to the given parallelism.
+	 *
+	 * @param	parallelism
+	 *				The new parallelism, or 0 to keep the default of the world.
+	 *
+	 * @post	| new.getParallelism() == parallelism
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| parallelism < 0
+	 */
+	public void setParallelism(int parallelism) throws IllegalArgumentException {
+		if (parallelism < 0)
+			throw new IllegalArgumentException();
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * A variable that stores the parallelism of this batch runner.
+	 */
+	private int parallelism = 0;
+
+	/**
+	 * Returns the number of ticks between two log lines of the profiler of the simulated world, or 0 if it does not log.
+	 */
+	@Basic @Raw
+	public int getLogInterval() {
+		return this.logInterval;
+	}
+
+	/**
+	 * Sets the number of ticks between two log lines of the profiler of the simulated world to the given number.
+	 *
+	 * @param	logInterval
+	 *				The new number of ticks, or 0 to not log.
+	 *
+	 * @post	| new.getLogInterval() == logInterval
+	 *
+	 * @throws	IllegalArgumentException
+	 *				| logInterval < 0
+	 */
+	public void setLogInterval(int logInterval) throws IllegalArgumentException {
+		if (logInterval < 0)
+			throw new IllegalArgumentException();
+		this.logInterval = logInterval;
+	}
+
+	/**
+	 * A variable that stores the log interval of this batch runner.
+	 */
+	private int logInterval = 0;
+
+	/**
+	 * Returns the seed of the world simulated by this batch runner, or null if each run uses a random seed.
+	 */
+	@Basic @Raw
+	public Long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Sets the seed of the world simulated by this batch runner to the given seed.
+	 *
+	 * @param	seed
+	 *				The new seed, or null to use a random seed for each run.
+	 *
+	 * @post	| new.getSeed() == seed
+	 */
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * A variable that stores the seed of this batch runner.
+	 */
+	private Long seed = null;
+
+	/**
+	 * Returns the file to which this batch runner saves a snapshot of the world after each run,
+	 * or null if it does not save the world.
+	 */
+	@Basic @Raw
+	public String getSaveFile() {
+		return this.saveFile;
+	}
+
+	/**
+	 * Sets the file to which this batch runner saves a snapshot of the world after each run to the given file.
+	 *
+	 * @param	saveFile
+	 *				The new file, or null to not save the world.
+	 *
+	 * @post	| new.getSaveFile() == saveFile
+	 */
+	public void setSaveFile(String saveFile) {
+		this.saveFile = saveFile;
+	}
+
+	/**
+	 * A variable that stores the save file of this batch runner.
+	 */
+	private String saveFile = null;
+
+	/**
+	 * Returns whether the map of this batch runner is a snapshot of a world.
+	 *
+	 * @return	| result == getMap().endsWith(WorldSnapshot.EXTENSION)
+	 */
+	public boolean isResuming() {
+		return this.getMap().endsWith(WorldSnapshot.EXTENSION);
+	}
+
+	// =================================================================================================
+	// Running
+	// =================================================================================================
+
+	/**
+	 * Runs this batch runner and returns the world it simulated.
+	 *
+	 * @return	A new world loaded from the map of this batch runner, with min(getUnitsPerFaction() * World.MAX_FACTIONS,
+	 *				World.MAX_UNITS_WORLD) spawned units with default behavior, in which the tasks of all task files
+	 *				are scheduled for every faction, and which has been advanced for getSimulatedTime() seconds
+	 *				with its profiler enabled. If the seed of this batch runner is not null, the world has that seed.
+	 *				If this batch runner is resuming, the world is instead restored from the snapshot in its map,
+	 *				and advanced for getSimulatedTime() seconds with its profiler enabled.
+	 *
+	 * @effect	If the save file of this batch runner is not null, a snapshot of the resulting world is written to it.
+	 *				| if (getSaveFile() != null)
+	 *				|	then WorldSnapshot.write(result, Paths.get(getSaveFile()))
+	 *
+	 * @throws	IOException
+	 *				The map or one of the task files could not be read, or the snapshot could not be written.
+	 * @throws	IllegalArgumentException
+	 *				One of the task files could not be parsed.
+	 *
+	 * @note	If the parallelism of this batch runner is positive, the world has threads of its own, which are
+	 *				shut down when the caller terminates the world.
+	 */
+	public World run() throws IOException, IllegalArgumentException {
+		long start = System.nanoTime();
+		World world;
+		if (this.isResuming())
+			world = WorldSnapshot.read(Paths.get(this.getMap()), new DefaultTerrainChangeListener());
+		else {
+			TerrainFile terrain = MapConverter.readMap(this.getMap());
+			world = (this.getSeed() != null)
+					? terrain.createWorld(new DefaultTerrainChangeListener(), this.getSeed())
+					: terrain.createWorld(new DefaultTerrainChangeListener());
+		}
+		if (this.getParallelism() > 0)
+			world.setParallelism(this.getParallelism());
+		long loaded = System.nanoTime();
+
+		if ( ! this.isResuming()) {
+			int nbUnits = Math.min(this.getUnitsPerFaction() * World.MAX_FACTIONS, World.MAX_UNITS_WORLD);
+			for (int i = 0; i < nbUnits; i++)
+				world.spawnUnit(true);
+		}
+		long spawned = System.nanoTime();
+
+		// Each faction gets its own copies of the tasks, so that the factions do not compete for them.
+		if ( ! this.isResuming())
+			for (String taskFile: this.getTaskFiles())
+				for (Faction faction: world.getFactions())
+					for (Task task: this.parseTasks(taskFile))
+						faction.getScheduler().schedule(task);
+		long scheduled = System.nanoTime();
+
+		world.getProfiler().setEnabled(true);
+		world.getProfiler().setLogInterval(this.getLogInterval());
+		SimulationDriver driver = new SimulationDriver(world, this.getTimeStep());
+		this.nbSteps = driver.run(this.getSimulatedTime());
+		long simulated = System.nanoTime();
+
+		if (this.getSaveFile() != null)
+			WorldSnapshot.write(world, Paths.get(this.getSaveFile()));
+		long saved = System.nanoTime();
+
+		this.loadTime = loaded - start;
+		this.spawnTime = spawned - loaded;
+		this.scheduleTime = scheduled - spawned;
+		this.simulationTime = simulated - scheduled;
+		this.saveTime = saved - simulated;
+		return world;
+	}
+
+	/**
+	 * Parses the tasks of the given task file, without selected cubes.
+	 */
+	private List<Task> parseTasks(String taskFile) throws IOException, IllegalArgumentException {
+		List<Task> tasks = TaskParser.parseTasksFromFile(taskFile, new TaskFactory(), Collections.emptyList());
+		if (tasks == null)
+			throw new IllegalArgumentException("Could not parse " + taskFile);
+		return tasks;
+	}
+
+	/**
+	 * Returns the number of steps taken during the last run of this batch runner.
+	 */
+	@Basic @Raw
+	public long getNbSteps() {
+		return this.nbSteps;
+	}
+
+	/**
+	 * Returns the time, in nanoseconds, needed during the last run of this batch runner to load the world,
+	 * to spawn the units, to schedule the tasks and to simulate the world, respectively.
+	 */
+	@Basic @Raw
+	public long getLoadTime() {
+		return this.loadTime;
+	}
+
+	@Basic @Raw
+	public long getSpawnTime() {
+		return this.spawnTime;
+	}
+
+	@Basic @Raw
+	public long getScheduleTime() {
+		return this.scheduleTime;
+	}
+
+	@Basic @Raw
+	public long getSimulationTime() {
+		return this.simulationTime;
+	}
+
+	/**
+	 * Returns the time, in nanoseconds, needed during the last run of this batch runner to save the world.
+	 */
+	@Basic @Raw
+	public long getSaveTime() {
+		return this.saveTime;
+	}
+
+	/**
+	 * Variables that store the results of the last run of this batch runner.
+	 */
+	private long nbSteps, loadTime, spawnTime, scheduleTime, simulationTime, saveTime;
+
+	/**
+	 * Returns the number of steps per second of real time during the last run of this batch runner.
+	 *
+	 * @return	| if (getSimulationTime() == 0) then result == 0
+	 *				| else result == getNbSteps() / (getSimulationTime() / 1e9)
+	 */
+	public double getStepsPerSecond() {
+		if (this.getSimulationTime() == 0)
+			return 0;
+		return this.getNbSteps() / (this.getSimulationTime() / 1e9);
+	}
+
+	/**
+	 * Prints a report of the last run of this batch runner and of the given world to the given stream.
+	 *
+	 * @param	world
+	 *				The world simulated during the last run.
+	 * @param	out
+	 *				The stream to print to.
+	 */
+	public void printReport(World world, PrintStream out) {
+		out.printf(Locale.ROOT, "map:              %s (%d x %d x %d)%n", this.getMap(),
+				world.getMaximumXValue(), world.getMaximumYValue(), world.getMaximumZValue());
+		out.printf(Locale.ROOT, "seed:             %d%n", world.getSeed());
+		out.printf(Locale.ROOT, "steps:            %d of %.3f s (%.1f simulated seconds)%n",
+				this.getNbSteps(), this.getTimeStep(), this.getNbSteps() * this.getTimeStep());
+		out.printf(Locale.ROOT, "ticks/second:     %.1f%n", this.getStepsPerSecond());
+		out.printf(Locale.ROOT, "load world:       %.1f ms%n", this.getLoadTime() / 1e6);
+		out.printf(Locale.ROOT, "spawn units:      %.1f ms%n", this.getSpawnTime() / 1e6);
+		out.printf(Locale.ROOT, "schedule tasks:   %.1f ms%n", this.getScheduleTime() / 1e6);
+		out.printf(Locale.ROOT, "simulate:         %.1f ms%n", this.getSimulationTime() / 1e6);
+		if (this.getSaveFile() != null)
+			out.printf(Locale.ROOT, "save world:       %.1f ms (%s)%n", this.getSaveTime() / 1e6, this.getSaveFile());
+		TickProfiler profiler = world.getProfiler();
+		for (TickProfiler.Phase phase: TickProfiler.Phase.values())
+			out.printf(Locale.ROOT, "  %-16s%.1f ms%n", phase.name().toLowerCase(Locale.ROOT) + ":", profiler.getPhaseTime(phase) / 1e6);
+		for (Activity activity: Activity.values())
+			out.printf(Locale.ROOT, "    %-14s%.1f ms in %d updates%n",
+					((activity == Activity.NOTHING) ? "default" : activity.name().toLowerCase(Locale.ROOT)) + ":",
+					profiler.getActivityTime(activity) / 1e6, profiler.getNbActivityUpdates(activity));
+		out.printf(Locale.ROOT, "path searches:    %d (%d cubes expanded, %.1f ms)%n",
+				profiler.getNbSearches(), profiler.getNbExpandedNodes(), profiler.getSearchTime() / 1e6);
+		out.printf(Locale.ROOT, "cave-ins:         %d (%d cubes, at most %d at once, %d pending)%n",
+				profiler.getNbCaveIns(), profiler.getNbCollapsedCubes(), profiler.getLargestCaveIn(), world.getNbPendingCollapses());
+		out.printf(Locale.ROOT, "statements:       %d%n", profiler.getNbStatements());
+		out.printf(Locale.ROOT, "factions:         %d%n", world.getNbActiveFactions());
+		for (Faction faction: world.getFactions())
+			out.printf(Locale.ROOT, "  faction:        %d units, %d tasks left%n",
+					faction.getNbUnits(), faction.getScheduler().getNbTasks());
+		int experience = 0;
+		for (Unit unit: world.getUnits())
+			experience += unit.getExperience();
+		out.printf(Locale.ROOT, "units:            %d (%d experience points)%n", world.getNbUnits(), experience);
+		out.printf(Locale.ROOT, "logs:             %d%n", world.getNbLogs());
+		out.printf(Locale.ROOT, "boulders:         %d%n", world.getNbBoulders());
+		out.printf(Locale.ROOT, "cached paths:     %d%n", world.getPathCache().getNbPaths());
+	}
+
+	/**
+	 * Runs a batch runner configured by the given arguments and prints its report.
+	 *
+	 * @param	args
+	 *				The map, followed by any of the options -units n, -task file, -time seconds, -step seconds
+	 *				-parallelism n, -log ticks, -seed n and -save file. The option -task may be given more than once.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: BatchRunner <map> [-units n] [-task file]* [-time seconds] [-step seconds] [-parallelism n] [-log ticks] [-seed n] [-save file]");
+			System.exit(2);
+		}
+		BatchRunner runner = new BatchRunner(args[0]);
+		try {
+			for (int i = 1; i < args.length; i += 2) {
+				if (i + 1 == args.length)
+					throw new IllegalArgumentException("Missing value for " + args[i]);
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "-units": runner.setUnitsPerFaction(Integer.parseInt(value)); break;
+					case "-task": runner.addTaskFile(value); break;
+					case "-time": runner.setSimulatedTime(Double.parseDouble(value)); break;
+					case "-step": runner.setTimeStep(Double.parseDouble(value)); break;
+					case "-parallelism": runner.setParallelism(Integer.parseInt(value)); break;
+					case "-log": runner.setLogInterval(Integer.parseInt(value)); break;
+					case "-seed": runner.setSeed(Long.parseLong(value)); break;
+					case "-save": runner.setSaveFile(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException exc) {
+			System.err.println(exc.getMessage() != null ? exc.getMessage() : "Invalid option value");
+			System.exit(2);
+		}
+		World world = runner.run();
+		runner.printReport(world, System.out);
+		world.terminate();
+	}
+}
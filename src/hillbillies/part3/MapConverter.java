@@ -0,0 +1,100 @@
+package hillbillies.part3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import hillbillies.model.TerrainFile;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+
+/**
+ * A class of map converters, which convert maps in the text format of .wrld files to the binary world format
+ * of TerrainFile.
+ *
+ * Usage:
+ *		java hillbillies.part3.MapConverter <map> [output]
+ *
+ * The map is either a path to a file or the name of a resource, such as resources/80x80x80.wrld.
+ * Without an output, the binary world file is written next to the map file, or in the current directory
+ * for a resource, with the extension TerrainFile.EXTENSION instead of .wrld.
+ *
+ * @author	Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class MapConverter {
+
+	private MapConverter() {
+	}
+
+	/**
+	 * A symbolic constant denoting the extension of maps in the text format.
+	 */
+	public static final String TEXT_EXTENSION = ".wrld";
+
+	/**
+	 * Returns the terrain of the map in the text format with the given path or resource name.
+	 *
+	 * @param	map
+	 *				The path to a file, or the name of a resource if no such file exists.
+	 *
+	 * @throws	IOException
+	 *				The map could not be read.
+	 */
+	public static TerrainFile readTextMap(String map) throws IOException {
+		GameMapReader reader = new GameMapReader();
+		GameMap gameMap = new File(map).isFile() ? reader.readFromFile(map) : reader.readFromResource(map);
+		if (gameMap == null)
+			throw new IOException("Could not read " + map);
+		return new TerrainFile(gameMap.getNbTilesX(), gameMap.getNbTilesY(), gameMap.getNbTilesZ(), gameMap.getMap().getValues());
+	}
+
+	/**
+	 * Returns the terrain of the map with the given path or resource name, in the binary world format if its
+	 * name ends with TerrainFile.EXTENSION and in the text format otherwise.
+	 *
+	 * @throws	IOException
+	 *				The map could not be read.
+	 */
+	public static TerrainFile readMap(String map) throws IOException {
+		if (map.endsWith(TerrainFile.EXTENSION))
+			return TerrainFile.read(Paths.get(map));
+		return readTextMap(map);
+	}
+
+	/**
+	 * Converts the map in the text format with the given path or resource name to a binary world file
+	 * with the given path.
+	 *
+	 * @return	The converted terrain.
+	 *
+	 * @throws	IOException
+	 *				The map could not be read or the binary world file could not be written.
+	 */
+	public static TerrainFile convert(String map, Path output) throws IOException {
+		TerrainFile terrain = readTextMap(map);
+		terrain.write(output);
+		return terrain;
+	}
+
+	/**
+	 * Returns the default path of the binary world file for the map with the given path or resource name.
+	 */
+	public static Path getDefaultOutput(String map) {
+		String name = new File(map).isFile() ? map : new File(map).getName();
+		if (name.endsWith(TEXT_EXTENSION))
+			name = name.substring(0, name.length() - TEXT_EXTENSION.length());
+		return Paths.get(name + TerrainFile.EXTENSION);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if ( (args.length == 0) || (args.length > 2) ) {
+			System.err.println("usage: MapConverter <map> [output]");
+			System.exit(2);
+		}
+		Path output = (args.length == 2) ? Paths.get(args[1]) : getDefaultOutput(args[0]);
+		TerrainFile terrain = convert(args[0], output);
+		System.out.println(terrain + " -> " + output + " (" + output.toFile().length() + " bytes)");
+	}
+}
@@ -1,12 +1,14 @@
 package hillbillies.positions;
 
+import java.io.Serializable;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Raw;
 import hillbillies.model.Cube;
+import hillbillies.model.Entity;
 import hillbillies.model.World;
 import ogp.framework.util.Util;
 
@@ -20,7 +22,9 @@ import ogp.framework.util.Util;
  * @author 	Thomas Vranken, Sander Mergan
  * @version	3.0
  */
-public class Position {
+public class Position implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Initializes this position with the given world and coordinates.
@@ -125,6 +129,7 @@ public class Position {
 			throw new IllegalArgumentException(Arrays.toString(doubleCoordinates));
 		}
 		this.coordinates = doubleCoordinates;
+		this.notifyEntityMoved();
 	}
 	
 	/**
@@ -466,7 +471,7 @@ public class Position {
 			throw new IllegalArgumentException(Arrays.toString(coordinates));
 		if (r < 0)
 			throw new IllegalArgumentException(Integer.toString(r));
-		Set<int[]> result = new HashSet<>();
+		Set<int[]> result = new LinkedHashSet<>();
 		for (int x=-r; x <= r; x++)
 			for (int y=-r; y<=r; y++)
 				for (int z=-r; z <= r; z++) {
@@ -517,6 +522,7 @@ public class Position {
 			throw new IllegalArgumentException("X Coordinate is outside the allowed range!");
 		
 		this.coordinates[0] = xCoordinate;
+		this.notifyEntityMoved();
 	}
 	
 	/**
@@ -560,6 +566,7 @@ public class Position {
 		if (! canHaveAsYCoordinate(yCoordinate))
 			throw new IllegalArgumentException("Y Coordinate is outside the allowed range!");
 		this.coordinates[1] = yCoordinate;
+		this.notifyEntityMoved();
 	}
 	
 	/**
@@ -603,6 +610,7 @@ public class Position {
 		if (! canHaveAsZCoordinate(zCoordinate))
 			throw new IllegalArgumentException("Z Coordinate is outside of the allowed range!");
 		this.getCoordinates()[2]= zCoordinate;
+		this.notifyEntityMoved();
 	}
 	
 	/**
@@ -630,6 +638,51 @@ public class Position {
 	 */
 	private final World world;
 	
+	/**
+	 * Returns the entity this position belongs to, or null if it belongs to no entity.
+	 */
+	@Basic @Raw
+	public Entity getEntity() {
+		return this.entity;
+	}
+	
+	/**
+	 * Binds this position to the given entity.
+	 * 
+	 * @param	entity
+	 *				The entity this position belongs to.
+	 *
+	 * @post	The entity of this position is the given entity.
+	 *				| new.getEntity() == entity
+	 *
+	 * @throws	IllegalStateException
+	 *				This position already belongs to another entity.
+	 *				| (this.getEntity() != null) && (this.getEntity() != entity)
+	 */
+	public void setEntity(Entity entity) throws IllegalStateException {
+		if ((this.getEntity() != null) && (this.getEntity() != entity))
+			throw new IllegalStateException("This position already belongs to another entity.");
+		this.entity = entity;
+	}
+	
+	/**
+	 * A variable that stores the entity this position belongs to.
+	 */
+	private Entity entity;
+	
+	/**
+	 * Lets the world of the entity of this position know that the coordinates have changed,
+	 * so that it can keep its spatial index up to date.
+	 * 
+	 * @effect	If this position belongs to an entity attached to a world, that entity is relocated in its world.
+	 *				| if ((this.getEntity() != null) && (this.getEntity().getWorld() != null))
+	 *				|	then this.getEntity().getWorld().relocateEntity(this.getEntity())
+	 */
+	private void notifyEntityMoved() {
+		if ((this.getEntity() != null) && (this.getEntity().getWorld() != null))
+			this.getEntity().getWorld().relocateEntity(this.getEntity());
+	}
+	
 	/**
 	 * Checks whether two given cube coordinates are the same by comparing each of their coordinates.
 	 * 
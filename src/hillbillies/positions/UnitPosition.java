@@ -11,6 +11,8 @@ import hillbillies.model.World;
  * @version 3.0
  */
 public class UnitPosition extends Position{
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Initializes this unit position with the given coordinates and world.
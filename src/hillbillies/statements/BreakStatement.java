@@ -5,6 +5,8 @@ import hillbillies.statements.expressionType.WhileStatement;
 
 public class BreakStatement extends Statement {
 
+	private static final long serialVersionUID = 1L;
+
 	public BreakStatement(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -7,6 +7,8 @@ import hillbillies.part3.programs.SourceLocation;
 
 public class SequenceStatement extends Statement implements ISubStatement {
 
+	private static final long serialVersionUID = 1L;
+
 	private List<Statement> statements;
 
 	public SequenceStatement(List<Statement> statements, SourceLocation sourceLocation) {
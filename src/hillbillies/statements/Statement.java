@@ -12,6 +12,8 @@ import hillbillies.tasks.TextObject;
 
 public abstract class Statement extends TextObject {
 
+	private static final long serialVersionUID = 1L;
+
 	public Statement(SourceLocation sourceLocation) {
 		super(sourceLocation);
 	}
@@ -6,6 +6,8 @@ import hillbillies.statements.Status;
 
 public class AssignmentStatement<E extends Expression> 
 		extends ExpressionStatement<E> {
+
+	private static final long serialVersionUID = 1L;
 	
 	public AssignmentStatement(String variableName, E value, SourceLocation sourceLocation) {
 		super(value, sourceLocation);
@@ -7,6 +7,8 @@ import hillbillies.statements.Statement;
 public abstract class ExpressionStatement<E extends Expression>
 		extends Statement {
 
+	private static final long serialVersionUID = 1L;
+
 	public ExpressionStatement(E expression, SourceLocation sourceLocation) {
 		super(sourceLocation);
 		expression.setSuperText(this);
@@ -11,6 +11,8 @@ import hillbillies.statements.Statement;
 public abstract class ExtendedExpressionStatement<E extends Expression> extends ExpressionStatement<E>
 	implements ISubStatement {
 
+	private static final long serialVersionUID = 1L;
+
 	private Statement statement;
 
 	public ExtendedExpressionStatement(E expression, Statement body, SourceLocation sourceLocation) {
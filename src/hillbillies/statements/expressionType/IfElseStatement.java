@@ -11,6 +11,8 @@ import hillbillies.statements.Status;
 public class IfElseStatement<E extends BooleanExpression>
 		extends ExtendedExpressionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public IfElseStatement(E condition, Statement ifBody, Statement elseBody, SourceLocation sourceLocation) {
 		super(condition, ifBody, sourceLocation);
 		if (elseBody != null) {
@@ -9,6 +9,8 @@ import hillbillies.statements.Status;
 
 public class PrintStatement<E extends Expression> extends ExpressionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public PrintStatement(E value, SourceLocation sourceLocation) {
 		super(value,sourceLocation);
 	}
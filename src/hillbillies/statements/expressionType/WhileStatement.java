@@ -8,6 +8,8 @@ import hillbillies.statements.Status;
 public class WhileStatement<E extends BooleanExpression> 
 		extends ExtendedExpressionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public WhileStatement(E condition, Statement body, SourceLocation sourceLocation) {
 		super(condition, body, sourceLocation);
 	}
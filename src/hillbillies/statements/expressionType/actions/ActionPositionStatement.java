@@ -7,6 +7,8 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class ActionPositionStatement<E extends PositionExpression>
 		extends ActionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public ActionPositionStatement(E expression, SourceLocation sourceLocation) {
 		super(expression, sourceLocation);
 	}
@@ -14,6 +14,8 @@ import hillbillies.statements.expressionType.ExpressionStatement;
 public abstract class ActionStatement<E extends Expression> 
 		extends ExpressionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public ActionStatement(E expression, SourceLocation sourceLocation) {
 		super(expression, sourceLocation);
 	}
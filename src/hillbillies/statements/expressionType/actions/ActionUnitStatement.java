@@ -6,6 +6,8 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class ActionUnitStatement<E extends UnitExpression> 
 		extends ActionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public ActionUnitStatement(E expression, SourceLocation sourceLocation) {
 		super(expression, sourceLocation);
 	}
@@ -7,6 +7,8 @@ import hillbillies.statements.Status;
 
 public class AttackStatement<E extends UnitExpression> 
 		extends ActionUnitStatement<E> {
+
+	private static final long serialVersionUID = 1L;
 	
 	public AttackStatement(E unit, SourceLocation sourceLocation) {
 		super(unit, sourceLocation);
@@ -8,6 +8,8 @@ import hillbillies.statements.Status;
 public class FollowStatement<E extends UnitExpression> 
 		extends ActionUnitStatement<E>{
 
+	private static final long serialVersionUID = 1L;
+
 	public FollowStatement(E unit, SourceLocation sourceLocation) {
 		super(unit, sourceLocation);
 	}
@@ -7,6 +7,8 @@ import hillbillies.statements.Status;
 public class MoveToStatement<E extends PositionExpression> 
 		extends ActionPositionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public MoveToStatement(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
 	}
@@ -7,6 +7,8 @@ import hillbillies.statements.Status;
 public class WorkAtStatement<E extends PositionExpression> 
 		extends ActionPositionStatement<E> {
 
+	private static final long serialVersionUID = 1L;
+
 	public WorkAtStatement(E position, SourceLocation sourceLocation) {
 		super(position, sourceLocation);
 	}
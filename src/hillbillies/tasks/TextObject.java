@@ -1,9 +1,13 @@
 package hillbillies.tasks;
 
+import java.io.Serializable;
+
 import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
-public abstract class TextObject implements Cloneable {
+public abstract class TextObject implements Cloneable, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	public TextObject(SourceLocation sourceLocation) {
 		this.sourceLocation = sourceLocation;
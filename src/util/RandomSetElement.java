@@ -1,7 +1,8 @@
 package util;
 
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomSetElement<E extends Object> {
 	
@@ -10,7 +11,18 @@ public class RandomSetElement<E extends Object> {
 	}
 	
 	public E getRandomElement(Set<E> set) {
-		int randomIndex = new Random().nextInt(set.size());
+		return this.getElementAt(set, ThreadLocalRandom.current().nextInt(set.size()));
+	}
+	
+	/**
+	 * Returns a random element of the given set, drawn from the given stream of random numbers.
+	 * The result only depends on the stream if the iteration order of the set is fixed.
+	 */
+	public E getRandomElement(Set<E> set, SplittableRandom random) {
+		return this.getElementAt(set, random.nextInt(set.size()));
+	}
+	
+	private E getElementAt(Set<E> set, int randomIndex) {
 		int count = 0;
 		for (E object: set) {
 			if (count == randomIndex) 
@@ -5,16 +5,28 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( { 
+	BatchRunnerTest.class,
+	BorderConnectivityTest.class,
 	BoulderTest.class, 
 	EntityTest.class,
+	FlowFieldCacheTest.class,
+	GameMapReaderTest.class,
+	HierarchicalPathFinderTest.class,
     ItemTest.class, 
     LogTest.class, 
+    PathCacheTest.class,
     PathFinderTest.class,
     PositionTest.class, 
     SchedulerTest.class,
+    SimulationDriverTest.class,
     TaskFactoryTest.class,
+    TerrainFileTest.class,
+    TickProfilerTest.class,
+    TimerWheelTest.class,
     UnitPositionTest.class,
     UnitTest.class, 
+    WorldForkTest.class,
+    WorldSnapshotTest.class,
     WorldTest.class})
 public class AllTests {
 }
@@ -0,0 +1,80 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import hillbillies.model.Faction;
+import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
+import hillbillies.part3.BatchRunner;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class BatchRunnerTest {
+	
+	private static final String MAP = "resources/20x20x10.wrld";
+	private static final String TASK_FILE = "tests/hillbillies/tests/tasks/follow.txt";
+	
+	@Test
+	public void runTest() throws Exception {
+		BatchRunner runner = new BatchRunner(MAP);
+		runner.setUnitsPerFaction(2);
+		runner.addTaskFile(TASK_FILE);
+		runner.setSimulatedTime(5);
+		runner.setTimeStep(0.1);
+		World world = runner.run();
+		
+		assertEquals(50, runner.getNbSteps());
+		assertEquals(World.MAX_FACTIONS, world.getNbActiveFactions());
+		assertTrue(world.getNbUnits() <= 2 * World.MAX_FACTIONS);
+		assertTrue(runner.getSimulationTime() > 0);
+		assertTrue(runner.getStepsPerSecond() > 0);
+	}
+	
+	@Test
+	public void unitLimitTest() throws Exception {
+		BatchRunner runner = new BatchRunner(MAP);
+		runner.setUnitsPerFaction(Faction.MAX_UNITS_FACTION);
+		runner.setSimulatedTime(0);
+		World world = runner.run();
+		
+		assertEquals(0, runner.getNbSteps());
+		assertEquals(World.MAX_UNITS_WORLD, world.getNbUnits());
+	}
+	
+	@Test
+	public void saveAndResumeTest() throws Exception {
+		Path file = Files.createTempFile("world", WorldSnapshot.EXTENSION);
+		try {
+			BatchRunner runner = new BatchRunner(MAP);
+			runner.setUnitsPerFaction(1);
+			runner.addTaskFile(TASK_FILE);
+			runner.setSimulatedTime(2);
+			runner.setSeed(7L);
+			runner.setSaveFile(file.toString());
+			World saved = runner.run();
+			
+			BatchRunner resumer = new BatchRunner(file.toString());
+			assertTrue(resumer.isResuming());
+			resumer.setSimulatedTime(1);
+			World resumed = resumer.run();
+			assertEquals(7L, resumed.getSeed());
+			assertEquals(saved.getNbUnits(), resumed.getNbUnits());
+			assertEquals(3, resumed.getTime(), 1e-9);
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidUnitsPerFactionTest() {
+		new BatchRunner(MAP).setUnitsPerFaction(Faction.MAX_UNITS_FACTION + 1);
+	}
+}
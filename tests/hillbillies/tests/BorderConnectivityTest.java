@@ -0,0 +1,87 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hillbillies.model.BorderConnectivity;
+import hillbillies.positions.Position;
+import hillbillies.util.ConnectedToBorder;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class BorderConnectivityTest {
+	
+	@Test
+	public void changeSolidToPassableTest() {
+		BorderConnectivity connectivity = new BorderConnectivity(5, 5, 5);
+		assertTrue(connectivity.isSolidConnectedToBorder(2, 2, 2));
+		// Hollow out the cubes around the center, apart from the one above it.
+		assertTrue(connectivity.changeSolidToPassable(1, 2, 2).isEmpty());
+		assertTrue(connectivity.changeSolidToPassable(3, 2, 2).isEmpty());
+		assertTrue(connectivity.changeSolidToPassable(2, 1, 2).isEmpty());
+		assertTrue(connectivity.changeSolidToPassable(2, 3, 2).isEmpty());
+		assertTrue(connectivity.changeSolidToPassable(2, 2, 1).isEmpty());
+		assertTrue(connectivity.isSolidConnectedToBorder(2, 2, 2));
+		
+		List<int[]> changed = connectivity.changeSolidToPassable(2, 2, 3);
+		assertTrue(changed.size() == 1);
+		assertTrue(Position.equals(changed.get(0), new int[]{2, 2, 2}));
+		assertFalse(connectivity.isSolidConnectedToBorder(2, 2, 2));
+		assertFalse(connectivity.isSolidConnectedToBorder(2, 2, 3));
+		
+		// Making the cube above solid again reconnects the center.
+		assertTrue(connectivity.changePassableToSolid(2, 2, 3).size() == 2);
+		assertTrue(connectivity.isSolidConnectedToBorder(2, 2, 2));
+	}
+	
+	@Test
+	public void sameAsConnectedToBorderTest() {
+		Random random = new Random(3);
+		ConnectedToBorder expected = new ConnectedToBorder(6, 7, 5);
+		BorderConnectivity connectivity = new BorderConnectivity(6, 7, 5);
+		for (int i = 0; i < 500; i++) {
+			int x = random.nextInt(6), y = random.nextInt(7), z = random.nextInt(5);
+			if (random.nextInt(4) == 0)
+				assertTrue(connectivity.changePassableToSolid(x, y, z).size() == expected.changePassableToSolid(x, y, z).size());
+			else
+				assertTrue(connectivity.changeSolidToPassable(x, y, z).size() == expected.changeSolidToPassable(x, y, z).size());
+			for (int cx = 0; cx < 6; cx++)
+				for (int cy = 0; cy < 7; cy++)
+					for (int cz = 0; cz < 5; cz++)
+						assertTrue(connectivity.isSolidConnectedToBorder(cx, cy, cz) == expected.isSolidConnectedToBorder(cx, cy, cz));
+		}
+	}
+	
+	@Test
+	public void initializePassableCubesTest() {
+		Random random = new Random(5);
+		int nbX = 7, nbY = 6, nbZ = 5;
+		BorderConnectivity expected = new BorderConnectivity(nbX, nbY, nbZ);
+		BorderConnectivity connectivity = new BorderConnectivity(nbX, nbY, nbZ);
+		long[] passableCubes = new long[(nbX * nbY * nbZ + 63) / 64];
+		int nbCollapsed = 0;
+		for (int index = 0; index < nbX * nbY * nbZ; index++) {
+			if (random.nextInt(3) != 0) {
+				passableCubes[index / 64] |= 1L << index;
+				nbCollapsed += expected.changeSolidToPassable(index % nbX, (index / nbX) % nbY, index / (nbX * nbY)).size();
+			}
+		}
+		List<int[]> collapsed = connectivity.initializePassableCubes(passableCubes);
+		assertTrue(collapsed.size() == nbCollapsed);
+		for (int[] cube: collapsed)
+			assertFalse(expected.isSolidConnectedToBorder(cube[0], cube[1], cube[2]));
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				for (int z = 0; z < nbZ; z++)
+					assertTrue(connectivity.isSolidConnectedToBorder(x, y, z) == expected.isSolidConnectedToBorder(x, y, z));
+		// Later changes are handled as after making the cubes passable one by one.
+		assertTrue(connectivity.changePassableToSolid(3, 3, 2).size() == expected.changePassableToSolid(3, 3, 2).size());
+		assertTrue(connectivity.changeSolidToPassable(0, 0, 0).size() == expected.changeSolidToPassable(0, 0, 0).size());
+	}
+}
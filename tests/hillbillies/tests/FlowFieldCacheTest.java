@@ -0,0 +1,71 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import hillbillies.model.FlowFieldCache;
+import hillbillies.model.PathFinder;
+import hillbillies.model.Terrain;
+import hillbillies.model.World;
+import hillbillies.positions.Position;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class FlowFieldCacheTest {
+	
+	/**
+	 * Helper method to compute the length of the given path.
+	 */
+	private static double getLength(List<int[]> path) {
+		double result = 0;
+		for (int i = 1; i < path.size(); i++)
+			result += Position.getDistance(Position.getCubeCenter(path.get(i-1)), Position.getCubeCenter(path.get(i)));
+		return result;
+	}
+	
+	@Test
+	public void getPathTest() {
+		World world = TestWorlds.walledWorld(20);
+		FlowFieldCache cache = world.getFlowFieldCache();
+		int[] destination = new int[]{19, 0, 1};
+		for (boolean diagonal: new boolean[]{true, false}) {
+			for (int[] start: new int[][]{{0, 0, 1}, {5, 10, 1}, {12, 3, 1}, {0, 19, 2}}) {
+				List<int[]> path = cache.getPath(start, destination, diagonal);
+				List<int[]> expected = PathFinder.getPath(start, destination, world, diagonal);
+				assertTrue(Position.equals(path.get(0), start));
+				assertTrue(Position.equals(path.get(path.size()-1), destination));
+				assertEquals(getLength(expected), getLength(path), 1e-9);
+				if (path.size() > 1)
+					assertTrue(Position.equals(cache.getNextStep(start, destination, diagonal), path.get(1)));
+			}
+			assertTrue(cache.hasFlowField(destination, diagonal));
+		}
+		assertTrue(cache.getNbFlowFields() == 2);
+		
+		// A destination without solid neighbours cannot be reached.
+		assertNull(cache.getPath(new int[]{0, 0, 1}, new int[]{5, 5, 2}, true));
+		assertNull(cache.getNextStep(new int[]{0, 0, 1}, new int[]{5, 5, 2}, true));
+	}
+	
+	@Test
+	public void sharedDestinationTest() {
+		World world = TestWorlds.walledWorld(20);
+		FlowFieldCache cache = world.getFlowFieldCache();
+		int[] destination = new int[]{19, 0, 1};
+		for (int i = 1; i < FlowFieldCache.SHARED_SEARCHES; i++)
+			world.getPathCache().getPath(new int[]{0, i, 1}, destination, true);
+		assertFalse(cache.hasFlowField(destination, true));
+		world.getPathCache().getPath(new int[]{0, 15, 1}, destination, true);
+		assertTrue(cache.hasFlowField(destination, true));
+		
+		// Changing the terrain forgets the flow fields.
+		world.getCube(10, 0, 1).setTerrainType(Terrain.AIR);
+		assertTrue(cache.getNbFlowFields() == 0);
+		assertTrue(cache.getPath(new int[]{0, 0, 1}, destination, false).size() == 20);
+	}
+}
@@ -0,0 +1,98 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import hillbillies.model.World;
+import hillbillies.part2.internal.map.CubeType;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class GameMapReaderTest {
+
+	private static final String MAP = "3 2 2\n\nR.S\nW..\n\nRRR\n...\n";
+
+	@Test
+	public void readTest() {
+		GameMap map = new GameMapReader().readFromStream(new ByteArrayInputStream(MAP.getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(3, map.getNbTilesX());
+		assertEquals(2, map.getNbTilesY());
+		assertEquals(2, map.getNbTilesZ());
+		// The rows of the highest z-level come first.
+		assertEquals(CubeType.ROCKS, map.getTypeAt(0, 0, 1));
+		assertEquals(CubeType.EMPTY, map.getTypeAt(1, 0, 1));
+		assertEquals(CubeType.TREES, map.getTypeAt(2, 0, 1));
+		assertEquals(CubeType.WORKSHOP, map.getTypeAt(0, 1, 1));
+		assertEquals(CubeType.ROCKS, map.getTypeAt(2, 0, 0));
+		assertEquals(CubeType.EMPTY, map.getTypeAt(2, 1, 0));
+	}
+
+	@Test
+	public void lineTerminatorsTest() {
+		GameMap expected = new GameMapReader().readFromReader(new StringReader(MAP));
+		GameMap actual = new GameMapReader().readFromReader(new StringReader(" 3 2 2\r\n\r\n R.S \r W..\r\n\t\nRRR\n..."));
+		assertArrayEquals(expected.getMap().getValues(), actual.getMap().getValues());
+	}
+
+	@Test
+	public void streamAndReaderTest() throws Exception {
+		GameMap fromStream = new GameMapReader().readFromResource("resources/50x50x50.wrld");
+		StringBuilder contents = new StringBuilder();
+		try (InputStream stream = new FileInputStream("src-provided/resources/50x50x50.wrld")) {
+			for (int character = stream.read(); character >= 0; character = stream.read())
+				contents.append((char) character);
+		}
+		GameMap fromReader = new GameMapReader().readFromReader(new StringReader(contents.toString()));
+		assertArrayEquals(fromStream.getMap().getValues(), fromReader.getMap().getValues());
+	}
+
+	@Test
+	public void worldFromValuesTest() {
+		GameMap map = new GameMapReader().readFromReader(new StringReader(MAP));
+		int[][][] terrain = new int[3][2][2];
+		for (int x = 0; x < 3; x++)
+			for (int y = 0; y < 2; y++)
+				for (int z = 0; z < 2; z++)
+					terrain[x][y][z] = map.getTypeAt(x, y, z).getByteValue();
+		World expected = new World(terrain, new DefaultTerrainChangeListener(), 1);
+		World actual = new World(3, 2, 2, map.getMap().getValues(), new DefaultTerrainChangeListener(), 1);
+		for (int x = 0; x < 3; x++)
+			for (int y = 0; y < 2; y++)
+				for (int z = 0; z < 2; z++)
+					assertEquals(expected.getTerrain(x, y, z), actual.getTerrain(x, y, z));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void worldFromValuesInvalidTypeTest() {
+		new World(2, 1, 1, new byte[]{0, 4}, new DefaultTerrainChangeListener());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownTypeTest() {
+		new GameMapReader().readFromReader(new StringReader("3 2 2\n\nR.S\nW.X\n\nRRR\n...\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingEmptyLineTest() {
+		new GameMapReader().readFromReader(new StringReader("3 2 2\nR.S\nW..\n\nRRR\n...\n"));
+	}
+
+	@Test
+	public void truncatedTest() {
+		// The reader prints the EOFException and returns nothing.
+		assertNull(new GameMapReader().readFromReader(new StringReader("3 2 2\n\nR.S\nW..\n\nRRR\n")));
+		assertNull(new GameMapReader().readFromReader(new StringReader("3 2 2\n\nR.S\nW.\n\nRRR\n...\n")));
+	}
+}
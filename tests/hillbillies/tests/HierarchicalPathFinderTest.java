@@ -0,0 +1,84 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import hillbillies.model.HierarchicalPathFinder;
+import hillbillies.model.PathFinder;
+import hillbillies.model.Terrain;
+import hillbillies.model.World;
+import hillbillies.positions.Position;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class HierarchicalPathFinderTest {
+	
+	/**
+	 * Helper method to check that the given path goes from the given start to the given destination
+	 * in steps to neighbouring passable cubes.
+	 */
+	private static void assertValidPath(List<int[]> path, int[] start, int[] destination, World world) {
+		assertTrue(Position.equals(path.get(0), start));
+		assertTrue(Position.equals(path.get(path.size()-1), destination));
+		for (int i = 1; i < path.size(); i++) {
+			int[] previous = path.get(i-1), current = path.get(i);
+			assertTrue(world.isPassable(current[0], current[1], current[2]));
+			assertTrue(Math.abs(previous[0]-current[0]) <= 1);
+			assertTrue(Math.abs(previous[1]-current[1]) <= 1);
+			assertTrue(Math.abs(previous[2]-current[2]) <= 1);
+		}
+	}
+	
+	@Test
+	public void getPathTest() {
+		World world = TestWorlds.walledWorld(30);
+		int[] start = new int[]{0, 0, 1};
+		int[] destination = new int[]{29, 0, 1};
+		for (boolean diagonal: new boolean[]{true, false}) {
+			HierarchicalPathFinder pathFinder = world.getHierarchicalPathFinder(diagonal);
+			List<int[]> path = pathFinder.getPath(start, destination);
+			assertValidPath(path, start, destination, world);
+			// The path goes through the gap in the wall.
+			boolean throughGap = false;
+			for (int[] cube: path)
+				throughGap |= (cube[0] == 15);
+			assertTrue(throughGap);
+			assertTrue(path.size() >= PathFinder.getPath(start, destination, world, diagonal).size());
+		}
+		
+		// A destination without solid neighbours cannot be reached.
+		assertNull(world.getHierarchicalPathFinder(true).getPath(start, new int[]{5, 5, 2}));
+		
+		// The same path finder is returned each time.
+		assertTrue(world.getHierarchicalPathFinder(true) == world.getHierarchicalPathFinder(true));
+	}
+	
+	@Test
+	public void invalidateTest() {
+		World world = TestWorlds.walledWorld(30);
+		HierarchicalPathFinder pathFinder = world.getHierarchicalPathFinder(false);
+		int[] start = new int[]{0, 0, 1};
+		int[] destination = new int[]{29, 0, 1};
+		int nbRegions = pathFinder.getNbRegions();
+		assertTrue(pathFinder.getPath(start, destination).size() > 58);
+		
+		// Breaking through the wall opens a short route.
+		world.getCube(15, 0, 1).setTerrainType(Terrain.AIR);
+		List<int[]> path = pathFinder.getPath(start, destination);
+		assertValidPath(path, start, destination, world);
+		assertTrue(path.size() == 30);
+		assertTrue(pathFinder.getNbRegions() <= nbRegions);
+		
+		// Removing a strip of floor in front of the destination cuts it off.
+		world.setHierarchicalPathfindingEnabled(true);
+		for (int x = 26; x < 29; x++)
+			for (int y = 0; y < 30; y++)
+				world.getCube(x, y, 0).setTerrainType(Terrain.AIR);
+		assertNull(world.getPathCache().getPath(start, destination, false));
+	}
+}
@@ -0,0 +1,66 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import hillbillies.model.PathCache;
+import hillbillies.model.PathFinder;
+import hillbillies.model.Terrain;
+import hillbillies.model.World;
+import hillbillies.positions.Position;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class PathCacheTest {
+	
+	@Test
+	public void getPathTest() {
+		World world = TestWorlds.flatWorld(20);
+		PathCache cache = world.getPathCache();
+		assertTrue(cache.getNbPaths() == 0);
+		
+		List<int[]> path = cache.getPath(new int[]{0, 0, 1}, new int[]{10, 0, 1}, true);
+		List<int[]> expected = PathFinder.getPath(new int[]{0, 0, 1}, new int[]{10, 0, 1}, world, true);
+		assertTrue(path.size() == expected.size());
+		assertTrue(cache.getNbPaths() == 1);
+		
+		// The remainder of a remembered path is reused.
+		List<int[]> suffix = cache.getPath(path.get(3), new int[]{10, 0, 1}, true);
+		assertTrue(cache.getNbPaths() == 1);
+		assertTrue(suffix.size() == path.size() - 3);
+		assertTrue(Position.equals(suffix.get(0), path.get(3)));
+		
+		// Changing a returned path does not change the cache.
+		suffix.clear();
+		assertTrue(cache.getPath(path.get(3), new int[]{10, 0, 1}, true).size() == path.size() - 3);
+		
+		// Without diagonal moves another path is needed.
+		cache.getPath(new int[]{0, 0, 1}, new int[]{10, 0, 1}, false);
+		assertTrue(cache.getNbPaths() == 2);
+	}
+	
+	@Test
+	public void invalidateTest() {
+		World world = TestWorlds.flatWorld(20);
+		PathCache cache = world.getPathCache();
+		cache.getPath(new int[]{0, 0, 1}, new int[]{10, 0, 1}, true);
+		cache.getPath(new int[]{0, 19, 1}, new int[]{10, 19, 1}, true);
+		assertTrue(cache.getNbPaths() == 2);
+		
+		// A change far away from both paths keeps them.
+		cache.invalidate(5, 10, 1);
+		assertTrue(cache.getNbPaths() == 2);
+		
+		// Removing the floor under the first path forgets it.
+		world.getCube(5, 0, 0).setTerrainType(Terrain.AIR);
+		assertTrue(cache.getNbPaths() == 1);
+		
+		cache.clear();
+		assertTrue(cache.getNbPaths() == 0);
+	}
+}
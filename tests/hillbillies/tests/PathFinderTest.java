@@ -28,7 +28,6 @@ public class PathFinderTest {
 	
 	@SuppressWarnings("unused")
 	private static final int TYPE_AIR = 0;
-	@SuppressWarnings("unused")
 	private static final int TYPE_ROCK = 1;
 	@SuppressWarnings("unused")
 	private static final int TYPE_TREE = 2;
@@ -83,6 +82,29 @@ public class PathFinderTest {
 		}
 	}
 
+	@Test
+	public void getPathLongRouteTest() {
+		// A wall at x == 30 with a single gap at y == 59.
+		World world = TestWorlds.walledWorld(60);
+		
+		List<int[]> path = PathFinder.getPath(new int[]{0, 0, 1}, new int[]{59, 0, 1}, world, true);
+		assertTrue(path != null);
+		assertTrue(Position.equals(path.get(0), new int[]{0, 0, 1}));
+		assertTrue(Position.equals(path.get(path.size()-1), new int[]{59, 0, 1}));
+		for (int i = 1; i < path.size(); i++){
+			assertTrue(Position.isAdjacentTo(path.get(i-1), path.get(i)));
+			assertTrue(world.getCube(path.get(i)).isPassable());
+		}
+		// Diagonally up to the gap, through it and diagonally down again.
+		assertTrue(path.size() == 119);
+		
+		List<int[]> straightPath = PathFinder.getPath(new int[]{0, 0, 1}, new int[]{20, 5, 1}, world, false);
+		assertTrue(straightPath.size() == 26);
+		
+		// A destination without solid neighbours cannot be reached.
+		assertTrue(PathFinder.getPath(new int[]{0, 0, 1}, new int[]{10, 10, 2}, world, true) == null);
+	}
+
 	/**
 	 * Helper method to load the terrain from a world-file.
 	 * @param name
@@ -0,0 +1,85 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import hillbillies.model.SimulationDriver;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.positions.Position;
+import ogp.framework.util.Util;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class SimulationDriverTest {
+	
+	@Test
+	public void updateTest() {
+		SimulationDriver driver = new SimulationDriver(TestWorlds.flatWorld(10), 0.1);
+		assertTrue(driver.update(0.25) == 2);
+		assertTrue(Util.fuzzyEquals(driver.getInterpolationFactor(), 0.5));
+		assertTrue(driver.update(0.05) == 1);
+		assertTrue(Util.fuzzyEquals(driver.getSimulatedTime(), 0.3));
+		
+		// The speed multiplies the real time.
+		driver.setSpeed(50);
+		assertTrue(driver.update(0.1) == 50);
+		assertTrue(Util.fuzzyEquals(driver.getSimulatedTime(), 5.3));
+		
+		// The catch-up cap limits the steps of an update and drops the rest.
+		driver.setMaxStepsPerUpdate(10);
+		assertTrue(driver.update(1) == 10);
+		assertTrue(driver.getInterpolationFactor() < 1);
+		assertTrue(driver.update(0) == 0);
+		
+		try{driver.update(-1); assertTrue(false);}catch(IllegalArgumentException e){assertTrue(true);}
+		try{new SimulationDriver(TestWorlds.flatWorld(10), 0.5); assertTrue(false);}catch(IllegalArgumentException e){assertTrue(true);}
+	}
+	
+	@Test
+	public void runTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.moveTo(new int[]{8, 1, 1});
+		SimulationDriver driver = new SimulationDriver(world);
+		// Far more than the 0.2 seconds a single step of a world may take.
+		assertTrue(driver.run(20) == 400);
+		assertTrue(Position.equals(unit.getCubeCoordinates(), new int[]{8, 1, 1}));
+		assertTrue(Position.equals(driver.getInterpolatedCoordinates(unit), unit.getCoordinates()));
+	}
+	
+	@Test
+	public void skipIdleStepsTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.workAt(new int[]{2, 1, 0});
+		world.getProfiler().setEnabled(true);
+		SimulationDriver driver = new SimulationDriver(world);
+		// The unit sleeps while it waits for its work to complete, so most steps are skipped.
+		assertTrue(driver.run(20) == 400);
+		assertTrue(driver.getNbSteps() == 400);
+		assertTrue(world.getProfiler().getNbTicks() < 20);
+		assertTrue(Util.fuzzyEquals(world.getTime(), 20));
+		assertTrue(Util.fuzzyEquals(unit.getGametime(), 20));
+		assertTrue(world.getCube(2, 1, 0).isPassable());
+		assertTrue(unit.getExperience() > 0);
+	}
+	
+	@Test
+	public void interpolationTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.moveTo(new int[]{8, 1, 1});
+		SimulationDriver driver = new SimulationDriver(world, 0.1);
+		driver.update(0.15);
+		double[] interpolated = driver.getInterpolatedCoordinates(unit);
+		assertTrue(interpolated[0] > 1.5);
+		assertTrue(interpolated[0] < unit.getCoordinates()[0]);
+	}
+}
@@ -0,0 +1,103 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hillbillies.model.TerrainFile;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.MapConverter;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class TerrainFileTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("terrain", TerrainFile.EXTENSION);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void writeAndReadTest() throws IOException {
+		TerrainFile terrain = new TerrainFile(3, 2, 2, new byte[]{1, 1, 1, 0, 0, 2, 3, 3, 0, 0, 0, 1});
+		terrain.write(file);
+		TerrainFile read = TerrainFile.read(file);
+		assertEquals(terrain, read);
+		assertEquals(3, read.getNbX());
+		assertEquals(2, read.getNbY());
+		assertEquals(2, read.getNbZ());
+		assertEquals(3, read.getTerrainType(6));
+	}
+
+	@Test
+	public void convertTest() throws IOException {
+		TerrainFile converted = MapConverter.convert("resources/50x50x50.wrld", file);
+		assertEquals(converted, TerrainFile.read(file));
+		assertEquals(converted, MapConverter.readMap(file.toString()));
+		// The runs of equal types make the binary file much smaller than the text file.
+		assertTrue(Files.size(file) < converted.getNbCubes() / 4);
+
+		World expected = MapConverter.readTextMap("resources/50x50x50.wrld").createWorld(new DefaultTerrainChangeListener(), 1);
+		World actual = TerrainFile.read(file).createWorld(new DefaultTerrainChangeListener(), 1);
+		for (int x = 0; x < 50; x++)
+			for (int y = 0; y < 50; y++)
+				for (int z = 0; z < 50; z++)
+					assertEquals(expected.getTerrain(x, y, z), actual.getTerrain(x, y, z));
+	}
+
+	@Test
+	public void longRunTest() throws IOException {
+		// A run of more than 2^14 cubes needs three bytes for its length.
+		byte[] types = new byte[40 * 40 * 40];
+		types[types.length - 1] = 1;
+		new TerrainFile(40, 40, 40, types).write(file);
+		assertArrayEquals(types, TerrainFile.read(file).getTerrainTypes());
+	}
+
+	@Test(expected = IOException.class)
+	public void checksumTest() throws IOException {
+		new TerrainFile(3, 2, 2, new byte[]{1, 1, 1, 0, 0, 2, 3, 3, 0, 0, 0, 1}).write(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(raf.length() - 1);
+			raf.write(5);
+		}
+		TerrainFile.read(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedTest() throws IOException {
+		new TerrainFile(3, 2, 2, new byte[]{1, 1, 1, 0, 0, 2, 3, 3, 0, 0, 0, 1}).write(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.setLength(raf.length() - 2);
+		}
+		TerrainFile.read(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void notABinaryFileTest() throws IOException {
+		Files.write(file, "3 2 2\n\nR.S\nW..\n\nRRR\n...\n".getBytes("US-ASCII"));
+		TerrainFile.read(file);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidTypeTest() {
+		new TerrainFile(2, 1, 1, new byte[]{0, 4});
+	}
+}
@@ -0,0 +1,87 @@
+package hillbillies.tests;
+
+import java.util.Arrays;
+
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * A class of helper methods to create the worlds used by several tests.
+ *
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public final class TestWorlds {
+
+	private TestWorlds() {
+	}
+
+	static final int TYPE_ROCK = 1;
+	static final int TYPE_TREE = 2;
+
+	/**
+	 * Helper method to create the terrain of a world of the given dimensions with a solid floor at z == 0.
+	 */
+	static int[][][] floor(int nbX, int nbY, int nbZ) {
+		int[][][] terrain = new int[nbX][nbY][nbZ];
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				terrain[x][y][0] = TYPE_ROCK;
+		return terrain;
+	}
+
+	/**
+	 * Helper method to create a world of size x size x 3 cubes with a solid floor.
+	 */
+	static World flatWorld(int size) {
+		return new World(floor(size, size, 3), new DefaultTerrainChangeListener());
+	}
+
+	/**
+	 * Helper method to create a world of size x size x 3 cubes with a solid floor and a wall at x == size/2,
+	 * with a single gap at y == size-1.
+	 */
+	static World walledWorld(int size) {
+		int[][][] terrain = floor(size, size, 3);
+		for (int y = 0; y < size-1; y++) {
+			terrain[size/2][y][1] = TYPE_ROCK;
+			terrain[size/2][y][2] = TYPE_ROCK;
+		}
+		return new World(terrain, new DefaultTerrainChangeListener());
+	}
+
+	/**
+	 * Helper method to create a world of 15 x 15 x 6 cubes with the given seed, with a solid floor on which
+	 * trees grow at (x + 2*y) % 5 == 0, and with the given number of spawned units with default behavior.
+	 */
+	static World woodedWorld(long seed, int nbUnits) {
+		int[][][] terrain = floor(15, 15, 6);
+		for (int x = 0; x < 15; x++)
+			for (int y = 0; y < 15; y++)
+				if ((x + 2 * y) % 5 == 0)
+					terrain[x][y][1] = TYPE_TREE;
+		World world = new World(terrain, new DefaultTerrainChangeListener(), seed);
+		for (int i = 0; i < nbUnits; i++)
+			world.spawnUnit(true);
+		return world;
+	}
+
+	/**
+	 * Helper method to describe the state of the given world: its time, the state of each of its units,
+	 * its terrain and its number of logs and boulders.
+	 */
+	static String describe(World world) {
+		StringBuilder result = new StringBuilder().append(world.getTime()).append(';');
+		for (Unit unit: world.getUnits())
+			result.append(unit.getName()).append(Arrays.toString(unit.getCoordinates()))
+					.append(unit.getCurrentActivity()).append(unit.getCurrentHealth()).append(unit.getCurrentStamina())
+					.append(unit.getExperience()).append(unit.getFaction().getNbUnits())
+					.append(unit.hasTask() ? unit.getTask().getName() : "-").append(unit.hasItem()).append(';');
+		for (int x = 0; x < world.getMaximumXValue(); x++)
+			for (int y = 0; y < world.getMaximumYValue(); y++)
+				for (int z = 0; z < world.getMaximumZValue(); z++)
+					result.append(world.getTerrain(x, y, z).ordinal());
+		return result.append(';').append(world.getNbLogs()).append(world.getNbBoulders()).toString();
+	}
+}
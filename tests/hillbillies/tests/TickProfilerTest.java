@@ -0,0 +1,125 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import hillbillies.model.Activity;
+import hillbillies.model.Task;
+import hillbillies.model.TickProfiler;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.tasks.TaskFactory;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class TickProfilerTest {
+	
+	@Test
+	public void disabledTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Walker", new int[]{0, 0, 1}, 50, 50, 50, 50);
+		unit.moveTo(new int[]{9, 9, 1});
+		for (int i = 0; i < 20; i++)
+			world.advanceTime(0.05);
+		
+		TickProfiler profiler = world.getProfiler();
+		assertFalse(profiler.isEnabled());
+		assertEquals(0, profiler.getNbTicks());
+		assertEquals(0, profiler.getTotalTime());
+		assertEquals(0, profiler.getNbSearches());
+	}
+	
+	@Test
+	public void phasesAndActivitiesTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Walker", new int[]{0, 0, 1}, 50, 50, 50, 50);
+		TickProfiler profiler = world.getProfiler();
+		profiler.setEnabled(true);
+		unit.moveTo(new int[]{9, 9, 1});
+		for (int i = 0; i < 20; i++)
+			world.advanceTime(0.05);
+		
+		assertEquals(20, profiler.getNbTicks());
+		assertEquals(20, profiler.getNbActivityUpdates(Activity.MOVE));
+		assertTrue(profiler.getPhaseTime(TickProfiler.Phase.UNITS) > 0);
+		assertTrue(profiler.getActivityTime(Activity.MOVE) > 0);
+		assertTrue(profiler.getNbSearches() > 0);
+		assertTrue(profiler.getNbExpandedNodes() >= profiler.getNbSearches());
+		
+		profiler.reset();
+		assertEquals(0, profiler.getNbTicks());
+		assertEquals(0, profiler.getTotalTime());
+		assertEquals(0, profiler.getNbActivityUpdates(Activity.MOVE));
+		assertEquals(0, profiler.getNbSearches());
+	}
+	
+	@Test
+	public void wokenUnitsPhaseTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit defender = new Unit(world, "Defender", new int[]{4, 4, 1}, 50, 50, 50, 50);
+		Unit attacker = new Unit(world, "Attacker", new int[]{5, 4, 1}, 50, 50, 50, 50);
+		defender.stopDefaultBehavior();
+		attacker.stopDefaultBehavior();
+		for (int i = 0; i < 5; i++)
+			world.advanceTime(0.05);
+		assertTrue(defender.isSleeping());
+		
+		TickProfiler profiler = world.getProfiler();
+		profiler.setEnabled(true);
+		attacker.fight(defender);
+		for (int i = 0; i < 30; i++)
+			world.advanceTime(0.05);
+		
+		// The defender is woken by the attack while the units advance, and there are no items to bill it to.
+		assertTrue(profiler.getPhaseTime(TickProfiler.Phase.UNITS) > 0);
+		assertEquals(0, profiler.getPhaseTime(TickProfiler.Phase.ITEMS));
+	}
+	
+	@Test
+	public void statementsTest() {
+		World world = TestWorlds.flatWorld(10);
+		Unit unit = new Unit(world, "Thinker", new int[]{0, 0, 1}, 50, 50, 50, 50);
+		List<Task> tasks = TaskParser.parseTasksFromString(
+				"name: \"assignments\"\npriority: 1\nactivities:\na := true;\nb := false;\nc := true;",
+				new TaskFactory(), Collections.emptyList());
+		unit.getFaction().getScheduler().schedule(tasks.get(0));
+		unit.startDefaultBehavior();
+		world.getProfiler().setEnabled(true);
+		for (int i = 0; i < 5; i++)
+			world.advanceTime(0.05);
+		
+		assertTrue(world.getProfiler().getNbStatements() >= 3);
+		assertTrue(world.getProfiler().getNbActivityUpdates(Activity.NOTHING) > 0);
+	}
+	
+	@Test
+	public void logTest() {
+		World world = TestWorlds.flatWorld(10);
+		TickProfiler profiler = world.getProfiler();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		profiler.setLogStream(new PrintStream(out));
+		profiler.setLogInterval(4);
+		profiler.setEnabled(true);
+		for (int i = 0; i < 10; i++)
+			world.advanceTime(0.05);
+		
+		String[] lines = out.toString().trim().split("\\R");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].startsWith("ticks=4 "));
+		assertTrue(lines[1].startsWith("ticks=8 "));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidLogIntervalTest() {
+		TestWorlds.flatWorld(10).getProfiler().setLogInterval(-1);
+	}
+}
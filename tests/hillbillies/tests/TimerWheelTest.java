@@ -0,0 +1,94 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import hillbillies.model.TimerWheel;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class TimerWheelTest {
+	
+	@Test
+	public void advanceTest() {
+		TimerWheel wheel = new TimerWheel();
+		final List<String> fired = new ArrayList<>();
+		wheel.schedule(0.5, () -> fired.add("b"));
+		wheel.schedule(0.015, () -> fired.add("a"));
+		wheel.schedule(0.5, () -> fired.add("c"));
+		TimerWheel.Timer cancelled = wheel.schedule(0.3, () -> fired.add("x"));
+		assertEquals(4, wheel.getNbTimers());
+		wheel.cancel(cancelled);
+		assertFalse(cancelled.isPending());
+		assertEquals(3, wheel.getNbTimers());
+		assertEquals(0.015, wheel.getNextFireTime(), 0);
+		
+		// A timer later in the same tick waits for the next advance.
+		wheel.advance(0.012);
+		assertTrue(fired.isEmpty());
+		wheel.advance(0.02);
+		assertEquals(1, fired.size());
+		
+		// Timers with the same fire time fire in the order in which they were scheduled.
+		wheel.advance(10);
+		assertEquals(3, fired.size());
+		assertEquals("b", fired.get(1));
+		assertEquals("c", fired.get(2));
+		assertEquals(0, wheel.getNbTimers());
+		assertEquals(Double.POSITIVE_INFINITY, wheel.getNextFireTime(), 0);
+	}
+	
+	@Test
+	public void cascadeTest() {
+		TimerWheel wheel = new TimerWheel();
+		final List<Double> fired = new ArrayList<>();
+		// Timers in all levels and in the overflow list.
+		double[] times = {200000, 0.63, 0.64, 41, 2000, 180, 0.2, 3000.005};
+		for (final double time: times)
+			wheel.schedule(time, () -> fired.add(time));
+		double previous = 0;
+		int nbFired = 0;
+		while (wheel.getNbTimers() > 0) {
+			// Small steps at first, then large ones.
+			double now = previous + ((previous < 10) ? 0.2 : 100);
+			wheel.advance(now);
+			for (double time: fired)
+				assertTrue((time <= now) && (time > previous));
+			nbFired += fired.size();
+			fired.clear();
+			previous = now;
+		}
+		assertEquals(times.length, nbFired);
+		assertTrue(previous >= 200000);
+	}
+	
+	@Test
+	public void callbackTest() {
+		final TimerWheel wheel = new TimerWheel();
+		final List<Double> fired = new ArrayList<>();
+		wheel.schedule(1, () -> {
+			fired.add(1.0);
+			wheel.schedule(1.5, () -> fired.add(1.5));
+			// A timer that is already due fires in the next advance.
+			wheel.schedule(0.5, () -> fired.add(0.5));
+		});
+		wheel.advance(1);
+		assertEquals(1, fired.size());
+		wheel.advance(1.2);
+		assertEquals(2, fired.size());
+		assertEquals(0.5, fired.get(1), 0);
+		wheel.advance(1.5);
+		assertEquals(3, fired.size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidResolutionTest() {
+		new TimerWheel(0);
+	}
+}
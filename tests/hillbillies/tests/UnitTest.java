@@ -2,6 +2,7 @@ package hillbillies.tests;
 
 import static org.junit.Assert.*;
 import java.io.IOException;
+import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
 import hillbillies.expressions.unitType.AnyExpression;
@@ -17,9 +18,11 @@ import hillbillies.part2.internal.map.GameMap;
 import hillbillies.part2.internal.map.GameMapReader;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
 import hillbillies.part3.programs.SourceLocation;
+import hillbillies.part3.programs.TaskParser;
 import hillbillies.positions.Position;
 import hillbillies.positions.UnitPosition;
 import hillbillies.statements.expressionType.actions.FollowStatement;
+import hillbillies.tasks.TaskFactory;
 import ogp.framework.util.Util;
 
 /**
@@ -1376,6 +1379,87 @@ public class UnitTest {
 		assertFalse(unit.getCurrentActivity() == Activity.NOTHING );
 	}
 	
+	@Test
+	public void moveToUnreachableTest(){
+		World world = new World(dividedTerrain(), new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		assertTrue(unit.canMoveTo(new int[]{8, 1, 1}));
+		
+		unit.moveTo(new int[]{8, 1, 1});
+		
+		assertFalse(unit.isMoving());
+		assertTrue(unit.getCurrentActivity() == Activity.NOTHING);
+	}
+	
+	@Test
+	public void moveToUnreachableTaskTest(){
+		World world = new World(dividedTerrain(), new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		Task task = schedule(unit, "name: \"cross\"\npriority: 100\nactivities:\nmoveTo (8, 1, 1);");
+		unit.startDefaultBehavior();
+		
+		advanceTimeFor(world, 1, 0.1);
+		
+		// The task fails each time the unit tries to execute it, instead of stopping the unit with an exception.
+		assertTrue(task.getPriority() < 100);
+		assertTrue(Position.equals(unit.getCubeCoordinates(), new int[]{1, 1, 1}));
+	}
+	
+	@Test
+	public void attackWithoutEnemyTaskTest(){
+		World world = new World(dividedTerrain(), new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		Task task = schedule(unit, "name: \"fight\"\npriority: 100\nactivities:\nattack enemy;");
+		unit.startDefaultBehavior();
+		
+		advanceTimeFor(world, 1, 0.1);
+		
+		// The attack on a missing enemy fails the task, so the unit does not wait for it forever.
+		assertTrue(task.getPriority() < 100);
+		assertFalse(unit.isAttacking());
+		assertTrue(unit.getDefaultBehaviorEnabled());
+	}
+	
+	@Test
+	public void dropItemWithoutTaskTest(){
+		World world = new World(dividedTerrain(), new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world, "Unit", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		new Log(world, new int[]{1, 1, 1});
+		unit.workAt(new int[]{1, 1, 1});
+		advanceTimeFor(unit, unit.getWorkDuration(), 0.015625);
+		assertTrue(unit.hasItem());
+		
+		unit.startDefaultBehavior();
+		unit.workAt(new int[]{1, 2, 1}, true);
+		unit.advanceTime(0.015625);
+		
+		assertFalse(unit.hasItem());
+		assertFalse(unit.hasTask());
+		assertTrue(unit.getDefaultBehaviorEnabled());
+	}
+	
+	/**
+	 * Helper method to create the terrain of a world with a solid floor that is divided in two by a wall at x == 5,
+	 * which reaches the top of the world.
+	 */
+	private static int[][][] dividedTerrain() {
+		int[][][] terrain = TestWorlds.floor(10, 10, 4);
+		for (int y = 0; y < 10; y++)
+			for (int z = 1; z < 4; z++)
+				terrain[5][y][z] = TestWorlds.TYPE_ROCK;
+		return terrain;
+	}
+	
+	/**
+	 * Helper method to schedule the task with the given source for the faction of the given unit.
+	 */
+	private static Task schedule(Unit unit, String source) {
+		Task task = TaskParser.parseTasksFromString(source, new TaskFactory(), Collections.emptyList()).get(0);
+		unit.getFaction().getScheduler().schedule(task);
+		return task;
+	}
+	
 	/**
 	 * Helper method to advance time for the given world by some time.
 	 * 
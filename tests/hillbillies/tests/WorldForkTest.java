@@ -0,0 +1,150 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hillbillies.model.FlowFieldCache;
+import hillbillies.model.PathFinder;
+import hillbillies.model.Task;
+import hillbillies.model.Terrain;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.tasks.TaskFactory;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class WorldForkTest {
+
+	private World world;
+
+	private Unit worker;
+
+	@Before
+	public void setUp() {
+		world = TestWorlds.woodedWorld(2016, 4);
+		worker = new Unit(world, "Worker", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		worker.startDefaultBehavior();
+	}
+
+	/**
+	 * Helper method to return the unit with the given name in the given world.
+	 */
+	private static Unit getUnit(World world, String name) {
+		for (Unit unit: world.getUnits())
+			if (unit.getName().equals(name))
+				return unit;
+		return null;
+	}
+
+	@Test
+	public void forkTest() {
+		for (int i = 0; i < 50; i++)
+			world.advanceTime(0.05);
+		World fork = world.fork(new DefaultTerrainChangeListener());
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(fork));
+		assertEquals(world.getSeed(), fork.getSeed());
+		assertEquals(world.getNbActiveFactions(), fork.getNbActiveFactions());
+		assertTrue(fork.getTerrainChangeListener() != null);
+		Unit forkedWorker = getUnit(fork, "Worker");
+		assertTrue(forkedWorker != worker);
+		assertTrue(forkedWorker.getWorld() == fork);
+		assertTrue(forkedWorker.getFaction() != worker.getFaction());
+		assertTrue(forkedWorker.getFaction().getScheduler() != worker.getFaction().getScheduler());
+	}
+
+	@Test
+	public void continuationTest() {
+		for (int i = 0; i < 50; i++)
+			world.advanceTime(0.05);
+		World first = world.fork(new DefaultTerrainChangeListener());
+		World second = first.fork(new DefaultTerrainChangeListener());
+		for (int i = 0; i < 300; i++) {
+			world.advanceTime(0.05);
+			first.advanceTime(0.05);
+			second.advanceTime(0.05);
+		}
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(first));
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(second));
+	}
+
+	@Test
+	public void independenceTest() {
+		World fork = world.fork(new DefaultTerrainChangeListener());
+		Unit forkedWorker = getUnit(fork, "Worker");
+		List<Task> tasks = TaskParser.parseTasksFromString(
+				"name: \"chop\"\npriority: 100\nactivities:\nmoveTo (2, 1, 1);\nwork (3, 1, 1);",
+				new TaskFactory(), Collections.emptyList());
+		forkedWorker.getFaction().getScheduler().schedule(tasks.get(0));
+		for (int i = 0; i < 600; i++) {
+			world.advanceTime(0.05);
+			fork.advanceTime(0.05);
+		}
+		assertEquals(Terrain.AIR, fork.getTerrain(3, 1, 1));
+		assertEquals(Terrain.WOOD, world.getTerrain(3, 1, 1));
+		assertEquals(0, worker.getFaction().getScheduler().getNbTasks());
+
+		worker.terminate();
+		assertEquals(world.getNbUnits() + 1, fork.getNbUnits());
+	}
+
+	@Test
+	public void parallelTest() throws InterruptedException {
+		List<World> forks = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			forks.add(world.fork(new DefaultTerrainChangeListener()));
+		List<Thread> threads = new ArrayList<>();
+		for (World fork: forks)
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 200; i++)
+					fork.advanceTime(0.05);
+			}));
+		for (Thread thread: threads)
+			thread.start();
+		for (int i = 0; i < 200; i++)
+			world.advanceTime(0.05);
+		for (Thread thread: threads)
+			thread.join();
+		for (World fork: forks)
+			assertEquals(TestWorlds.describe(world), TestWorlds.describe(fork));
+	}
+
+	@Test
+	public void flowFieldForkTest() {
+		World flat = TestWorlds.flatWorld(20);
+		int[] destination = {19, 19, 1};
+		for (int i = 0; i < FlowFieldCache.SHARED_SEARCHES - 1; i++)
+			flat.getPathCache().getPath(new int[]{i, 0, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		World fork = flat.fork(new DefaultTerrainChangeListener());
+		
+		// The search that crosses the threshold after forking is the same in both worlds.
+		List<int[]> path = flat.getPathCache().getPath(new int[]{0, 10, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		List<int[]> forkedPath = fork.getPathCache().getPath(new int[]{0, 10, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		assertEquals(flat.getFlowFieldCache().getNbFlowFields(), fork.getFlowFieldCache().getNbFlowFields());
+		assertEquals(path.size(), forkedPath.size());
+		for (int i = 0; i < path.size(); i++)
+			assertArrayEquals(path.get(i), forkedPath.get(i));
+		
+		for (int i = 0; i < FlowFieldCache.SHARED_SEARCHES; i++) {
+			flat.getPathCache().getPath(new int[]{i, 5, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+			fork.getPathCache().getPath(new int[]{i, 5, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		}
+		assertEquals(1, flat.getFlowFieldCache().getNbFlowFields());
+		assertEquals(1, fork.getFlowFieldCache().getNbFlowFields());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void terminatedWorldTest() {
+		world.terminate();
+		world.fork(new DefaultTerrainChangeListener());
+	}
+}
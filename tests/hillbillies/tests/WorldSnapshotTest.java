@@ -0,0 +1,140 @@
+package hillbillies.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hillbillies.model.FlowFieldCache;
+import hillbillies.model.PathFinder;
+import hillbillies.model.Task;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.tasks.TaskFactory;
+
+/**
+ * @author Sander Mergan, Thomas Vranken
+ * @version	3.0
+ */
+public class WorldSnapshotTest {
+
+	private World world;
+
+	@Before
+	public void setUp() {
+		world = TestWorlds.woodedWorld(2016, 4);
+		Unit walker = new Unit(world, "Walker", new int[]{1, 1, 1}, 50, 50, 50, 50);
+		List<Task> tasks = TaskParser.parseTasksFromString(
+				"name: \"patrol\"\npriority: 100\nactivities:\n"
+				+ "while true do\nmoveTo (13, 13, 1);\nmoveTo (1, 1, 1);\ndone",
+				new TaskFactory(), Collections.emptyList());
+		walker.getFaction().getScheduler().schedule(tasks.get(0));
+		walker.startDefaultBehavior();
+	}
+
+	/**
+	 * Helper method to save the given world to an array of bytes.
+	 */
+	private static byte[] save(World world) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		WorldSnapshot.write(world, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Helper method to restore a world from the given array of bytes.
+	 */
+	private static World restore(byte[] snapshot) throws IOException {
+		return WorldSnapshot.read(new ByteArrayInputStream(snapshot), new DefaultTerrainChangeListener());
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		for (int i = 0; i < 100; i++)
+			world.advanceTime(0.05);
+		World restored = restore(save(world));
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(restored));
+		assertEquals(world.getSeed(), restored.getSeed());
+		assertEquals(world.getNbUnits(), restored.getNbUnits());
+		assertTrue(restored.getTerrainChangeListener() != null);
+		for (Unit unit: restored.getUnits())
+			assertTrue(unit.getWorld() == restored);
+	}
+
+	@Test
+	public void continuationTest() throws IOException {
+		for (int i = 0; i < 100; i++)
+			world.advanceTime(0.05);
+		byte[] snapshot = save(world);
+		World first = restore(snapshot);
+		World second = restore(snapshot);
+		for (int i = 0; i < 300; i++) {
+			world.advanceTime(0.05);
+			first.advanceTime(0.05);
+			second.advanceTime(0.05);
+		}
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(first));
+		assertEquals(TestWorlds.describe(world), TestWorlds.describe(second));
+	}
+
+	@Test
+	public void repeatedSnapshotTest() throws IOException {
+		for (int i = 0; i < 100; i++)
+			world.advanceTime(0.05);
+		// Nothing happens to the world in between, so the second snapshot does not replace its streams of random numbers.
+		assertArrayEquals(save(world), save(world));
+	}
+
+	@Test
+	public void flowFieldSnapshotTest() throws IOException {
+		World flat = TestWorlds.flatWorld(20);
+		int[] destination = {19, 19, 1};
+		for (int i = 0; i < FlowFieldCache.SHARED_SEARCHES - 1; i++)
+			flat.getPathCache().getPath(new int[]{i, 0, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		World restored = restore(save(flat));
+		
+		// The next search towards the destination is the same in both worlds, with or without a flow field.
+		List<int[]> path = flat.getPathCache().getPath(new int[]{0, 10, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		List<int[]> restoredPath = restored.getPathCache().getPath(new int[]{0, 10, 1}, destination, PathFinder.ALLOW_DIAGONAL);
+		assertEquals(flat.getFlowFieldCache().getNbFlowFields(), restored.getFlowFieldCache().getNbFlowFields());
+		assertEquals(path.size(), restoredPath.size());
+		for (int i = 0; i < path.size(); i++)
+			assertArrayEquals(path.get(i), restoredPath.get(i));
+	}
+	
+	@Test
+	public void restoredIsIndependentTest() throws IOException {
+		World restored = restore(save(world));
+		String before = TestWorlds.describe(restored);
+		for (int i = 0; i < 50; i++)
+			world.advanceTime(0.05);
+		assertEquals(before, TestWorlds.describe(restored));
+	}
+
+	@Test(expected = IOException.class)
+	public void notASnapshotTest() throws IOException {
+		restore(new byte[]{'H', 'B', 'W', 'X', 0, 0, 0, 1});
+	}
+
+	@Test(expected = IOException.class)
+	public void unsupportedVersionTest() throws IOException {
+		byte[] snapshot = save(world);
+		snapshot[7] = (byte) (WorldSnapshot.VERSION + 1);
+		restore(snapshot);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void terminatedWorldTest() throws IOException {
+		world.terminate();
+		save(world);
+	}
+}
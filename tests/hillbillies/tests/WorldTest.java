@@ -2,7 +2,11 @@ package hillbillies.tests;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -11,12 +15,15 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import hillbillies.model.Boulder;
+import hillbillies.model.CubeVisitor;
 import hillbillies.model.Entity;
 import hillbillies.model.Log;
 import hillbillies.model.Terrain;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part2.listener.TerrainChangeSet;
 import hillbillies.positions.Position;
 import ogp.framework.util.Util;
 
@@ -68,6 +75,159 @@ public class WorldTest {
 		assertEquals(TYPE_AIR, world.getTerrain(1, 1, 1).ordinal());
 	}
 	
+	@Test
+	public void caveInBudgetTest() {
+		// A tower of rock that is only connected to the border through its lowest cube.
+		int[][][] terrain = new int[3][3][10];
+		for (int z = 0; z < 8; z++)
+			terrain[1][1][z] = TYPE_ROCK;
+
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		world.setCaveInBudget(3);
+		Unit unit = new Unit(world,  "Test", new int[] { 0, 0, 0 }, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.workAt(new int[]{1, 1, 0});
+		for (int i = 0; (i < 10000) && (world.getTerrain(1, 1, 0).ordinal() != TYPE_AIR); i++)
+			world.advanceTime(0.01);
+		assertEquals(TYPE_AIR, world.getTerrain(1, 1, 0).ordinal());
+		assertEquals(7, world.getNbPendingCollapses());
+		
+		// The rest of the tower caves in over three ticks.
+		int[] expectedPending = {4, 1, 0};
+		for (int expected: expectedPending) {
+			world.advanceTime(0.01);
+			assertEquals(expected, world.getNbPendingCollapses());
+			int nbSolid = 0;
+			for (int z = 1; z < 8; z++)
+				if (world.getTerrain(1, 1, z).ordinal() == TYPE_ROCK)
+					nbSolid++;
+			assertEquals(expected, nbSolid);
+		}
+	}
+	
+	@Test
+	public void caveInCascadeTest() {
+		// A tower of rock with an overhanging arm, which is only connected to the border through the base of the tower.
+		int[][][] terrain = new int[7][5][6];
+		for (int z = 0; z < 4; z++)
+			terrain[2][2][z] = TYPE_ROCK;
+		terrain[3][2][3] = TYPE_ROCK;
+		terrain[4][2][3] = TYPE_TREE;
+		terrain[4][2][2] = TYPE_ROCK;
+
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world,  "Test", new int[] { 1, 2, 0 }, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.workAt(new int[]{2, 2, 0});
+		for (int i = 0; (i < 10000) && (world.getTerrain(2, 2, 0).ordinal() != TYPE_AIR); i++)
+			world.advanceTime(0.01);
+		world.advanceTime(0.01);
+
+		// Caving in some of these cubes does not stop the others from caving in as well.
+		assertEquals(0, world.getNbPendingCollapses());
+		for (int z = 0; z < 4; z++)
+			assertEquals(TYPE_AIR, world.getTerrain(2, 2, z).ordinal());
+		assertEquals(TYPE_AIR, world.getTerrain(3, 2, 3).ordinal());
+		assertEquals(TYPE_AIR, world.getTerrain(4, 2, 3).ordinal());
+		assertEquals(TYPE_AIR, world.getTerrain(4, 2, 2).ordinal());
+	}
+
+	@Test
+	public void batchedTerrainChangesTest() {
+		final List<TerrainChangeSet> batches = new ArrayList<>();
+		final List<int[]> singles = new ArrayList<>();
+		TerrainChangeListener listener = new TerrainChangeListener() {
+			@Override
+			public void notifyTerrainChanged(int x, int y, int z) {
+				singles.add(new int[]{x, y, z});
+			}
+			@Override
+			public void notifyTerrainChanged(TerrainChangeSet changes) {
+				batches.add(changes);
+			}
+		};
+		int[][][] terrain = new int[5][5][10];
+		for (int z = 0; z < 8; z++)
+			terrain[2][2][z] = TYPE_ROCK;
+		terrain[1][1][5] = TYPE_ROCK; // This collapses during the construction.
+		
+		World world = new World(terrain, listener);
+		assertEquals(1, batches.size());
+		assertEquals(1, batches.get(0).size());
+		batches.clear();
+		
+		Unit unit = new Unit(world,  "Test", new int[] { 1, 1, 0 }, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		unit.workAt(new int[]{2, 2, 0});
+		for (int i = 0; (i < 10000) && (world.getTerrain(2, 2, 0).ordinal() != TYPE_AIR); i++)
+			world.advanceTime(0.01);
+		// The rest of the tower caves in during the next step, and all of it is notified at once.
+		world.advanceTime(0.01);
+		assertTrue(singles.isEmpty());
+		assertEquals(2, batches.size());
+		assertEquals(1, batches.get(0).size());
+		assertEquals(7, batches.get(1).size());
+		assertArrayEquals(new int[]{2, 2, 1}, batches.get(1).getMinCorner());
+		assertArrayEquals(new int[]{2, 2, 7}, batches.get(1).getMaxCorner());
+	}
+	
+	@Test
+	public void sleepingEntitiesTest() {
+		int[][][] terrain = new int[5][5][10];
+		for (int z = 0; z < 8; z++)
+			terrain[2][2][z] = TYPE_ROCK;
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world,  "Test", new int[] { 1, 1, 0 }, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		Boulder boulder = new Boulder(world, new int[]{2, 2, 8});
+		
+		// The idle unit and the settled boulder fall asleep, but their gametime keeps up with the world.
+		for (int i = 0; i < 10; i++)
+			world.advanceTime(0.1);
+		assertEquals(0, world.getNbAwakeEntities());
+		assertTrue(unit.isSleeping() && boulder.isSleeping());
+		assertEquals(world.getTime(), unit.getGametime(), 1e-9);
+		assertEquals(world.getTime(), boulder.getGametime(), 1e-9);
+		
+		// A new order wakes the unit, and the collapse of the tower wakes the boulder.
+		unit.workAt(new int[]{2, 2, 0});
+		assertFalse(unit.isSleeping());
+		for (int i = 0; (i < 10000) && (boulder.getCubeCoordinates()[2] > 0); i++)
+			world.advanceTime(0.05);
+		assertEquals(0, boulder.getCubeCoordinates()[2]);
+		for (int i = 0; i < 10; i++)
+			world.advanceTime(0.05);
+		assertEquals(0, world.getNbAwakeEntities());
+		assertEquals(world.getTime(), unit.getGametime(), 1e-9);
+		assertEquals(world.getTime(), boulder.getGametime(), 1e-9);
+	}
+	
+	/**
+	 * Helper method to simulate a world with the given seed, in which units with default behavior 
+	 * dig, move and fight, and to describe its final state.
+	 */
+	private static String simulateSeededWorld(long seed) {
+		World world = TestWorlds.woodedWorld(seed, 10);
+		assertEquals(seed, world.getSeed());
+		for (int i = 0; i < 400; i++)
+			world.advanceTime(0.05);
+		StringBuilder result = new StringBuilder();
+		for (Unit unit: world.getUnits())
+			result.append(unit.getName()).append(Arrays.toString(unit.getCoordinates())).append(unit.getExperience()).append(';');
+		return result.append(world.getNbLogs()).toString();
+	}
+	
+	@Test
+	public void seededReplayTest() {
+		assertEquals(simulateSeededWorld(2016), simulateSeededWorld(2016));
+		assertFalse(simulateSeededWorld(2016).equals(simulateSeededWorld(2017)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidCaveInBudgetTest() {
+		new World(new int[3][3][3], new DefaultTerrainChangeListener()).setCaveInBudget(0);
+	}
+	
 	@Test
 	public void constructorTest() {
 		int[][][] terrain = new int[20][40][10];
@@ -240,7 +400,80 @@ public class WorldTest {
 		assertFalse(world.getTerrain(1,1,1) == Terrain.ROCK);
 		assertFalse(world.getTerrain(1,1,1) == Terrain.WORKSHOP);
 	}
-	
+
+	@Test
+	public void cubeViewTest() {
+		int[][][] terrain = new int[3][3][3];
+		terrain[1][1][0] = TYPE_ROCK;
+		terrain[1][1][1] = TYPE_TREE;
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		assertTrue(world.getNbCubes() == 27);
+		assertTrue(world.getCube(1,1,0).getTerrainType() == Terrain.ROCK);
+		assertFalse(world.getCube(1,1,0).isPassable());
+
+		world.getCube(1,1,0).setTerrainType(Terrain.WORKSHOP);
+		assertTrue(world.getTerrain(1,1,0) == Terrain.WORKSHOP);
+		assertTrue(world.isPassable(1,1,0));
+	}
+
+	@Test
+	public void solidNeighboursTest() {
+		int[][][] terrain = new int[5][5][5];
+		terrain[2][2][0] = TYPE_ROCK;
+		terrain[2][2][1] = TYPE_ROCK;
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		assertTrue(world.hasSolidNeighbours(1,1,0));
+		assertTrue(world.hasSolidNeighbours(3,3,2));
+		assertFalse(world.hasSolidNeighbours(2,2,3));
+		assertFalse(world.hasSolidNeighbours(0,0,0));
+		assertTrue(world.isWalkable(2,2,2));
+		assertFalse(world.isWalkable(2,2,1));
+		
+		// Only the neighbours of a changed cube are updated.
+		world.getCube(2,2,1).setTerrainType(Terrain.AIR);
+		assertFalse(world.hasSolidNeighbours(3,3,2));
+		assertTrue(world.isWalkable(2,2,1));
+		assertTrue(world.hasSolidNeighbours(1,1,0));
+		world.getCube(4,4,4).setTerrainType(Terrain.ROCK);
+		assertTrue(world.hasSolidNeighbours(3,3,3));
+		try{world.hasSolidNeighbours(5,0,0); assertTrue(false);}catch(IllegalArgumentException e){assertTrue(true);}
+	}
+
+	@Test
+	public void visitNeighboursTest() {
+		World world = new World(new int[5][5][5], new DefaultTerrainChangeListener());
+		final int[] count = new int[1];
+		CubeVisitor counter = new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				count[0]++;
+				return true;
+			}
+		};
+		for (int connectivity: new int[]{6, 18, 26}) {
+			count[0] = 0;
+			assertTrue(world.visitNeighbours(2, 2, 2, connectivity, counter));
+			assertTrue(count[0] == connectivity);
+		}
+		count[0] = 0;
+		world.visitNeighbours(0, 0, 0, 26, counter);
+		assertTrue(count[0] == 7);
+		count[0] = 0;
+		world.visitCubesInRange(0, 0, 0, 2, counter);
+		assertTrue(count[0] == 26);
+		
+		// The visitor can stop the iteration and receives matching indices and coordinates.
+		final World finalWorld = world;
+		assertFalse(world.visitNeighbours(2, 2, 2, 6, new CubeVisitor() {
+			@Override
+			public boolean visit(int index, int x, int y, int z) {
+				assertTrue(index == finalWorld.getCubeIndex(x, y, z));
+				return false;
+			}
+		}));
+		try{world.visitNeighbours(2, 2, 2, 8, counter); assertTrue(false);}catch(IllegalArgumentException e){assertTrue(true);}
+	}
+
 	@Test
 	public void getUnitsInCubeTest() {
 		int[][][] terrain = new int[15][15][15];
@@ -261,6 +494,80 @@ public class WorldTest {
 		assertTrue(world.getUnitsInCube(5,2,0).size() == 1);
 	}
 		
+	/**
+	 * Helper method which lets 5 units cross a walled world and returns their positions afterwards.
+	 */
+	private static double[][] crossWorld(int parallelism) {
+		int[][][] terrain = TestWorlds.floor(20, 20, 4);
+		for (int y=0; y<18; y++)
+			terrain[10][y][1] = TYPE_ROCK;
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		world.setParallelism(parallelism);
+		Unit[] units = new Unit[5];
+		for (int i=0; i<units.length; i++) {
+			units[i] = new Unit(world, "Unit", new int[] {1, 2*i, 1}, 50, 50, 50, 50);
+			units[i].stopDefaultBehavior();
+		}
+		for (int i=0; i<units.length; i++)
+			units[i].moveTo(new int[]{18, 19-2*i, 1});
+		advanceTimeFor(world, 2, 0.1);
+		// Forgetting the paths makes all units search their paths again in the next step.
+		world.getPathCache().clear();
+		world.advanceTime(0.1);
+		assertTrue(world.getPathCache().getNbPaths() >= units.length);
+		advanceTimeFor(world, 6, 0.1);
+		double[][] result = new double[units.length][];
+		for (int i=0; i<units.length; i++)
+			result[i] = units[i].getCoordinates();
+		world.terminate();
+		return result;
+	}
+	
+	@Test
+	public void parallelismTest() {
+		double[][] sequential = crossWorld(1);
+		double[][] parallel = crossWorld(4);
+		for (int i=0; i<sequential.length; i++)
+			assertTrue(Position.equals(sequential[i], parallel[i]));
+		
+		World world = new World(new int[3][3][3], new DefaultTerrainChangeListener());
+		world.setParallelism(3);
+		assertTrue(world.getParallelism() == 3);
+		try{world.setParallelism(0); assertTrue(false);}catch(IllegalArgumentException e){assertTrue(true);}
+		
+		// Terminating the world shuts down its threads, after which it cannot get new ones.
+		world.terminate();
+		assertTrue(world.getParallelism() == ForkJoinPool.commonPool().getParallelism());
+		try{world.setParallelism(3); assertTrue(false);}catch(IllegalStateException e){assertTrue(true);}
+	}
+
+	@Test
+	public void spatialIndexTest() {
+		World world = new World(TestWorlds.floor(15, 15, 15), new DefaultTerrainChangeListener());
+		Unit unit = new Unit(world,  "Test a", new int[] {5,5,1}, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		Unit unit2 = new Unit(world,  "Test b", new int[] {6,6,1}, 50, 50, 50, 50);
+		unit2.stopDefaultBehavior();
+		Log log = new Log(world, new int[]{9,9,1});
+
+		assertTrue(world.getUnitAt(new int[]{5,5,1}) == unit);
+		assertTrue(world.getLogAt(new int[]{9,9,1}) == log);
+		assertTrue(world.getItemAt(new int[]{9,9,1}) == log);
+		assertTrue(world.getBoulderAt(new int[]{9,9,1}) == null);
+		assertTrue(world.getUnitAt(new int[]{15,5,1}) == null);
+		assertTrue(world.getUnitsInRange(new int[]{5,5,1}, 1).size() == 2);
+		assertTrue(world.getUnitsInRange(new int[]{4,4,1}, 1).size() == 1);
+		assertTrue(world.getEntitiesInRange(new int[]{7,7,1}, 2, Entity.class).size() == 3);
+
+		unit.moveTo(new int[]{8,5,1});
+		advanceTimeFor(world, 20, 0.1);
+		assertTrue(world.getUnitAt(new int[]{5,5,1}) == null);
+		assertTrue(world.getUnitAt(new int[]{8,5,1}) == unit);
+
+		log.terminate();
+		assertTrue(world.getLogAt(new int[]{9,9,1}) == null);
+	}
+
 	@Test
 	public void getDirectlyAdjecentCubesTest(){
 		int[][][] terrain = new int[3][3][3];
@@ -433,6 +740,36 @@ public class WorldTest {
 		assertTrue(world.getNbEntities() == 0);
 	}
 	
+	@Test
+	public void entityRegistriesTest() {
+		int[][][] terrain = new int[20][40][10];
+		World world = new World(terrain, new DefaultTerrainChangeListener());
+		Set<Unit> units = world.getUnits();
+		Set<Log> logs = world.getLogs();
+		
+		Unit unit = new Unit(world,  "Test", new int[] { 5, 5, 0 }, 50, 50, 50, 50);
+		unit.stopDefaultBehavior();
+		Log log = new Log(world, new int[]{0,0,0});
+		new Boulder(world, new int[]{0,0,0});
+		
+		assertTrue(units.contains(unit));
+		assertTrue(logs.contains(log));
+		assertTrue(world.getNbUnits() == 1);
+		assertTrue(world.getNbLogs() == 1);
+		assertTrue(world.getNbBoulders() == 1);
+		
+		log.terminate();
+		assertFalse(logs.contains(log));
+		assertTrue(world.getNbLogs() == 0);
+		
+		try {
+			units.clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			assertTrue(world.getNbUnits() == 1);
+		}
+	}
+	
 	@Test
 	public void addEntity_removeEntityTest() {
 		int[][][] terrain = new int[20][40][10];